@@ -1,5 +1,6 @@
 const { db } = require('/app/shared/utils/db');
 const { cache } = require('/app/shared/utils/redis');
+const { publishDiscoveryEvents, discoveryEvents } = require('/app/shared/utils/discoveryEvents');
 
 // Create follow relationship
 const createFollow = async (req, res) => {
@@ -25,7 +26,7 @@ const createFollow = async (req, res) => {
     });
 
     // Update counts for both users
-    await Promise.all([
+    const [follower, following] = await Promise.all([
       db.user.update({
         where: { id: followerUserId },
         data: { numFollowing: { increment: 1 } }
@@ -40,6 +41,11 @@ const createFollow = async (req, res) => {
     await cache.del(`user:${followerUserId}`);
     await cache.del(`user:${followingUserId}`);
     await cache.delPattern(`feed:${followerUserId}:*`);
+    publishDiscoveryEvents([
+      discoveryEvents.followed(followerUserId, followingUserId),
+      discoveryEvents.userUpdated(follower),
+      discoveryEvents.userUpdated(following),
+    ]);
 
     console.log(`[FOLLOW] Successfully created: ${followerUserId} -> ${followingUserId}`);
     return res.status(201).json({
@@ -81,7 +87,7 @@ const deleteFollow = async (req, res) => {
     }
 
     // Update counts for both users
-    await Promise.all([
+    const [follower, following] = await Promise.all([
       db.user.update({
         where: { id: followerUserId },
         data: { numFollowing: { decrement: 1 } }
@@ -96,6 +102,11 @@ const deleteFollow = async (req, res) => {
     await cache.del(`user:${followerUserId}`);
     await cache.del(`user:${followingUserId}`);
     await cache.delPattern(`feed:${followerUserId}:*`);
+    publishDiscoveryEvents([
+      discoveryEvents.unfollowed(followerUserId, followingUserId),
+      discoveryEvents.userUpdated(follower),
+      discoveryEvents.userUpdated(following),
+    ]);
 
     console.log(`[UNFOLLOW] Successfully deleted: ${followerUserId} -> ${followingUserId}`);
     return res.json({
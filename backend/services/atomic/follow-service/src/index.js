@@ -1,5 +1,6 @@
 const express = require('express');
 const cors = require('cors');
+const compression = require('compression');
 const path = require('path');
 require('dotenv').config({ path: path.join(__dirname, '../../../../.env') });
 
@@ -27,6 +28,7 @@ const startTime = Date.now();
 app.use(requestId);
 app.use(httpLogger);
 app.use(cors({ origin: true, allowedHeaders: ['Content-Type', 'Authorization', 'x-supabase-api-version', 'apikey', 'x-client-info'] }));
+app.use(compression());
 app.use(express.json());
 
 // API Documentation
@@ -1,6 +1,7 @@
 const { db } = require('/app/shared/utils/db');
 const { cache } = require('/app/shared/utils/redis');
 const { censorProfanity } = require('/app/shared/utils/profanityFilter');
+const { publishDiscoveryEvents, discoveryEvents } = require('/app/shared/utils/discoveryEvents');
 
 // Create a new user (called after Supabase auth creates the user)
 // NOTE: This is typically not needed as the auth trigger handles user creation
@@ -46,6 +47,7 @@ const createUser = async (req, res) => {
     });
 
     console.log(`[CREATE_USER] Success: ${userData.id}`);
+    publishDiscoveryEvents([discoveryEvents.userCreated(userData)]);
     return res.status(201).json({
       message: 'User created successfully',
       user: userData
@@ -358,6 +360,7 @@ const updateUsername = async (req, res) => {
 
     // Invalidate cache
     await cache.del(`user:${userID}`);
+    publishDiscoveryEvents([discoveryEvents.userUpdated(user)]);
 
     return res.json({ message: 'Username updated', user });
   } catch (error) {
@@ -382,6 +385,7 @@ const updateProfilePicture = async (req, res) => {
     });
 
     await cache.del(`user:${userID}`);
+    publishDiscoveryEvents([discoveryEvents.userUpdated(user)]);
 
     return res.json({ message: 'Profile picture updated', user });
   } catch (error) {
@@ -405,6 +409,7 @@ const updatePrivacySettings = async (req, res) => {
     });
 
     await cache.del(`user:${userID}`);
+    publishDiscoveryEvents([discoveryEvents.userUpdated(user)]);
 
     return res.json({ message: 'Privacy settings updated', user });
   } catch (error) {
@@ -535,6 +540,7 @@ const deleteUser = async (req, res) => {
   try {
     await db.user.delete({ where: { id: userID } });
     await cache.del(`user:${userID}`);
+    publishDiscoveryEvents([discoveryEvents.userDeleted(userID)]);
 
     return res.json({ message: 'User deleted successfully' });
   } catch (error) {
@@ -595,6 +601,7 @@ const updateUserCount = async (req, res) => {
     });
 
     await cache.del(`user:${userID}`);
+    publishDiscoveryEvents([discoveryEvents.userUpdated(user)]);
 
     return res.json({ message: 'Count updated', user });
   } catch (error) {
@@ -1,5 +1,6 @@
 const express = require('express');
 const cors = require('cors');
+const compression = require('compression');
 const dotenv = require('dotenv');
 const path = require('path');
 
@@ -32,6 +33,7 @@ const startTime = Date.now();
 app.use(requestId); // Track requests with unique IDs
 app.use(httpLogger); // Log all HTTP requests
 app.use(cors({ origin: true, allowedHeaders: ['Content-Type', 'Authorization', 'x-supabase-api-version'] }));
+app.use(compression());
 app.use(express.json());
 
 // API Documentation
@@ -0,0 +1,103 @@
+package com.mappalette.userdiscovery.benchmark;
+
+import com.mappalette.userdiscovery.directory.DirectoryFilter;
+import com.mappalette.userdiscovery.directory.DirectoryPartitioner;
+import com.mappalette.userdiscovery.directory.DirectoryUser;
+import com.mappalette.userdiscovery.directory.FollowingSet;
+import com.mappalette.userdiscovery.directory.UserIdInterner;
+import com.mappalette.userdiscovery.dto.UserDto;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * Where filtering a snapshot across a fork-join pool starts to beat the sequential scan.
+ * Each call asks for every discoverable user, as the deepest page does, so both variants
+ * scan the whole directory.
+ * <pre>
+ * mvn -Pjmh test-compile exec:exec -Djmh.args="DirectoryPartitionBenchmark"
+ * </pre>
+ * The crossover is the smallest {@code directorySize} at which {@code forkJoin} is faster;
+ * set {@code discovery.parallel.threshold} near it for the cores the service runs on.
+ * {@code parallelism} above the machine's core count only measures overhead.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class DirectoryPartitionBenchmark {
+
+    private static final int FOLLOWING_COUNT = 100;
+
+    @Param({"10000", "50000", "200000", "1000000"})
+    private int directorySize;
+
+    @Param({"2", "4"})
+    private int parallelism;
+
+    private List<DirectoryUser> users;
+    private Predicate<DirectoryUser> discoverable;
+    private int wanted;
+    private DirectoryPartitioner partitioner;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        UserIdInterner interner = new UserIdInterner();
+        String viewerId;
+        List<String> followingIds;
+        try (DiscoveryFixture fixture = new DiscoveryFixture(directorySize, FOLLOWING_COUNT, 0.2)) {
+            users = new ArrayList<>(directorySize);
+            for (UserDto user : fixture.getUsers()) {
+                users.add(DirectoryUser.from(user, interner));
+            }
+            viewerId = fixture.getViewerId();
+            followingIds = fixture.getFollowingIds();
+        }
+        FollowingSet following = FollowingSet.of(followingIds, interner);
+        discoverable = DirectoryFilter.discoverableBy(viewerId, following, interner)::accepts;
+        wanted = (int) users.stream().filter(discoverable).count();
+        partitioner = new DirectoryPartitioner(parallelism, 0, 16_384);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        partitioner.shutdown();
+    }
+
+    /**
+     * The sequential scan UserDiscoveryService runs below the threshold.
+     */
+    @Benchmark
+    public List<DirectoryUser> sequential() {
+        List<DirectoryUser> accepted = new ArrayList<>();
+        for (int i = 0; i < users.size() && accepted.size() < wanted; i++) {
+            DirectoryUser user = users.get(i);
+            if (discoverable.test(user)) {
+                accepted.add(user);
+            }
+        }
+        return accepted;
+    }
+
+    @Benchmark
+    public List<DirectoryUser> forkJoin() {
+        return partitioner.filter(users, discoverable, wanted);
+    }
+}
@@ -0,0 +1,92 @@
+package com.mappalette.userdiscovery.benchmark;
+
+import com.mappalette.userdiscovery.dto.AllUsersResponse;
+import com.mappalette.userdiscovery.dto.DiscoveryResponse;
+import com.mappalette.userdiscovery.service.UserDiscoveryService;
+import com.mappalette.userdiscovery.service.VersionedResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the discovery hot paths against a warm directory snapshot and
+ * following cache: the filter + paginate pass of discoverUsers and the
+ * friends lookup and others filter of getAllUserData. The versioned getAllUserData variants
+ * measure the same request answered from the response cache and with a 304.
+ *
+ * Run with the GC profiler to get allocation per operation:
+ * <pre>
+ * mvn -Pjmh test-compile exec:exec -Djmh.args="DiscoveryBenchmark -prof gc"
+ * </pre>
+ * Narrow the matrix with e.g. {@code -p directorySize=100000 -p privateRatio=0.2}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class DiscoveryBenchmark {
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    private int directorySize;
+
+    @Param({"20", "500"})
+    private int followingCount;
+
+    @Param({"0.0", "0.2", "0.5"})
+    private double privateRatio;
+
+    private DiscoveryFixture fixture;
+    private UserDiscoveryService service;
+    private String viewerId;
+    private String etag;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        fixture = new DiscoveryFixture(directorySize, followingCount, privateRatio);
+        service = fixture.getService();
+        viewerId = fixture.getViewerId();
+        // Load the snapshot and the viewer's following set before measuring
+        service.discoverUsers(viewerId, 1, 0, false);
+        etag = service.getAllUserDataVersioned(viewerId, 100, 100, null).getEtag();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        fixture.close();
+    }
+
+    @Benchmark
+    public DiscoveryResponse discoverUsers() {
+        return service.discoverUsers(viewerId, 20, 0, false);
+    }
+
+    @Benchmark
+    public AllUsersResponse getAllUserData() {
+        return service.getAllUserData(viewerId, 100, 100);
+    }
+
+    @Benchmark
+    public VersionedResponse getAllUserDataCached() throws IOException {
+        return service.getAllUserDataVersioned(viewerId, 100, 100, null);
+    }
+
+    @Benchmark
+    public VersionedResponse getAllUserDataNotModified() throws IOException {
+        return service.getAllUserDataVersioned(viewerId, 100, 100, etag);
+    }
+}
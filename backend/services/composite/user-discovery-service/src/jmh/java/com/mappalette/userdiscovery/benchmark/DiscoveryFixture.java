@@ -0,0 +1,279 @@
+package com.mappalette.userdiscovery.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mappalette.userdiscovery.cache.FollowingCache;
+import com.mappalette.userdiscovery.cache.ResponseCache;
+import com.mappalette.userdiscovery.cache.UserLookupCache;
+import com.mappalette.userdiscovery.client.FollowServiceClient;
+import com.mappalette.userdiscovery.client.UpstreamCalls;
+import com.mappalette.userdiscovery.client.UserServiceClient;
+import com.mappalette.userdiscovery.config.DiscoveryExecutors;
+import com.mappalette.userdiscovery.directory.DirectoryPartitioner;
+import com.mappalette.userdiscovery.directory.DirectorySnapshotStore;
+import com.mappalette.userdiscovery.directory.SuggestionIndex;
+import com.mappalette.userdiscovery.directory.UserDirectoryCache;
+import com.mappalette.userdiscovery.directory.UserDirectoryPager;
+import com.mappalette.userdiscovery.directory.UserDirectoryRefreshedEvent;
+import com.mappalette.userdiscovery.directory.UserIdInterner;
+import com.mappalette.userdiscovery.directory.UsernameIndex;
+import com.mappalette.userdiscovery.dto.FollowingResponse;
+import com.mappalette.userdiscovery.dto.PaginatedUsersResponse;
+import com.mappalette.userdiscovery.dto.UserDto;
+import com.mappalette.userdiscovery.metrics.DiscoveryMetrics;
+import com.mappalette.userdiscovery.metrics.RequestLogSampler;
+import com.mappalette.userdiscovery.service.DiscoveryFanOut;
+import com.mappalette.userdiscovery.service.SuggestionRanker;
+import com.mappalette.userdiscovery.service.UserDiscoveryService;
+import feign.Request;
+import feign.Response;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Builds the real discovery stack (directory snapshot, following cache, suggestion
+ * index, fan-out, service) on top of in-memory stand-ins for the Feign clients, so
+ * benchmarks measure the in-process code paths and not HTTP. Directory pages are
+ * still served as JSON bytes, so reading them is part of what gets measured.
+ *
+ * The generated directory is deterministic for a given size, following count,
+ * private-profile ratio and seed. The viewer follows {@code followingCount} users
+ * spread uniformly over the directory. Every other user follows {@code otherFollowingCount}
+ * random users, and every seventh user follows the viewer, which gives ranked suggestions
+ * a friends-of-friends graph to work on.
+ */
+public final class DiscoveryFixture implements AutoCloseable {
+
+    private static final long SEED = 42L;
+
+    private final List<UserDto> users;
+    private final String viewerId;
+    private final List<String> followingIds;
+    private final int otherFollowingCount;
+    private final ConcurrentMap<String, List<String>> otherFollowing = new ConcurrentHashMap<>();
+    private final ExecutorService upstreamExecutor;
+    private final DirectoryPartitioner directoryPartitioner;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final SuggestionRanker suggestionRanker;
+    private final UserLookupCache userLookupCache;
+    private final UserDiscoveryService service;
+
+    public DiscoveryFixture(int directorySize, int followingCount, double privateRatio) {
+        this(directorySize, followingCount, privateRatio, 0);
+    }
+
+    public DiscoveryFixture(int directorySize, int followingCount, double privateRatio, int otherFollowingCount) {
+        this.otherFollowingCount = otherFollowingCount;
+        Random random = new Random(SEED);
+
+        this.users = new ArrayList<>(directorySize);
+        for (int i = 0; i < directorySize; i++) {
+            String id = new UUID(SEED, i).toString();
+            users.add(UserDto.builder()
+                .id(id)
+                .userID(id)
+                .username("user" + i)
+                .profilePicture("https://example.com/avatars/" + i + ".png")
+                .isProfilePrivate(random.nextDouble() < privateRatio)
+                .numFollowers(random.nextInt(1000))
+                .numFollowing(random.nextInt(1000))
+                .build());
+        }
+        this.viewerId = users.get(0).getUserID();
+
+        List<String> others = new ArrayList<>(directorySize - 1);
+        for (int i = 1; i < directorySize; i++) {
+            others.add(users.get(i).getUserID());
+        }
+        Collections.shuffle(others, random);
+        this.followingIds = List.copyOf(others.subList(0, Math.min(followingCount, others.size())));
+
+        this.upstreamExecutor = Executors.newFixedThreadPool(4, runnable -> {
+            Thread thread = new Thread(runnable, "bench-upstream");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        UserIdInterner userIdInterner = new UserIdInterner();
+        this.directoryPartitioner = new DirectoryPartitioner(0, 200_000, 16_384);
+        SuggestionIndex suggestionIndex = new SuggestionIndex(userIdInterner);
+        UsernameIndex usernameIndex = new UsernameIndex(userIdInterner, 4096);
+        DiscoveryExecutors discoveryExecutors = new DiscoveryExecutors(false, 8, 256);
+        UpstreamCalls upstreamCalls = new UpstreamCalls(CircuitBreakerRegistry.ofDefaults(),
+            BulkheadRegistry.ofDefaults(), meterRegistry, discoveryExecutors, false, 0, 0);
+        StubUserService userService = new StubUserService();
+        UserDirectoryPager pager = new UserDirectoryPager(userService, upstreamCalls, objectMapper,
+            userIdInterner, upstreamExecutor, 2);
+        UserDirectoryCache directoryCache = new UserDirectoryCache(pager,
+            event -> {
+                if (event instanceof UserDirectoryRefreshedEvent refreshed) {
+                    suggestionIndex.onDirectoryRefreshed(refreshed);
+                    usernameIndex.onDirectoryRefreshed(refreshed);
+                }
+            },
+            new DirectorySnapshotStore(userIdInterner, meterRegistry, "", 0),
+            meterRegistry, directorySize, Long.MAX_VALUE, 0);
+        StubFollowService followService = new StubFollowService();
+        FollowingCache followingCache = new FollowingCache(followService, upstreamCalls, userIdInterner,
+            meterRegistry, 10_000, Long.MAX_VALUE / 2, Long.MAX_VALUE / 2);
+        this.suggestionRanker = new SuggestionRanker(followService, upstreamCalls, followingCache, suggestionIndex,
+            userIdInterner, meterRegistry, discoveryExecutors, 10_000, Long.MAX_VALUE / 2, 0, 2_000_000, Long.MAX_VALUE / 2,
+            200, 8, 500, 500, 60_000, 60_000, 1.0, 2.0, 0.25);
+        this.userLookupCache = new UserLookupCache(userService, upstreamCalls, userIdInterner, meterRegistry,
+            discoveryExecutors, 10_000, 300_000, 8, 1000, 1000, 30_000);
+        DiscoveryMetrics discoveryMetrics = new DiscoveryMetrics(meterRegistry);
+        DiscoveryFanOut fanOut = new DiscoveryFanOut(directoryCache, followingCache, discoveryMetrics,
+            upstreamExecutor, 60_000, 60_000);
+        this.service = new UserDiscoveryService(fanOut, followingCache, suggestionIndex, suggestionRanker,
+            usernameIndex, pager, userIdInterner, userLookupCache, directoryPartitioner, discoveryMetrics,
+            new RequestLogSampler(0.0), new ResponseCache(meterRegistry, 32L << 20, 600_000), objectMapper,
+            100, 10_000, 500, 100, 50, 50);
+    }
+
+    public UserDiscoveryService getService() {
+        return service;
+    }
+
+    public SuggestionRanker getSuggestionRanker() {
+        return suggestionRanker;
+    }
+
+    public String getViewerId() {
+        return viewerId;
+    }
+
+    public List<UserDto> getUsers() {
+        return users;
+    }
+
+    public List<String> getFollowingIds() {
+        return followingIds;
+    }
+
+    @Override
+    public void close() {
+        upstreamExecutor.shutdownNow();
+        directoryPartitioner.shutdown();
+        suggestionRanker.shutdown();
+        userLookupCache.shutdown();
+    }
+
+    private static PaginatedUsersResponse.Pagination pagination(int page, int limit, int total) {
+        return new PaginatedUsersResponse.Pagination(page, limit, total, (total + limit - 1) / limit);
+    }
+
+    private final class StubUserService implements UserServiceClient {
+
+        @Override
+        public PaginatedUsersResponse getAllUsers(int limit) {
+            return page(1, limit);
+        }
+
+        @Override
+        public Response getAllUsersPage(int page, int limit) {
+            byte[] body;
+            try {
+                body = objectMapper.writeValueAsBytes(page(page, limit));
+            } catch (JsonProcessingException e) {
+                throw new IllegalStateException(e);
+            }
+            return Response.builder()
+                .status(200)
+                .request(Request.create(Request.HttpMethod.GET, "/api/users/all", Map.of(), null,
+                    StandardCharsets.UTF_8, null))
+                .headers(Map.of())
+                .body(body)
+                .build();
+        }
+
+        private PaginatedUsersResponse page(int page, int limit) {
+            int from = Math.min((page - 1) * limit, users.size());
+            int to = Math.min(from + limit, users.size());
+            List<UserDto> pageUsers = List.copyOf(users.subList(from, to));
+            return PaginatedUsersResponse.builder()
+                .users(pageUsers)
+                .pagination(pagination(page, limit, users.size()))
+                .build();
+        }
+
+        @Override
+        public UserDto getUserById(String userId) {
+            return users.stream()
+                .filter(user -> user.getUserID().equals(userId))
+                .findFirst()
+                .orElse(null);
+        }
+    }
+
+    private final class StubFollowService implements FollowServiceClient {
+
+        @Override
+        public FollowingResponse getFollowing(String userId) {
+            return getFollowing(userId, 1, 20);
+        }
+
+        @Override
+        public FollowingResponse getFollowing(String userId, int page, int limit) {
+            List<String> ids = viewerId.equals(userId) ? followingIds
+                : otherFollowing.computeIfAbsent(userId, this::randomFollowing);
+            return FollowingResponse.builder()
+                .following(page(ids, page, limit))
+                .pagination(new FollowingResponse.PaginationDto(page, limit, ids.size(),
+                    (ids.size() + limit - 1) / limit))
+                .build();
+        }
+
+        @Override
+        public FollowingResponse getFollowers(String userId) {
+            return getFollowers(userId, 1, 20);
+        }
+
+        @Override
+        public FollowingResponse getFollowers(String userId, int page, int limit) {
+            List<String> ids = new ArrayList<>();
+            if (viewerId.equals(userId)) {
+                for (int i = 7; i < users.size(); i += 7) {
+                    ids.add(users.get(i).getUserID());
+                }
+            }
+            return FollowingResponse.builder()
+                .followers(page(ids, page, limit))
+                .pagination(new FollowingResponse.PaginationDto(page, limit, ids.size(),
+                    (ids.size() + limit - 1) / limit))
+                .build();
+        }
+
+        private List<String> randomFollowing(String userId) {
+            Random random = new Random(SEED ^ userId.hashCode());
+            List<String> ids = new ArrayList<>(otherFollowingCount);
+            for (int i = 0; i < otherFollowingCount; i++) {
+                ids.add(users.get(random.nextInt(users.size())).getUserID());
+            }
+            return ids;
+        }
+
+        private static List<FollowingResponse.FollowingUserDto> page(List<String> ids, int page, int limit) {
+            int from = Math.min((page - 1) * limit, ids.size());
+            int to = Math.min(from + limit, ids.size());
+            List<FollowingResponse.FollowingUserDto> pageUsers = new ArrayList<>(to - from);
+            for (String id : ids.subList(from, to)) {
+                pageUsers.add(FollowingResponse.FollowingUserDto.builder().id(id).build());
+            }
+            return pageUsers;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.mappalette.userdiscovery.benchmark;
+
+import com.mappalette.userdiscovery.directory.FollowingSet;
+import com.mappalette.userdiscovery.directory.UserIdInterner;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the "already followed?" check the discovery filter runs for every directory user:
+ * a {@code HashSet<String>} of user IDs versus a {@link FollowingSet} of interned ids.
+ * <pre>
+ * mvn -Pjmh test-compile exec:exec -Djmh.args="FollowingSetBenchmark"
+ * </pre>
+ * Memory per set is reported by {@link FollowingSetFootprint}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+public class FollowingSetBenchmark {
+
+    // Directory users probed per invocation
+    private static final int PROBES = 10_000;
+
+    @Param({"20", "500", "50000"})
+    private int followingCount;
+
+    private Set<String> stringSet;
+    private FollowingSet followingSet;
+    private String[] probeIds;
+    private int[] probeInternedIds;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        UserIdInterner interner = new UserIdInterner();
+        List<String> directory = new ArrayList<>(followingCount + PROBES);
+        for (int i = 0; i < followingCount + PROBES; i++) {
+            String id = UUID.randomUUID().toString();
+            directory.add(id);
+            interner.intern(id);
+        }
+        List<String> following = directory.subList(0, followingCount);
+        stringSet = new HashSet<>(following);
+        followingSet = FollowingSet.of(following, interner);
+
+        // Probe a mix of followed and not-followed users, as a directory scan does
+        Random random = new Random(42);
+        probeIds = new String[PROBES];
+        probeInternedIds = new int[PROBES];
+        for (int i = 0; i < PROBES; i++) {
+            // Fresh String copies, like IDs read off a user-service page
+            String id = new String(directory.get(random.nextInt(directory.size())));
+            probeIds[i] = id;
+            probeInternedIds[i] = interner.lookup(id);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PROBES)
+    public int hashSetContains() {
+        int hits = 0;
+        for (String id : probeIds) {
+            if (stringSet.contains(id)) {
+                hits++;
+            }
+        }
+        return hits;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PROBES)
+    public int followingSetContains() {
+        int hits = 0;
+        for (int id : probeInternedIds) {
+            if (followingSet.contains(id)) {
+                hits++;
+            }
+        }
+        return hits;
+    }
+}
@@ -0,0 +1,53 @@
+package com.mappalette.userdiscovery.benchmark;
+
+import com.mappalette.userdiscovery.directory.FollowingSet;
+import com.mappalette.userdiscovery.directory.UserIdInterner;
+import org.openjdk.jol.info.GraphLayout;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Retained heap of one cached following set, as the {@code HashSet<String>} the following
+ * cache used to hold versus a {@link FollowingSet}, measured with JOL.
+ * <pre>
+ * mvn -Pjmh test-compile exec:exec -Djmh.main=com.mappalette.userdiscovery.benchmark.FollowingSetFootprint -Djmh.args=
+ * </pre>
+ * The interner's own map is shared by every cached set and by the directory snapshot, so it
+ * is reported separately rather than charged to any one set.
+ */
+public final class FollowingSetFootprint {
+
+    private static final int[] FOLLOWING_COUNTS = {20, 500, 50_000};
+
+    public static void main(String[] args) {
+        System.out.printf("%10s %16s %16s %10s%n", "following", "HashSet<String>", "FollowingSet", "ratio");
+        UserIdInterner largest = null;
+        for (int followingCount : FOLLOWING_COUNTS) {
+            List<String> ids = new ArrayList<>(followingCount);
+            for (int i = 0; i < followingCount; i++) {
+                ids.add(UUID.randomUUID().toString());
+            }
+            UserIdInterner interner = new UserIdInterner();
+            // The directory interns every user before anyone's following set is built
+            for (String id : ids) {
+                interner.intern(id);
+            }
+
+            Set<String> strings = Collections.unmodifiableSet(new HashSet<>(ids));
+            FollowingSet interned = FollowingSet.of(ids, interner);
+            long stringBytes = GraphLayout.parseInstance(strings).totalSize();
+            long internedBytes = GraphLayout.parseInstance(interned).totalSize();
+            System.out.printf("%10d %14d B %14d B %9.1fx%n",
+                followingCount, stringBytes, internedBytes, (double) stringBytes / internedBytes);
+            largest = interner;
+        }
+        // Includes the ID strings themselves, which the interner shares with the directory's users
+        System.out.printf("interner: %d B per user%n",
+            GraphLayout.parseInstance(largest).totalSize() / largest.size());
+    }
+}
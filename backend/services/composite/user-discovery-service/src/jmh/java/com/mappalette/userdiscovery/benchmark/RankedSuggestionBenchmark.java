@@ -0,0 +1,87 @@
+package com.mappalette.userdiscovery.benchmark;
+
+import com.mappalette.userdiscovery.dto.DiscoveryResponse;
+import com.mappalette.userdiscovery.service.SuggestionRanker;
+import com.mappalette.userdiscovery.service.UserDiscoveryService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency distribution of {@code /users/{userId}/suggestions}: random sampling, ranked
+ * friends-of-friends from a cached neighbourhood, and ranked with the neighbourhood rebuilt
+ * first. Followees' following sets stay cached, so the rebuild measures the in-process
+ * counting and not follow-service.
+ * <pre>
+ * mvn -Pjmh test-compile exec:exec -Djmh.args="RankedSuggestionBenchmark"
+ * </pre>
+ * Read the {@code p0.99} rows; {@code followingCount} above the expansion cap (200) shows
+ * that the cost stops growing with the viewer's graph.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class RankedSuggestionBenchmark {
+
+    private static final int LIMIT = 10;
+
+    @Param({"10000", "100000"})
+    private int directorySize;
+
+    @Param({"50", "500", "5000"})
+    private int followingCount;
+
+    @Param({"200"})
+    private int otherFollowingCount;
+
+    private DiscoveryFixture fixture;
+    private UserDiscoveryService service;
+    private SuggestionRanker ranker;
+    private String viewerId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        fixture = new DiscoveryFixture(directorySize, followingCount, 0.2, otherFollowingCount);
+        service = fixture.getService();
+        ranker = fixture.getSuggestionRanker();
+        viewerId = fixture.getViewerId();
+        // Load the snapshot, the viewer's following set and their neighbourhood before measuring
+        service.discoverUsers(viewerId, LIMIT, 0, true, true);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        fixture.close();
+    }
+
+    @Benchmark
+    public DiscoveryResponse random() {
+        return service.discoverUsers(viewerId, LIMIT, 0, true, false);
+    }
+
+    @Benchmark
+    public DiscoveryResponse rankedCached() {
+        return service.discoverUsers(viewerId, LIMIT, 0, true, true);
+    }
+
+    @Benchmark
+    public DiscoveryResponse rankedRebuilt() {
+        ranker.invalidate(viewerId);
+        return service.discoverUsers(viewerId, LIMIT, 0, true, true);
+    }
+}
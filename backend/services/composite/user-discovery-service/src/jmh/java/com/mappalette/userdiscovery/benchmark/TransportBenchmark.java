@@ -0,0 +1,114 @@
+package com.mappalette.userdiscovery.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mappalette.userdiscovery.config.FeignConfig;
+import com.mappalette.userdiscovery.config.FeignTransportConfig;
+import com.mappalette.userdiscovery.dto.PaginatedUsersResponse;
+import feign.Client;
+import feign.Request;
+import feign.Response;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of fetching and decoding one user-service page of 100 users through each
+ * Feign transport, with and without response compression, against a local stub.
+ *
+ * Besides calls per second, the {@code wireBytes} counter reports response body bytes
+ * received per second; divide it by the {@code fetchPage} score for bytes per call.
+ * <pre>
+ * mvn -Pjmh test-compile exec:exec -Djmh.args="TransportBenchmark -prof gc"
+ * </pre>
+ * Client and stub share the machine, so run it on at least as many cores as {@code @Threads}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+// Without TCP_NODELAY the stub's separate header and body writes stall on delayed ACKs
+@Fork(value = 1, jvmArgsAppend = {"-Xms512m", "-Xmx512m", "-Dsun.net.httpserver.nodelay=true"})
+@Threads(4)
+public class TransportBenchmark {
+
+    private static final int PAGE_SIZE = 100;
+
+    @Param({"hc5", "http2", "jdk"})
+    private String transport;
+
+    @Param({"true", "false"})
+    private boolean compression;
+
+    private UpstreamHttpStub stub;
+    private CloseableHttpClient hc5Client;
+    private Client client;
+    private Request.Options options;
+    private Request request;
+    private ObjectMapper objectMapper;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        stub = new UpstreamHttpStub(PAGE_SIZE);
+        // Same settings as the application.properties defaults
+        FeignTransportConfig config = new FeignTransportConfig(compression, 2048, 1000);
+        client = switch (transport) {
+            case "hc5" -> {
+                hc5Client = config.upstreamHttpClient(200, 50, 4000, 300_000, 1000);
+                yield config.hc5FeignClient(hc5Client);
+            }
+            case "http2" -> config.http2FeignClient(200, 4000);
+            case "jdk" -> config.jdkFeignClient();
+            default -> throw new IllegalArgumentException("Unknown transport " + transport);
+        };
+        options = new FeignConfig().requestOptions(1000, 3000);
+        request = Request.create(Request.HttpMethod.GET, stub.url("/api/users/all?page=1&limit=" + PAGE_SIZE),
+            Map.of(), null, StandardCharsets.UTF_8, null);
+        objectMapper = new ObjectMapper();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        if (hc5Client != null) {
+            hc5Client.close();
+        }
+        stub.close();
+    }
+
+    @Benchmark
+    public PaginatedUsersResponse fetchPage(WireBytes wire) throws IOException {
+        try (Response response = client.execute(request, options)) {
+            wire.wireBytes += Long.parseLong(response.headers().get(UpstreamHttpStub.WIRE_BYTES_HEADER).iterator().next());
+            return objectMapper.readValue(response.body().asInputStream(), PaginatedUsersResponse.class);
+        }
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class WireBytes {
+        public long wireBytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            wireBytes = 0;
+        }
+    }
+}
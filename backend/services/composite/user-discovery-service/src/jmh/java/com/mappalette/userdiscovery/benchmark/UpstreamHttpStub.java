@@ -0,0 +1,94 @@
+package com.mappalette.userdiscovery.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mappalette.userdiscovery.dto.PaginatedUsersResponse;
+import com.mappalette.userdiscovery.dto.UserDto;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Local stand-in for user-service's {@code GET /api/users/all}, serving one page of the
+ * fixture directory over HTTP/1.1 keep-alive, gzipped when the client accepts gzip.
+ *
+ * Both encodings are prepared up front: in production the compression cost is paid by the
+ * Node upstream, not by this service, so it is kept out of the measurement. Every response
+ * carries {@value #WIRE_BYTES_HEADER} with the number of body bytes actually sent.
+ */
+final class UpstreamHttpStub implements AutoCloseable {
+
+    static final String WIRE_BYTES_HEADER = "X-Wire-Bytes";
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final byte[] plainBody;
+    private final byte[] gzippedBody;
+
+    UpstreamHttpStub(int pageSize) throws IOException {
+        List<UserDto> users;
+        try (DiscoveryFixture fixture = new DiscoveryFixture(pageSize, 0, 0.2)) {
+            users = fixture.getUsers();
+        }
+        PaginatedUsersResponse page = new PaginatedUsersResponse(users,
+            new PaginatedUsersResponse.Pagination(1, pageSize, pageSize, 1));
+        this.plainBody = new ObjectMapper().writeValueAsBytes(page);
+        this.gzippedBody = gzip(plainBody);
+
+        this.executor = Executors.newFixedThreadPool(4, runnable -> {
+            Thread thread = new Thread(runnable, "bench-upstream-stub");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 128);
+        server.createContext("/api/users/all", this::serve);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    String url(String path) {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void serve(HttpExchange exchange) throws IOException {
+        try (InputStream requestBody = exchange.getRequestBody()) {
+            requestBody.readAllBytes();
+        }
+        String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        boolean gzipped = acceptEncoding != null && acceptEncoding.contains("gzip");
+        byte[] body = gzipped ? gzippedBody : plainBody;
+
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.getResponseHeaders().set(WIRE_BYTES_HEADER, String.valueOf(body.length));
+        if (gzipped) {
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+        }
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream responseBody = exchange.getResponseBody()) {
+            responseBody.write(body);
+        }
+    }
+
+    private static byte[] gzip(byte[] body) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(buffer)) {
+            gzip.write(body);
+        }
+        return buffer.toByteArray();
+    }
+}
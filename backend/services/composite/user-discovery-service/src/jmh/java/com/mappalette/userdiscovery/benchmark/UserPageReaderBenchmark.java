@@ -0,0 +1,97 @@
+package com.mappalette.userdiscovery.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mappalette.userdiscovery.directory.DirectoryFilter;
+import com.mappalette.userdiscovery.directory.DirectoryPage;
+import com.mappalette.userdiscovery.directory.DirectoryUser;
+import com.mappalette.userdiscovery.directory.FollowingSet;
+import com.mappalette.userdiscovery.directory.UserIdInterner;
+import com.mappalette.userdiscovery.directory.UserPageReader;
+import com.mappalette.userdiscovery.dto.PaginatedUsersResponse;
+import com.mappalette.userdiscovery.dto.UserDto;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of turning one 100-user {@code /api/users/all} page into directory users: binding it
+ * to {@link PaginatedUsersResponse} and normalizing, versus reading it with
+ * {@link UserPageReader}, with and without a discovery filter pushed down.
+ * <pre>
+ * mvn -Pjmh test-compile exec:exec -Djmh.args="UserPageReaderBenchmark -prof gc"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+public class UserPageReaderBenchmark {
+
+    private static final int PAGE_SIZE = 100;
+
+    @Param({"0.2", "0.5"})
+    private double privateRatio;
+
+    private ObjectMapper objectMapper;
+    private UserIdInterner userIdInterner;
+    private UserPageReader reader;
+    private DirectoryFilter discoverable;
+    private byte[] page;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        List<UserDto> users;
+        String viewerId;
+        List<String> followingIds;
+        // The viewer follows a fifth of the page
+        try (DiscoveryFixture fixture = new DiscoveryFixture(PAGE_SIZE, PAGE_SIZE / 5, privateRatio)) {
+            users = fixture.getUsers();
+            viewerId = fixture.getViewerId();
+            followingIds = fixture.getFollowingIds();
+        }
+        objectMapper = new ObjectMapper();
+        userIdInterner = new UserIdInterner();
+        reader = new UserPageReader(objectMapper.getFactory(), userIdInterner);
+        discoverable = DirectoryFilter.discoverableBy(viewerId, FollowingSet.of(followingIds, userIdInterner),
+            userIdInterner);
+        page = objectMapper.writeValueAsBytes(new PaginatedUsersResponse(users,
+            new PaginatedUsersResponse.Pagination(1, PAGE_SIZE, PAGE_SIZE, 1)));
+    }
+
+    @Benchmark
+    public List<DirectoryUser> bindAndNormalize() throws IOException {
+        PaginatedUsersResponse response = objectMapper.readValue(page, PaginatedUsersResponse.class);
+        List<DirectoryUser> users = new ArrayList<>(response.getUsers().size());
+        for (UserDto user : response.getUsers()) {
+            users.add(DirectoryUser.from(user, userIdInterner));
+        }
+        return users;
+    }
+
+    @Benchmark
+    public DirectoryPage stream() throws IOException {
+        return reader.read(new ByteArrayInputStream(page), DirectoryFilter.ALL);
+    }
+
+    @Benchmark
+    public DirectoryPage streamDiscoverable() throws IOException {
+        return reader.read(new ByteArrayInputStream(page), discoverable);
+    }
+}
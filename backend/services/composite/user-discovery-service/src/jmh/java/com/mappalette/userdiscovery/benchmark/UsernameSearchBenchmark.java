@@ -0,0 +1,188 @@
+package com.mappalette.userdiscovery.benchmark;
+
+import com.mappalette.userdiscovery.directory.DirectoryUser;
+import com.mappalette.userdiscovery.directory.FollowingSet;
+import com.mappalette.userdiscovery.directory.UserDirectoryRefreshedEvent;
+import com.mappalette.userdiscovery.directory.UserDirectorySnapshot;
+import com.mappalette.userdiscovery.directory.UserIdInterner;
+import com.mappalette.userdiscovery.directory.UsernameIndex;
+import com.mappalette.userdiscovery.dto.UserDto;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Typeahead search for the top 10 users by username prefix, through {@link UsernameIndex}
+ * and through the linear scan over the snapshot it replaces. Usernames are random
+ * syllable strings, so a one-letter prefix matches a few percent of the directory and a
+ * five-letter one a handful of users.
+ * <pre>
+ * mvn -Pjmh test-compile exec:exec -Djmh.args="UsernameSearchBenchmark"
+ * </pre>
+ * {@code applyChanges} times the index following a snapshot in which 100 users were renamed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class UsernameSearchBenchmark {
+
+    private static final String[] SYLLABLES = {
+        "ka", "lo", "mi", "ra", "sen", "tor", "vi", "zu", "an", "bel", "cor", "da", "el", "fi", "gar", "hu",
+        "is", "jo", "ku", "lin", "mar", "no", "os", "pa", "qui", "ren", "sol", "ta", "ul", "ve", "wen", "yo"
+    };
+    private static final int FOLLOWING_COUNT = 200;
+    private static final int LIMIT = 10;
+    private static final int QUERIES = 64;
+    private static final int RENAMED = 100;
+
+    @Param({"100000", "1000000"})
+    private int directorySize;
+
+    @Param({"1", "3", "5"})
+    private int prefixLength;
+
+    private List<DirectoryUser> users;
+    private List<DirectoryUser> renamedUsers;
+    private String viewerId;
+    private FollowingSet following;
+    private UserIdInterner interner;
+    private UsernameIndex index;
+    private String[] queries;
+    private int query;
+    private long version;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        interner = new UserIdInterner();
+        List<String> followingIds;
+        try (DiscoveryFixture fixture = new DiscoveryFixture(directorySize, FOLLOWING_COUNT, 0.2)) {
+            users = new ArrayList<>(directorySize);
+            for (UserDto user : fixture.getUsers()) {
+                users.add(DirectoryUser.from(renamed(user, randomName(random)), interner));
+            }
+            renamedUsers = new ArrayList<>(users);
+            for (int i = 0; i < RENAMED; i++) {
+                int position = random.nextInt(directorySize);
+                UserDto user = fixture.getUsers().get(position);
+                renamedUsers.set(position, DirectoryUser.from(renamed(user, randomName(random)), interner));
+            }
+            viewerId = fixture.getViewerId();
+            followingIds = fixture.getFollowingIds();
+        }
+        following = FollowingSet.of(followingIds, interner);
+
+        index = new UsernameIndex(interner, 4096);
+        index.onDirectoryRefreshed(new UserDirectoryRefreshedEvent(snapshot(users)));
+
+        queries = new String[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            String username = users.get(random.nextInt(directorySize)).getUsername();
+            queries[i] = UsernameIndex.normalize(username.substring(0, Math.min(prefixLength, username.length())));
+        }
+    }
+
+    @Benchmark
+    public List<DirectoryUser> indexed() {
+        return index.search(nextQuery(), LIMIT, viewerId, following);
+    }
+
+    /**
+     * Lower-cases and prefix-matches every snapshot user, keeping the top 10 by followers.
+     */
+    @Benchmark
+    public List<DirectoryUser> linearScan() {
+        String prefix = nextQuery();
+        int viewer = interner.lookup(viewerId);
+        Comparator<DirectoryUser> byFollowers = Comparator.comparingInt(DirectoryUser::getNumFollowers);
+        PriorityQueue<DirectoryUser> best = new PriorityQueue<>(LIMIT + 1, byFollowers);
+        for (DirectoryUser user : users) {
+            if (user.isProfilePrivate() || user.getInternedId() == viewer || following.contains(user)
+                    || !UsernameIndex.normalize(user.getUsername()).startsWith(prefix)) {
+                continue;
+            }
+            best.add(user);
+            if (best.size() > LIMIT) {
+                best.poll();
+            }
+        }
+        List<DirectoryUser> found = new ArrayList<>(best);
+        found.sort(byFollowers.reversed());
+        return found;
+    }
+
+    @Benchmark
+    public int applyChanges(Refresh refresh) {
+        index.onDirectoryRefreshed(refresh.next);
+        return index.size();
+    }
+
+    /**
+     * The next snapshot to apply, alternating between the original and the renamed directory
+     */
+    @State(Scope.Thread)
+    public static class Refresh {
+        private UserDirectoryRefreshedEvent next;
+
+        @Setup(Level.Invocation)
+        public void nextSnapshot(UsernameSearchBenchmark benchmark) {
+            next = new UserDirectoryRefreshedEvent(benchmark.snapshot(
+                benchmark.version % 2 == 1 ? benchmark.renamedUsers : benchmark.users));
+        }
+    }
+
+    private UserDirectorySnapshot snapshot(List<DirectoryUser> directory) {
+        version++;
+        return new UserDirectorySnapshot(directory, directory.size(), version, version, Instant.now());
+    }
+
+    private String nextQuery() {
+        query = (query + 1) % QUERIES;
+        return queries[query];
+    }
+
+    private static UserDto renamed(UserDto user, String username) {
+        return UserDto.builder()
+            .id(user.getId())
+            .userID(user.getUserID())
+            .username(username)
+            .profilePicture(user.getProfilePicture())
+            .isProfilePrivate(user.isProfilePrivate())
+            .isFollowing(user.isFollowing())
+            .numFollowers(user.getNumFollowers())
+            .numFollowing(user.getNumFollowing())
+            .build();
+    }
+
+    private static String randomName(Random random) {
+        StringBuilder name = new StringBuilder();
+        int syllables = 2 + random.nextInt(3);
+        for (int i = 0; i < syllables; i++) {
+            name.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+        }
+        if (random.nextBoolean()) {
+            name.append(random.nextInt(1000));
+        }
+        return random.nextInt(4) == 0 ? Character.toUpperCase(name.charAt(0)) + name.substring(1) : name.toString();
+    }
+}
@@ -0,0 +1,351 @@
+package com.mappalette.userdiscovery.loadtest;
+
+import io.netty.util.internal.PlatformDependent;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs the same load against the service's execution modes side by side: the servlet stack
+ * on Tomcat's platform threads, the servlet stack on virtual threads and the reactive stack
+ * on Netty. Each mode gets its own JVM against the same {@link StubUpstreams} and is driven
+ * with {@code --endpoint} requests at each of the {@code --concurrency} levels in turn.
+ * <pre>
+ * mvn verify -Ploadtest -Dloadtest.main=com.mappalette.userdiscovery.loadtest.ExecutionModeComparison \
+ *     -Dloadtest.args="--concurrency=50,200,800 --upstream-latency-ms=50"
+ * </pre>
+ * Besides throughput and latency it reports, sampled halfway through each warm-up while the
+ * load is running, the service JVM's live threads, heap used after a GC and direct memory
+ * (NIO buffers plus Netty's own direct allocations), and how much the heap and direct memory
+ * grew over the idle service per concurrent connection. Thread stacks are outside the heap,
+ * so the thread count is reported as it is.
+ *
+ * With {@code --p99-budget-ms} it also reports, per mode, the highest throughput measured at a
+ * level whose p99 stayed within the budget with no errors and no partial responses: the
+ * throughput each mode sustains at a fixed p99 latency.
+ *
+ * The following cache is off by default, so every request waits on follow-service, and the
+ * bulkheads, connection pools and (for platform threads) the upstream lookup pool are opened
+ * up so they do not cap any mode below the concurrency being measured. The partial column is
+ * the share of responses flagged partial or degraded: those skipped an upstream, so they are
+ * fast for the wrong reason.
+ */
+public final class ExecutionModeComparison {
+
+    private static final Map<String, String> DEFAULTS = new LinkedHashMap<>();
+    private static final Map<String, List<String>> MODES = new LinkedHashMap<>();
+
+    static {
+        DEFAULTS.put("users", "10000");
+        DEFAULTS.put("following", "50");
+        DEFAULTS.put("private-ratio", "0.2");
+        DEFAULTS.put("upstream-latency-ms", "50");
+        DEFAULTS.put("upstream-jitter-ms", "10");
+        DEFAULTS.put("modes", "platform,virtual,reactive");
+        DEFAULTS.put("endpoint", "users");
+        DEFAULTS.put("concurrency", "50,200,800");
+        DEFAULTS.put("warmup-s", "10");
+        DEFAULTS.put("duration-s", "20");
+        DEFAULTS.put("p99-budget-ms", "0");
+        DEFAULTS.put("service-jvm-args", "-Xmx512m");
+        DEFAULTS.put("app.discovery.following-cache.ttl-ms", "0");
+        DEFAULTS.put("app.discovery.feign.pool.max-connections", "1000");
+        DEFAULTS.put("app.discovery.feign.pool.max-connections-per-route", "1000");
+        DEFAULTS.put("app.resilience4j.bulkhead.instances.user-service.max-concurrent-calls", "10000");
+        DEFAULTS.put("app.resilience4j.bulkhead.instances.follow-service.max-concurrent-calls", "10000");
+
+        // Each waiting request holds one of these threads, so the pools are sized for the highest concurrency
+        MODES.put("platform", List.of("--app.discovery.virtual-threads.enabled=false",
+            "--app.discovery.upstream.pool-size=1000", "--app.discovery.upstream.queue-capacity=10000",
+            "--app.discovery.executors.pool-size=1000", "--app.discovery.executors.queue-capacity=10000"));
+        MODES.put("virtual", List.of("--app.discovery.virtual-threads.enabled=true"));
+        MODES.put("reactive", List.of("--app.spring.profiles.active=reactive"));
+    }
+
+    private static final String READY_PREFIX = "execution-mode-comparison: port=";
+    private static final String SAMPLE_PREFIX = "execution-mode-comparison: sample";
+
+    private ExecutionModeComparison() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new LinkedHashMap<>(DEFAULTS);
+        options.putAll(LoadTest.parseOptions(args));
+        if (options.containsKey("mode")) {
+            runService(options);
+            System.exit(0);
+        }
+
+        int users = Integer.parseInt(options.get("users"));
+        Duration warmup = Duration.ofSeconds(Long.parseLong(options.get("warmup-s")));
+        Duration duration = Duration.ofSeconds(Long.parseLong(options.get("duration-s")));
+        List<String> rows = new ArrayList<>();
+        Map<String, Sustained> withinBudget = new LinkedHashMap<>();
+        double p99BudgetMs = Double.parseDouble(options.get("p99-budget-ms"));
+        try (StubUpstreams stub = new StubUpstreams(0, users,
+                Integer.parseInt(options.get("following")),
+                Double.parseDouble(options.get("private-ratio")),
+                Long.parseLong(options.get("upstream-latency-ms")),
+                Long.parseLong(options.get("upstream-jitter-ms")))) {
+            System.out.printf("%nExecution modes: %d users, %s every request, upstream latency %s ms + up to %s ms%n",
+                users, options.get("endpoint"), options.get("upstream-latency-ms"), options.get("upstream-jitter-ms"));
+
+            for (String mode : options.get("modes").split(",")) {
+                try (ServiceJvm service = new ServiceJvm(mode.trim(), stub.url(), options)) {
+                    String baseUrl = "http://127.0.0.1:" + service.port + "/api/discover";
+                    LoadDriver.Scenario scenario = LoadTest.scenario(options.get("endpoint"), baseUrl, users);
+                    // Load the directory and warm up the JIT before the idle footprint is taken
+                    new LoadDriver(4, 0).run(scenario, warmup, Duration.ZERO);
+                    Sample idle = service.sample();
+                    for (String level : options.get("concurrency").split(",")) {
+                        int concurrency = Integer.parseInt(level.trim());
+                        LoadDriver driver = new LoadDriver(concurrency, 0);
+                        PartialCounter counted = new PartialCounter(scenario);
+                        CompletableFuture<LoadDriver.Result> run = CompletableFuture.supplyAsync(() -> {
+                            try {
+                                return driver.run(counted, warmup, duration);
+                            } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                                throw new IllegalStateException(e);
+                            }
+                        });
+                        Thread.sleep(warmup.toMillis() / 2);
+                        Sample loaded = service.sample();
+                        LoadDriver.Result result = run.join();
+                        rows.add(row(mode.trim(), concurrency, result, counted, idle, loaded));
+                        System.out.println(rows.get(rows.size() - 1));
+                        Sustained best = withinBudget.get(mode.trim());
+                        if (result.percentileMillis(99) <= p99BudgetMs && result.getErrorRate() == 0
+                                && counted.partialRate() == 0
+                                && (best == null || result.getThroughput() > best.throughput())) {
+                            withinBudget.put(mode.trim(), new Sustained(concurrency, result.getThroughput(),
+                                result.percentileMillis(99)));
+                        }
+                    }
+                }
+            }
+        }
+
+        System.out.printf("%n%-9s %11s %9s %9s %9s %8s %8s %8s %9s %10s %12s%n", "mode", "concurrency", "req/s",
+            "p50 ms", "p99 ms", "errors", "partial", "threads", "heap mb", "direct mb", "kb per conn");
+        rows.forEach(System.out::println);
+        if (p99BudgetMs > 0) {
+            System.out.printf("%nHighest throughput with p99 <= %.0f ms, no errors and no partial responses%n",
+                p99BudgetMs);
+            System.out.printf("%-9s %11s %9s %9s%n", "mode", "concurrency", "req/s", "p99 ms");
+            for (String mode : options.get("modes").split(",")) {
+                Sustained best = withinBudget.get(mode.trim());
+                System.out.println(best == null
+                    ? String.format("%-9s %11s", mode.trim(), "none")
+                    : String.format("%-9s %11d %9.1f %9.2f", mode.trim(), best.concurrency(), best.throughput(),
+                        best.p99Ms()));
+            }
+        }
+        System.exit(0);
+    }
+
+    private record Sustained(int concurrency, double throughput, double p99Ms) {
+    }
+
+    private static String row(String mode, int concurrency, LoadDriver.Result result, PartialCounter counted,
+                              Sample idle, Sample loaded) {
+        double grownMb = loaded.heapMb + loaded.directMb - idle.heapMb - idle.directMb;
+        return String.format("%-9s %11d %9.1f %9.2f %9.2f %7.2f%% %7.2f%% %8d %9.1f %10.1f %12.1f",
+            mode, concurrency, result.getThroughput(), result.percentileMillis(50), result.percentileMillis(99),
+            100 * result.getErrorRate(), 100 * counted.partialRate(), loaded.threads, loaded.heapMb, loaded.directMb,
+            Math.max(0, grownMb) * 1024 / concurrency);
+    }
+
+    /**
+     * Counts responses flagged partial or degraded, which are fast because an upstream was
+     * skipped and so must not pass for throughput
+     */
+    private static final class PartialCounter implements LoadDriver.Scenario {
+        private static final byte[] PARTIAL = "\"partial\":true".getBytes(StandardCharsets.UTF_8);
+        private static final byte[] DEGRADED = "\"degraded\":true".getBytes(StandardCharsets.UTF_8);
+
+        private final LoadDriver.Scenario scenario;
+        private final LongAdder responses = new LongAdder();
+        private final LongAdder partial = new LongAdder();
+
+        PartialCounter(LoadDriver.Scenario scenario) {
+            this.scenario = scenario;
+        }
+
+        @Override
+        public String name() {
+            return scenario.name();
+        }
+
+        @Override
+        public HttpRequest request(ThreadLocalRandom random) {
+            return scenario.request(random);
+        }
+
+        @Override
+        public void onResponse(HttpResponse<byte[]> response) {
+            scenario.onResponse(response);
+            responses.increment();
+            if (contains(response.body(), PARTIAL) || contains(response.body(), DEGRADED)) {
+                partial.increment();
+            }
+        }
+
+        @Override
+        public boolean isSuccess(int status) {
+            return scenario.isSuccess(status);
+        }
+
+        double partialRate() {
+            long total = responses.sum();
+            return total == 0 ? 0 : (double) partial.sum() / total;
+        }
+
+        private static boolean contains(byte[] body, byte[] flag) {
+            for (int i = 0; i + flag.length <= body.length; i++) {
+                if (Arrays.equals(body, i, i + flag.length, flag, 0, flag.length)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Boots the service in this JVM and answers sample requests on stdin until it is closed.
+     */
+    private static void runService(Map<String, String> options) throws Exception {
+        int users = Integer.parseInt(options.get("users"));
+        try (ConfigurableApplicationContext context =
+                 LoadTest.startService(options.get("upstream-url"), users, options)) {
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            System.out.println(READY_PREFIX + port);
+            BufferedReader commands = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+            String command;
+            while ((command = commands.readLine()) != null && command.equals("sample")) {
+                System.gc();
+                System.gc();
+                long heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+                long direct = ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class).stream()
+                    .filter(pool -> pool.getName().equals("direct"))
+                    .mapToLong(BufferPoolMXBean::getMemoryUsed)
+                    .sum();
+                // Netty allocates most of its direct memory without NIO buffers
+                direct += Math.max(0, PlatformDependent.usedDirectMemory());
+                System.out.println(SAMPLE_PREFIX + " " + ManagementFactory.getThreadMXBean().getThreadCount()
+                    + " " + heap + " " + direct);
+            }
+        }
+    }
+
+    private static final class Sample {
+        private final int threads;
+        private final double heapMb;
+        private final double directMb;
+
+        private Sample(String line) {
+            String[] fields = line.substring(SAMPLE_PREFIX.length()).trim().split(" ");
+            this.threads = Integer.parseInt(fields[0]);
+            this.heapMb = Long.parseLong(fields[1]) / (1024.0 * 1024.0);
+            this.directMb = Long.parseLong(fields[2]) / (1024.0 * 1024.0);
+        }
+    }
+
+    /**
+     * The service running in a child JVM in one mode. Its output is read continuously, so the
+     * service never blocks on a full pipe while it logs under load.
+     */
+    private static final class ServiceJvm implements AutoCloseable {
+        private final Process process;
+        private final PrintWriter commands;
+        private final CompletableFuture<Integer> ready = new CompletableFuture<>();
+        private final BlockingQueue<String> samples = new LinkedBlockingQueue<>();
+        private final int port;
+
+        ServiceJvm(String mode, String upstreamUrl, Map<String, String> options) throws Exception {
+            List<String> modeOptions = MODES.get(mode);
+            if (modeOptions == null) {
+                throw new IllegalArgumentException("Unknown mode " + mode + ", expected one of " + MODES.keySet());
+            }
+            List<String> command = new ArrayList<>();
+            command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+            command.addAll(Arrays.asList(options.get("service-jvm-args").trim().split("\\s+")));
+            command.addAll(List.of("-cp", System.getProperty("java.class.path"),
+                ExecutionModeComparison.class.getName(), "--mode=" + mode, "--upstream-url=" + upstreamUrl));
+            options.forEach((key, value) -> {
+                if (key.startsWith("app.") || key.equals("users")) {
+                    command.add("--" + key + "=" + value);
+                }
+            });
+            command.addAll(modeOptions);
+
+            this.process = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+            this.commands = new PrintWriter(process.getOutputStream(), true, StandardCharsets.UTF_8);
+            Thread reader = new Thread(this::readOutput, "service-jvm-" + mode);
+            reader.setDaemon(true);
+            reader.start();
+            this.port = ready.get();
+        }
+
+        Sample sample() throws Exception {
+            commands.println("sample");
+            String line = samples.poll(1, TimeUnit.MINUTES);
+            if (line == null) {
+                throw new IllegalStateException("The service JVM did not answer a sample request");
+            }
+            return new Sample(line);
+        }
+
+        private void readOutput() {
+            try (BufferedReader output = new BufferedReader(
+                    new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = output.readLine()) != null) {
+                    if (line.startsWith(READY_PREFIX)) {
+                        ready.complete(Integer.parseInt(line.substring(READY_PREFIX.length()).trim()));
+                    } else if (line.startsWith(SAMPLE_PREFIX)) {
+                        samples.add(line);
+                    } else {
+                        System.out.println(line);
+                    }
+                }
+            } catch (IOException e) {
+                // The service JVM went away; reported below
+            }
+            ready.completeExceptionally(new IllegalStateException("The service JVM exited early"));
+        }
+
+        @Override
+        public void close() {
+            commands.close();
+            try {
+                process.waitFor();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                process.destroy();
+            }
+        }
+    }
+}
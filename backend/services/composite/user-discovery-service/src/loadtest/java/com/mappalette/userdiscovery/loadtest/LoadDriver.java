@@ -0,0 +1,212 @@
+package com.mappalette.userdiscovery.loadtest;
+
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Drives one scenario against the service with a fixed number of virtual-thread workers and
+ * records every response time in an HdrHistogram.
+ *
+ * By default the load is closed: each worker sends its next request as soon as the previous
+ * one returns, which measures the throughput the service sustains at that concurrency. With
+ * a target rate the load is open: requests are scheduled at fixed intervals and each latency
+ * is measured from when the request should have been sent, so a stall shows up in the
+ * percentiles instead of just lowering the request rate (coordinated omission).
+ */
+final class LoadDriver {
+
+    // Latencies are recorded in microseconds, up to a minute
+    private static final long MAX_LATENCY_MICROS = 60_000_000L;
+    private static final int SIGNIFICANT_DIGITS = 3;
+
+    private final HttpClient client;
+    private final int concurrency;
+    private final double ratePerSecond;
+
+    LoadDriver(int concurrency, double ratePerSecond) {
+        this.concurrency = concurrency;
+        this.ratePerSecond = ratePerSecond;
+        this.client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .executor(Executors.newVirtualThreadPerTaskExecutor())
+            .build();
+    }
+
+    /**
+     * Runs the scenario for the warm-up period, discards what it measured, then runs it again
+     * for the measured period.
+     */
+    Result run(Scenario scenario, Duration warmup, Duration duration) throws InterruptedException {
+        if (!warmup.isZero()) {
+            runFor(scenario, warmup);
+        }
+        return runFor(scenario, duration);
+    }
+
+    private Result runFor(Scenario scenario, Duration duration) throws InterruptedException {
+        long start = System.nanoTime();
+        long end = start + duration.toNanos();
+        // Each worker schedules its own share of the rate, starting at a staggered offset
+        long intervalNanos = ratePerSecond > 0 ? (long) (1e9 * concurrency / ratePerSecond) : 0;
+
+        List<Future<Worker>> futures = new ArrayList<>(concurrency);
+        try (ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < concurrency; i++) {
+                long firstSend = start + intervalNanos * i / concurrency;
+                futures.add(workers.submit(() -> new Worker().run(scenario, firstSend, intervalNanos, end)));
+            }
+        }
+
+        Result result = new Result(scenario.name(), System.nanoTime() - start);
+        for (Future<Worker> future : futures) {
+            try {
+                result.add(future.get());
+            } catch (Exception e) {
+                throw new IllegalStateException("Load worker failed for " + scenario.name(), e);
+            }
+        }
+        return result;
+    }
+
+    private final class Worker {
+        private final Histogram histogram = new Histogram(MAX_LATENCY_MICROS, SIGNIFICANT_DIGITS);
+        private final Map<Integer, Long> statusCounts = new TreeMap<>();
+        private long errors;
+
+        Worker run(Scenario scenario, long firstSend, long intervalNanos, long end) {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            long intended = firstSend;
+            while (true) {
+                if (intervalNanos > 0) {
+                    long wait = intended - System.nanoTime();
+                    if (wait > 0) {
+                        LockSupport.parkNanos(wait);
+                    }
+                }
+                long sent = intervalNanos > 0 ? intended : System.nanoTime();
+                if (sent >= end) {
+                    return this;
+                }
+
+                int status;
+                try {
+                    HttpResponse<byte[]> response = client.send(scenario.request(random),
+                        HttpResponse.BodyHandlers.ofByteArray());
+                    status = response.statusCode();
+                    scenario.onResponse(response);
+                } catch (IOException e) {
+                    status = -1;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return this;
+                }
+                long latencyMicros = (System.nanoTime() - sent) / 1_000;
+                histogram.recordValue(Math.min(latencyMicros, MAX_LATENCY_MICROS));
+                statusCounts.merge(status, 1L, Long::sum);
+                if (!scenario.isSuccess(status)) {
+                    errors++;
+                }
+                intended += intervalNanos;
+            }
+        }
+    }
+
+    /**
+     * One kind of request sent by the driver
+     */
+    interface Scenario {
+
+        String name();
+
+        HttpRequest request(ThreadLocalRandom random);
+
+        default void onResponse(HttpResponse<byte[]> response) {
+        }
+
+        default boolean isSuccess(int status) {
+            return status >= 200 && status < 300;
+        }
+    }
+
+    /**
+     * Latency distribution, status counts and throughput of one measured run
+     */
+    static final class Result {
+        private final String name;
+        private final long elapsedNanos;
+        private final Histogram histogram = new Histogram(MAX_LATENCY_MICROS, SIGNIFICANT_DIGITS);
+        private final Map<Integer, Long> statusCounts = new TreeMap<>();
+        private long errors;
+
+        private Result(String name, long elapsedNanos) {
+            this.name = name;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        private void add(Worker worker) {
+            histogram.add(worker.histogram);
+            worker.statusCounts.forEach((status, count) -> statusCounts.merge(status, count, Long::sum));
+            errors += worker.errors;
+        }
+
+        String getName() {
+            return name;
+        }
+
+        long getCount() {
+            return histogram.getTotalCount();
+        }
+
+        double getErrorRate() {
+            return getCount() == 0 ? 1.0 : (double) errors / getCount();
+        }
+
+        double getThroughput() {
+            return getCount() * 1e9 / elapsedNanos;
+        }
+
+        double percentileMillis(double percentile) {
+            return histogram.getValueAtPercentile(percentile) / 1_000.0;
+        }
+
+        double maxMillis() {
+            return histogram.getMaxValue() / 1_000.0;
+        }
+
+        String statusSummary() {
+            StringBuilder summary = new StringBuilder();
+            statusCounts.forEach((status, count) ->
+                summary.append(summary.isEmpty() ? "" : " ").append(status < 0 ? "io" : status).append('=').append(count));
+            return summary.toString();
+        }
+
+        /**
+         * Writes the percentile distribution in milliseconds, in the .hgrm format the
+         * HdrHistogram plotter reads.
+         */
+        void writeDistribution(Path directory) throws IOException {
+            Files.createDirectories(directory);
+            try (PrintStream out = new PrintStream(Files.newOutputStream(directory.resolve(name + ".hgrm")))) {
+                histogram.outputPercentileDistribution(out, 1_000.0);
+            }
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.mappalette.userdiscovery.loadtest;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LoadDriverTest {
+
+    private final AtomicInteger ok = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+    private final AtomicInteger requests = new AtomicInteger();
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private volatile int stallRequest = -1;
+    private HttpServer server;
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 64);
+        server.createContext("/", exchange -> {
+            if (requests.incrementAndGet() == stallRequest) {
+                sleep(700);
+            }
+            boolean fail = exchange.getRequestURI().getPath().equals("/fail");
+            (fail ? failed : ok).incrementAndGet();
+            exchange.sendResponseHeaders(fail ? 503 : 200, 2);
+            try (OutputStream body = exchange.getResponseBody()) {
+                body.write("{}".getBytes());
+            }
+        });
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    @Test
+    void countsEveryResponseByStatus() throws InterruptedException {
+        AtomicInteger sent = new AtomicInteger();
+        LoadDriver.Scenario everyFourthFails = scenario(() -> sent.incrementAndGet() % 4 == 0 ? "/fail" : "/ok");
+
+        LoadDriver.Result result = new LoadDriver(4, 0).run(everyFourthFails, Duration.ZERO, Duration.ofMillis(500));
+
+        assertThat(result.getName()).isEqualTo("mixed");
+        assertThat(result.getCount()).isEqualTo(ok.get() + failed.get()).isPositive();
+        assertThat(result.statusSummary()).isEqualTo("200=" + ok.get() + " 503=" + failed.get());
+        assertThat(result.getErrorRate()).isEqualTo((double) failed.get() / result.getCount());
+        assertThat(result.getThroughput()).isPositive();
+    }
+
+    @Test
+    void discardsTheWarmUp() throws InterruptedException {
+        LoadDriver.Result result = new LoadDriver(1, 0)
+            .run(scenario(() -> "/ok"), Duration.ofMillis(200), Duration.ofMillis(200));
+
+        assertThat(result.getCount()).isPositive().isLessThan(ok.get());
+    }
+
+    @Test
+    void chargesAStallToEveryRequestScheduledBehindIt() throws InterruptedException {
+        stallRequest = 5;
+        LoadDriver.Result open = new LoadDriver(1, 50).run(scenario(() -> "/ok"), Duration.ZERO, Duration.ofSeconds(1));
+
+        requests.set(0);
+        LoadDriver.Result closed = new LoadDriver(1, 0).run(scenario(() -> "/ok"), Duration.ZERO, Duration.ofSeconds(1));
+
+        // Open load: the ~35 requests due during the 700 ms stall all wait for it
+        assertThat(open.getCount()).isBetween(40L, 51L);
+        assertThat(open.percentileMillis(50)).isGreaterThan(100);
+        // Closed load: only the stalled request is slow; the worker sends nothing while it waits
+        assertThat(closed.percentileMillis(50)).isLessThan(100);
+        assertThat(closed.maxMillis()).isGreaterThanOrEqualTo(700);
+    }
+
+    @Test
+    void failsTheGatesOnErrorsOrSlowP99() throws InterruptedException {
+        LoadDriver.Result failing = new LoadDriver(1, 0)
+            .run(scenario(() -> "/fail"), Duration.ZERO, Duration.ofMillis(200));
+        LoadDriver.Result passing = new LoadDriver(1, 0)
+            .run(scenario(() -> "/ok"), Duration.ZERO, Duration.ofMillis(200));
+
+        assertThat(LoadTest.checkGates(List.of(passing), 0.01, 0)).isEmpty();
+        assertThat(LoadTest.checkGates(List.of(failing, passing), 0.01, 0))
+            .singleElement().asString().startsWith("mixed error rate 100.00%");
+        assertThat(LoadTest.checkGates(List.of(passing), 0.01, 0.000_001))
+            .singleElement().asString().contains("p99");
+    }
+
+    private LoadDriver.Scenario scenario(Supplier<String> path) {
+        String baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+        return new LoadDriver.Scenario() {
+            @Override
+            public String name() {
+                return "mixed";
+            }
+
+            @Override
+            public HttpRequest request(ThreadLocalRandom random) {
+                return HttpRequest.newBuilder(URI.create(baseUrl + path.get())).build();
+            }
+        };
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,331 @@
+package com.mappalette.userdiscovery.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mappalette.userdiscovery.UserDiscoveryApplication;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+
+/**
+ * End-to-end load test: starts {@link StubUpstreams}, boots the service in-process against
+ * them on a random port, and drives each /api/discover endpoint in turn with
+ * {@link LoadDriver}, printing throughput and latency percentiles.
+ *
+ * Runs in the {@code verify} phase of the {@code loadtest} profile and fails the build when
+ * an endpoint exceeds the allowed error rate or, if set, p99 latency:
+ * <pre>
+ * mvn verify -Ploadtest -Dloadtest.args="--users=100000 --following=200 --concurrency=64"
+ * </pre>
+ * Options prefixed with {@code --app.} are passed on to the service, e.g.
+ * {@code --app.discovery.directory.max-users=5000}.
+ */
+public final class LoadTest {
+
+    private static final Map<String, String> DEFAULTS = new LinkedHashMap<>();
+
+    static {
+        // Synthetic upstream data
+        DEFAULTS.put("users", "10000");
+        DEFAULTS.put("following", "50");
+        DEFAULTS.put("private-ratio", "0.2");
+        DEFAULTS.put("upstream-latency-ms", "5");
+        DEFAULTS.put("upstream-jitter-ms", "5");
+        // Load shape; rate 0 = closed loop, otherwise requests per second across all workers
+        DEFAULTS.put("concurrency", "32");
+        DEFAULTS.put("rate", "0");
+        DEFAULTS.put("warmup-s", "10");
+        DEFAULTS.put("duration-s", "30");
+        DEFAULTS.put("endpoints", "users,cursor,suggestions,suggestions-random,search,all,all-conditional,batch");
+        // Pass/fail gates; max-p99-ms 0 = not checked
+        DEFAULTS.put("max-error-rate", "0.01");
+        DEFAULTS.put("max-p99-ms", "0");
+        DEFAULTS.put("results-dir", "target/loadtest/results");
+    }
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private LoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new LinkedHashMap<>(DEFAULTS);
+        options.putAll(parseOptions(args));
+        int users = Integer.parseInt(options.get("users"));
+
+        try (StubUpstreams stub = new StubUpstreams(0, users,
+                Integer.parseInt(options.get("following")),
+                Double.parseDouble(options.get("private-ratio")),
+                Long.parseLong(options.get("upstream-latency-ms")),
+                Long.parseLong(options.get("upstream-jitter-ms")));
+             ConfigurableApplicationContext context = startService(stub.url(), users, options)) {
+
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            String baseUrl = "http://127.0.0.1:" + port + "/api/discover";
+            LoadDriver driver = new LoadDriver(Integer.parseInt(options.get("concurrency")),
+                Double.parseDouble(options.get("rate")));
+            Duration warmup = Duration.ofSeconds(Long.parseLong(options.get("warmup-s")));
+            Duration duration = Duration.ofSeconds(Long.parseLong(options.get("duration-s")));
+            Path resultsDir = Path.of(options.get("results-dir"));
+
+            System.out.printf("%nLoad test: %d users, %s following each, %s concurrency, rate %s, %ss per endpoint%n",
+                users, options.get("following"), options.get("concurrency"), options.get("rate"), options.get("duration-s"));
+            List<LoadDriver.Result> results = new ArrayList<>();
+            for (String endpoint : options.get("endpoints").split(",")) {
+                LoadDriver.Result result = driver.run(scenario(endpoint.trim(), baseUrl, users), warmup, duration);
+                result.writeDistribution(resultsDir);
+                results.add(result);
+            }
+
+            printResults(results);
+            List<String> failures = checkGates(results,
+                Double.parseDouble(options.get("max-error-rate")), Double.parseDouble(options.get("max-p99-ms")));
+            failures.forEach(failure -> System.out.println("FAILED: " + failure));
+            System.out.println("Latency distributions written to " + resultsDir.toAbsolutePath());
+            if (!failures.isEmpty()) {
+                System.exit(1);
+            }
+        }
+        System.exit(0);
+    }
+
+    /**
+     * Parses {@code --key=value} arguments; a bare {@code --key} means {@code true}.
+     */
+    static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                throw new IllegalArgumentException("Expected --key=value, got " + arg);
+            }
+            int equals = arg.indexOf('=');
+            if (equals < 0) {
+                options.put(arg.substring(2), "true");
+            } else {
+                options.put(arg.substring(2, equals), arg.substring(equals + 1));
+            }
+        }
+        return options;
+    }
+
+    /**
+     * Boots the service on a random port against the upstreams at {@code upstreamUrl}.
+     */
+    static ConfigurableApplicationContext startService(String upstreamUrl, int users, Map<String, String> options) {
+        System.setProperty("spring.devtools.restart.enabled", "false");
+        List<String> args = new ArrayList<>(List.of(
+            "--server.port=0",
+            "--user.service.url=" + upstreamUrl,
+            "--follow.service.url=" + upstreamUrl,
+            "--logging.level.com.mappalette.userdiscovery=WARN",
+            // Upstream executors outlive Tomcat on shutdown, which is harmless here
+            "--logging.level.org.apache.catalina.loader=ERROR",
+            // Snapshot the whole synthetic directory unless overridden, so /all is complete and gets an ETag
+            "--discovery.directory.max-users=" + users));
+        options.forEach((key, value) -> {
+            if (key.startsWith("app.")) {
+                args.add("--" + key.substring("app.".length()) + "=" + value);
+            }
+        });
+        return SpringApplication.run(UserDiscoveryApplication.class, args.toArray(new String[0]));
+    }
+
+    static LoadDriver.Scenario scenario(String endpoint, String baseUrl, int users) {
+        return switch (endpoint) {
+            case "users" -> get(endpoint, random ->
+                baseUrl + "/users/" + viewer(random, users) + "?limit=20&offset=" + 20 * random.nextInt(10));
+            case "cursor" -> new CursorScenario(baseUrl, users);
+            case "suggestions" -> get(endpoint, random ->
+                baseUrl + "/users/" + viewer(random, users) + "/suggestions?limit=5");
+            case "suggestions-random" -> get(endpoint, random ->
+                baseUrl + "/users/" + viewer(random, users) + "/suggestions?limit=5&ranked=false");
+            case "search" -> get(endpoint, random ->
+                baseUrl + "/users/" + viewer(random, users) + "/search?q=user" + random.nextInt(1000) + "&limit=10");
+            case "all" -> get(endpoint, random -> baseUrl + "/users/" + viewer(random, users) + "/all");
+            case "all-conditional" -> new ConditionalAllScenario(baseUrl, users);
+            case "batch" -> new BatchScenario(baseUrl, users);
+            default -> throw new IllegalArgumentException("Unknown endpoint " + endpoint);
+        };
+    }
+
+    private static String viewer(ThreadLocalRandom random, int users) {
+        return StubUpstreams.userId(random.nextInt(users));
+    }
+
+    private static LoadDriver.Scenario get(String name, Function<ThreadLocalRandom, String> url) {
+        return new LoadDriver.Scenario() {
+            @Override
+            public String name() {
+                return name;
+            }
+
+            @Override
+            public HttpRequest request(ThreadLocalRandom random) {
+                return HttpRequest.newBuilder(URI.create(url.apply(random))).GET().build();
+            }
+        };
+    }
+
+    /**
+     * Pages through /users in cursor mode, continuing from the last cursor each viewer got back.
+     */
+    private static final class CursorScenario implements LoadDriver.Scenario {
+        private final String baseUrl;
+        private final int users;
+        private final Map<String, String> nextCursors = new ConcurrentHashMap<>();
+
+        CursorScenario(String baseUrl, int users) {
+            this.baseUrl = baseUrl;
+            this.users = users;
+        }
+
+        @Override
+        public String name() {
+            return "cursor";
+        }
+
+        @Override
+        public HttpRequest request(ThreadLocalRandom random) {
+            String viewer = viewer(random, users);
+            String cursor = nextCursors.getOrDefault(viewer, "");
+            return HttpRequest.newBuilder(URI.create(baseUrl + "/users/" + viewer + "?limit=20&cursor=" + URLEncoder.encode(cursor, StandardCharsets.UTF_8)))
+                .GET().build();
+        }
+
+        @Override
+        public void onResponse(HttpResponse<byte[]> response) {
+            String viewer = viewerOf(response);
+            try {
+                JsonNode nextCursor = OBJECT_MAPPER.readTree(response.body()).get("nextCursor");
+                if (nextCursor != null && nextCursor.isTextual()) {
+                    nextCursors.put(viewer, nextCursor.asText());
+                } else {
+                    nextCursors.remove(viewer);
+                }
+            } catch (IOException e) {
+                nextCursors.remove(viewer);
+            }
+        }
+    }
+
+    /**
+     * Fetches /all with the ETag each viewer last got back, the way a browser revalidates.
+     */
+    private static final class ConditionalAllScenario implements LoadDriver.Scenario {
+        private final String baseUrl;
+        private final int users;
+        private final Map<String, String> etags = new ConcurrentHashMap<>();
+
+        ConditionalAllScenario(String baseUrl, int users) {
+            this.baseUrl = baseUrl;
+            this.users = users;
+        }
+
+        @Override
+        public String name() {
+            return "all-conditional";
+        }
+
+        @Override
+        public HttpRequest request(ThreadLocalRandom random) {
+            String viewer = viewer(random, users);
+            HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(baseUrl + "/users/" + viewer + "/all")).GET();
+            String etag = etags.get(viewer);
+            if (etag != null) {
+                request.header("If-None-Match", etag);
+            }
+            return request.build();
+        }
+
+        @Override
+        public void onResponse(HttpResponse<byte[]> response) {
+            response.headers().firstValue("ETag").ifPresent(etag -> etags.put(viewerOf(response), etag));
+        }
+
+        @Override
+        public boolean isSuccess(int status) {
+            return status == 304 || LoadDriver.Scenario.super.isSuccess(status);
+        }
+    }
+
+    /**
+     * Requests suggestions for ten random users in one POST /suggestions/batch.
+     */
+    private static final class BatchScenario implements LoadDriver.Scenario {
+        private static final int BATCH_SIZE = 10;
+
+        private final String baseUrl;
+        private final int users;
+
+        BatchScenario(String baseUrl, int users) {
+            this.baseUrl = baseUrl;
+            this.users = users;
+        }
+
+        @Override
+        public String name() {
+            return "batch";
+        }
+
+        @Override
+        public HttpRequest request(ThreadLocalRandom random) {
+            StringBuilder body = new StringBuilder("{\"userIds\":[");
+            for (int i = 0; i < BATCH_SIZE; i++) {
+                body.append(i == 0 ? "\"" : ",\"").append(viewer(random, users)).append('"');
+            }
+            body.append("],\"limit\":5}");
+            return HttpRequest.newBuilder(URI.create(baseUrl + "/suggestions/batch"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body.toString()))
+                .build();
+        }
+    }
+
+    // Path is /api/discover/users/{userId}[/...]
+    private static String viewerOf(HttpResponse<?> response) {
+        return response.request().uri().getPath().split("/")[4];
+    }
+
+    private static void printResults(List<LoadDriver.Result> results) {
+        System.out.printf("%n%-20s %9s %8s %10s %9s %9s %9s %9s %9s  %s%n",
+            "endpoint", "requests", "errors", "req/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms", "statuses");
+        for (LoadDriver.Result result : results) {
+            System.out.printf("%-20s %9d %7.2f%% %10.1f %9.2f %9.2f %9.2f %9.2f %9.2f  %s%n",
+                result.getName(), result.getCount(), 100 * result.getErrorRate(), result.getThroughput(),
+                result.percentileMillis(50), result.percentileMillis(90), result.percentileMillis(99),
+                result.percentileMillis(99.9), result.maxMillis(), result.statusSummary());
+        }
+        System.out.println();
+    }
+
+    static List<String> checkGates(List<LoadDriver.Result> results, double maxErrorRate, double maxP99Millis) {
+        List<String> failures = new ArrayList<>();
+        for (LoadDriver.Result result : results) {
+            if (result.getErrorRate() > maxErrorRate) {
+                failures.add(String.format("%s error rate %.2f%% above %.2f%%",
+                    result.getName(), 100 * result.getErrorRate(), 100 * maxErrorRate));
+            }
+            if (maxP99Millis > 0 && result.percentileMillis(99) > maxP99Millis) {
+                failures.add(String.format("%s p99 %.2f ms above %.2f ms",
+                    result.getName(), result.percentileMillis(99), maxP99Millis));
+            }
+        }
+        return failures;
+    }
+}
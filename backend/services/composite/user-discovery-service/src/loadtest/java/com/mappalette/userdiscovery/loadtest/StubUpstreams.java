@@ -0,0 +1,272 @@
+package com.mappalette.userdiscovery.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mappalette.userdiscovery.dto.FollowingResponse;
+import com.mappalette.userdiscovery.dto.PaginatedUsersResponse;
+import com.mappalette.userdiscovery.dto.UserDto;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Local stand-in for user-service and follow-service, serving a synthetic directory over HTTP
+ * with a configurable delay per response.
+ *
+ * Serves the endpoints user-discovery-service calls: {@code /api/users/all},
+ * {@code /api/users/{id}}, {@code /api/follow/following/{id}} and
+ * {@code /api/follow/followers/{id}}, paginated and capped at 100 per page like the Node
+ * services. The data is deterministic for a given size: user {@code i} follows the users
+ * at fixed offsets from {@code i}, so followers are just as cheap to compute and friends of
+ * friends overlap the way they do in a real graph.
+ *
+ * Each request runs on its own virtual thread, so the delay models upstream latency without
+ * capping how many requests the stub serves at once. Directory pages are rendered once and
+ * then served from memory; responses are never compressed, so stub CPU stays out of the
+ * numbers as far as possible.
+ *
+ * Runnable on its own to drive a separately started service:
+ * <pre>
+ * java -cp ... com.mappalette.userdiscovery.loadtest.StubUpstreams --port=3901 --users=100000
+ * </pre>
+ */
+public final class StubUpstreams implements AutoCloseable {
+
+    private static final long SEED = 42L;
+    private static final int MAX_PAGE_SIZE = 100;
+
+    static {
+        // The JDK server closes keep-alive connections beyond 200 idle ones, which the service's
+        // pools would then reuse and fail on; the Node upstreams have no such limit
+        if (System.getProperty("sun.net.httpserver.maxIdleConnections") == null) {
+            System.setProperty("sun.net.httpserver.maxIdleConnections", "10000");
+        }
+    }
+
+    private final List<UserDto> users;
+    private final int[] followingOffsets;
+    private final long latencyMs;
+    private final long jitterMs;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ConcurrentMap<String, byte[]> directoryPages = new ConcurrentHashMap<>();
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final HttpServer server;
+
+    public StubUpstreams(int port, int userCount, int followingPerUser, double privateRatio,
+                         long latencyMs, long jitterMs) throws IOException {
+        Random random = new Random(SEED);
+        this.users = new ArrayList<>(userCount);
+        for (int i = 0; i < userCount; i++) {
+            String id = userId(i);
+            users.add(UserDto.builder()
+                .id(id)
+                .userID(id)
+                .username("user" + i)
+                .profilePicture(i % 3 == 0 ? null : "https://example.com/avatars/" + i + ".png")
+                .isProfilePrivate(random.nextDouble() < privateRatio)
+                .numFollowers(followingPerUser)
+                .numFollowing(followingPerUser)
+                .build());
+        }
+        // Distinct offsets that grow quadratically, so followees of followees partly overlap
+        int following = Math.min(followingPerUser, Math.max(0, userCount - 1));
+        this.followingOffsets = new int[following];
+        for (int k = 0; k < following; k++) {
+            followingOffsets[k] = (int) ((1 + 7L * k + (long) k * k) % Math.max(1, userCount - 1)) + 1;
+        }
+        this.latencyMs = latencyMs;
+        this.jitterMs = jitterMs;
+
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 1024);
+        server.createContext("/api/users/", exchange -> handle(exchange, this::users));
+        server.createContext("/api/follow/", exchange -> handle(exchange, this::follow));
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    /**
+     * ID of the {@code index}-th synthetic user
+     */
+    public static String userId(int index) {
+        return new UUID(SEED, index).toString();
+    }
+
+    public int getUserCount() {
+        return users.size();
+    }
+
+    public String url() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = LoadTest.parseOptions(args);
+        StubUpstreams stub = new StubUpstreams(
+            Integer.parseInt(options.getOrDefault("port", "3901")),
+            Integer.parseInt(options.getOrDefault("users", "10000")),
+            Integer.parseInt(options.getOrDefault("following", "50")),
+            Double.parseDouble(options.getOrDefault("private-ratio", "0.2")),
+            Long.parseLong(options.getOrDefault("upstream-latency-ms", "5")),
+            Long.parseLong(options.getOrDefault("upstream-jitter-ms", "5")));
+        System.out.println("Stub user-service and follow-service listening on " + stub.url());
+        Thread.currentThread().join();
+    }
+
+    private Response users(String path, Map<String, String> query) throws IOException {
+        if (path.equals("/api/users/all")) {
+            int page = intParam(query, "page", 1);
+            int limit = intParam(query, "limit", 20);
+            if (limit > MAX_PAGE_SIZE || page < 1 || limit < 1) {
+                return Response.badRequest();
+            }
+            return new Response(200, directoryPages.computeIfAbsent(page + "/" + limit, key -> renderPage(page, limit)));
+        }
+        int index = indexOf(path.substring("/api/users/".length()));
+        return index >= 0 ? new Response(200, objectMapper.writeValueAsBytes(users.get(index))) : Response.notFound();
+    }
+
+    private Response follow(String path, Map<String, String> query) throws IOException {
+        String[] parts = path.split("/");
+        // "", "api", "follow", "following" | "followers", "{id}"
+        if (parts.length != 5) {
+            return Response.notFound();
+        }
+        int page = intParam(query, "page", 1);
+        int limit = intParam(query, "limit", 20);
+        if (limit > MAX_PAGE_SIZE || page < 1 || limit < 1) {
+            return Response.badRequest();
+        }
+        int index = indexOf(parts[4]);
+        List<FollowingResponse.FollowingUserDto> edges = new ArrayList<>();
+        int total = index >= 0 ? followingOffsets.length : 0;
+        int sign = parts[3].equals("followers") ? -1 : 1;
+        for (int k = (page - 1) * limit; k < Math.min(total, page * limit); k++) {
+            int other = Math.floorMod(index + sign * followingOffsets[k], users.size());
+            UserDto user = users.get(other);
+            edges.add(FollowingResponse.FollowingUserDto.builder()
+                .id(user.getId())
+                .username(user.getUsername())
+                .profilePicture(user.getProfilePicture())
+                .points(other)
+                .build());
+        }
+        FollowingResponse.PaginationDto pagination = new FollowingResponse.PaginationDto(page, limit, total,
+            (total + limit - 1) / limit);
+        FollowingResponse response = switch (parts[3]) {
+            case "following" -> FollowingResponse.builder().following(edges).pagination(pagination).build();
+            case "followers" -> FollowingResponse.builder().followers(edges).pagination(pagination).build();
+            default -> null;
+        };
+        return response != null ? new Response(200, objectMapper.writeValueAsBytes(response)) : Response.notFound();
+    }
+
+    private byte[] renderPage(int page, int limit) {
+        int from = Math.min((page - 1) * limit, users.size());
+        int to = Math.min(from + limit, users.size());
+        PaginatedUsersResponse response = new PaginatedUsersResponse(users.subList(from, to),
+            new PaginatedUsersResponse.Pagination(page, limit, users.size(), (users.size() + limit - 1) / limit));
+        try {
+            return objectMapper.writeValueAsBytes(response);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private int indexOf(String userId) {
+        try {
+            UUID uuid = UUID.fromString(userId);
+            long index = uuid.getLeastSignificantBits();
+            return uuid.getMostSignificantBits() == SEED && index >= 0 && index < users.size() ? (int) index : -1;
+        } catch (IllegalArgumentException e) {
+            return -1;
+        }
+    }
+
+    private void handle(HttpExchange exchange, Handler handler) throws IOException {
+        try (InputStream requestBody = exchange.getRequestBody()) {
+            requestBody.readAllBytes();
+        }
+        long delay = latencyMs + (jitterMs > 0 ? ThreadLocalRandom.current().nextLong(jitterMs) : 0);
+        if (delay > 0) {
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        URI uri = exchange.getRequestURI();
+        Response response = handler.handle(uri.getPath(), query(uri.getRawQuery()));
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(response.status, response.body.length);
+        try (OutputStream responseBody = exchange.getResponseBody()) {
+            responseBody.write(response.body);
+        }
+    }
+
+    private static Map<String, String> query(String rawQuery) {
+        Map<String, String> params = new HashMap<>();
+        if (rawQuery != null) {
+            for (String pair : rawQuery.split("&")) {
+                int equals = pair.indexOf('=');
+                if (equals > 0) {
+                    params.put(pair.substring(0, equals), pair.substring(equals + 1));
+                }
+            }
+        }
+        return params;
+    }
+
+    private static int intParam(Map<String, String> query, String name, int defaultValue) {
+        try {
+            return query.containsKey(name) ? Integer.parseInt(query.get(name)) : defaultValue;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    @FunctionalInterface
+    private interface Handler {
+        Response handle(String path, Map<String, String> query) throws IOException;
+    }
+
+    private static final class Response {
+        private final int status;
+        private final byte[] body;
+
+        Response(int status, byte[] body) {
+            this.status = status;
+            this.body = body;
+        }
+
+        static Response badRequest() {
+            return new Response(400, "{\"error\":\"Validation failed\"}".getBytes());
+        }
+
+        static Response notFound() {
+            return new Response(404, "{\"message\":\"Not found\"}".getBytes());
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.mappalette.userdiscovery.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mappalette.userdiscovery.dto.FollowingResponse;
+import com.mappalette.userdiscovery.dto.PaginatedUsersResponse;
+import com.mappalette.userdiscovery.dto.UserDto;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StubUpstreamsTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final HttpClient client = HttpClient.newHttpClient();
+    private final StubUpstreams stub = new StubUpstreams(0, 250, 30, 0.2, 0, 0);
+
+    StubUpstreamsTest() throws IOException {
+    }
+
+    @AfterEach
+    void tearDown() {
+        stub.close();
+    }
+
+    @Test
+    void pagesThroughTheWholeDirectory() throws Exception {
+        List<String> ids = new ArrayList<>();
+        for (int page = 1; page <= 3; page++) {
+            PaginatedUsersResponse response = get("/api/users/all?page=" + page + "&limit=100",
+                PaginatedUsersResponse.class);
+            assertThat(response.getPagination().getTotal()).isEqualTo(250);
+            assertThat(response.getPagination().getTotalPages()).isEqualTo(3);
+            response.getUsers().forEach(user -> ids.add(user.getId()));
+        }
+
+        assertThat(ids).hasSize(250).doesNotHaveDuplicates();
+        assertThat(ids.get(0)).isEqualTo(StubUpstreams.userId(0));
+        assertThat(ids.get(249)).isEqualTo(StubUpstreams.userId(249));
+    }
+
+    @Test
+    void rejectsPagesLargerThanTheNodeServicesAllow() throws Exception {
+        assertThat(status("/api/users/all?page=1&limit=101")).isEqualTo(400);
+        assertThat(status("/api/follow/following/" + StubUpstreams.userId(0) + "?page=1&limit=101")).isEqualTo(400);
+        assertThat(status("/api/users/all?page=0&limit=10")).isEqualTo(400);
+    }
+
+    @Test
+    void servesUsersById() throws Exception {
+        String id = StubUpstreams.userId(17);
+
+        assertThat(get("/api/users/" + id, UserDto.class).getUsername()).isEqualTo("user17");
+        assertThat(status("/api/users/" + StubUpstreams.userId(250))).isEqualTo(404);
+        assertThat(status("/api/users/not-a-uuid")).isEqualTo(404);
+    }
+
+    @Test
+    void keepsFollowingAndFollowerListsConsistent() throws Exception {
+        String viewer = StubUpstreams.userId(3);
+        List<String> following = ids(get("/api/follow/following/" + viewer + "?page=1&limit=100",
+            FollowingResponse.class).getFollowing());
+
+        assertThat(following).hasSize(30).doesNotHaveDuplicates().doesNotContain(viewer);
+        for (String followee : following.subList(0, 5)) {
+            List<String> followers = ids(get("/api/follow/followers/" + followee + "?page=1&limit=100",
+                FollowingResponse.class).getFollowers());
+            assertThat(followers).contains(viewer);
+        }
+    }
+
+    private static List<String> ids(List<FollowingResponse.FollowingUserDto> users) {
+        return users.stream().map(FollowingResponse.FollowingUserDto::getId).toList();
+    }
+
+    private <T> T get(String path, Class<T> type) throws Exception {
+        HttpResponse<byte[]> response = send(path);
+        assertThat(response.statusCode()).isEqualTo(200);
+        return objectMapper.readValue(response.body(), type);
+    }
+
+    private int status(String path) throws Exception {
+        return send(path).statusCode();
+    }
+
+    private HttpResponse<byte[]> send(String path) throws Exception {
+        return client.send(HttpRequest.newBuilder(URI.create(stub.url() + path)).build(),
+            HttpResponse.BodyHandlers.ofByteArray());
+    }
+}
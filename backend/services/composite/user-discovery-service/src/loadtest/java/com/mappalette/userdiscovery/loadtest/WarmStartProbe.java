@@ -0,0 +1,213 @@
+package com.mappalette.userdiscovery.loadtest;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures what the persisted directory snapshot buys on startup: the service is booted
+ * twice in fresh JVMs against the same {@link StubUpstreams}, first without a snapshot file
+ * (cold) and then with the file the first run left behind (warm). For each run it reports
+ * how long until the first {@code /users} response, that request's own latency, how long
+ * until a response comes back within {@code --fast-ms} (a cold service answers the first
+ * requests late, with a partial directory, while it loads), and the used heap after a GC
+ * once the first response is back and again once the directory has been fully loaded
+ * from the stub.
+ * <pre>
+ * mvn verify -Ploadtest -Dloadtest.main=com.mappalette.userdiscovery.loadtest.WarmStartProbe \
+ *     -Dloadtest.args="--users=100000"
+ * </pre>
+ * The stub runs in this JVM, so each service JVM holds nothing but the service.
+ */
+public final class WarmStartProbe {
+
+    private static final Map<String, String> DEFAULTS = new LinkedHashMap<>();
+
+    static {
+        DEFAULTS.put("users", "100000");
+        DEFAULTS.put("following", "50");
+        DEFAULTS.put("private-ratio", "0.2");
+        DEFAULTS.put("upstream-latency-ms", "5");
+        DEFAULTS.put("upstream-jitter-ms", "5");
+        DEFAULTS.put("snapshot-file", "target/loadtest/directory.snap");
+        DEFAULTS.put("service-jvm-args", "-Xmx1g");
+        DEFAULTS.put("fast-ms", "100");
+        DEFAULTS.put("load-timeout-s", "300");
+    }
+
+    private static final String RESULT_PREFIX = "warm-start-probe:";
+    private static final String[] COLUMNS = {
+        "context-ms", "file-read-ms", "first-response-ms", "first-latency-ms", "first-fast-ms", "heap-first-mb",
+        "loaded-ms", "heap-loaded-mb"
+    };
+
+    private WarmStartProbe() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new LinkedHashMap<>(DEFAULTS);
+        options.putAll(LoadTest.parseOptions(args));
+        if (options.containsKey("phase")) {
+            runPhase(options);
+            System.exit(0);
+        }
+
+        Path snapshotFile = Path.of(options.get("snapshot-file")).toAbsolutePath();
+        Files.deleteIfExists(snapshotFile);
+        int users = Integer.parseInt(options.get("users"));
+        try (StubUpstreams stub = new StubUpstreams(0, users,
+                Integer.parseInt(options.get("following")),
+                Double.parseDouble(options.get("private-ratio")),
+                Long.parseLong(options.get("upstream-latency-ms")),
+                Long.parseLong(options.get("upstream-jitter-ms")))) {
+            System.out.printf("%nWarm start probe: %d users, upstream latency %s ms + up to %s ms%n",
+                users, options.get("upstream-latency-ms"), options.get("upstream-jitter-ms"));
+            Map<String, String> cold = runServiceJvm("cold", stub.url(), snapshotFile, options);
+            System.out.printf("Snapshot file: %,d bytes%n", Files.size(snapshotFile));
+            Map<String, String> warm = runServiceJvm("warm", stub.url(), snapshotFile, options);
+
+            System.out.printf("%n%-6s", "start");
+            for (String column : COLUMNS) {
+                System.out.printf(" %17s", column);
+            }
+            System.out.println();
+            for (Map<String, String> result : List.of(cold, warm)) {
+                System.out.printf("%-6s", result.get("phase"));
+                for (String column : COLUMNS) {
+                    System.out.printf(" %17s", result.getOrDefault(column, "-"));
+                }
+                System.out.println();
+            }
+        }
+        System.exit(0);
+    }
+
+    /**
+     * Starts this class in a new JVM for one phase and returns the results it printed.
+     */
+    private static Map<String, String> runServiceJvm(String phase, String upstreamUrl, Path snapshotFile,
+                                                     Map<String, String> options) throws Exception {
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(Arrays.asList(options.get("service-jvm-args").trim().split("\\s+")));
+        command.addAll(List.of("-cp", System.getProperty("java.class.path"), WarmStartProbe.class.getName(),
+            "--phase=" + phase,
+            "--upstream-url=" + upstreamUrl,
+            "--app.discovery.directory.snapshot-file.path=" + snapshotFile));
+        options.forEach((key, value) -> {
+            if (!key.equals("service-jvm-args")) {
+                command.add("--" + key + "=" + value);
+            }
+        });
+
+        Process process = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+        Map<String, String> result = new LinkedHashMap<>();
+        try (BufferedReader output = new BufferedReader(
+                new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = output.readLine()) != null) {
+                System.out.println(line);
+                if (line.startsWith(RESULT_PREFIX)) {
+                    for (String field : line.substring(RESULT_PREFIX.length()).trim().split(" ")) {
+                        int equals = field.indexOf('=');
+                        result.put(field.substring(0, equals), field.substring(equals + 1));
+                    }
+                }
+            }
+        }
+        if (process.waitFor() != 0 || result.isEmpty()) {
+            throw new IllegalStateException("The " + phase + " service JVM failed");
+        }
+        return result;
+    }
+
+    /**
+     * Boots the service in this JVM, times the first request and reports heap use.
+     */
+    private static void runPhase(Map<String, String> options) throws Exception {
+        int users = Integer.parseInt(options.get("users"));
+        long fastNanos = Long.parseLong(options.get("fast-ms")) * 1_000_000;
+        long loadTimeoutMs = Long.parseLong(options.get("load-timeout-s")) * 1000;
+        HttpClient client = HttpClient.newHttpClient();
+        Map<String, String> result = new LinkedHashMap<>();
+        result.put("phase", options.get("phase"));
+
+        long startNanos = System.nanoTime();
+        try (ConfigurableApplicationContext context =
+                 LoadTest.startService(options.get("upstream-url"), users, options)) {
+            long contextNanos = System.nanoTime();
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            HttpRequest request = HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + port
+                + "/api/discover/users/" + StubUpstreams.userId(1) + "?limit=20")).GET().build();
+            HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+            long firstResponseNanos = System.nanoTime();
+            if (response.statusCode() != 200) {
+                throw new IllegalStateException("First request returned " + response.statusCode());
+            }
+            result.put("context-ms", millis(contextNanos - startNanos));
+            result.put("first-response-ms", millis(firstResponseNanos - startNanos));
+            result.put("first-latency-ms", millis(firstResponseNanos - contextNanos));
+            result.put("heap-first-mb", usedHeapAfterGcMb());
+
+            long deadline = System.nanoTime() + loadTimeoutMs * 1_000_000;
+            long sentNanos = contextNanos;
+            long receivedNanos = firstResponseNanos;
+            while (receivedNanos - sentNanos > fastNanos && System.nanoTime() < deadline) {
+                sentNanos = System.nanoTime();
+                client.send(request, HttpResponse.BodyHandlers.discarding());
+                receivedNanos = System.nanoTime();
+            }
+            if (receivedNanos - sentNanos <= fastNanos) {
+                result.put("first-fast-ms", millis(receivedNanos - startNanos));
+            }
+
+            MeterRegistry meterRegistry = context.getBean(MeterRegistry.class);
+            Timer fileReads = meterRegistry.get("discovery.directory.snapshot.file").tag("operation", "read").timer();
+            if (fileReads.count() > 0) {
+                result.put("file-read-ms", millis((long) fileReads.totalTime(TimeUnit.NANOSECONDS)));
+            }
+            // Every full load from user-service ends with the snapshot file being written
+            Timer fileWrites = meterRegistry.get("discovery.directory.snapshot.file").tag("operation", "write").timer();
+            while (fileWrites.count() == 0 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            if (fileWrites.count() > 0) {
+                result.put("loaded-ms", millis(System.nanoTime() - startNanos));
+                result.put("heap-loaded-mb", usedHeapAfterGcMb());
+            }
+        }
+
+        StringBuilder line = new StringBuilder(RESULT_PREFIX);
+        result.forEach((key, value) -> line.append(' ').append(key).append('=').append(value));
+        System.out.println(line);
+    }
+
+    private static String millis(long nanos) {
+        return String.valueOf(nanos / 1_000_000);
+    }
+
+    private static String usedHeapAfterGcMb() {
+        System.gc();
+        System.gc();
+        long used = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+        return String.format("%.1f", used / (1024.0 * 1024.0));
+    }
+}
@@ -0,0 +1,169 @@
+package com.mappalette.userdiscovery.cache;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.mappalette.userdiscovery.client.FollowServiceClient;
+import com.mappalette.userdiscovery.client.UpstreamCalls;
+import com.mappalette.userdiscovery.directory.FollowingSet;
+import com.mappalette.userdiscovery.directory.UserIdInterner;
+import com.mappalette.userdiscovery.dto.FollowingResponse;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * Bounded, TTL-based cache of the IDs each user is following.
+ *
+ * Eviction is size-based (Caffeine's W-TinyLFU). Concurrent misses for the same
+ * user share one in-flight load, which runs on the first caller's thread, so
+ * follow-service sees a single request no matter how many discovery endpoints
+ * a page fires at once. Failed loads are not cached.
+ *
+ * The last successfully loaded set of each user is kept much longer than the TTL,
+ * so callers can fall back to it while follow-service is unavailable.
+ *
+ * Sets are stored as {@link FollowingSet}s of interned ids, so a cached user costs four
+ * bytes per followed account instead of a String and hash node each.
+ */
+@Component
+@Slf4j
+public class FollowingCache {
+
+    // follow-service rejects page sizes above 100
+    public static final int FOLLOWING_PAGE_SIZE = 100;
+
+    private final FollowServiceClient followServiceClient;
+    private final UpstreamCalls upstreamCalls;
+    private final UserIdInterner userIdInterner;
+    private final AsyncCache<String, FollowingSet> cache;
+    private final Cache<String, FollowingSet> lastKnown;
+
+    public FollowingCache(FollowServiceClient followServiceClient,
+                          UpstreamCalls upstreamCalls,
+                          UserIdInterner userIdInterner,
+                          MeterRegistry meterRegistry,
+                          @Value("${discovery.following-cache.max-size:10000}") long maxSize,
+                          @Value("${discovery.following-cache.ttl-ms:60000}") long ttlMs,
+                          @Value("${discovery.following-cache.last-known-ttl-ms:86400000}") long lastKnownTtlMs) {
+        this.followServiceClient = followServiceClient;
+        this.upstreamCalls = upstreamCalls;
+        this.userIdInterner = userIdInterner;
+        this.lastKnown = Caffeine.newBuilder()
+            .maximumSize(maxSize)
+            .expireAfterWrite(Duration.ofMillis(lastKnownTtlMs))
+            .build();
+        this.cache = Caffeine.newBuilder()
+            .maximumSize(maxSize)
+            .expireAfterWrite(Duration.ofMillis(ttlMs))
+            .recordStats()
+            .buildAsync();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache.synchronous(), "discovery.following");
+    }
+
+    /**
+     * Returns the IDs the given user is following.
+     *
+     * @throws java.util.concurrent.CompletionException if follow-service could not be reached
+     */
+    public FollowingSet getFollowingIds(String userId) {
+        CompletableFuture<FollowingSet> pending = new CompletableFuture<>();
+        CompletableFuture<FollowingSet> future = cache.get(userId, (key, executor) -> pending);
+        if (future == pending) {
+            try {
+                pending.complete(load(userId));
+            } catch (Exception e) {
+                // Completing exceptionally also evicts the entry so the next call retries
+                pending.completeExceptionally(e);
+            }
+        }
+        return future.join();
+    }
+
+    /**
+     * Non-blocking variant of {@link #getFollowingIds}: a missing set is fetched with {@code fetch},
+     * which completes with the IDs the user follows. Cache entries, in-flight loads and last known
+     * sets are shared with the blocking variant.
+     */
+    public CompletableFuture<FollowingSet> getFollowingIdsAsync(String userId,
+                                                                Function<String, CompletableFuture<List<String>>> fetch) {
+        return cache.get(userId, (key, executor) -> fetch.apply(key).thenApply(ids -> remember(key, ids)));
+    }
+
+    /**
+     * Returns the last following set successfully loaded for the user, however old, or null if there is none.
+     */
+    public FollowingSet getLastKnownFollowingIds(String userId) {
+        return lastKnown.getIfPresent(userId);
+    }
+
+    /**
+     * Drops the user's cached following set, so the next read loads it from follow-service.
+     * The last known set is kept as the fallback for while follow-service is unavailable.
+     */
+    public void invalidate(String userId) {
+        cache.synchronous().invalidate(userId);
+        log.debug("Invalidated cached following list for user {}", userId);
+    }
+
+    /**
+     * Adds or removes one follow edge in the follower's cached set, if it is cached.
+     * A load still in flight may have read follow-service before the change, so it is
+     * dropped instead and the next read loads again.
+     */
+    public void applyFollow(String followerId, String followingId, boolean following) {
+        cache.asMap().computeIfPresent(followerId, (key, future) -> {
+            if (!future.isDone() || future.isCompletedExceptionally()) {
+                return null;
+            }
+            return CompletableFuture.completedFuture(withFollow(future.join(), followingId, following));
+        });
+        lastKnown.asMap().computeIfPresent(followerId, (key, current) -> withFollow(current, followingId, following));
+    }
+
+    /**
+     * The followed user is only interned once a cached set gains them, so events about users
+     * nobody has loaded never grow the interner.
+     */
+    private FollowingSet withFollow(FollowingSet current, String followingId, boolean following) {
+        return following
+            ? current.with(userIdInterner.intern(followingId))
+            : current.without(userIdInterner.lookup(followingId));
+    }
+
+    private FollowingSet load(String userId) {
+        List<String> followingIds = new ArrayList<>();
+        int page = 1;
+        int totalPages;
+        do {
+            int currentPage = page;
+            FollowingResponse response = upstreamCalls.followService(
+                () -> followServiceClient.getFollowing(userId, currentPage, FOLLOWING_PAGE_SIZE));
+            if (response == null || response.getFollowing() == null) {
+                break;
+            }
+            for (FollowingResponse.FollowingUserDto following : response.getFollowing()) {
+                if (following.getId() != null) {
+                    followingIds.add(following.getId());
+                }
+            }
+            totalPages = response.getPagination() != null ? response.getPagination().getTotalPages() : page;
+            page++;
+        } while (page <= totalPages);
+        return remember(userId, followingIds);
+    }
+
+    private FollowingSet remember(String userId, List<String> followingIds) {
+        FollowingSet loaded = FollowingSet.of(followingIds, userIdInterner);
+        lastKnown.put(userId, loaded);
+        return loaded;
+    }
+}
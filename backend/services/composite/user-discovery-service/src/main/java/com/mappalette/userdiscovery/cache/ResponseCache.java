@@ -0,0 +1,116 @@
+package com.mappalette.userdiscovery.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.mappalette.userdiscovery.directory.Fingerprints;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Serialized discovery responses, bounded by their total size in bytes, together with the
+ * ETags that identify them.
+ *
+ * An ETag is a hash of the versions a response was computed from (the directory snapshot's
+ * content version, the viewer's following set, the request parameters) and of a random
+ * per-process epoch, since snapshot versions start over when the service restarts. An entry
+ * is only served while its ETag still matches the one computed for the current versions, so
+ * entries never need to be invalidated; outdated ones age out or are evicted by weight.
+ */
+@Component
+public class ResponseCache {
+
+    // Rough per-entry overhead on top of the body: key, ETag, entry and Caffeine node
+    private static final int ENTRY_OVERHEAD_BYTES = 200;
+
+    private final Cache<String, CachedResponse> responses;
+    private final long epoch = ThreadLocalRandom.current().nextLong();
+    private final Counter notModified;
+
+    public ResponseCache(MeterRegistry meterRegistry,
+                         @Value("${discovery.response-cache.max-bytes:33554432}") long maxBytes,
+                         @Value("${discovery.response-cache.expire-after-access-ms:600000}") long expireAfterAccessMs) {
+        this.responses = Caffeine.newBuilder()
+            .maximumWeight(maxBytes)
+            .weigher((String key, CachedResponse response) ->
+                ENTRY_OVERHEAD_BYTES + 2 * key.length() + response.getBody().length)
+            .expireAfterAccess(Duration.ofMillis(expireAfterAccessMs))
+            .recordStats()
+            .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, responses, "discovery.responses");
+        this.notModified = Counter.builder("discovery.responses.not.modified")
+            .description("Conditional requests answered with 304 Not Modified")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Strong ETag, quoted, for a response computed from the given versions.
+     */
+    public String etag(long... versions) {
+        long hash = epoch;
+        for (long version : versions) {
+            hash = Fingerprints.add(hash, version);
+        }
+        return '"' + Long.toHexString(hash) + '"';
+    }
+
+    /**
+     * @return the cached body for this key if it was cached under the same ETag, otherwise null
+     */
+    public byte[] get(String key, String etag) {
+        CachedResponse cached = responses.getIfPresent(key);
+        return cached != null && cached.getEtag().equals(etag) ? cached.getBody() : null;
+    }
+
+    public void put(String key, String etag, byte[] body) {
+        responses.put(key, new CachedResponse(etag, body));
+    }
+
+    /**
+     * @return true if the client's copy is current, i.e. the request can be answered with a 304
+     */
+    public boolean notModified(String ifNoneMatch, String etag) {
+        if (!matches(ifNoneMatch, etag)) {
+            return false;
+        }
+        notModified.increment();
+        return true;
+    }
+
+    /**
+     * @return true if an {@code If-None-Match} header value lists this ETag or is {@code *}
+     */
+    static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null || etag == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            // If-None-Match uses weak comparison
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Getter
+    private static final class CachedResponse {
+        private final String etag;
+        private final byte[] body;
+
+        CachedResponse(String etag, byte[] body) {
+            this.etag = etag;
+            this.body = body;
+        }
+    }
+}
@@ -0,0 +1,282 @@
+package com.mappalette.userdiscovery.cache;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.mappalette.userdiscovery.client.UpstreamCalls;
+import com.mappalette.userdiscovery.client.UserServiceClient;
+import com.mappalette.userdiscovery.config.DiscoveryExecutors;
+import com.mappalette.userdiscovery.directory.DirectoryUser;
+import com.mappalette.userdiscovery.directory.UserIdInterner;
+import com.mappalette.userdiscovery.dto.UserDto;
+import feign.FeignException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded, TTL-based cache of single users read from user-service by ID, for the users a
+ * request needs that the directory snapshot does not hold, such as followed users past its cap.
+ *
+ * Users are looked up in batches. IDs already cached, or being loaded for another request,
+ * share that entry; only the rest are fetched, a few lanes at a time, so one batch never has
+ * more than {@code parallelism} user-service calls in flight. Users user-service answers 404
+ * for are cached as absent, so deleted accounts in following lists are not asked for again
+ * until the TTL passes. Failed loads are not cached.
+ *
+ * A 429 from user-service pauses every lookup for its Retry-After (capped, with a default when
+ * it is missing). Lookups wait the pause out if it ends before their request's deadline, so a
+ * rate-limited lookup is retried once; otherwise they fail without calling user-service.
+ *
+ * user-service's POST /api/users/batch would take one call per batch, but it leaves out the
+ * privacy flag and follower counts the directory entries carry, so users are read one by one.
+ */
+@Component
+@Slf4j
+public class UserLookupCache {
+
+    private final UserServiceClient userServiceClient;
+    private final UpstreamCalls upstreamCalls;
+    private final UserIdInterner userIdInterner;
+    private final AsyncCache<Integer, Optional<DirectoryUser>> cache;
+    private final ExecutorService lookupExecutor;
+    private final int parallelism;
+    private final long timeoutMs;
+    private final long defaultBackoffMs;
+    private final long maxBackoffMs;
+    // System.nanoTime() until which user-service asked not to be called
+    private final AtomicLong backoffUntil = new AtomicLong(System.nanoTime());
+
+    private final Counter found;
+    private final Counter notFound;
+    private final Counter failed;
+    private final Counter rateLimited;
+
+    public UserLookupCache(UserServiceClient userServiceClient,
+                           UpstreamCalls upstreamCalls,
+                           UserIdInterner userIdInterner,
+                           MeterRegistry meterRegistry,
+                           DiscoveryExecutors discoveryExecutors,
+                           @Value("${discovery.user-lookup.max-size:10000}") long maxSize,
+                           @Value("${discovery.user-lookup.ttl-ms:300000}") long ttlMs,
+                           @Value("${discovery.user-lookup.parallelism:8}") int parallelism,
+                           @Value("${discovery.user-lookup.timeout-ms:1000}") long timeoutMs,
+                           @Value("${discovery.user-lookup.rate-limit.default-backoff-ms:1000}") long defaultBackoffMs,
+                           @Value("${discovery.user-lookup.rate-limit.max-backoff-ms:30000}") long maxBackoffMs) {
+        this.userServiceClient = userServiceClient;
+        this.upstreamCalls = upstreamCalls;
+        this.userIdInterner = userIdInterner;
+        this.parallelism = Math.max(1, parallelism);
+        this.timeoutMs = timeoutMs;
+        this.maxBackoffMs = Math.max(0, maxBackoffMs);
+        this.defaultBackoffMs = Math.min(Math.max(0, defaultBackoffMs), this.maxBackoffMs);
+        this.lookupExecutor = discoveryExecutors.newExecutor("user-lookup");
+        this.cache = Caffeine.newBuilder()
+            .maximumSize(maxSize)
+            .expireAfterWrite(Duration.ofMillis(ttlMs))
+            .recordStats()
+            .buildAsync();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache.synchronous(), "discovery.user-lookup");
+
+        this.found = Counter.builder("discovery.user-lookup.fetched")
+            .tag("result", "found")
+            .description("Users read from user-service by ID")
+            .register(meterRegistry);
+        this.notFound = Counter.builder("discovery.user-lookup.fetched")
+            .tag("result", "not_found")
+            .description("Users read from user-service by ID")
+            .register(meterRegistry);
+        this.failed = Counter.builder("discovery.user-lookup.fetched")
+            .tag("result", "failed")
+            .description("Users read from user-service by ID")
+            .register(meterRegistry);
+        this.rateLimited = Counter.builder("discovery.user-lookup.rate-limited")
+            .description("By-ID lookups user-service answered with 429 Too Many Requests")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Looks the given users up, waiting at most the lookup timeout. Loads still running then
+     * keep going and are cached for the next request.
+     *
+     * @param internedIds users to look up, as interned ids from {@link UserIdInterner}
+     * @return by interned id, the user, or an empty Optional if user-service does not know them;
+     *         users whose lookup failed or did not finish in time are left out
+     */
+    public Map<Integer, Optional<DirectoryUser>> getAll(int[] internedIds) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+
+        // Step 1: Join cached and in-flight entries; claim the rest for this batch
+        Map<Integer, CompletableFuture<Optional<DirectoryUser>>> futures = new LinkedHashMap<>();
+        List<Integer> claimedIds = new ArrayList<>();
+        List<CompletableFuture<Optional<DirectoryUser>>> claimed = new ArrayList<>();
+        for (int internedId : internedIds) {
+            CompletableFuture<Optional<DirectoryUser>> pending = new CompletableFuture<>();
+            CompletableFuture<Optional<DirectoryUser>> future = cache.get(internedId, (key, executor) -> pending);
+            futures.put(internedId, future);
+            if (future == pending) {
+                claimedIds.add(internedId);
+                claimed.add(pending);
+            }
+        }
+
+        // Step 2: Fetch the claimed users, a few lanes at a time
+        int lanes = Math.min(parallelism, claimed.size());
+        for (int lane = 0; lane < lanes; lane++) {
+            int first = lane;
+            try {
+                lookupExecutor.execute(() -> {
+                    for (int i = first; i < claimed.size(); i += lanes) {
+                        try {
+                            claimed.get(i).complete(load(claimedIds.get(i), deadline));
+                        } catch (Exception e) {
+                            if (e instanceof InterruptedException) {
+                                Thread.currentThread().interrupt();
+                            }
+                            // Completing exceptionally also evicts the entry so the next call retries
+                            failed.increment();
+                            claimed.get(i).completeExceptionally(e);
+                        }
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                for (int i = first; i < claimed.size(); i += lanes) {
+                    failed.increment();
+                    claimed.get(i).completeExceptionally(e);
+                }
+            }
+        }
+
+        // Step 3: Wait for the whole batch until the deadline, then keep whatever completed
+        await(CompletableFuture.allOf(futures.values().toArray(new CompletableFuture<?>[0])), deadline);
+        Map<Integer, Optional<DirectoryUser>> users = new LinkedHashMap<>();
+        futures.forEach((internedId, future) -> {
+            if (future.isDone() && !future.isCompletedExceptionally()) {
+                users.put(internedId, future.join());
+            }
+        });
+        return users;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        lookupExecutor.shutdownNow();
+    }
+
+    /**
+     * Loads the user once any user-service backoff is over, retrying once after a 429.
+     *
+     * @throws IllegalStateException if the backoff outlasts the deadline
+     */
+    private Optional<DirectoryUser> load(int internedId, long deadlineNanos) throws InterruptedException {
+        for (int attempt = 1; ; attempt++) {
+            awaitBackoff(deadlineNanos);
+            try {
+                return load(internedId);
+            } catch (FeignException.TooManyRequests e) {
+                rateLimited.increment();
+                backOff(retryAfterMs(e));
+                if (attempt == 2) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private void awaitBackoff(long deadlineNanos) throws InterruptedException {
+        long waitNanos = backoffUntil.get() - System.nanoTime();
+        if (waitNanos <= 0) {
+            return;
+        }
+        if (waitNanos > deadlineNanos - System.nanoTime()) {
+            throw new IllegalStateException("user-service is rate limiting lookups for another "
+                + TimeUnit.NANOSECONDS.toMillis(waitNanos) + " ms");
+        }
+        TimeUnit.NANOSECONDS.sleep(waitNanos);
+    }
+
+    /**
+     * Pauses lookups for at least the given time; a longer pause already running is kept
+     */
+    private void backOff(long delayMs) {
+        long until = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMs);
+        backoffUntil.accumulateAndGet(until, (current, next) -> next - current > 0 ? next : current);
+    }
+
+    /**
+     * @return the Retry-After of the 429 in milliseconds, as delay-seconds or an HTTP date, capped
+     *         at the max backoff; the default backoff if it is missing or unreadable
+     */
+    long retryAfterMs(FeignException e) {
+        Collection<String> values = e.responseHeaders().get(HttpHeaders.RETRY_AFTER);
+        if (values == null || values.isEmpty()) {
+            return defaultBackoffMs;
+        }
+        String value = values.iterator().next().trim();
+        long delayMs;
+        try {
+            delayMs = TimeUnit.SECONDS.toMillis(Long.parseLong(value));
+        } catch (NumberFormatException notSeconds) {
+            try {
+                delayMs = Duration.between(ZonedDateTime.now(),
+                    ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME)).toMillis();
+            } catch (DateTimeParseException notDate) {
+                return defaultBackoffMs;
+            }
+        }
+        return Math.min(Math.max(0, delayMs), maxBackoffMs);
+    }
+
+    private Optional<DirectoryUser> load(int internedId) {
+        String userId = userIdInterner.userId(internedId);
+        if (userId == null) {
+            return Optional.empty();
+        }
+        try {
+            UserDto user = upstreamCalls.userService(() -> userServiceClient.getUserById(userId));
+            DirectoryUser loaded = user != null ? DirectoryUser.from(user, userIdInterner) : null;
+            (loaded != null ? found : notFound).increment();
+            return Optional.ofNullable(loaded);
+        } catch (FeignException.NotFound e) {
+            notFound.increment();
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Waits for the future until the deadline; returns early if it fails or the deadline passes.
+     */
+    private static void await(CompletableFuture<?> future, long deadlineNanos) {
+        try {
+            future.get(Math.max(0, deadlineNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            log.debug("User lookups still running after the lookup timeout, continuing without them");
+        } catch (ExecutionException e) {
+            log.warn("Could not look up every user by ID: {}", e.getCause().toString());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
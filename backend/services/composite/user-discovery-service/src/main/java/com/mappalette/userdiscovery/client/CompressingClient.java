@@ -0,0 +1,113 @@
+package com.mappalette.userdiscovery.client;
+
+import feign.Client;
+import feign.Request;
+import feign.Response;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Feign client decorator that asks upstreams for gzip/deflate responses and gzips request
+ * bodies of at least a minimum size.
+ *
+ * Transports differ in what they already do: Apache HttpClient 5 and HttpURLConnection
+ * inflate compressed responses themselves, and HttpURLConnection gzips a request body as
+ * soon as it carries {@code Content-Encoding: gzip}. This decorator only does the part the
+ * wrapped transport does not, so nothing is compressed or inflated twice.
+ */
+public class CompressingClient implements Client {
+
+    private static final String ACCEPT_ENCODING = "Accept-Encoding";
+    private static final String CONTENT_ENCODING = "Content-Encoding";
+    private static final String CONTENT_LENGTH = "Content-Length";
+    private static final String ACCEPTED_ENCODINGS = "gzip, deflate";
+
+    private final Client delegate;
+    private final boolean transportDecodesResponses;
+    private final boolean transportEncodesRequests;
+    private final int requestMinBytes;
+
+    public CompressingClient(Client delegate, boolean transportDecodesResponses, boolean transportEncodesRequests,
+                             int requestMinBytes) {
+        this.delegate = delegate;
+        this.transportDecodesResponses = transportDecodesResponses;
+        this.transportEncodesRequests = transportEncodesRequests;
+        this.requestMinBytes = requestMinBytes;
+    }
+
+    @Override
+    public Response execute(Request request, Request.Options options) throws IOException {
+        Response response = delegate.execute(encode(request), options);
+        return transportDecodesResponses ? response : decode(response);
+    }
+
+    private Request encode(Request request) {
+        Map<String, Collection<String>> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        headers.putAll(request.headers());
+        headers.putIfAbsent(ACCEPT_ENCODING, List.of(ACCEPTED_ENCODINGS));
+
+        byte[] body = request.body();
+        boolean compressBody = body != null && body.length >= requestMinBytes && !headers.containsKey(CONTENT_ENCODING);
+        if (!compressBody) {
+            return Request.create(request.httpMethod(), request.url(), headers, body, request.charset(),
+                request.requestTemplate());
+        }
+
+        headers.put(CONTENT_ENCODING, List.of("gzip"));
+        if (transportEncodesRequests) {
+            return Request.create(request.httpMethod(), request.url(), headers, body, request.charset(),
+                request.requestTemplate());
+        }
+        byte[] gzipped = gzip(body);
+        headers.put(CONTENT_LENGTH, List.of(String.valueOf(gzipped.length)));
+        // No charset: the body is binary now, so Feign's logger will not try to print it as text
+        return Request.create(request.httpMethod(), request.url(), headers, gzipped, null, request.requestTemplate());
+    }
+
+    private Response decode(Response response) throws IOException {
+        Collection<String> encodings = response.headers().get(CONTENT_ENCODING);
+        if (response.body() == null || encodings == null || encodings.isEmpty()) {
+            return response;
+        }
+
+        String encoding = encodings.iterator().next().trim().toLowerCase();
+        InputStream body;
+        if (encoding.equals("gzip") || encoding.equals("x-gzip")) {
+            body = new GZIPInputStream(response.body().asInputStream());
+        } else if (encoding.equals("deflate")) {
+            body = new InflaterInputStream(response.body().asInputStream());
+        } else {
+            return response;
+        }
+
+        // The length and encoding describe the compressed bytes, not the body handed to the decoder
+        Map<String, Collection<String>> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        headers.putAll(response.headers());
+        headers.remove(CONTENT_ENCODING);
+        headers.remove(CONTENT_LENGTH);
+        return response.toBuilder()
+            .headers(headers)
+            .body(body, null)
+            .build();
+    }
+
+    private static byte[] gzip(byte[] body) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(body.length / 4);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(buffer)) {
+            gzip.write(body);
+        } catch (IOException e) {
+            // Writing to a byte array cannot fail
+            throw new IllegalStateException(e);
+        }
+        return buffer.toByteArray();
+    }
+}
@@ -4,6 +4,7 @@ import com.mappalette.userdiscovery.dto.FollowingResponse;
 import org.springframework.cloud.openfeign.FeignClient;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestParam;
 
 @FeignClient(name = "follow-service", url = "${follow.service.url}")
 public interface FollowServiceClient {
@@ -11,6 +12,16 @@ public interface FollowServiceClient {
     @GetMapping("/api/follow/following/{userId}")
     FollowingResponse getFollowing(@PathVariable("userId") String userId);
     
+    @GetMapping("/api/follow/following/{userId}")
+    FollowingResponse getFollowing(@PathVariable("userId") String userId,
+                                   @RequestParam("page") int page,
+                                   @RequestParam("limit") int limit);
+    
     @GetMapping("/api/follow/followers/{userId}")
     FollowingResponse getFollowers(@PathVariable("userId") String userId);
+    
+    @GetMapping("/api/follow/followers/{userId}")
+    FollowingResponse getFollowers(@PathVariable("userId") String userId,
+                                   @RequestParam("page") int page,
+                                   @RequestParam("limit") int limit);
 }
\ No newline at end of file
@@ -0,0 +1,23 @@
+package com.mappalette.userdiscovery.client;
+
+import com.mappalette.userdiscovery.dto.FollowingResponse;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.service.annotation.GetExchange;
+import reactor.core.publisher.Mono;
+
+/**
+ * Non-blocking counterpart of {@link FollowServiceClient}, backed by WebClient; only used with the reactive profile.
+ */
+public interface ReactiveFollowServiceClient {
+    
+    @GetExchange("/api/follow/following/{userId}")
+    Mono<FollowingResponse> getFollowing(@PathVariable("userId") String userId,
+                                         @RequestParam("page") int page,
+                                         @RequestParam("limit") int limit);
+    
+    @GetExchange("/api/follow/followers/{userId}")
+    Mono<FollowingResponse> getFollowers(@PathVariable("userId") String userId,
+                                         @RequestParam("page") int page,
+                                         @RequestParam("limit") int limit);
+}
@@ -0,0 +1,23 @@
+package com.mappalette.userdiscovery.client;
+
+import com.mappalette.userdiscovery.dto.PaginatedUsersResponse;
+import com.mappalette.userdiscovery.dto.UserDto;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.service.annotation.GetExchange;
+import reactor.core.publisher.Mono;
+
+/**
+ * Non-blocking counterpart of {@link UserServiceClient}, backed by WebClient; only used with the reactive profile.
+ */
+public interface ReactiveUserServiceClient {
+    
+    @GetExchange("/api/users/all")
+    Mono<PaginatedUsersResponse> getAllUsers(@RequestParam(value = "limit", defaultValue = "100") int limit);
+    
+    @GetExchange("/api/users/all")
+    Mono<PaginatedUsersResponse> getAllUsersPage(@RequestParam("page") int page, @RequestParam("limit") int limit);
+    
+    @GetExchange("/api/users/{userId}")
+    Mono<UserDto> getUserById(@PathVariable("userId") String userId);
+}
@@ -0,0 +1,222 @@
+package com.mappalette.userdiscovery.client;
+
+import com.mappalette.userdiscovery.config.DiscoveryExecutors;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.reactor.bulkhead.operator.BulkheadOperator;
+import io.github.resilience4j.reactor.circuitbreaker.operator.CircuitBreakerOperator;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Runs every user-service and follow-service call through that upstream's circuit breaker
+ * and bulkhead (configured under {@code resilience4j.*}), so a slow upstream fails fast
+ * instead of tying up request threads.
+ *
+ * With hedging enabled, a call still running after the upstream's recent p95 latency gets
+ * a second identical attempt and the first successful answer wins. Only idempotent reads
+ * go through here, so a duplicate attempt is harmless.
+ *
+ * Reactive calls (the WebClient clients of the reactive profile) go through the same
+ * breakers and bulkheads without blocking; they are not hedged.
+ */
+@Component
+@Slf4j
+public class UpstreamCalls {
+
+    public static final String USER_SERVICE = "user-service";
+    public static final String FOLLOW_SERVICE = "follow-service";
+
+    private final Upstream userService;
+    private final Upstream followService;
+    private final boolean hedgingEnabled;
+    private final long hedgingMinDelayMs;
+    private final long hedgingMinSamples;
+
+    private final ExecutorService attemptExecutor;
+    private final ScheduledExecutorService hedgeScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "upstream-hedge");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public UpstreamCalls(CircuitBreakerRegistry circuitBreakerRegistry,
+                         BulkheadRegistry bulkheadRegistry,
+                         MeterRegistry meterRegistry,
+                         DiscoveryExecutors discoveryExecutors,
+                         @Value("${discovery.upstream.hedging.enabled:false}") boolean hedgingEnabled,
+                         @Value("${discovery.upstream.hedging.min-delay-ms:50}") long hedgingMinDelayMs,
+                         @Value("${discovery.upstream.hedging.min-samples:50}") long hedgingMinSamples) {
+        this.userService = new Upstream(USER_SERVICE, circuitBreakerRegistry, bulkheadRegistry, meterRegistry);
+        this.followService = new Upstream(FOLLOW_SERVICE, circuitBreakerRegistry, bulkheadRegistry, meterRegistry);
+        this.hedgingEnabled = hedgingEnabled;
+        this.hedgingMinDelayMs = hedgingMinDelayMs;
+        this.hedgingMinSamples = hedgingMinSamples;
+        // An attempt waiting in a queue would only add to the latency hedging is meant to cut
+        this.attemptExecutor = discoveryExecutors.newExecutor("upstream-attempt",
+            discoveryExecutors.getPoolSize(), 0);
+    }
+
+    public <T> T userService(Supplier<T> call) {
+        return execute(userService, call);
+    }
+
+    public <T> T followService(Supplier<T> call) {
+        return execute(followService, call);
+    }
+
+    public <T> Mono<T> userService(Mono<T> call) {
+        return userService.guard(call);
+    }
+
+    public <T> Mono<T> followService(Mono<T> call) {
+        return followService.guard(call);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        hedgeScheduler.shutdownNow();
+        attemptExecutor.shutdownNow();
+    }
+
+    private <T> T execute(Upstream upstream, Supplier<T> call) {
+        Supplier<T> attempt = upstream.guard(call);
+        long hedgeDelayMs = hedgeDelayMs(upstream);
+        if (hedgeDelayMs < 0) {
+            return attempt.get();
+        }
+
+        CompletableFuture<T> result = new CompletableFuture<>();
+        AtomicInteger outstanding = new AtomicInteger(1);
+        CompletableFuture<T> first = launch(attempt, result, outstanding);
+        if (first == null) {
+            // No room to hedge; make the call unhedged on this thread
+            return attempt.get();
+        }
+        ScheduledFuture<?> hedge = hedgeScheduler.schedule(() -> {
+            if (!result.isDone()) {
+                outstanding.incrementAndGet();
+                if (launch(attempt, result, outstanding) != null) {
+                    upstream.hedges.increment();
+                } else if (outstanding.decrementAndGet() == 0) {
+                    // The first attempt failed while the hedge was being rejected
+                    first.whenComplete((value, error) -> result.completeExceptionally(error));
+                }
+            }
+        }, hedgeDelayMs, TimeUnit.MILLISECONDS);
+        result.whenComplete((value, error) -> hedge.cancel(false));
+
+        try {
+            return result.join();
+        } catch (CompletionException e) {
+            // Surface the same exception a direct call would have thrown
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * @return the attempt, or null if the attempt executor is saturated and it was not started
+     */
+    private <T> CompletableFuture<T> launch(Supplier<T> attempt, CompletableFuture<T> result,
+                                            AtomicInteger outstanding) {
+        CompletableFuture<T> future;
+        try {
+            future = CompletableFuture.supplyAsync(attempt, attemptExecutor);
+        } catch (RejectedExecutionException e) {
+            return null;
+        }
+        future.whenComplete((value, error) -> {
+            if (error == null) {
+                result.complete(value);
+            } else if (outstanding.decrementAndGet() == 0) {
+                // Every attempt failed; report the last failure
+                result.completeExceptionally(error);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * @return the hedge delay for this upstream, or -1 when hedging is off or there is no p95 to go by yet
+     */
+    private long hedgeDelayMs(Upstream upstream) {
+        if (!hedgingEnabled || upstream.latency.count() < hedgingMinSamples) {
+            return -1;
+        }
+        ValueAtPercentile[] percentiles = upstream.latency.takeSnapshot().percentileValues();
+        long p95 = percentiles.length > 0 ? (long) percentiles[0].value(TimeUnit.MILLISECONDS) : 0;
+        return Math.max(hedgingMinDelayMs, p95);
+    }
+
+    private static final class Upstream {
+
+        private static final Duration PERMIT_RETRY_DELAY = Duration.ofMillis(10);
+
+        private final CircuitBreaker circuitBreaker;
+        private final Bulkhead bulkhead;
+        private final Timer latency;
+        private final Counter hedges;
+
+        Upstream(String name, CircuitBreakerRegistry circuitBreakerRegistry, BulkheadRegistry bulkheadRegistry,
+                 MeterRegistry meterRegistry) {
+            this.circuitBreaker = circuitBreakerRegistry.circuitBreaker(name);
+            this.bulkhead = bulkheadRegistry.bulkhead(name);
+            this.latency = Timer.builder("discovery.upstream.latency")
+                .tag("upstream", name)
+                .description("Latency of individual calls to an upstream service")
+                .publishPercentiles(0.95)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+            this.hedges = Counter.builder("discovery.upstream.hedges")
+                .tag("upstream", name)
+                .description("Second attempts started because a call ran past the upstream's p95 latency")
+                .register(meterRegistry);
+        }
+
+        <T> Supplier<T> guard(Supplier<T> call) {
+            Supplier<T> timed = () -> latency.record(call);
+            return CircuitBreaker.decorateSupplier(circuitBreaker, Bulkhead.decorateSupplier(bulkhead, timed));
+        }
+
+        <T> Mono<T> guard(Mono<T> call) {
+            Mono<T> timed = Mono.defer(() -> {
+                Timer.Sample sample = Timer.start();
+                return call.doFinally(signal -> sample.stop(latency));
+            });
+            // The reactive bulkhead never waits, so ask again for up to max-wait-duration like a blocked caller
+            long maxWaitMs = bulkhead.getBulkheadConfig().getMaxWaitDuration().toMillis();
+            long permitAttempts = maxWaitMs / PERMIT_RETRY_DELAY.toMillis();
+            return timed.transformDeferred(BulkheadOperator.of(bulkhead))
+                .retryWhen(Retry.fixedDelay(permitAttempts, PERMIT_RETRY_DELAY)
+                    .filter(BulkheadFullException.class::isInstance)
+                    .onRetryExhaustedThrow((spec, signal) -> signal.failure()))
+                .transformDeferred(CircuitBreakerOperator.of(circuitBreaker));
+        }
+    }
+}
@@ -2,6 +2,7 @@ package com.mappalette.userdiscovery.client;
 
 import com.mappalette.userdiscovery.dto.UserDto;
 import com.mappalette.userdiscovery.dto.PaginatedUsersResponse;
+import feign.Response;
 import org.springframework.cloud.openfeign.FeignClient;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
@@ -14,6 +15,12 @@ public interface UserServiceClient {
     @GetMapping("/api/users/all")
     PaginatedUsersResponse getAllUsers(@RequestParam(value = "limit", defaultValue = "100") int limit);
     
+    /**
+     * One page of the directory as the raw response, read with UserPageReader; the caller closes it.
+     */
+    @GetMapping("/api/users/all")
+    Response getAllUsersPage(@RequestParam("page") int page, @RequestParam("limit") int limit);
+    
     @GetMapping("/api/users/{userId}")
     UserDto getUserById(@PathVariable("userId") String userId);
 }
\ No newline at end of file
@@ -0,0 +1,75 @@
+package com.mappalette.userdiscovery.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates the executors that background work and upstream lookups run on, following
+ * discovery.virtual-threads.enabled: a virtual thread per task when it is on, otherwise a
+ * bounded pool of platform threads that rejects work once its queue is full.
+ *
+ * Every caller gets its own executor, so work that waits on another executor's tasks
+ * never waits on its own pool. Callers treat a rejected task like a failed lookup.
+ */
+@Component
+public class DiscoveryExecutors {
+
+    private final boolean virtualThreads;
+    private final int poolSize;
+    private final int queueCapacity;
+
+    public DiscoveryExecutors(@Value("${discovery.virtual-threads.enabled:false}") boolean virtualThreads,
+                              @Value("${discovery.executors.pool-size:32}") int poolSize,
+                              @Value("${discovery.executors.queue-capacity:256}") int queueCapacity) {
+        this.virtualThreads = virtualThreads;
+        this.poolSize = Math.max(1, poolSize);
+        this.queueCapacity = Math.max(0, queueCapacity);
+    }
+
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    public int getPoolSize() {
+        return poolSize;
+    }
+
+    /**
+     * An executor sized by discovery.executors.*; the caller shuts it down
+     */
+    public ExecutorService newExecutor(String name) {
+        return newExecutor(name, poolSize, queueCapacity);
+    }
+
+    /**
+     * An executor whose platform pool has the given size; the caller shuts it down
+     *
+     * @param name thread name prefix
+     * @param queueCapacity tasks that may wait for a thread; with 0 a task is rejected unless a thread is free
+     */
+    public ExecutorService newExecutor(String name, int poolSize, int queueCapacity) {
+        if (virtualThreads) {
+            return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(name + "-", 1).factory());
+        }
+        AtomicInteger threads = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(Math.max(1, poolSize), Math.max(1, poolSize),
+            60, TimeUnit.SECONDS,
+            queueCapacity > 0 ? new ArrayBlockingQueue<>(queueCapacity) : new SynchronousQueue<>(),
+            runnable -> {
+                Thread thread = new Thread(runnable, name + "-" + threads.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            },
+            new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+}
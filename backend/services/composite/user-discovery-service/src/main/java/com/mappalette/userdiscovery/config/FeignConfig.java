@@ -3,6 +3,7 @@ package com.mappalette.userdiscovery.config;
 import feign.Logger;
 import feign.Request;
 import feign.Retryer;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
@@ -12,21 +13,25 @@ import java.util.concurrent.TimeUnit;
 public class FeignConfig {
     
     @Bean
-    public Logger.Level feignLoggerLevel() {
-        return Logger.Level.FULL;
+    public Logger.Level feignLoggerLevel(@Value("${discovery.feign.log-level:NONE}") Logger.Level level) {
+        // FULL logs every header and body of every upstream call; only turn it on while debugging
+        return level;
     }
     
     @Bean
-    public Request.Options requestOptions() {
+    public Request.Options requestOptions(
+            @Value("${discovery.upstream.connect-timeout-ms:1000}") long connectTimeoutMs,
+            @Value("${discovery.upstream.read-timeout-ms:3000}") long readTimeoutMs) {
         return new Request.Options(
-            5000, TimeUnit.MILLISECONDS,
-            10000, TimeUnit.MILLISECONDS,
+            connectTimeoutMs, TimeUnit.MILLISECONDS,
+            readTimeoutMs, TimeUnit.MILLISECONDS,
             true
         );
     }
     
     @Bean
     public Retryer retryer() {
-        return new Retryer.Default(100, 1000, 3);
+        // No blind retries: a struggling upstream is handled by UpstreamCalls' circuit breaker and hedging
+        return Retryer.NEVER_RETRY;
     }
 }
\ No newline at end of file
@@ -0,0 +1,139 @@
+package com.mappalette.userdiscovery.config;
+
+import com.mappalette.userdiscovery.client.CompressingClient;
+import feign.Client;
+import feign.hc5.ApacheHttp5Client;
+import feign.http2client.Http2Client;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClientBuilder;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * HTTP transport behind the Feign clients, chosen with {@code discovery.feign.transport}:
+ * <ul>
+ *   <li>{@code hc5} (default): Apache HttpClient 5 with a bounded keep-alive connection pool</li>
+ *   <li>{@code http2}: the JDK HttpClient, speaking HTTP/2 where the upstream offers it</li>
+ *   <li>{@code jdk}: Feign's HttpURLConnection client, kept as a baseline for comparisons</li>
+ * </ul>
+ * With {@code discovery.feign.compression.enabled} each transport asks upstreams for gzip/deflate
+ * responses and gzips larger request bodies.
+ */
+@Configuration
+@Slf4j
+public class FeignTransportConfig {
+
+    private final boolean compressionEnabled;
+    private final int requestMinBytes;
+    private final long connectTimeoutMs;
+
+    public FeignTransportConfig(@Value("${discovery.feign.compression.enabled:true}") boolean compressionEnabled,
+                                @Value("${discovery.feign.compression.request-min-bytes:2048}") int requestMinBytes,
+                                @Value("${discovery.upstream.connect-timeout-ms:1000}") long connectTimeoutMs) {
+        this.compressionEnabled = compressionEnabled;
+        this.requestMinBytes = requestMinBytes;
+        this.connectTimeoutMs = connectTimeoutMs;
+    }
+
+    /**
+     * Pooled Apache HttpClient 5. Idle connections are closed before the Node upstreams'
+     * keep-alive timeout (5s by default) closes them from the other end, so a request never
+     * picks up a connection the server is about to drop.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "discovery.feign.transport", havingValue = "hc5", matchIfMissing = true)
+    public CloseableHttpClient upstreamHttpClient(
+            @Value("${discovery.feign.pool.max-connections:200}") int maxConnections,
+            @Value("${discovery.feign.pool.max-connections-per-route:50}") int maxConnectionsPerRoute,
+            @Value("${discovery.feign.pool.idle-timeout-ms:4000}") long idleTimeoutMs,
+            @Value("${discovery.feign.pool.time-to-live-ms:300000}") long timeToLiveMs,
+            @Value("${discovery.feign.pool.validate-after-inactivity-ms:1000}") long validateAfterInactivityMs) {
+        ConnectionConfig connectionConfig = ConnectionConfig.custom()
+            .setConnectTimeout(Timeout.ofMilliseconds(connectTimeoutMs))
+            .setTimeToLive(TimeValue.ofMilliseconds(timeToLiveMs))
+            .setValidateAfterInactivity(TimeValue.ofMilliseconds(validateAfterInactivityMs))
+            .build();
+        HttpClientBuilder builder = HttpClients.custom()
+            .setConnectionManager(PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(maxConnections)
+                .setMaxConnPerRoute(maxConnectionsPerRoute)
+                .setDefaultConnectionConfig(connectionConfig)
+                .build())
+            .evictIdleConnections(TimeValue.ofMilliseconds(idleTimeoutMs))
+            .evictExpiredConnections()
+            // No blind retries, same as Feign's Retryer (see FeignConfig)
+            .disableAutomaticRetries();
+        if (!compressionEnabled) {
+            builder.disableContentCompression();
+        }
+        log.info("Upstream transport: Apache HttpClient 5 (max {} connections, {} per route)",
+            maxConnections, maxConnectionsPerRoute);
+        return builder.build();
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "discovery.feign.transport", havingValue = "hc5", matchIfMissing = true)
+    public Client hc5FeignClient(CloseableHttpClient upstreamHttpClient) {
+        // HttpClient 5 negotiates and inflates compressed responses itself
+        return withCompression(new ApacheHttp5Client(upstreamHttpClient), true, false);
+    }
+
+    /**
+     * JDK HttpClient preferring HTTP/2. Against a plain-HTTP upstream that does not upgrade
+     * (the Node services) it stays on pooled HTTP/1.1 keep-alive connections.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "discovery.feign.transport", havingValue = "http2")
+    public Client http2FeignClient(
+            @Value("${discovery.feign.pool.max-connections:200}") int maxConnections,
+            @Value("${discovery.feign.pool.idle-timeout-ms:4000}") long idleTimeoutMs) {
+        // The JDK client reads its pool settings once, when the first HttpClient is created;
+        // values given on the command line win
+        setIfAbsent("jdk.httpclient.connectionPoolSize", String.valueOf(maxConnections));
+        setIfAbsent("jdk.httpclient.keepalive.timeout",
+            String.valueOf(Math.max(1, TimeUnit.MILLISECONDS.toSeconds(idleTimeoutMs))));
+        // Redirect policy and connect timeout must match Request.Options (see FeignConfig);
+        // otherwise Http2Client builds a new HttpClient, with an empty pool, for every call
+        HttpClient httpClient = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_2)
+            .followRedirects(HttpClient.Redirect.ALWAYS)
+            .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+            .build();
+        log.info("Upstream transport: JDK HttpClient (HTTP/2, max {} connections)", maxConnections);
+        return withCompression(new Http2Client(httpClient), false, false);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "discovery.feign.transport", havingValue = "jdk")
+    public Client jdkFeignClient() {
+        log.info("Upstream transport: HttpURLConnection");
+        // HttpURLConnection inflates responses and gzips bodies marked Content-Encoding: gzip itself
+        return withCompression(new Client.Default(null, null), true, true);
+    }
+
+    private Client withCompression(Client transport, boolean transportDecodesResponses,
+                                   boolean transportEncodesRequests) {
+        if (!compressionEnabled) {
+            return transport;
+        }
+        return new CompressingClient(transport, transportDecodesResponses, transportEncodesRequests, requestMinBytes);
+    }
+
+    private static void setIfAbsent(String property, String value) {
+        if (System.getProperty(property) == null) {
+            System.setProperty(property, value);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.mappalette.userdiscovery.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mappalette.userdiscovery.metrics.DiscoveryMetrics;
+import io.micrometer.core.instrument.Timer;
+import org.reactivestreams.Publisher;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.codec.ServerCodecConfigurer;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.util.MimeType;
+import org.springframework.web.reactive.config.WebFluxConfigurer;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.Map;
+
+/**
+ * Replaces Boot's JSON converter with one that records response serialization as the
+ * {@code serialize} stage of the discovery endpoint the request was marked with.
+ *
+ * With the reactive profile the server's JSON encoder does the same, reading the endpoint
+ * through the Reactor Context. Streamed responses are written as the client reads them and
+ * are not timed. WebClient keeps Boot's encoder, so upstream request bodies are never
+ * counted as serialization.
+ */
+@Configuration
+public class JsonMetricsConfig {
+    
+    @Bean
+    public MappingJackson2HttpMessageConverter mappingJackson2HttpMessageConverter(ObjectMapper objectMapper,
+                                                                                   DiscoveryMetrics discoveryMetrics) {
+        return new MappingJackson2HttpMessageConverter(objectMapper) {
+            @Override
+            protected void writeInternal(Object object, Type type, HttpOutputMessage outputMessage) throws IOException {
+                String endpoint = DiscoveryMetrics.requestEndpoint();
+                if (endpoint == null) {
+                    super.writeInternal(object, type, outputMessage);
+                    return;
+                }
+                Timer.Sample serialize = Timer.start();
+                try {
+                    super.writeInternal(object, type, outputMessage);
+                } finally {
+                    serialize.stop(discoveryMetrics.stage(endpoint, DiscoveryMetrics.STAGE_SERIALIZE));
+                }
+            }
+        };
+    }
+    
+    @Bean
+    @Profile("reactive")
+    public WebFluxConfigurer jsonMetricsCodecs(ObjectMapper objectMapper, DiscoveryMetrics discoveryMetrics) {
+        Jackson2JsonEncoder encoder = timedJsonEncoder(objectMapper, discoveryMetrics);
+        return new WebFluxConfigurer() {
+            @Override
+            public void configureHttpMessageCodecs(ServerCodecConfigurer configurer) {
+                configurer.defaultCodecs().jackson2JsonEncoder(encoder);
+            }
+        };
+    }
+    
+    static Jackson2JsonEncoder timedJsonEncoder(ObjectMapper objectMapper, DiscoveryMetrics discoveryMetrics) {
+        return new Jackson2JsonEncoder(objectMapper) {
+            @Override
+            public Flux<DataBuffer> encode(Publisher<?> inputStream, DataBufferFactory bufferFactory,
+                                           ResolvableType elementType, MimeType mimeType, Map<String, Object> hints) {
+                if (!(inputStream instanceof Mono)) {
+                    return super.encode(inputStream, bufferFactory, elementType, mimeType, hints);
+                }
+                return Flux.deferContextual(context -> {
+                    String endpoint = DiscoveryMetrics.requestEndpoint(context);
+                    if (endpoint == null) {
+                        return super.encode(inputStream, bufferFactory, elementType, mimeType, hints);
+                    }
+                    return Mono.from(inputStream).map(value -> {
+                        Timer.Sample serialize = Timer.start();
+                        try {
+                            return encodeValue(value, bufferFactory, elementType, mimeType, hints);
+                        } finally {
+                            serialize.stop(discoveryMetrics.stage(endpoint, DiscoveryMetrics.STAGE_SERIALIZE));
+                        }
+                    }).flux();
+                });
+            }
+        };
+    }
+}
@@ -0,0 +1,96 @@
+package com.mappalette.userdiscovery.config;
+
+import com.mappalette.userdiscovery.client.ReactiveFollowServiceClient;
+import com.mappalette.userdiscovery.client.ReactiveUserServiceClient;
+import io.netty.channel.ChannelOption;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.http.HttpMessageConverters;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.web.filter.reactive.ServerWebExchangeContextFilter;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.support.WebClientAdapter;
+import org.springframework.web.service.invoker.HttpServiceProxyFactory;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+
+/**
+ * Reactive stack, enabled with the {@code reactive} profile: the endpoints run on WebFlux
+ * over Netty and upstream calls go through WebClient instead of Feign.
+ *
+ * Tomcat stays on the classpath for the default servlet stack, so the Netty server factory
+ * is declared explicitly. The WebClient connection pool follows the {@code discovery.feign.pool}
+ * settings, so both stacks open the same number of connections to an upstream and drop idle
+ * ones before the Node upstreams do.
+ *
+ * The directory pager and the suggestion ranker still call upstreams through Feign, whose
+ * decoder needs the servlet stack's {@link HttpMessageConverters}; those are provided here.
+ *
+ * The exchange is put into the Reactor Context, so the log sample decision and the endpoint
+ * a request was marked with are found wherever its work and serialization run.
+ */
+@Configuration
+@Profile("reactive")
+public class ReactiveConfig {
+
+    @Bean
+    public NettyReactiveWebServerFactory nettyReactiveWebServerFactory() {
+        return new NettyReactiveWebServerFactory();
+    }
+
+    @Bean
+    public ServerWebExchangeContextFilter serverWebExchangeContextFilter() {
+        return new ServerWebExchangeContextFilter();
+    }
+
+    @Bean
+    public HttpMessageConverters feignHttpMessageConverters(ObjectProvider<HttpMessageConverter<?>> converters) {
+        return new HttpMessageConverters(converters.orderedStream().toList());
+    }
+
+    @Bean
+    public WebClient upstreamWebClient(
+            WebClient.Builder builder,
+            @Value("${discovery.feign.pool.max-connections:200}") int maxConnections,
+            @Value("${discovery.feign.pool.idle-timeout-ms:4000}") long idleTimeoutMs,
+            @Value("${discovery.feign.pool.time-to-live-ms:300000}") long timeToLiveMs,
+            @Value("${discovery.feign.compression.enabled:true}") boolean compressionEnabled,
+            @Value("${discovery.upstream.connect-timeout-ms:1000}") int connectTimeoutMs,
+            @Value("${discovery.upstream.read-timeout-ms:3000}") long readTimeoutMs) {
+        ConnectionProvider connectionProvider = ConnectionProvider.builder("upstream")
+            .maxConnections(maxConnections)
+            .maxIdleTime(Duration.ofMillis(idleTimeoutMs))
+            .maxLifeTime(Duration.ofMillis(timeToLiveMs))
+            .build();
+        HttpClient httpClient = HttpClient.create(connectionProvider)
+            .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, connectTimeoutMs)
+            .responseTimeout(Duration.ofMillis(readTimeoutMs))
+            .compress(compressionEnabled);
+        // Boot's builder carries the application's ObjectMapper, so DTOs decode as they do through Feign
+        return builder.clientConnector(new ReactorClientHttpConnector(httpClient)).build();
+    }
+
+    @Bean
+    public ReactiveUserServiceClient reactiveUserServiceClient(WebClient upstreamWebClient,
+                                                               @Value("${user.service.url}") String baseUrl) {
+        return client(upstreamWebClient, baseUrl, ReactiveUserServiceClient.class);
+    }
+
+    @Bean
+    public ReactiveFollowServiceClient reactiveFollowServiceClient(WebClient upstreamWebClient,
+                                                                   @Value("${follow.service.url}") String baseUrl) {
+        return client(upstreamWebClient, baseUrl, ReactiveFollowServiceClient.class);
+    }
+
+    private static <T> T client(WebClient webClient, String baseUrl, Class<T> type) {
+        WebClient upstream = webClient.mutate().baseUrl(baseUrl).build();
+        return HttpServiceProxyFactory.builder(WebClientAdapter.forClient(upstream)).build().createClient(type);
+    }
+}
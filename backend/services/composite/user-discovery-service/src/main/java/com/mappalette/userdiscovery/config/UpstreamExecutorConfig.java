@@ -0,0 +1,28 @@
+package com.mappalette.userdiscovery.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ExecutorService;
+
+@Configuration
+public class UpstreamExecutorConfig {
+
+    @Value("${discovery.upstream.pool-size:32}")
+    private int poolSize;
+
+    @Value("${discovery.upstream.queue-capacity:256}")
+    private int queueCapacity;
+
+    /**
+     * Executor for the concurrent user-service / follow-service lookups, on virtual threads
+     * or a bounded pool depending on discovery.virtual-threads.enabled.
+     * When the pool is saturated new lookups are rejected; callers treat that like a failed
+     * lookup rather than running it on the request thread, where no timeout would apply.
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService upstreamExecutor(DiscoveryExecutors discoveryExecutors) {
+        return discoveryExecutors.newExecutor("upstream", poolSize, queueCapacity);
+    }
+}
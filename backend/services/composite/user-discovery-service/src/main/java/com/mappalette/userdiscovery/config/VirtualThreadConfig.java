@@ -0,0 +1,29 @@
+package com.mappalette.userdiscovery.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.Executors;
+
+/**
+ * Opt-in execution mode that runs servlet requests on virtual threads; upstream lookups
+ * follow the same flag through {@link DiscoveryExecutors}.
+ *
+ * Feign calls run on the thread that issues them, so with this mode every
+ * user-service / follow-service call blocks a virtual thread instead of one of
+ * Tomcat's fixed pool of platform threads.
+ */
+@Configuration
+@ConditionalOnProperty(name = "discovery.virtual-threads.enabled", havingValue = "true")
+@Slf4j
+public class VirtualThreadConfig {
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadProtocolHandlerCustomizer() {
+        log.info("Serving requests on virtual threads");
+        return protocolHandler -> protocolHandler.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+    }
+}
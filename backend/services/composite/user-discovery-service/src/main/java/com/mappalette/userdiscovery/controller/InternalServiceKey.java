@@ -0,0 +1,42 @@
+package com.mappalette.userdiscovery.controller;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+/**
+ * Guards endpoints only other MapPalette services may call, with the shared
+ * {@code INTERNAL_SERVICE_KEY} the Node services send as {@code x-service-key}.
+ * Without a configured key every such call is refused.
+ */
+@Component
+@Slf4j
+public class InternalServiceKey {
+
+    public static final String HEADER = "x-service-key";
+
+    private final byte[] key;
+
+    public InternalServiceKey(@Value("${discovery.internal.service-key:}") String key) {
+        this.key = key.getBytes(StandardCharsets.UTF_8);
+        if (key.isEmpty()) {
+            log.warn("INTERNAL_SERVICE_KEY is not set, internal endpoints such as /api/discover/events are disabled");
+        }
+    }
+
+    /**
+     * @throws ResponseStatusException 403 unless {@code serviceKey} matches the configured key
+     */
+    public void verify(String serviceKey) {
+        // Constant-time comparison, so response timing does not reveal how much of a guess matched
+        if (key.length == 0 || serviceKey == null
+                || !MessageDigest.isEqual(key, serviceKey.getBytes(StandardCharsets.UTF_8))) {
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Forbidden: Service key required");
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package com.mappalette.userdiscovery.controller;
+
+import com.mappalette.userdiscovery.dto.BatchDiscoveryRequest;
+import com.mappalette.userdiscovery.dto.BatchDiscoveryResponse;
+import com.mappalette.userdiscovery.dto.DirectoryEvent;
+import com.mappalette.userdiscovery.dto.DiscoveryResponse;
+import com.mappalette.userdiscovery.dto.UserView;
+import com.mappalette.userdiscovery.events.DirectoryEventQueue;
+import com.mappalette.userdiscovery.metrics.DiscoveryMetrics;
+import com.mappalette.userdiscovery.metrics.RequestLogSampler;
+import com.mappalette.userdiscovery.service.ReactiveUserDiscoveryService;
+import com.mappalette.userdiscovery.service.UserDiscoveryService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The {@link UserDiscoveryController} endpoints on WebFlux, active with the reactive profile.
+ * Same paths, parameters and responses; requests hold no thread while upstreams answer.
+ */
+@RestController
+@Profile("reactive")
+@RequestMapping("/api/discover")
+@RequiredArgsConstructor
+// CORS is handled by Caddy reverse proxy - removed @CrossOrigin to prevent duplicate headers
+@Slf4j
+public class ReactiveUserDiscoveryController {
+
+    private final ReactiveUserDiscoveryService reactiveUserDiscoveryService;
+    private final UserDiscoveryService userDiscoveryService;
+    private final RequestLogSampler requestLogSampler;
+    private final DirectoryEventQueue directoryEventQueue;
+    private final InternalServiceKey internalServiceKey;
+
+    /**
+     * Discover users that the current user is not following
+     *
+     * @see UserDiscoveryController#discoverUsers
+     */
+    @GetMapping("/users/{userId}")
+    public Mono<DiscoveryResponse> discoverUsers(
+            @PathVariable String userId,
+            @RequestParam(defaultValue = "20") int limit,
+            @RequestParam(defaultValue = "0") int offset,
+            @RequestParam(defaultValue = "false") boolean suggestionsOnly,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "false") boolean includeTotal,
+            ServerWebExchange exchange) {
+
+        if (requestLogSampler.sampled(exchange)) {
+            log.info("Discover users request - userId: {}, limit: {}, offset: {}, suggestionsOnly: {}, cursor: {}",
+                    userId, limit, offset, suggestionsOnly, cursor);
+        }
+
+        DiscoveryMetrics.markRequest(exchange, suggestionsOnly ? DiscoveryMetrics.SUGGESTIONS : DiscoveryMetrics.USERS);
+        return cursor != null && !suggestionsOnly
+            ? reactiveUserDiscoveryService.discoverUsersByCursor(userId, limit, cursor, includeTotal)
+            : reactiveUserDiscoveryService.discoverUsers(userId, limit, offset, suggestionsOnly, false);
+    }
+
+    /**
+     * Stream the discoverable users as newline-delimited JSON, one user per line
+     * Users are written as the client reads them, so a slow client slows the stream down
+     * instead of the whole list being buffered
+     *
+     * @param offset Number of discoverable users to skip (default: 0)
+     * @param limit Maximum number of users to stream (default and cap: discovery.stream.max-limit)
+     */
+    @GetMapping(value = "/users/{userId}/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<UserView> streamUsers(
+            @PathVariable String userId,
+            @RequestParam(defaultValue = "0") int offset,
+            @RequestParam(defaultValue = "" + Integer.MAX_VALUE) int limit,
+            ServerWebExchange exchange) {
+
+        DiscoveryMetrics.markRequest(exchange, DiscoveryMetrics.STREAM);
+        return reactiveUserDiscoveryService.streamUsers(userId, offset, limit);
+    }
+
+    /**
+     * Get suggested users for the sidebar (convenience endpoint)
+     *
+     * @see UserDiscoveryController#getSuggestedUsers
+     */
+    @GetMapping("/users/{userId}/suggestions")
+    public Mono<DiscoveryResponse> getSuggestedUsers(
+            @PathVariable String userId,
+            @RequestParam(defaultValue = "5") int limit,
+            @RequestParam(defaultValue = "true") boolean ranked,
+            ServerWebExchange exchange) {
+
+        if (requestLogSampler.sampled(exchange)) {
+            log.info("Get suggested users request - userId: {}, limit: {}, ranked: {}", userId, limit, ranked);
+        }
+
+        DiscoveryMetrics.markRequest(exchange, DiscoveryMetrics.SUGGESTIONS);
+        return reactiveUserDiscoveryService.discoverUsers(userId, limit, 0, true, ranked);
+    }
+
+    /**
+     * Typeahead search over usernames
+     *
+     * @see UserDiscoveryController#searchUsers
+     */
+    @GetMapping("/users/{userId}/search")
+    public Mono<DiscoveryResponse> searchUsers(
+            @PathVariable String userId,
+            @RequestParam String q,
+            @RequestParam(defaultValue = "10") int limit,
+            ServerWebExchange exchange) {
+
+        if (requestLogSampler.sampled(exchange)) {
+            log.info("Search users request - userId: {}, q: {}, limit: {}", userId, q, limit);
+        }
+
+        DiscoveryMetrics.markRequest(exchange, DiscoveryMetrics.SEARCH);
+        return reactiveUserDiscoveryService.searchUsers(userId, q, limit);
+    }
+
+    /**
+     * Get suggested users for many users in one call
+     *
+     * @see UserDiscoveryController#getSuggestedUsersBatch
+     */
+    @PostMapping("/suggestions/batch")
+    public Mono<BatchDiscoveryResponse> getSuggestedUsersBatch(
+            @RequestBody BatchDiscoveryRequest request,
+            ServerWebExchange exchange) {
+
+        int limit = request.getLimit() != null ? request.getLimit() : 5;
+        if (requestLogSampler.sampled(exchange)) {
+            log.info("Get batch suggested users request - users: {}, limit: {}",
+                    request.getUserIds() != null ? request.getUserIds().size() : 0, limit);
+        }
+
+        DiscoveryMetrics.markRequest(exchange, DiscoveryMetrics.BATCH);
+        return reactiveUserDiscoveryService.discoverSuggestionsBatch(request.getUserIds(), limit);
+    }
+
+    /**
+     * Get all user data (friends and other users) in a single call, with ETag revalidation
+     *
+     * @see UserDiscoveryController#getAllUserData
+     */
+    @GetMapping("/users/{userId}/all")
+    public Mono<ResponseEntity<byte[]>> getAllUserData(
+            @PathVariable String userId,
+            @RequestParam(defaultValue = "100") int friendsLimit,
+            @RequestParam(defaultValue = "100") int othersLimit,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            ServerWebExchange exchange) {
+
+        if (requestLogSampler.sampled(exchange)) {
+            log.info("Get all user data request - userId: {}, friendsLimit: {}, othersLimit: {}",
+                    userId, friendsLimit, othersLimit);
+        }
+
+        DiscoveryMetrics.markRequest(exchange, DiscoveryMetrics.ALL);
+        return reactiveUserDiscoveryService.getAllUserDataVersioned(userId, friendsLimit, othersLimit, ifNoneMatch)
+            .map(UserDiscoveryController::versioned);
+    }
+
+    /**
+     * Invalidate the cached following list of a user
+     *
+     * @see UserDiscoveryController#invalidateFollowing
+     */
+    @DeleteMapping("/cache/following/{userId}")
+    public ResponseEntity<Void> invalidateFollowing(
+            @RequestHeader(value = InternalServiceKey.HEADER, required = false) String serviceKey,
+            @PathVariable String userId,
+            ServerWebExchange exchange) {
+        internalServiceKey.verify(serviceKey);
+        if (requestLogSampler.sampled(exchange)) {
+            log.info("Invalidate following cache request - userId: {}", userId);
+        }
+
+        userDiscoveryService.invalidateFollowing(userId);
+
+        return ResponseEntity.noContent().build();
+    }
+
+    /**
+     * Ingest user created/updated/deleted and follow/unfollow events
+     *
+     * @see UserDiscoveryController#ingestEvents
+     */
+    @PostMapping("/events")
+    public ResponseEntity<Map<String, Object>> ingestEvents(
+            @RequestHeader(value = InternalServiceKey.HEADER, required = false) String serviceKey,
+            @RequestBody(required = false) List<DirectoryEvent> events,
+            ServerWebExchange exchange) {
+        internalServiceKey.verify(serviceKey);
+        directoryEventQueue.check(events);
+        if (requestLogSampler.sampled(exchange)) {
+            log.info("Ingest directory events request - events: {}", events.size());
+        }
+
+        int accepted = directoryEventQueue.publish(events);
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("accepted", accepted);
+        return ResponseEntity.status(accepted == events.size() ? HttpStatus.ACCEPTED : HttpStatus.SERVICE_UNAVAILABLE)
+            .body(response);
+    }
+
+    /**
+     * Health check endpoint
+     */
+    @GetMapping("/health")
+    public ResponseEntity<Map<String, Object>> health() {
+        return ResponseEntity.ok(UserDiscoveryController.healthBody());
+    }
+}
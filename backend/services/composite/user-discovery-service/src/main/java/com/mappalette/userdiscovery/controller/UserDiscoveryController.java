@@ -1,18 +1,33 @@
 package com.mappalette.userdiscovery.controller;
 
 import com.mappalette.userdiscovery.dto.AllUsersResponse;
+import com.mappalette.userdiscovery.dto.BatchDiscoveryRequest;
+import com.mappalette.userdiscovery.dto.BatchDiscoveryResponse;
+import com.mappalette.userdiscovery.dto.DirectoryEvent;
 import com.mappalette.userdiscovery.dto.DiscoveryResponse;
+import com.mappalette.userdiscovery.events.DirectoryEventQueue;
+import com.mappalette.userdiscovery.metrics.DiscoveryMetrics;
+import com.mappalette.userdiscovery.metrics.RequestLogSampler;
 import com.mappalette.userdiscovery.service.UserDiscoveryService;
+import com.mappalette.userdiscovery.service.VersionedResponse;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 @RestController
+@Profile("!reactive")
 @RequestMapping("/api/discover")
 @RequiredArgsConstructor
 // CORS is handled by Caddy reverse proxy - removed @CrossOrigin to prevent duplicate headers
@@ -20,14 +35,20 @@ import java.util.Map;
 public class UserDiscoveryController {
     
     private final UserDiscoveryService userDiscoveryService;
+    private final RequestLogSampler requestLogSampler;
+    private final DirectoryEventQueue directoryEventQueue;
+    private final InternalServiceKey internalServiceKey;
     
     /**
      * Discover users that the current user is not following
      * 
      * @param userId The ID of the current user
-     * @param limit Maximum number of users to return (default: 20)
-     * @param offset Number of users to skip for pagination (default: 0)
+     * @param limit Maximum number of users to return (default: 20, capped at discovery.users.max-limit;
+     *              at least 1 with a cursor)
+     * @param offset Number of users to skip for pagination (default: 0, capped at discovery.users.max-offset)
      * @param suggestionsOnly If true, returns randomized suggestions (default: false)
+     * @param cursor Switches to cursor pagination; pass an empty value for the first page, then nextCursor
+     * @param includeTotal In cursor mode, also compute the exact totalCount (default: false)
      * @return DiscoveryResponse containing discoverable users
      */
     @GetMapping("/users/{userId}")
@@ -35,29 +56,86 @@ public class UserDiscoveryController {
             @PathVariable String userId,
             @RequestParam(defaultValue = "20") int limit,
             @RequestParam(defaultValue = "0") int offset,
-            @RequestParam(defaultValue = "false") boolean suggestionsOnly) {
+            @RequestParam(defaultValue = "false") boolean suggestionsOnly,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "false") boolean includeTotal) {
         
-        log.info("Discover users request - userId: {}, limit: {}, offset: {}, suggestionsOnly: {}", 
-                userId, limit, offset, suggestionsOnly);
+        if (requestLogSampler.sampled()) {
+            log.info("Discover users request - userId: {}, limit: {}, offset: {}, suggestionsOnly: {}, cursor: {}", 
+                    userId, limit, offset, suggestionsOnly, cursor);
+        }
         
-        DiscoveryResponse response = userDiscoveryService.discoverUsers(userId, limit, offset, suggestionsOnly);
+        DiscoveryMetrics.markRequest(suggestionsOnly ? DiscoveryMetrics.SUGGESTIONS : DiscoveryMetrics.USERS);
+        DiscoveryResponse response = cursor != null && !suggestionsOnly
+            ? userDiscoveryService.discoverUsersByCursor(userId, limit, cursor, includeTotal)
+            : userDiscoveryService.discoverUsers(userId, limit, offset, suggestionsOnly);
         
         return ResponseEntity.ok(response);
     }
     
     /**
      * Get suggested users for the sidebar (convenience endpoint)
-     * Returns a small number of randomized suggestions
+     * Returns a small number of suggestions, friends-of-friends first
+     * 
+     * @param ranked If false, returns randomized suggestions only (default: true)
      */
     @GetMapping("/users/{userId}/suggestions")
     public ResponseEntity<DiscoveryResponse> getSuggestedUsers(
             @PathVariable String userId,
-            @RequestParam(defaultValue = "5") int limit) {
+            @RequestParam(defaultValue = "5") int limit,
+            @RequestParam(defaultValue = "true") boolean ranked) {
         
-        log.info("Get suggested users request - userId: {}, limit: {}", userId, limit);
+        if (requestLogSampler.sampled()) {
+            log.info("Get suggested users request - userId: {}, limit: {}, ranked: {}", userId, limit, ranked);
+        }
         
         // Always return suggestions only with no offset
-        DiscoveryResponse response = userDiscoveryService.discoverUsers(userId, limit, 0, true);
+        DiscoveryMetrics.markRequest(DiscoveryMetrics.SUGGESTIONS);
+        DiscoveryResponse response = userDiscoveryService.discoverUsers(userId, limit, 0, true, ranked);
+        
+        return ResponseEntity.ok(response);
+    }
+    
+    /**
+     * Typeahead search over usernames
+     * Returns public users whose username starts with q (case-insensitive), excluding
+     * the current user and users they follow; exact matches and popular users first
+     * 
+     * @param q Username prefix; 400 if empty
+     * @param limit Maximum number of users to return (default: 10)
+     */
+    @GetMapping("/users/{userId}/search")
+    public ResponseEntity<DiscoveryResponse> searchUsers(
+            @PathVariable String userId,
+            @RequestParam String q,
+            @RequestParam(defaultValue = "10") int limit) {
+        
+        if (requestLogSampler.sampled()) {
+            log.info("Search users request - userId: {}, q: {}, limit: {}", userId, q, limit);
+        }
+        
+        DiscoveryMetrics.markRequest(DiscoveryMetrics.SEARCH);
+        DiscoveryResponse response = userDiscoveryService.searchUsers(userId, q, limit);
+        
+        return ResponseEntity.ok(response);
+    }
+    
+    /**
+     * Get suggested users for many users in one call (for feed / leaderboard composites)
+     * Loads the user directory once instead of once per user
+     */
+    @PostMapping("/suggestions/batch")
+    public ResponseEntity<BatchDiscoveryResponse> getSuggestedUsersBatch(
+            @RequestBody BatchDiscoveryRequest request) {
+        
+        int limit = request.getLimit() != null ? request.getLimit() : 5;
+        if (requestLogSampler.sampled()) {
+            log.info("Get batch suggested users request - users: {}, limit: {}", 
+                    request.getUserIds() != null ? request.getUserIds().size() : 0, limit);
+        }
+        
+        DiscoveryMetrics.markRequest(DiscoveryMetrics.BATCH);
+        BatchDiscoveryResponse response = userDiscoveryService.discoverSuggestionsBatch(request.getUserIds(), limit);
         
         return ResponseEntity.ok(response);
     }
@@ -65,19 +143,87 @@ public class UserDiscoveryController {
     /**
      * Get all user data (friends and other users) in a single call
      * This is optimized for the friends page to reduce API calls
+     * 
+     * Carries an ETag; a request whose If-None-Match still matches gets 304 Not Modified.
+     * The body is an {@link AllUsersResponse}, serialized once and cached while unchanged.
+     * friendsLimit and othersLimit are capped at discovery.all.max-limit.
      */
     @GetMapping("/users/{userId}/all")
-    public ResponseEntity<AllUsersResponse> getAllUserData(
+    public ResponseEntity<byte[]> getAllUserData(
             @PathVariable String userId,
             @RequestParam(defaultValue = "100") int friendsLimit,
-            @RequestParam(defaultValue = "100") int othersLimit) {
+            @RequestParam(defaultValue = "100") int othersLimit,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) throws IOException {
         
-        log.info("Get all user data request - userId: {}, friendsLimit: {}, othersLimit: {}", 
-                userId, friendsLimit, othersLimit);
+        if (requestLogSampler.sampled()) {
+            log.info("Get all user data request - userId: {}, friendsLimit: {}, othersLimit: {}", 
+                    userId, friendsLimit, othersLimit);
+        }
         
-        AllUsersResponse response = userDiscoveryService.getAllUserData(userId, friendsLimit, othersLimit);
+        DiscoveryMetrics.markRequest(DiscoveryMetrics.ALL);
+        VersionedResponse response = userDiscoveryService.getAllUserDataVersioned(userId, friendsLimit, othersLimit,
+                ifNoneMatch);
         
-        return ResponseEntity.ok(response);
+        return versioned(response);
+    }
+    
+    /**
+     * 200 with the body, or 304 if the client's copy is current; both carry the ETag
+     */
+    static ResponseEntity<byte[]> versioned(VersionedResponse response) {
+        // Browsers and Caddy may keep the response but must revalidate it on every use
+        ResponseEntity.BodyBuilder builder = response.isNotModified()
+            ? ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+            : ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON);
+        builder.cacheControl(CacheControl.noCache().cachePrivate());
+        if (response.getEtag() != null) {
+            builder.eTag(response.getEtag());
+        }
+        return builder.body(response.getBody());
+    }
+    
+    /**
+     * Invalidate the cached following list of a user
+     * Fallback for when FOLLOWED / UNFOLLOWED events may have been lost
+     * Internal only: requires the shared service key in the x-service-key header
+     */
+    @DeleteMapping("/cache/following/{userId}")
+    public ResponseEntity<Void> invalidateFollowing(
+            @RequestHeader(value = InternalServiceKey.HEADER, required = false) String serviceKey,
+            @PathVariable String userId) {
+        internalServiceKey.verify(serviceKey);
+        if (requestLogSampler.sampled()) {
+            log.info("Invalidate following cache request - userId: {}", userId);
+        }
+        
+        userDiscoveryService.invalidateFollowing(userId);
+        
+        return ResponseEntity.noContent().build();
+    }
+    
+    /**
+     * Ingest user created/updated/deleted and follow/unfollow events
+     * Published by user-service and follow-service; applied asynchronously, in order
+     * Internal only: requires the shared service key in the x-service-key header
+     * 
+     * @return 202 with the number of events accepted, or 503 if the queue was full and the rest were dropped
+     */
+    @PostMapping("/events")
+    public ResponseEntity<Map<String, Object>> ingestEvents(
+            @RequestHeader(value = InternalServiceKey.HEADER, required = false) String serviceKey,
+            @RequestBody(required = false) List<DirectoryEvent> events) {
+        internalServiceKey.verify(serviceKey);
+        directoryEventQueue.check(events);
+        if (requestLogSampler.sampled()) {
+            log.info("Ingest directory events request - events: {}", events.size());
+        }
+        
+        int accepted = directoryEventQueue.publish(events);
+        
+        Map<String, Object> response = new HashMap<>();
+        response.put("accepted", accepted);
+        return ResponseEntity.status(accepted == events.size() ? HttpStatus.ACCEPTED : HttpStatus.SERVICE_UNAVAILABLE)
+            .body(response);
     }
     
     /**
@@ -85,6 +231,10 @@ public class UserDiscoveryController {
      */
     @GetMapping("/health")
     public ResponseEntity<Map<String, Object>> health() {
+        return ResponseEntity.ok(healthBody());
+    }
+    
+    static Map<String, Object> healthBody() {
         Map<String, Object> healthResponse = new HashMap<>();
         healthResponse.put("status", "healthy");
         healthResponse.put("service", "user-discovery-service");
@@ -99,12 +249,12 @@ public class UserDiscoveryController {
             System.getenv("FOLLOW_SERVICE_URL") : "http://localhost:3007/api/follow");
         healthResponse.put("dependencies", dependencies);
         
-        return ResponseEntity.ok(healthResponse);
+        return healthResponse;
     }
     
     private static final long START_TIME = System.currentTimeMillis();
     
-    private long getUptimeInSeconds() {
+    private static long getUptimeInSeconds() {
         return (System.currentTimeMillis() - START_TIME) / 1000;
     }
 }
\ No newline at end of file
@@ -0,0 +1,36 @@
+package com.mappalette.userdiscovery.directory;
+
+import lombok.Getter;
+
+/**
+ * One user created, updated or deleted in user-service, applied to the directory snapshot
+ * without reloading it.
+ */
+@Getter
+public final class DirectoryChange {
+
+    public enum Kind { CREATED, UPDATED, DELETED }
+
+    private final Kind kind;
+    private final String userId;
+    // Null for deletions
+    private final DirectoryUser user;
+
+    private DirectoryChange(Kind kind, String userId, DirectoryUser user) {
+        this.kind = kind;
+        this.userId = userId;
+        this.user = user;
+    }
+
+    public static DirectoryChange created(DirectoryUser user) {
+        return new DirectoryChange(Kind.CREATED, user.getId(), user);
+    }
+
+    public static DirectoryChange updated(DirectoryUser user) {
+        return new DirectoryChange(Kind.UPDATED, user.getId(), user);
+    }
+
+    public static DirectoryChange deleted(String userId) {
+        return new DirectoryChange(Kind.DELETED, userId, null);
+    }
+}
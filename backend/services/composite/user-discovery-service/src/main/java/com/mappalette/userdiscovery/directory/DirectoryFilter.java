@@ -0,0 +1,68 @@
+package com.mappalette.userdiscovery.directory;
+
+/**
+ * Which directory users a request can use at all. Applied to every user a scan returns,
+ * and pushed down into parsing of user-service pages, so users it drops are recognized
+ * before their remaining fields are materialized.
+ *
+ * Users are matched by their interned id, so a check is two int comparisons rather than
+ * string equality against the viewer and a hash lookup in their following list.
+ */
+public final class DirectoryFilter {
+
+    /**
+     * Keeps every user, e.g. when friends (including private profiles) are listed as well.
+     */
+    public static final DirectoryFilter ALL = new DirectoryFilter(-1, FollowingSet.EMPTY, true);
+
+    // -1 when the viewer has never appeared in the directory, so no user matches it
+    private final int viewerId;
+    private final FollowingSet following;
+    private final boolean privateProfilesIncluded;
+
+    private DirectoryFilter(int viewerId, FollowingSet following, boolean privateProfilesIncluded) {
+        this.viewerId = viewerId;
+        this.following = following;
+        this.privateProfilesIncluded = privateProfilesIncluded;
+    }
+
+    /**
+     * Users the viewer can discover: not themselves, not already followed, and not private.
+     * The viewer's ID is only looked up, never interned, so arbitrary request IDs do not
+     * grow the interner.
+     */
+    public static DirectoryFilter discoverableBy(String viewerId, FollowingSet following, UserIdInterner interner) {
+        return new DirectoryFilter(interner.lookup(viewerId), following, false);
+    }
+
+    public boolean accepts(DirectoryUser user) {
+        return accepts(user.getInternedId(), user.isProfilePrivate());
+    }
+
+    boolean accepts(int internedId, boolean profilePrivate) {
+        // Skip current user
+        if (internedId == viewerId) {
+            return false;
+        }
+
+        // Skip users that are already being followed
+        if (following.contains(internedId)) {
+            return false;
+        }
+
+        // Skip private profiles (since user doesn't follow them)
+        return privateProfilesIncluded || !profilePrivate;
+    }
+
+    int getViewerId() {
+        return viewerId;
+    }
+
+    FollowingSet getFollowing() {
+        return following;
+    }
+
+    boolean isPrivateProfilesIncluded() {
+        return privateProfilesIncluded;
+    }
+}
@@ -0,0 +1,19 @@
+package com.mappalette.userdiscovery.directory;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.List;
+
+/**
+ * One normalized page of the user directory, with the totals user-service reported alongside it.
+ */
+@Getter
+@RequiredArgsConstructor
+public final class DirectoryPage {
+
+    private final List<DirectoryUser> users;
+    // -1 when user-service sent no pagination block
+    private final int total;
+    private final int totalPages;
+}
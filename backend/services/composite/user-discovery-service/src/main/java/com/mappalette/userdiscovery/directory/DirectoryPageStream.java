@@ -0,0 +1,121 @@
+package com.mappalette.userdiscovery.directory;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Walks user-service pages in order while keeping at most {@code prefetchDepth} pages
+ * in flight, so the next page downloads while the current one is being filtered.
+ * Only the pages in flight are held in memory. Close the stream when stopping early
+ * to drop any pages that were fetched ahead.
+ *
+ * A page nobody has picked up yet is fetched by the consumer itself, so a saturated
+ * executor (or one whose threads are all waiting on this stream, or that rejects the
+ * prefetch) cannot stall it.
+ */
+public final class DirectoryPageStream implements Iterator<List<DirectoryUser>>, AutoCloseable {
+
+    private final UserDirectoryPager pager;
+    private final Executor executor;
+    private final int prefetchDepth;
+    private final DirectoryFilter filter;
+    private final Deque<FutureTask<DirectoryPage>> inFlight = new ArrayDeque<>();
+
+    private int nextPage;
+    private int lastPage;
+    private boolean lastPageKnown;
+    private int total = -1;
+
+    DirectoryPageStream(UserDirectoryPager pager, Executor executor, int prefetchDepth, int firstPage, int lastPage,
+                        DirectoryFilter filter) {
+        this.pager = pager;
+        this.executor = executor;
+        this.prefetchDepth = Math.max(1, prefetchDepth);
+        this.filter = filter;
+        this.nextPage = firstPage;
+        this.lastPage = lastPage;
+        // The first page is requested alone until user-service tells us how many pages exist
+        request();
+    }
+
+    @Override
+    public boolean hasNext() {
+        return !inFlight.isEmpty();
+    }
+
+    @Override
+    public List<DirectoryUser> next() {
+        FutureTask<DirectoryPage> head = inFlight.poll();
+        if (head == null) {
+            throw new NoSuchElementException();
+        }
+        DirectoryPage response = await(head);
+
+        if (response.getTotal() >= 0) {
+            total = response.getTotal();
+            if (!lastPageKnown) {
+                lastPage = Math.min(lastPage, response.getTotalPages());
+                lastPageKnown = true;
+            }
+        }
+        if (response.getUsers().isEmpty()) {
+            // Ran off the end (the directory shrank since the total was reported)
+            close();
+        } else {
+            while (inFlight.size() < prefetchDepth && request()) {
+                // keep the pipeline full
+            }
+        }
+        return response.getUsers();
+    }
+
+    /**
+     * @return the directory size user-service last reported, or -1 before the first page arrives
+     */
+    public int getTotal() {
+        return total;
+    }
+
+    @Override
+    public void close() {
+        inFlight.forEach(future -> future.cancel(false));
+        inFlight.clear();
+        nextPage = lastPage + 1;
+    }
+
+    private boolean request() {
+        if (nextPage > lastPage) {
+            return false;
+        }
+        int page = nextPage++;
+        FutureTask<DirectoryPage> task = new FutureTask<>(() -> pager.fetchPage(page, filter));
+        inFlight.add(task);
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            // Pool is full; the consumer fetches this page itself when it gets to it
+        }
+        return true;
+    }
+
+    private static DirectoryPage await(FutureTask<DirectoryPage> task) {
+        // No-op if a pool thread already started it; otherwise fetch the page on this thread
+        task.run();
+        try {
+            return task.get();
+        } catch (ExecutionException e) {
+            throw new CompletionException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CompletionException(e);
+        }
+    }
+}
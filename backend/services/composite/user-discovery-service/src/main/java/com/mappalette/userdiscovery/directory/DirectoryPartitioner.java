@@ -0,0 +1,115 @@
+package com.mappalette.userdiscovery.directory;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Predicate;
+
+/**
+ * Filters a large snapshot on a bounded fork-join pool.
+ *
+ * The user list is split into chunks that are filtered independently; chunk results are
+ * concatenated left to right, so users come out in snapshot order exactly as a sequential
+ * scan would return them. The result is capped at its limit while merging, so a request never
+ * holds more than it asked for.
+ *
+ * Splitting only pays off once a request has to look at many users: below the threshold the
+ * cost of forking and merging outweighs the work, and callers keep their sequential scan,
+ * which can also stop as soon as a page is filled.
+ */
+@Component
+@Slf4j
+public class DirectoryPartitioner {
+
+    private final ForkJoinPool pool;
+    private final int threshold;
+    private final int chunkSize;
+
+    public DirectoryPartitioner(@Value("${discovery.parallel.parallelism:0}") int parallelism,
+                                @Value("${discovery.parallel.threshold:200000}") int threshold,
+                                @Value("${discovery.parallel.chunk-size:16384}") int chunkSize) {
+        // 0 means one worker per available core
+        int workers = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        this.pool = workers > 1 ? new ForkJoinPool(workers) : null;
+        this.threshold = threshold;
+        this.chunkSize = Math.max(1, chunkSize);
+        if (pool == null) {
+            log.info("Parallel directory filtering disabled: one worker available");
+        }
+    }
+
+    /**
+     * @return true if scanning this many users is worth splitting across the pool
+     */
+    public boolean shouldSplit(long usersToScan) {
+        return pool != null && usersToScan >= threshold;
+    }
+
+    /**
+     * Estimates how far into a directory of {@code size} users a scan has to go to find
+     * {@code wanted} of the {@code matching} users it accepts, assuming they are spread evenly.
+     */
+    public static long expectedScanLength(int size, int matching, int wanted) {
+        if (matching <= 0 || wanted <= 0) {
+            return 0;
+        }
+        if (wanted >= matching) {
+            return size;
+        }
+        return (long) wanted * size / matching;
+    }
+
+    /**
+     * Accepted users in snapshot order, up to {@code limit}.
+     */
+    public List<DirectoryUser> filter(List<DirectoryUser> users, Predicate<DirectoryUser> accepts, int limit) {
+        if (pool == null) {
+            return scan(users, 0, users.size(), accepts, limit);
+        }
+
+        // Step 1: Filter every chunk on the pool, each capped at the limit
+        List<ForkJoinTask<List<DirectoryUser>>> chunks = new ArrayList<>();
+        for (int from = 0; from < users.size(); from += chunkSize) {
+            int chunkFrom = from;
+            int chunkTo = Math.min(users.size(), from + chunkSize);
+            chunks.add(pool.submit(() -> scan(users, chunkFrom, chunkTo, accepts, limit)));
+        }
+
+        // Step 2: Concatenate the chunks in order; once the limit is reached the rest are not needed
+        List<DirectoryUser> accepted = new ArrayList<>();
+        for (ForkJoinTask<List<DirectoryUser>> chunk : chunks) {
+            if (accepted.size() >= limit) {
+                chunk.cancel(false);
+                continue;
+            }
+            List<DirectoryUser> chunkUsers = chunk.join();
+            accepted.addAll(chunkUsers.subList(0, Math.min(chunkUsers.size(), limit - accepted.size())));
+        }
+        return accepted;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (pool != null) {
+            pool.shutdownNow();
+        }
+    }
+
+    private static List<DirectoryUser> scan(List<DirectoryUser> users, int from, int to,
+                                            Predicate<DirectoryUser> accepts, int limit) {
+        List<DirectoryUser> accepted = new ArrayList<>();
+        for (int i = from; i < to && accepted.size() < limit; i++) {
+            DirectoryUser user = users.get(i);
+            if (accepts.test(user)) {
+                accepted.add(user);
+            }
+        }
+        return accepted;
+    }
+}
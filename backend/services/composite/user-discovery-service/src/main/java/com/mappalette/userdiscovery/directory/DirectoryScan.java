@@ -0,0 +1,93 @@
+package com.mappalette.userdiscovery.directory;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Iterates the full directory in user-service order starting at a given position:
+ * first the in-memory snapshot, then any users past the snapshot cap, streamed from
+ * user-service page by page. Memory use stays flat however large the directory is.
+ */
+public final class DirectoryScan implements Iterator<DirectoryUser>, AutoCloseable {
+
+    private final UserDirectoryPager pager;
+    private final List<DirectoryUser> snapshotUsers;
+    private final DirectoryFilter filter;
+    private int end;
+    private int position;
+
+    private DirectoryPageStream pages;
+    private List<DirectoryUser> currentPage;
+    private int indexInPage;
+
+    DirectoryScan(UserDirectoryPager pager, UserDirectorySnapshot snapshot, int position, DirectoryFilter filter) {
+        this.pager = pager;
+        this.snapshotUsers = snapshot.getUsers();
+        this.filter = filter;
+        this.end = snapshot.getTotalAvailable();
+        this.position = position;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (position < snapshotUsers.size()) {
+            return true;
+        }
+        if (position >= end) {
+            return false;
+        }
+        if (currentPage != null && indexInPage < currentPage.size()) {
+            return true;
+        }
+
+        if (pages == null) {
+            int pageSize = UserDirectoryPager.PAGE_SIZE;
+            pages = pager.stream(position / pageSize + 1, (end + pageSize - 1) / pageSize, filter);
+            indexInPage = position % pageSize;
+        } else {
+            indexInPage = 0;
+        }
+        currentPage = pages.hasNext() ? pages.next() : null;
+
+        if (currentPage == null || indexInPage >= currentPage.size()) {
+            // user-service has fewer users than the snapshot reported
+            end = position;
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public DirectoryUser next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        DirectoryUser user = position < snapshotUsers.size()
+            ? snapshotUsers.get(position)
+            : currentPage.get(indexInPage++);
+        position++;
+        return user;
+    }
+
+    /**
+     * @return the position of the next user this scan would return
+     */
+    public int getPosition() {
+        return position;
+    }
+
+    /**
+     * @return true if users remain after the current position
+     */
+    public boolean hasMore() {
+        return position < end;
+    }
+
+    @Override
+    public void close() {
+        if (pages != null) {
+            pages.close();
+        }
+    }
+}
@@ -0,0 +1,292 @@
+package com.mappalette.userdiscovery.directory;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Persists the directory snapshot and the user ID interning table to a binary file, so a
+ * restarted service can serve from its last directory before user-service has answered.
+ *
+ * Layout (big-endian):
+ * <pre>
+ * header   magic, format, savedAt millis, totalAvailable, idCount, userCount, stringCount
+ * strings  stringCount x (byte length, UTF-8 bytes); the first idCount are the interned
+ *          user IDs in interned-id order, the rest usernames and profile pictures, deduplicated
+ * users    userCount x (internedId, flags, username string, picture string, numFollowers, numFollowing)
+ * trailer  CRC32C of everything before it
+ * </pre>
+ * The file is written to a temporary file and moved into place, so readers only ever see a
+ * complete file; it is read through a read-only memory mapping, so the checksum and the
+ * decoding run over the page cache without copying the file onto the heap first. A missing,
+ * outdated, corrupt or expired file is ignored and the service loads from user-service as
+ * it would without one.
+ */
+@Component
+@Slf4j
+public class DirectorySnapshotStore {
+
+    private static final int MAGIC = 0x55444952; // "UDIR"
+    private static final int FORMAT = 1;
+    private static final int NO_STRING = -1;
+    private static final int PRIVATE = 1;
+    private static final int HAS_FOLLOWERS = 2;
+    private static final int HAS_FOLLOWING = 4;
+
+    private final Path path;
+    private final long maxAgeMs;
+    private final UserIdInterner userIdInterner;
+    private final Timer readTimer;
+    private final Timer writeTimer;
+    private final MeterRegistry meterRegistry;
+    // Content version of the snapshot last written, so an unchanged directory is not rewritten
+    private long writtenContentVersion = -1;
+
+    public DirectorySnapshotStore(UserIdInterner userIdInterner,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${discovery.directory.snapshot-file.path:}") String path,
+                                  @Value("${discovery.directory.snapshot-file.max-age-ms:86400000}") long maxAgeMs) {
+        this.userIdInterner = userIdInterner;
+        this.meterRegistry = meterRegistry;
+        this.path = path == null || path.isBlank() ? null : Path.of(path);
+        this.maxAgeMs = maxAgeMs;
+        this.readTimer = Timer.builder("discovery.directory.snapshot.file")
+            .tag("operation", "read")
+            .description("Reading the persisted directory snapshot on startup")
+            .register(meterRegistry);
+        this.writeTimer = Timer.builder("discovery.directory.snapshot.file")
+            .tag("operation", "write")
+            .description("Writing the directory snapshot to disk")
+            .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return path != null;
+    }
+
+    /**
+     * Reads the persisted directory, interning its user IDs.
+     *
+     * @return the stored directory, or null if there is no usable file
+     */
+    public Stored read(int maxUsers) {
+        if (path == null) {
+            return null;
+        }
+        Timer.Sample sample = Timer.start();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer file = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            Stored stored = decode(file, maxUsers);
+            sample.stop(readTimer);
+            if (stored == null) {
+                return null;
+            }
+            markRead("loaded");
+            return stored;
+        } catch (NoSuchFileException e) {
+            markRead("missing");
+            return null;
+        } catch (Exception e) {
+            markRead("invalid");
+            log.warn("Ignoring unreadable directory snapshot file {}: {}", path, e.toString());
+            return null;
+        }
+    }
+
+    /**
+     * Writes the snapshot and the current interning table, replacing the previous file.
+     * Failures are logged; the service works the same without the file.
+     */
+    public synchronized void write(UserDirectorySnapshot snapshot) {
+        if (path == null || snapshot.getContentVersion() == writtenContentVersion) {
+            return;
+        }
+        Timer.Sample sample = Timer.start();
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try {
+            Path parent = path.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            try (OutputStream file = Files.newOutputStream(temporary)) {
+                CRC32C checksum = new CRC32C();
+                DataOutputStream out = new DataOutputStream(
+                    new CheckedOutputStream(new BufferedOutputStream(file, 1 << 16), checksum));
+                encode(snapshot, out);
+                out.flush();
+                new DataOutputStream(file).writeLong(checksum.getValue());
+            }
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            writtenContentVersion = snapshot.getContentVersion();
+            sample.stop(writeTimer);
+            log.debug("Wrote directory snapshot v{} with {} users to {}", snapshot.getVersion(), snapshot.size(), path);
+        } catch (IOException e) {
+            log.warn("Could not write directory snapshot file {}: {}", path, e.toString());
+            try {
+                Files.deleteIfExists(temporary);
+            } catch (IOException ignored) {
+                // Overwritten by the next write
+            }
+        }
+    }
+
+    private void encode(UserDirectorySnapshot snapshot, DataOutputStream out) throws IOException {
+        int idCount = userIdInterner.size();
+        List<String> strings = new ArrayList<>(idCount + snapshot.size());
+        for (int id = 0; id < idCount; id++) {
+            String userId = userIdInterner.userId(id);
+            strings.add(userId != null ? userId : "");
+        }
+        Map<String, Integer> stringIndex = new HashMap<>();
+        int[][] refs = new int[snapshot.size()][];
+        List<DirectoryUser> users = snapshot.getUsers();
+        for (int i = 0; i < users.size(); i++) {
+            DirectoryUser user = users.get(i);
+            refs[i] = new int[] {stringRef(user.getUsername(), strings, stringIndex),
+                stringRef(user.getProfilePicture(), strings, stringIndex)};
+        }
+
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT);
+        out.writeLong(snapshot.getLoadedAt().toEpochMilli());
+        out.writeInt(snapshot.getTotalAvailable());
+        out.writeInt(idCount);
+        out.writeInt(users.size());
+        out.writeInt(strings.size());
+        for (String string : strings) {
+            byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+        for (int i = 0; i < users.size(); i++) {
+            DirectoryUser user = users.get(i);
+            int flags = (user.isProfilePrivate() ? PRIVATE : 0)
+                | (user.getNumFollowers() != null ? HAS_FOLLOWERS : 0)
+                | (user.getNumFollowing() != null ? HAS_FOLLOWING : 0);
+            out.writeInt(user.getInternedId());
+            out.writeByte(flags);
+            out.writeInt(refs[i][0]);
+            out.writeInt(refs[i][1]);
+            out.writeInt(user.getNumFollowers() != null ? user.getNumFollowers() : 0);
+            out.writeInt(user.getNumFollowing() != null ? user.getNumFollowing() : 0);
+        }
+    }
+
+    private static int stringRef(String value, List<String> strings, Map<String, Integer> stringIndex) {
+        if (value == null) {
+            return NO_STRING;
+        }
+        return stringIndex.computeIfAbsent(value, key -> {
+            strings.add(key);
+            return strings.size() - 1;
+        });
+    }
+
+    private Stored decode(ByteBuffer file, int maxUsers) {
+        if (file.capacity() < Long.BYTES) {
+            throw new IllegalStateException("truncated file");
+        }
+        CRC32C checksum = new CRC32C();
+        checksum.update(file.slice(0, file.capacity() - Long.BYTES));
+        if (checksum.getValue() != file.getLong(file.capacity() - Long.BYTES)) {
+            throw new IllegalStateException("checksum mismatch");
+        }
+
+        if (file.getInt() != MAGIC || file.getInt() != FORMAT) {
+            markRead("outdated");
+            log.info("Ignoring directory snapshot file {} written in another format", path);
+            return null;
+        }
+        Instant savedAt = Instant.ofEpochMilli(file.getLong());
+        Duration age = Duration.between(savedAt, Instant.now());
+        if (age.toMillis() > maxAgeMs) {
+            markRead("expired");
+            log.info("Ignoring directory snapshot file {} saved {} ago", path, age);
+            return null;
+        }
+        int totalAvailable = file.getInt();
+        int idCount = file.getInt();
+        int userCount = file.getInt();
+        int stringCount = file.getInt();
+
+        // Step 1: Strings; the user IDs among them are interned in their old order
+        String[] strings = new String[stringCount];
+        for (int i = 0; i < stringCount; i++) {
+            byte[] bytes = new byte[file.getInt()];
+            file.get(bytes);
+            strings[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+        int[] internedIds = new int[idCount];
+        for (int id = 0; id < idCount; id++) {
+            internedIds[id] = strings[id].isEmpty() ? -1 : userIdInterner.intern(strings[id]);
+        }
+
+        // Step 2: Users, with their ids mapped to this process's interned ids
+        List<DirectoryUser> users = new ArrayList<>(Math.min(userCount, maxUsers));
+        for (int i = 0; i < userCount && users.size() < maxUsers; i++) {
+            int storedId = file.getInt();
+            int flags = file.get();
+            int username = file.getInt();
+            int picture = file.getInt();
+            int numFollowers = file.getInt();
+            int numFollowing = file.getInt();
+            users.add(DirectoryUser.of(strings[storedId], internedIds[storedId],
+                username != NO_STRING ? strings[username] : null,
+                picture != NO_STRING ? strings[picture] : null,
+                (flags & PRIVATE) != 0,
+                (flags & HAS_FOLLOWERS) != 0 ? numFollowers : null,
+                (flags & HAS_FOLLOWING) != 0 ? numFollowing : null));
+        }
+        return new Stored(users, Math.max(totalAvailable, users.size()), savedAt);
+    }
+
+    private void markRead(String result) {
+        Counter.builder("discovery.directory.snapshot.file.reads")
+            .tag("result", result)
+            .description("Startup reads of the persisted directory snapshot, by outcome")
+            .register(meterRegistry)
+            .increment();
+    }
+
+    /**
+     * Directory users read back from the file, with the time they were saved
+     */
+    @Getter
+    public static final class Stored {
+        private final List<DirectoryUser> users;
+        private final int totalAvailable;
+        private final Instant savedAt;
+
+        Stored(List<DirectoryUser> users, int totalAvailable, Instant savedAt) {
+            this.users = users;
+            this.totalAvailable = totalAvailable;
+            this.savedAt = savedAt;
+        }
+    }
+}
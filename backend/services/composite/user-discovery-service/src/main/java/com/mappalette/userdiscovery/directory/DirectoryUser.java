@@ -0,0 +1,80 @@
+package com.mappalette.userdiscovery.directory;
+
+import com.mappalette.userdiscovery.dto.UserDto;
+import lombok.Getter;
+
+import java.util.Objects;
+
+/**
+ * Immutable, normalized directory entry, built once when a user-service page is read.
+ * Snapshots share these between requests; per-request state such as isFollowing
+ * lives in {@link com.mappalette.userdiscovery.dto.UserView} instead.
+ */
+@Getter
+public final class DirectoryUser {
+
+    static final String DEFAULT_PROFILE_PICTURE = "/resources/images/default-profile.png";
+
+    private final String id;
+    // Dense int for id from UserIdInterner, used by FollowingSet and the snapshot's bitmaps
+    private final int internedId;
+    private final String username;
+    private final String profilePicture;
+    private final boolean profilePrivate;
+    private final Integer numFollowers;
+    private final Integer numFollowing;
+
+    private DirectoryUser(String id, int internedId, String username, String profilePicture, boolean profilePrivate,
+                          Integer numFollowers, Integer numFollowing) {
+        this.id = id;
+        this.internedId = internedId;
+        this.username = username;
+        this.profilePicture = profilePicture;
+        this.profilePrivate = profilePrivate;
+        this.numFollowers = numFollowers;
+        this.numFollowing = numFollowing;
+    }
+
+    /**
+     * Normalizes a user as received from user-service: id/userID unified and the default
+     * profile picture filled in. Returns null for users without any ID.
+     */
+    public static DirectoryUser from(UserDto user, UserIdInterner interner) {
+        String id = user.getId() != null ? user.getId() : user.getUserID();
+        if (id == null) {
+            return null;
+        }
+        return of(id, interner.intern(id), user.getUsername(), user.getProfilePicture(), user.isProfilePrivate(),
+            user.getNumFollowers(), user.getNumFollowing());
+    }
+
+    /**
+     * Normalizes a user whose ID is already resolved, filling in the default profile picture.
+     */
+    static DirectoryUser of(String id, int internedId, String username, String profilePicture, boolean profilePrivate,
+                            Integer numFollowers, Integer numFollowing) {
+        String picture = profilePicture == null || profilePicture.isEmpty() ? DEFAULT_PROFILE_PICTURE : profilePicture;
+        return new DirectoryUser(id, internedId, username, picture, profilePrivate, numFollowers, numFollowing);
+    }
+
+    /**
+     * @return true if both entries hold the same user with the same profile data
+     */
+    boolean sameAs(DirectoryUser other) {
+        return id.equals(other.id)
+            && profilePrivate == other.profilePrivate
+            && Objects.equals(username, other.username)
+            && Objects.equals(profilePicture, other.profilePicture)
+            && Objects.equals(numFollowers, other.numFollowers)
+            && Objects.equals(numFollowing, other.numFollowing);
+    }
+
+    /**
+     * Stand-in for a user a {@link DirectoryFilter} dropped while its page was parsed. Only the
+     * fields the filter looks at are kept, so the same filter rejects it again, and it keeps
+     * directory positions (offsets, cursors) the same as for a fully read page.
+     */
+    static DirectoryUser rejected(String id, int internedId, boolean profilePrivate) {
+        return new DirectoryUser(id, internedId, null, null, profilePrivate, null, null);
+    }
+}
@@ -0,0 +1,28 @@
+package com.mappalette.userdiscovery.directory;
+
+/**
+ * Order-sensitive 64-bit fingerprints over sequences of ids or versions, used to tell
+ * whether a following set or a response changed without keeping the old one around.
+ */
+public final class Fingerprints {
+
+    private Fingerprints() {
+    }
+
+    /**
+     * Folds one more value into a fingerprint.
+     */
+    public static long add(long fingerprint, long value) {
+        return mix(fingerprint * 31 + value);
+    }
+
+    /**
+     * SplitMix64 finalizer: spreads every input bit over the whole result.
+     */
+    static long mix(long value) {
+        long z = value;
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
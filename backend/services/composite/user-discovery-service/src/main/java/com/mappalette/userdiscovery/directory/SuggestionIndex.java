@@ -0,0 +1,265 @@
+package com.mappalette.userdiscovery.directory;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Index of public users for random suggestions.
+ *
+ * Public users are kept as interned int ids in a dense array with a reverse slot
+ * table, so membership changes are O(1) and a uniformly random member is one array
+ * read. Sampling k users a viewer does not follow uses rejection sampling against
+ * their following set: expected O(k + |following|), with a bounded linear fallback
+ * when almost every public user is excluded.
+ *
+ * The index is updated incrementally from each new directory snapshot; only users
+ * that appeared, disappeared or changed privacy touch the arrays.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class SuggestionIndex {
+
+    private static final int NOT_A_MEMBER = -1;
+
+    private final UserIdInterner userIdInterner;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // members[0..size) are interned ids of public users; slotOf[id] is the position in members
+    private int[] members = new int[0];
+    private int size;
+    private int[] slotOf = new int[0];
+    private DirectoryUser[] usersById = new DirectoryUser[0];
+    private BitSet present = new BitSet();
+    private long appliedVersion;
+
+    @EventListener
+    public void onDirectoryRefreshed(UserDirectoryRefreshedEvent event) {
+        apply(event.getSnapshot());
+    }
+
+    /**
+     * Draws up to {@code k} distinct public users that are neither the viewer nor followed by them.
+     */
+    public List<DirectoryUser> sample(int k, String viewerId, FollowingSet following) {
+        if (k <= 0) {
+            return new ArrayList<>();
+        }
+
+        lock.readLock().lock();
+        try {
+            List<DirectoryUser> picked = new ArrayList<>(Math.min(k, size));
+            if (size == 0) {
+                return picked;
+            }
+
+            int viewer = userIdInterner.lookup(viewerId);
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            int maxDraws = 2 * k + following.size() + 1;
+            SlotSet triedSlots = new SlotSet(Math.min(maxDraws, size));
+            for (int draw = 0; draw < maxDraws && picked.size() < k && triedSlots.size() < size; draw++) {
+                int slot = random.nextInt(size);
+                if (triedSlots.add(slot)) {
+                    int id = members[slot];
+                    if (isCandidate(id, viewer, following)) {
+                        picked.add(usersById[id]);
+                    }
+                }
+            }
+
+            if (picked.size() < k && triedSlots.size() < size) {
+                // Nearly everyone is excluded: sweep the remaining slots from a random start
+                int start = random.nextInt(size);
+                for (int i = 0; i < size && picked.size() < k; i++) {
+                    int slot = (start + i) % size;
+                    if (!triedSlots.contains(slot)) {
+                        int id = members[slot];
+                        if (isCandidate(id, viewer, following)) {
+                            picked.add(usersById[id]);
+                        }
+                    }
+                }
+                Collections.shuffle(picked, random);
+            }
+            return picked;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Counts public users that are neither the viewer nor followed by them, in O(|following|).
+     */
+    public int countCandidates(String viewerId, FollowingSet following) {
+        lock.readLock().lock();
+        try {
+            int viewer = userIdInterner.lookup(viewerId);
+            int excluded = isMember(viewer) ? 1 : 0;
+            for (int i = 0; i < following.size(); i++) {
+                int id = following.idAt(i);
+                if (id != viewer && isMember(id)) {
+                    excluded++;
+                }
+            }
+            return size - excluded;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the public user with this interned id, or null if they are private or not in the directory
+     */
+    public DirectoryUser publicUser(int internedId) {
+        lock.readLock().lock();
+        try {
+            return isMember(internedId) ? usersById[internedId] : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Set of member slots for one sample call: an open-addressing int table with linear probing,
+     * sized for the most slots the call can draw, so recording a draw never boxes or resizes.
+     */
+    private static final class SlotSet {
+
+        // slot + 1, so 0 marks an empty cell
+        private final int[] cells;
+        private final int mask;
+        private int size;
+
+        SlotSet(int maxSlots) {
+            int capacity = Integer.highestOneBit(Math.max(1, maxSlots) * 2 - 1) << 1;
+            this.cells = new int[capacity];
+            this.mask = capacity - 1;
+        }
+
+        /**
+         * @return true if the slot was not in the set yet
+         */
+        boolean add(int slot) {
+            int cell = find(slot);
+            if (cells[cell] != 0) {
+                return false;
+            }
+            cells[cell] = slot + 1;
+            size++;
+            return true;
+        }
+
+        boolean contains(int slot) {
+            return cells[find(slot)] != 0;
+        }
+
+        int size() {
+            return size;
+        }
+
+        private int find(int slot) {
+            int hash = slot * 0x9E3779B9;
+            int cell = (hash ^ (hash >>> 16)) & mask;
+            while (cells[cell] != 0 && cells[cell] != slot + 1) {
+                cell = (cell + 1) & mask;
+            }
+            return cell;
+        }
+    }
+
+    private void apply(UserDirectorySnapshot snapshot) {
+        List<DirectoryUser> users = snapshot.getUsers();
+        int[] ids = new int[users.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = users.get(i).getInternedId();
+        }
+
+        lock.writeLock().lock();
+        try {
+            if (snapshot.getVersion() <= appliedVersion) {
+                return;
+            }
+            ensureCapacity(userIdInterner.size());
+
+            BitSet nowPresent = new BitSet(userIdInterner.size());
+            for (int i = 0; i < ids.length; i++) {
+                int id = ids[i];
+                DirectoryUser user = users.get(i);
+                nowPresent.set(id);
+                usersById[id] = user;
+                if (user.isProfilePrivate()) {
+                    remove(id);
+                } else {
+                    add(id);
+                }
+            }
+
+            // Drop users that are no longer in the directory
+            BitSet gone = (BitSet) present.clone();
+            gone.andNot(nowPresent);
+            for (int id = gone.nextSetBit(0); id >= 0; id = gone.nextSetBit(id + 1)) {
+                remove(id);
+                usersById[id] = null;
+            }
+
+            present = nowPresent;
+            appliedVersion = snapshot.getVersion();
+            log.debug("Suggestion index at v{}: {} public users", appliedVersion, size);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static boolean isCandidate(int id, int viewer, FollowingSet following) {
+        return id != viewer && !following.contains(id);
+    }
+
+    private boolean isMember(int id) {
+        return id >= 0 && id < slotOf.length && slotOf[id] != NOT_A_MEMBER;
+    }
+
+    private void add(int id) {
+        if (slotOf[id] != NOT_A_MEMBER) {
+            return;
+        }
+        if (size == members.length) {
+            members = Arrays.copyOf(members, Math.max(16, size * 2));
+        }
+        members[size] = id;
+        slotOf[id] = size;
+        size++;
+    }
+
+    private void remove(int id) {
+        int slot = slotOf[id];
+        if (slot == NOT_A_MEMBER) {
+            return;
+        }
+        // Move the last member into the freed slot
+        int last = members[--size];
+        members[slot] = last;
+        slotOf[last] = slot;
+        slotOf[id] = NOT_A_MEMBER;
+    }
+
+    private void ensureCapacity(int idCount) {
+        if (slotOf.length >= idCount) {
+            return;
+        }
+        int capacity = Math.max(idCount, slotOf.length * 2);
+        int oldLength = slotOf.length;
+        slotOf = Arrays.copyOf(slotOf, capacity);
+        Arrays.fill(slotOf, oldLength, capacity, NOT_A_MEMBER);
+        usersById = Arrays.copyOf(usersById, capacity);
+    }
+}
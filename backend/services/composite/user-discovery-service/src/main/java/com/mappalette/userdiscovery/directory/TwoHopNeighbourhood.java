@@ -0,0 +1,165 @@
+package com.mappalette.userdiscovery.directory;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Immutable friends-of-friends neighbourhood of one viewer: every user followed by someone
+ * the viewer follows, with the number of such mutual connections, plus the viewer's own
+ * followers. The viewer and the users they already follow are left out.
+ *
+ * Built by concatenating the followees' {@link FollowingSet}s, sorting once and counting
+ * runs, then merging the followers in, which is O(E log E) in the number of 2-hop edges and
+ * allocates no per-candidate objects. Candidates are held as parallel arrays of interned ids,
+ * sorted by id.
+ */
+public final class TwoHopNeighbourhood {
+
+    public static final TwoHopNeighbourhood EMPTY = new TwoHopNeighbourhood(new int[0], new int[0], new boolean[0], 0);
+
+    private final int[] ids;
+    private final int[] mutualCounts;
+    private final boolean[] followsViewer;
+    private final int expandedFollowees;
+
+    private TwoHopNeighbourhood(int[] ids, int[] mutualCounts, boolean[] followsViewer, int expandedFollowees) {
+        this.ids = ids;
+        this.mutualCounts = mutualCounts;
+        this.followsViewer = followsViewer;
+        this.expandedFollowees = expandedFollowees;
+    }
+
+    /**
+     * @param viewerId interned id of the viewer, or -1 if unknown
+     * @param following users the viewer follows, excluded from the candidates
+     * @param followeeSets following sets of the followees that were expanded
+     * @param followers users following the viewer
+     * @param maxCandidates candidates kept; those with the fewest connections are dropped first
+     */
+    public static TwoHopNeighbourhood build(int viewerId, FollowingSet following, List<FollowingSet> followeeSets,
+                                            FollowingSet followers, int maxCandidates) {
+        int edges = 0;
+        for (FollowingSet set : followeeSets) {
+            edges += set.size();
+        }
+        int[] secondHop = new int[edges];
+        int filled = 0;
+        for (FollowingSet set : followeeSets) {
+            for (int i = 0; i < set.size(); i++) {
+                secondHop[filled++] = set.idAt(i);
+            }
+        }
+        Arrays.sort(secondHop);
+
+        // Merge the counted runs of second-hop ids with the sorted followers
+        int capacity = Math.min(edges + followers.size(), Math.max(0, maxCandidates) * 4 + 64);
+        int[] ids = new int[capacity];
+        int[] mutualCounts = new int[capacity];
+        boolean[] followsViewer = new boolean[capacity];
+        int count = 0;
+        int hop = 0;
+        int follower = 0;
+        while (hop < edges || follower < followers.size()) {
+            int nextHop = hop < edges ? secondHop[hop] : Integer.MAX_VALUE;
+            int nextFollower = follower < followers.size() ? followers.idAt(follower) : Integer.MAX_VALUE;
+            int id = Math.min(nextHop, nextFollower);
+            int mutual = 0;
+            while (hop < edges && secondHop[hop] == id) {
+                mutual++;
+                hop++;
+            }
+            boolean follows = nextFollower == id;
+            if (follows) {
+                follower++;
+            }
+            if (id == viewerId || following.contains(id)) {
+                continue;
+            }
+            if (count == ids.length) {
+                // Shrink to the best maxCandidates before growing, so a huge graph never holds more than a few times that
+                count = prune(ids, mutualCounts, followsViewer, count, maxCandidates);
+                if (count == ids.length) {
+                    int grown = Math.max(16, ids.length * 2);
+                    ids = Arrays.copyOf(ids, grown);
+                    mutualCounts = Arrays.copyOf(mutualCounts, grown);
+                    followsViewer = Arrays.copyOf(followsViewer, grown);
+                }
+            }
+            ids[count] = id;
+            mutualCounts[count] = mutual;
+            followsViewer[count] = follows;
+            count++;
+        }
+        count = prune(ids, mutualCounts, followsViewer, count, maxCandidates);
+        if (count == 0) {
+            return EMPTY;
+        }
+        return new TwoHopNeighbourhood(Arrays.copyOf(ids, count), Arrays.copyOf(mutualCounts, count),
+            Arrays.copyOf(followsViewer, count), followeeSets.size());
+    }
+
+    public int size() {
+        return ids.length;
+    }
+
+    public int idAt(int index) {
+        return ids[index];
+    }
+
+    public int mutualCountAt(int index) {
+        return mutualCounts[index];
+    }
+
+    public boolean followsViewerAt(int index) {
+        return followsViewer[index];
+    }
+
+    /**
+     * @return how many of the viewer's followees were expanded; fewer than they follow when capped
+     */
+    public int getExpandedFollowees() {
+        return expandedFollowees;
+    }
+
+    /**
+     * Keeps the {@code max} entries with the most connections (a follower counts as one),
+     * in place and in id order. Finds the cut-off from a histogram of connection counts,
+     * so it is linear in {@code count}.
+     */
+    private static int prune(int[] ids, int[] mutualCounts, boolean[] followsViewer, int count, int max) {
+        if (count <= max) {
+            return count;
+        }
+        int highest = 0;
+        for (int i = 0; i < count; i++) {
+            highest = Math.max(highest, connections(mutualCounts[i], followsViewer[i]));
+        }
+        int[] histogram = new int[highest + 1];
+        for (int i = 0; i < count; i++) {
+            histogram[connections(mutualCounts[i], followsViewer[i])]++;
+        }
+        // Entries above cutOff are all kept; ties at cutOff fill the remaining places in id order
+        int cutOff = highest;
+        int above = 0;
+        while (cutOff > 0 && above + histogram[cutOff] < max) {
+            above += histogram[cutOff];
+            cutOff--;
+        }
+        int tiesLeft = max - above;
+        int kept = 0;
+        for (int i = 0; i < count; i++) {
+            int connections = connections(mutualCounts[i], followsViewer[i]);
+            if (connections > cutOff || (connections == cutOff && tiesLeft-- > 0)) {
+                ids[kept] = ids[i];
+                mutualCounts[kept] = mutualCounts[i];
+                followsViewer[kept] = followsViewer[i];
+                kept++;
+            }
+        }
+        return kept;
+    }
+
+    private static int connections(int mutualCount, boolean followsViewer) {
+        return mutualCount + (followsViewer ? 1 : 0);
+    }
+}
@@ -0,0 +1,382 @@
+package com.mappalette.userdiscovery.directory;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * In-process cache of the user directory served by user-service.
+ *
+ * The snapshot is refreshed in the background on a fixed interval. Reads never
+ * wait on user-service once a snapshot exists: a snapshot older than the refresh
+ * interval is still served while a single background refresh is kicked off
+ * (stale-while-revalidate). Only the very first read blocks, and concurrent cold
+ * reads share that one load.
+ *
+ * Between full loads, user created / updated / deleted events are applied to the current
+ * snapshot as copy-on-write changes. When such an event feed is in place, full loads only
+ * need to run every reconcile interval as a safety net for lost events. Changes applied while
+ * a full load is running are replayed on top of its result, so a load that read user-service
+ * before an event arrived cannot undo it.
+ *
+ * With a snapshot file configured, each full load is also persisted through
+ * {@link DirectorySnapshotStore}. On startup the persisted directory is served right away,
+ * before user-service has answered, and a full load is started in the background to
+ * reconcile it.
+ */
+@Component
+@Slf4j
+public class UserDirectoryCache {
+
+    private final UserDirectoryPager userDirectoryPager;
+    private final ApplicationEventPublisher eventPublisher;
+    private final DirectorySnapshotStore snapshotStore;
+    private final int maxUsers;
+    // How long a full load stays good; the refresh interval unless an event feed keeps the snapshot current
+    private final long fullLoadIntervalMs;
+
+    private final AtomicReference<UserDirectorySnapshot> current = new AtomicReference<>();
+    private final AtomicBoolean refreshInFlight = new AtomicBoolean();
+    // A lock rather than synchronized so a cold load does not pin a virtual thread's carrier
+    private final ReentrantLock initialLoadLock = new ReentrantLock();
+    private final AtomicLong versions = new AtomicLong();
+    private volatile long lastFullLoadNanos;
+    // Guards installing snapshots together with the replay log of changes seen during full loads
+    private final ReentrantLock updateLock = new ReentrantLock();
+    private int fullLoadsInFlight;
+    // Full loads numbered in the order they started reading user-service, and the newest one installed
+    private long fullLoadsStarted;
+    private long newestInstalledLoad;
+    private final List<DirectoryChange> replayLog = new ArrayList<>();
+    // Set while user-service is failing, i.e. reads are served from the last good snapshot
+    private volatile boolean degraded;
+    // Set while the current snapshot was restored from the snapshot file and no full load has succeeded yet
+    private volatile boolean restored;
+    private final ExecutorService refreshExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "user-directory-refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Counter hits;
+    private final Counter staleHits;
+    private final Counter misses;
+    private final Counter refreshFailures;
+
+    public UserDirectoryCache(UserDirectoryPager userDirectoryPager,
+                              ApplicationEventPublisher eventPublisher,
+                              DirectorySnapshotStore snapshotStore,
+                              MeterRegistry meterRegistry,
+                              @Value("${discovery.directory.max-users:1000}") int maxUsers,
+                              @Value("${discovery.directory.refresh-interval-ms:30000}") long refreshIntervalMs,
+                              @Value("${discovery.directory.reconcile-interval-ms:0}") long reconcileIntervalMs) {
+        this.userDirectoryPager = userDirectoryPager;
+        this.eventPublisher = eventPublisher;
+        this.snapshotStore = snapshotStore;
+        this.maxUsers = maxUsers;
+        this.fullLoadIntervalMs = Math.max(refreshIntervalMs, reconcileIntervalMs);
+
+        this.hits = Counter.builder("discovery.directory.requests")
+            .tag("result", "hit")
+            .description("Directory reads served from a fresh snapshot")
+            .register(meterRegistry);
+        this.staleHits = Counter.builder("discovery.directory.requests")
+            .tag("result", "stale")
+            .description("Directory reads served from a stale snapshot while a refresh runs")
+            .register(meterRegistry);
+        this.misses = Counter.builder("discovery.directory.requests")
+            .tag("result", "miss")
+            .description("Directory reads that had to wait for a load from user-service")
+            .register(meterRegistry);
+        this.refreshFailures = Counter.builder("discovery.directory.refresh.failures")
+            .description("Failed directory refreshes from user-service")
+            .register(meterRegistry);
+        Gauge.builder("discovery.directory.age.seconds", current, latest -> {
+                UserDirectorySnapshot snapshot = latest.get();
+                return snapshot != null ? snapshot.age().toMillis() / 1000.0 : Double.NaN;
+            })
+            .description("Age of the current directory snapshot")
+            .register(meterRegistry);
+        Gauge.builder("discovery.directory.size", current, latest -> {
+                UserDirectorySnapshot snapshot = latest.get();
+                return snapshot != null ? snapshot.size() : 0;
+            })
+            .description("Number of users held in the directory snapshot")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Returns the current directory snapshot, loading it synchronously only if none exists yet.
+     */
+    public UserDirectorySnapshot getSnapshot() {
+        UserDirectorySnapshot snapshot = current.get();
+        if (snapshot == null) {
+            misses.increment();
+            return loadInitial();
+        }
+
+        if (fullLoadDue()) {
+            staleHits.increment();
+            refreshAsync();
+        } else {
+            hits.increment();
+        }
+        return snapshot;
+    }
+
+    /**
+     * @return true once a snapshot exists, so {@link #getSnapshot()} returns without waiting on user-service
+     */
+    public boolean isLoaded() {
+        return current.get() != null;
+    }
+
+    /**
+     * @return true if the last refresh failed and the current snapshot is the last good one
+     */
+    public boolean isDegraded() {
+        return degraded;
+    }
+
+    /**
+     * Serves the persisted directory, if any, as soon as the application is up rather than on the first read
+     */
+    @EventListener(ContextRefreshedEvent.class)
+    public void warmStart() {
+        if (snapshotStore.isEnabled() && current.get() == null) {
+            initialLoadLock.lock();
+            try {
+                if (current.get() == null) {
+                    restore();
+                }
+            } finally {
+                initialLoadLock.unlock();
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${discovery.directory.refresh-interval-ms:30000}")
+    public void scheduledRefresh() {
+        if (fullLoadDue()) {
+            refreshAsync();
+        }
+    }
+
+    /**
+     * Applies user changes to the current snapshot and makes the result current.
+     * Changes arriving before the first load are dropped, since that load reads them anyway.
+     */
+    public void apply(List<DirectoryChange> changes) {
+        if (changes.isEmpty()) {
+            return;
+        }
+        UserDirectorySnapshot snapshot;
+        updateLock.lock();
+        try {
+            UserDirectorySnapshot base = current.get();
+            if (base == null) {
+                return;
+            }
+            if (fullLoadsInFlight > 0) {
+                replayLog.addAll(changes);
+            }
+            snapshot = base.withChanges(changes, maxUsers, versions.incrementAndGet(), Instant.now());
+            current.set(snapshot);
+        } finally {
+            updateLock.unlock();
+        }
+        eventPublisher.publishEvent(new UserDirectoryRefreshedEvent(snapshot));
+        log.debug("Applied {} user changes, directory snapshot v{} with {} users",
+            changes.size(), snapshot.getVersion(), snapshot.size());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // Persist changes applied from events since the last full load, so a restart starts from them
+        UserDirectorySnapshot snapshot = current.get();
+        if (snapshot != null) {
+            snapshotStore.write(snapshot);
+        }
+        refreshExecutor.shutdownNow();
+    }
+
+    private UserDirectorySnapshot loadInitial() {
+        initialLoadLock.lock();
+        try {
+            UserDirectorySnapshot snapshot = current.get();
+            if (snapshot != null) {
+                return snapshot;
+            }
+            snapshot = restore();
+            if (snapshot != null) {
+                return snapshot;
+            }
+            // Let failures propagate so the caller can fall back to its empty response
+            return refresh();
+        } finally {
+            initialLoadLock.unlock();
+        }
+    }
+
+    /**
+     * Installs the directory from the snapshot file and starts reconciling it with user-service.
+     * Must be called holding the initial load lock, with no snapshot installed yet.
+     */
+    private UserDirectorySnapshot restore() {
+        long startedNanos = System.nanoTime();
+        DirectorySnapshotStore.Stored stored = snapshotStore.read(maxUsers);
+        if (stored == null) {
+            return null;
+        }
+        UserDirectorySnapshot snapshot;
+        updateLock.lock();
+        try {
+            long version = versions.incrementAndGet();
+            // loadedAt is when the file was saved, so the age gauge shows how old the restored directory is
+            snapshot = new UserDirectorySnapshot(stored.getUsers(), stored.getTotalAvailable(), version, version,
+                stored.getSavedAt());
+            current.set(snapshot);
+            restored = true;
+        } finally {
+            updateLock.unlock();
+        }
+        eventPublisher.publishEvent(new UserDirectoryRefreshedEvent(snapshot));
+        log.info("Restored user directory snapshot with {} users saved at {} in {} ms, reconciling with user-service",
+            snapshot.size(), stored.getSavedAt(), (System.nanoTime() - startedNanos) / 1_000_000);
+        refreshAsync();
+        return snapshot;
+    }
+
+    private void persistAsync(UserDirectorySnapshot snapshot) {
+        if (!snapshotStore.isEnabled()) {
+            return;
+        }
+        try {
+            refreshExecutor.execute(() -> snapshotStore.write(snapshot));
+        } catch (RejectedExecutionException e) {
+            // Shutting down; shutdown() writes the final snapshot itself
+        }
+    }
+
+    private void refreshAsync() {
+        if (!refreshInFlight.compareAndSet(false, true)) {
+            return;
+        }
+        refreshExecutor.execute(() -> {
+            try {
+                refresh();
+            } catch (Exception e) {
+                refreshFailures.increment();
+                degraded = true;
+                log.warn("Could not refresh user directory, keeping previous snapshot: {}", e.getMessage());
+            } finally {
+                refreshInFlight.set(false);
+            }
+        });
+    }
+
+    private boolean fullLoadDue() {
+        return current.get() == null || restored || System.nanoTime() - lastFullLoadNanos > fullLoadIntervalMs * 1_000_000;
+    }
+
+    private UserDirectorySnapshot refresh() {
+        long loadNumber;
+        updateLock.lock();
+        try {
+            fullLoadsInFlight++;
+            loadNumber = ++fullLoadsStarted;
+        } finally {
+            updateLock.unlock();
+        }
+        try {
+            return load(loadNumber);
+        } finally {
+            updateLock.lock();
+            try {
+                if (--fullLoadsInFlight == 0) {
+                    replayLog.clear();
+                }
+            } finally {
+                updateLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * @param loadNumber when this load started reading user-service relative to other full loads
+     */
+    private UserDirectorySnapshot load(long loadNumber) {
+        long startedNanos = System.nanoTime();
+        List<DirectoryUser> users = new ArrayList<>();
+        int totalAvailable;
+        int pageSize = UserDirectoryPager.PAGE_SIZE;
+        try (DirectoryPageStream pages = userDirectoryPager.stream(1, (maxUsers + pageSize - 1) / pageSize,
+                DirectoryFilter.ALL)) {
+            while (pages.hasNext() && users.size() < maxUsers) {
+                for (DirectoryUser user : pages.next()) {
+                    if (users.size() >= maxUsers) {
+                        break;
+                    }
+                    users.add(user);
+                }
+            }
+            totalAvailable = Math.max(pages.getTotal(), users.size());
+        }
+
+        UserDirectorySnapshot snapshot;
+        UserDirectorySnapshot latest;
+        updateLock.lock();
+        try {
+            long version = versions.incrementAndGet();
+            UserDirectorySnapshot previous = current.get();
+            // An unchanged directory keeps its content version, and with it every ETag derived from it
+            long contentVersion = replayLog.isEmpty() && previous != null && previous.hasContent(users, totalAvailable)
+                ? previous.getContentVersion()
+                : version;
+            snapshot = new UserDirectorySnapshot(users, totalAvailable, version, contentVersion, Instant.now());
+            if (!replayLog.isEmpty()) {
+                // Changes that arrived while user-service was being read; reapplying known ones is harmless
+                snapshot = snapshot.withChanges(replayLog, maxUsers, snapshot.getVersion(), snapshot.getLoadedAt());
+            }
+            // A cold load and a background refresh may overlap. A load that started reading user-service
+            // before the installed one did holds older data, however late it finishes, so it is dropped.
+            if (loadNumber > newestInstalledLoad) {
+                newestInstalledLoad = loadNumber;
+                latest = snapshot;
+                current.set(snapshot);
+            } else {
+                latest = previous;
+            }
+        } finally {
+            updateLock.unlock();
+        }
+        if (latest == snapshot) {
+            lastFullLoadNanos = startedNanos;
+            degraded = false;
+            restored = false;
+            persistAsync(snapshot);
+            eventPublisher.publishEvent(new UserDirectoryRefreshedEvent(snapshot));
+            log.debug("Refreshed user directory snapshot v{} with {} users", snapshot.getVersion(), snapshot.size());
+        }
+        return latest;
+    }
+}
@@ -0,0 +1,80 @@
+package com.mappalette.userdiscovery.directory;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mappalette.userdiscovery.client.UpstreamCalls;
+import com.mappalette.userdiscovery.client.UserServiceClient;
+import feign.FeignException;
+import feign.Response;
+import feign.codec.DecodeException;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.concurrent.Executor;
+
+/**
+ * Reads the user directory from user-service one page at a time, in user-service's
+ * newest-first order, normalizing each user the same way the snapshot does.
+ */
+@Component
+public class UserDirectoryPager {
+
+    // user-service rejects page sizes above 100
+    public static final int PAGE_SIZE = 100;
+
+    private final UserServiceClient userServiceClient;
+    private final UpstreamCalls upstreamCalls;
+    private final UserPageReader pageReader;
+    private final Executor upstreamExecutor;
+    private final int prefetchPages;
+
+    public UserDirectoryPager(UserServiceClient userServiceClient,
+                              UpstreamCalls upstreamCalls,
+                              ObjectMapper objectMapper,
+                              UserIdInterner userIdInterner,
+                              @Qualifier("upstreamExecutor") Executor upstreamExecutor,
+                              @Value("${discovery.directory.prefetch-pages:2}") int prefetchPages) {
+        this.userServiceClient = userServiceClient;
+        this.upstreamCalls = upstreamCalls;
+        this.pageReader = new UserPageReader(objectMapper.getFactory(), userIdInterner);
+        this.upstreamExecutor = upstreamExecutor;
+        this.prefetchPages = prefetchPages;
+    }
+
+    /**
+     * Streams pages {@code firstPage..lastPage} (1-based, inclusive) with bounded prefetch,
+     * parsing only the users {@code filter} accepts in full.
+     */
+    public DirectoryPageStream stream(int firstPage, int lastPage, DirectoryFilter filter) {
+        return new DirectoryPageStream(this, upstreamExecutor, prefetchPages, firstPage, lastPage, filter);
+    }
+
+    /**
+     * Scans the directory from {@code position}: the snapshot first, then user-service pages past its cap.
+     * Streamed users {@code filter} rejects come back as stand-ins the same filter rejects again.
+     */
+    public DirectoryScan scan(UserDirectorySnapshot snapshot, int position, DirectoryFilter filter) {
+        return new DirectoryScan(this, snapshot, position, filter);
+    }
+
+    /**
+     * Fetches one page (1-based) of normalized users; users without any ID are dropped.
+     */
+    public DirectoryPage fetchPage(int page, DirectoryFilter filter) {
+        return upstreamCalls.userService(() -> {
+            // Read the body inside the guarded call, so its time counts and a broken body trips the breaker
+            try (Response response = userServiceClient.getAllUsersPage(page, PAGE_SIZE)) {
+                if (response.status() < 200 || response.status() >= 300) {
+                    throw FeignException.errorStatus("UserServiceClient#getAllUsersPage", response);
+                }
+                try {
+                    return pageReader.read(response.body().asInputStream(), filter);
+                } catch (IOException e) {
+                    throw new DecodeException(response.status(),
+                        "Could not read user-service page " + page + ": " + e.getMessage(), response.request(), e);
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,14 @@
+package com.mappalette.userdiscovery.directory;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Published synchronously whenever a new directory snapshot becomes current.
+ */
+@Getter
+@RequiredArgsConstructor
+public class UserDirectoryRefreshedEvent {
+
+    private final UserDirectorySnapshot snapshot;
+}
@@ -0,0 +1,220 @@
+package com.mappalette.userdiscovery.directory;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable point-in-time copy of the user directory.
+ * Users are normalized, immutable {@link DirectoryUser}s and shared between requests.
+ *
+ * Alongside the list, the snapshot keeps two bitmaps over interned ids, all users and
+ * public users, so a request's totals are a population count minus the viewer's
+ * {@link FollowingSet} probed against the bitmap, rather than a filter pass over every user.
+ * A position table over the same ids finds the users someone follows the same way, so
+ * listing them costs one probe per followed user instead of a scan of the directory.
+ *
+ * Every snapshot gets a new version, but a full reload that finds exactly the users the
+ * previous snapshot held keeps its content version, so anything derived from the content
+ * alone, such as response ETags, stays valid across reloads.
+ */
+@Getter
+public final class UserDirectorySnapshot {
+
+    private final List<DirectoryUser> users;
+    // Number of users user-service reported; larger than users.size() when the snapshot is capped
+    private final int totalAvailable;
+    private final long version;
+    // Version of the first snapshot holding exactly these users
+    private final long contentVersion;
+    private final Instant loadedAt;
+    @Getter(AccessLevel.NONE)
+    private final BitSet presentIds = new BitSet();
+    @Getter(AccessLevel.NONE)
+    private final BitSet publicIds = new BitSet();
+    // positions[internedId] is that user's index in users, or -1; sized to the largest interned id held
+    @Getter(AccessLevel.NONE)
+    private final int[] positions;
+    @Getter(AccessLevel.NONE)
+    private final int presentCount;
+    @Getter(AccessLevel.NONE)
+    private final int publicCount;
+
+    public UserDirectorySnapshot(List<DirectoryUser> users, int totalAvailable, long version, long contentVersion,
+                                 Instant loadedAt) {
+        this.users = List.copyOf(users);
+        this.totalAvailable = totalAvailable;
+        this.version = version;
+        this.contentVersion = contentVersion;
+        this.loadedAt = loadedAt;
+        for (DirectoryUser user : this.users) {
+            presentIds.set(user.getInternedId());
+            if (!user.isProfilePrivate()) {
+                publicIds.set(user.getInternedId());
+            }
+        }
+        this.positions = new int[presentIds.length()];
+        Arrays.fill(positions, -1);
+        for (int i = 0; i < this.users.size(); i++) {
+            positions[this.users.get(i).getInternedId()] = i;
+        }
+        this.presentCount = presentIds.cardinality();
+        this.publicCount = publicIds.cardinality();
+    }
+
+    public int size() {
+        return users.size();
+    }
+
+    /**
+     * @return true if user-service holds more users than the snapshot was allowed to keep
+     */
+    public boolean isTruncated() {
+        return totalAvailable > users.size();
+    }
+
+    /**
+     * @return true if this snapshot holds exactly the given users, in this order, out of the same total
+     */
+    public boolean hasContent(List<DirectoryUser> otherUsers, int otherTotalAvailable) {
+        if (otherTotalAvailable != totalAvailable || otherUsers.size() != users.size()) {
+            return false;
+        }
+        for (int i = 0; i < users.size(); i++) {
+            if (!users.get(i).sameAs(otherUsers.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Copy of this snapshot with the given changes applied in order.
+     *
+     * user-service lists users newest first, so created users go to the front. Updates and
+     * deletions of users the snapshot does not hold (e.g. past its cap) are ignored, and a
+     * snapshot at its cap keeps its size by dropping users off the end; the next full reload
+     * settles both.
+     */
+    public UserDirectorySnapshot withChanges(List<DirectoryChange> changes, int maxUsers, long version, Instant now) {
+        Map<String, Integer> positions = new HashMap<>(users.size() * 2);
+        for (int i = 0; i < users.size(); i++) {
+            positions.put(users.get(i).getId(), i);
+        }
+        DirectoryUser[] updated = users.toArray(new DirectoryUser[0]);
+        // Insertion order is creation order; reversed below so the newest user comes first
+        Map<String, DirectoryUser> created = new LinkedHashMap<>();
+        int total = totalAvailable;
+
+        for (DirectoryChange change : changes) {
+            String userId = change.getUserId();
+            Integer position = positions.get(userId);
+            switch (change.getKind()) {
+                case CREATED, UPDATED -> {
+                    if (position != null && updated[position] != null) {
+                        updated[position] = change.getUser();
+                    } else if (created.containsKey(userId) || change.getKind() == DirectoryChange.Kind.CREATED) {
+                        if (created.put(userId, change.getUser()) == null) {
+                            total++;
+                        }
+                    }
+                }
+                case DELETED -> {
+                    if (position != null && updated[position] != null) {
+                        updated[position] = null;
+                        total--;
+                    } else if (created.remove(userId) != null) {
+                        total--;
+                    }
+                }
+            }
+        }
+
+        List<DirectoryUser> merged = new ArrayList<>(Math.min(maxUsers, created.size() + updated.length));
+        List<DirectoryUser> newest = new ArrayList<>(created.values());
+        for (int i = newest.size() - 1; i >= 0 && merged.size() < maxUsers; i--) {
+            merged.add(newest.get(i));
+        }
+        for (int i = 0; i < updated.length && merged.size() < maxUsers; i++) {
+            if (updated[i] != null) {
+                merged.add(updated[i]);
+            }
+        }
+        return new UserDirectorySnapshot(merged, Math.max(total, merged.size()), version, version, now);
+    }
+
+    /**
+     * Number of snapshot users the filter accepts; users past the snapshot cap are not counted.
+     */
+    public int countAccepted(DirectoryFilter filter) {
+        BitSet candidates = filter.isPrivateProfilesIncluded() ? presentIds : publicIds;
+        int count = filter.isPrivateProfilesIncluded() ? presentCount : publicCount;
+        int viewerId = filter.getViewerId();
+        if (viewerId >= 0 && candidates.get(viewerId)) {
+            count--;
+        }
+        return count - filter.getFollowing().countIn(candidates, viewerId);
+    }
+
+    /**
+     * Number of snapshot users, private or not, the filter's viewer follows, leaving out the viewer.
+     */
+    public int countFollowed(DirectoryFilter filter) {
+        return filter.getFollowing().countIn(presentIds, filter.getViewerId());
+    }
+
+    /**
+     * The first {@code limit} snapshot users, private or not, the filter's viewer follows, leaving
+     * out the viewer, in directory order. Costs a probe per followed user and a sort of the
+     * ones found, however large the snapshot is.
+     */
+    public List<DirectoryUser> followedUsers(DirectoryFilter filter, int limit) {
+        FollowingSet following = filter.getFollowing();
+        int[] found = new int[following.size()];
+        int count = 0;
+        for (int i = 0; i < following.size(); i++) {
+            int id = following.idAt(i);
+            if (id != filter.getViewerId() && id < positions.length && positions[id] >= 0) {
+                found[count++] = positions[id];
+            }
+        }
+        Arrays.sort(found, 0, count);
+
+        List<DirectoryUser> followed = new ArrayList<>(Math.max(0, Math.min(limit, count)));
+        for (int i = 0; i < count && followed.size() < limit; i++) {
+            followed.add(users.get(found[i]));
+        }
+        return followed;
+    }
+
+    /**
+     * Interned ids the filter's viewer follows that this snapshot does not hold, leaving out
+     * the viewer, in ascending order. Past a capped snapshot these are users it had no room
+     * for; otherwise they are users deleted since the following list was read.
+     */
+    public int[] followedAbsent(DirectoryFilter filter) {
+        FollowingSet following = filter.getFollowing();
+        int[] absent = new int[following.size()];
+        int count = 0;
+        for (int i = 0; i < following.size(); i++) {
+            int id = following.idAt(i);
+            if (id != filter.getViewerId() && !presentIds.get(id)) {
+                absent[count++] = id;
+            }
+        }
+        return Arrays.copyOf(absent, count);
+    }
+
+    public Duration age() {
+        return Duration.between(loadedAt, Instant.now());
+    }
+}
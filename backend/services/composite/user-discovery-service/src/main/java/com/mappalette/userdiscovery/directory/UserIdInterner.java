@@ -0,0 +1,59 @@
+package com.mappalette.userdiscovery.directory;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Maps user IDs to dense, stable ints so directory indexes can be held in primitive arrays.
+ * IDs are never reassigned, so an int stays valid across directory refreshes.
+ */
+@Component
+public class UserIdInterner {
+
+    private final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<>();
+    private final AtomicInteger nextId = new AtomicInteger();
+    // userIds[id] is the user ID interned as id; holds references to the map's keys, not copies
+    private volatile String[] userIds = new String[1024];
+
+    public int intern(String userId) {
+        Integer id = ids.get(userId);
+        return id != null ? id : ids.computeIfAbsent(userId, this::assign);
+    }
+
+    /**
+     * @return the user ID interned as {@code id}, or null if no such id has been handed out
+     */
+    public String userId(int id) {
+        String[] table = userIds;
+        return id >= 0 && id < table.length ? table[id] : null;
+    }
+
+    /**
+     * @return the interned id, or -1 if the user ID has never been seen
+     */
+    public int lookup(String userId) {
+        Integer id = ids.get(userId);
+        return id != null ? id : -1;
+    }
+
+    /**
+     * @return an exclusive upper bound for every id handed out so far
+     */
+    public int size() {
+        return nextId.get();
+    }
+
+    private synchronized int assign(String userId) {
+        int id = nextId.getAndIncrement();
+        String[] table = userIds;
+        if (id >= table.length) {
+            table = Arrays.copyOf(table, Math.max(id + 1, table.length * 2));
+        }
+        table[id] = userId;
+        userIds = table;
+        return id;
+    }
+}
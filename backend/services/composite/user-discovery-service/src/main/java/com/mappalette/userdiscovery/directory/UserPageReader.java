@@ -0,0 +1,192 @@
+package com.mappalette.userdiscovery.directory;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads a user-service {@code /api/users/all} page straight off the response stream into
+ * {@link DirectoryUser}s, without binding it to {@code PaginatedUsersResponse} first.
+ *
+ * Only the fields a directory entry keeps are read; everything else is skipped token by
+ * token. String fields are held in reusable buffers until the whole user has been read and
+ * the request's {@link DirectoryFilter} has accepted it, so users the filter drops never get
+ * their username or picture materialized.
+ */
+public final class UserPageReader {
+
+    private final JsonFactory jsonFactory;
+    private final UserIdInterner userIdInterner;
+
+    public UserPageReader(JsonFactory jsonFactory, UserIdInterner userIdInterner) {
+        this.jsonFactory = jsonFactory;
+        this.userIdInterner = userIdInterner;
+    }
+
+    /**
+     * Reads one page. Users without any ID are dropped; users the filter rejects are kept as
+     * {@link DirectoryUser#rejected} stand-ins so positions within the page do not shift.
+     */
+    public DirectoryPage read(InputStream body, DirectoryFilter filter) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(body)) {
+            expect(parser, parser.nextToken(), JsonToken.START_OBJECT);
+
+            List<DirectoryUser> users = List.of();
+            int total = -1;
+            int totalPages = -1;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                switch (field) {
+                    case "users" -> users = readUsers(parser, value, filter);
+                    case "pagination" -> {
+                        if (value == JsonToken.START_OBJECT) {
+                            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                                String paginationField = parser.currentName();
+                                parser.nextToken();
+                                if (paginationField.equals("total")) {
+                                    total = parser.getValueAsInt(-1);
+                                } else if (paginationField.equals("totalPages")) {
+                                    totalPages = parser.getValueAsInt(-1);
+                                } else {
+                                    parser.skipChildren();
+                                }
+                            }
+                        }
+                    }
+                    default -> parser.skipChildren();
+                }
+            }
+            return new DirectoryPage(users, total, totalPages);
+        }
+    }
+
+    private List<DirectoryUser> readUsers(JsonParser parser, JsonToken value, DirectoryFilter filter)
+            throws IOException {
+        if (value == JsonToken.VALUE_NULL) {
+            return List.of();
+        }
+        expect(parser, value, JsonToken.START_ARRAY);
+
+        List<DirectoryUser> users = new ArrayList<>(UserDirectoryPager.PAGE_SIZE);
+        UserFields fields = new UserFields();
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+            if (token != JsonToken.START_OBJECT) {
+                parser.skipChildren();
+                continue;
+            }
+            DirectoryUser user = fields.read(parser, filter, userIdInterner);
+            if (user != null) {
+                users.add(user);
+            }
+        }
+        return users;
+    }
+
+    private static void expect(JsonParser parser, JsonToken actual, JsonToken expected) throws IOException {
+        if (actual != expected) {
+            throw new IOException("Unexpected user-service response: expected " + expected + " but got " + actual
+                + " at " + parser.currentLocation());
+        }
+    }
+
+    /**
+     * Scratch space for the user being read, reused for every user of a page.
+     */
+    private static final class UserFields {
+
+        // user-service sends the ID twice (id and userID); the second copy is only turned into a String if id is missing
+        private final StringBuilder userID = new StringBuilder(36);
+        private final StringBuilder username = new StringBuilder(32);
+        private final StringBuilder profilePicture = new StringBuilder(128);
+        private String id;
+        private boolean userIDPresent;
+        private boolean usernamePresent;
+        private boolean profilePicturePresent;
+        private boolean profilePrivate;
+        // Kept unboxed until the user is accepted; Integer.MIN_VALUE when absent
+        private int numFollowers;
+        private int numFollowing;
+
+        DirectoryUser read(JsonParser parser, DirectoryFilter filter, UserIdInterner interner) throws IOException {
+            reset();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                switch (field) {
+                    case "id" -> id = text(parser, value);
+                    case "userID" -> userIDPresent = buffer(parser, value, userID);
+                    case "username" -> usernamePresent = buffer(parser, value, username);
+                    case "profilePicture" -> profilePicturePresent = buffer(parser, value, profilePicture);
+                    case "isProfilePrivate" -> profilePrivate = value == JsonToken.VALUE_TRUE;
+                    case "numFollowers" -> numFollowers = number(parser, value);
+                    case "numFollowing" -> numFollowing = number(parser, value);
+                    default -> parser.skipChildren();
+                }
+            }
+
+            String resolvedId = id != null ? id : userIDPresent ? userID.toString() : null;
+            if (resolvedId == null) {
+                return null;
+            }
+            int internedId = interner.intern(resolvedId);
+            if (!filter.accepts(internedId, profilePrivate)) {
+                return DirectoryUser.rejected(resolvedId, internedId, profilePrivate);
+            }
+            return DirectoryUser.of(resolvedId, internedId,
+                usernamePresent ? username.toString() : null,
+                profilePicturePresent ? profilePicture.toString() : null,
+                profilePrivate, boxed(numFollowers), boxed(numFollowing));
+        }
+
+        private void reset() {
+            id = null;
+            userIDPresent = false;
+            usernamePresent = false;
+            profilePicturePresent = false;
+            profilePrivate = false;
+            numFollowers = Integer.MIN_VALUE;
+            numFollowing = Integer.MIN_VALUE;
+        }
+
+        private static String text(JsonParser parser, JsonToken value) throws IOException {
+            if (value == JsonToken.VALUE_STRING) {
+                return parser.getText();
+            }
+            parser.skipChildren();
+            return null;
+        }
+
+        /**
+         * Copies a string value into {@code target} without creating a String.
+         * @return false if the value is null or not a string
+         */
+        private static boolean buffer(JsonParser parser, JsonToken value, StringBuilder target) throws IOException {
+            target.setLength(0);
+            if (value != JsonToken.VALUE_STRING) {
+                parser.skipChildren();
+                return false;
+            }
+            target.append(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+            return true;
+        }
+
+        private static int number(JsonParser parser, JsonToken value) throws IOException {
+            if (value == JsonToken.VALUE_NUMBER_INT) {
+                return parser.getIntValue();
+            }
+            parser.skipChildren();
+            return Integer.MIN_VALUE;
+        }
+
+        private static Integer boxed(int number) {
+            return number != Integer.MIN_VALUE ? number : null;
+        }
+    }
+}
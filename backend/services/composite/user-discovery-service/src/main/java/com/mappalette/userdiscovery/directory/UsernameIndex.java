@@ -0,0 +1,319 @@
+package com.mappalette.userdiscovery.directory;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Prefix index over the usernames of public snapshot users, for typeahead search.
+ *
+ * Usernames are lower-cased and kept in one sorted array next to their users, so the users
+ * matching a prefix are a contiguous range found with two binary searches. Searches read an
+ * immutable copy and take no lock. Ranges of up to {@code maxScan} users are ranked (exact
+ * match first, then by follower count) with a bounded heap of packed scores; interned ids
+ * and follower counts sit in parallel int arrays, so ranking reads no user objects until the
+ * top k are known. A larger range is only possible for very short prefixes and is read in
+ * alphabetical order instead, which stays bounded.
+ *
+ * The index follows each new directory snapshot incrementally: only users that appeared,
+ * disappeared or changed are removed and re-inserted, with a sort of the changed users and
+ * one pass that copies the retained entries, so a small event batch over a million users
+ * costs an array copy, not a re-sort.
+ */
+@Component
+@Slf4j
+public class UsernameIndex {
+
+    private final UserIdInterner userIdInterner;
+    private final int maxScan;
+
+    private volatile Entries entries = new Entries(new String[0], new DirectoryUser[0], new int[0], new int[0]);
+    // Written by the refresh that applies a snapshot only; indexedById[id] is the user indexed under that id
+    private DirectoryUser[] indexedById = new DirectoryUser[0];
+    private long appliedVersion;
+
+    public UsernameIndex(UserIdInterner userIdInterner,
+                         @Value("${discovery.search.max-scan:4096}") int maxScan) {
+        this.userIdInterner = userIdInterner;
+        this.maxScan = maxScan;
+    }
+
+    @EventListener
+    public void onDirectoryRefreshed(UserDirectoryRefreshedEvent event) {
+        apply(event.getSnapshot());
+    }
+
+    /**
+     * Normalizes a search query or username the way the index compares them
+     */
+    public static String normalize(String text) {
+        return text.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Finds up to {@code k} public users whose username starts with the normalized prefix,
+     * leaving out the viewer and users they follow.
+     */
+    public List<DirectoryUser> search(String prefix, int k, String viewerId, FollowingSet following) {
+        Entries current = entries;
+        int from = current.lowerBound(prefix);
+        int to = current.upperBound(prefix, from);
+        if (k <= 0 || from == to) {
+            return new ArrayList<>();
+        }
+        int viewer = userIdInterner.lookup(viewerId);
+
+        if (to - from > maxScan) {
+            // Too many matches to rank within budget: take the first candidates alphabetically
+            List<DirectoryUser> found = new ArrayList<>(k);
+            for (int i = from; i < to && found.size() < k; i++) {
+                if (isCandidate(current.ids[i], viewer, following)) {
+                    found.add(current.users[i]);
+                }
+            }
+            return found;
+        }
+
+        // Exact matches sort before every longer username with the same prefix
+        int exactEnd = from;
+        while (exactEnd < to && current.keys[exactEnd].length() == prefix.length()) {
+            exactEnd++;
+        }
+        // Min-heap of the best k scores seen so far; the worst of them is at the root
+        long[] best = new long[Math.min(k, to - from)];
+        int size = 0;
+        for (int i = from; i < to; i++) {
+            if (!isCandidate(current.ids[i], viewer, following)) {
+                continue;
+            }
+            long score = score(i < exactEnd, current.followers[i], i);
+            if (size < best.length) {
+                best[size] = score;
+                siftUp(best, size++);
+            } else if (score > best[0]) {
+                best[0] = score;
+                siftDown(best, size);
+            }
+        }
+        Arrays.sort(best, 0, size);
+        List<DirectoryUser> found = new ArrayList<>(size);
+        for (int i = size - 1; i >= 0; i--) {
+            found.add(current.users[position(best[i])]);
+        }
+        return found;
+    }
+
+    /**
+     * @return number of indexed usernames
+     */
+    public int size() {
+        return entries.users.length;
+    }
+
+    private static boolean isCandidate(int id, int viewer, FollowingSet following) {
+        return id != viewer && !following.contains(id);
+    }
+
+    /**
+     * Packs a match into one long that orders exact matches first, then more followers, then
+     * earlier (alphabetically smaller) positions: bit 62 is the exact match, bits 31-61 the
+     * follower count and bits 0-30 the inverted position.
+     */
+    private static long score(boolean exact, int followers, int position) {
+        return (exact ? 1L << 62 : 0L) | ((long) Math.max(0, followers) << 31) | (Integer.MAX_VALUE - position);
+    }
+
+    private static int position(long score) {
+        return Integer.MAX_VALUE - (int) (score & Integer.MAX_VALUE);
+    }
+
+    private static void siftUp(long[] heap, int index) {
+        long value = heap[index];
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (heap[parent] <= value) {
+                break;
+            }
+            heap[index] = heap[parent];
+            index = parent;
+        }
+        heap[index] = value;
+    }
+
+    private static void siftDown(long[] heap, int size) {
+        long value = heap[0];
+        int index = 0;
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && heap[child + 1] < heap[child]) {
+                child++;
+            }
+            if (heap[child] >= value) {
+                break;
+            }
+            heap[index] = heap[child];
+            index = child;
+        }
+        heap[index] = value;
+    }
+
+    private synchronized void apply(UserDirectorySnapshot snapshot) {
+        if (snapshot.getVersion() <= appliedVersion) {
+            return;
+        }
+        DirectoryUser[] nextById = new DirectoryUser[Math.max(userIdInterner.size(), indexedById.length)];
+        for (DirectoryUser user : snapshot.getUsers()) {
+            if (!user.isProfilePrivate() && user.getUsername() != null) {
+                nextById[user.getInternedId()] = user;
+            }
+        }
+
+        // Step 1: Find users to take out (gone or changed) and to put in (new or changed)
+        BitSet removed = new BitSet();
+        List<DirectoryUser> added = new ArrayList<>();
+        for (int id = 0; id < nextById.length; id++) {
+            DirectoryUser before = id < indexedById.length ? indexedById[id] : null;
+            DirectoryUser after = nextById[id];
+            if (before == after) {
+                continue;
+            }
+            if (before != null && after != null && before.sameAs(after)) {
+                // Same content from a full reload: keep the indexed instance
+                nextById[id] = before;
+                continue;
+            }
+            if (before != null) {
+                removed.set(id);
+            }
+            if (after != null) {
+                added.add(after);
+            }
+        }
+        indexedById = nextById;
+        appliedVersion = snapshot.getVersion();
+        if (removed.isEmpty() && added.isEmpty()) {
+            return;
+        }
+
+        // Step 2: Sort the incoming users and merge them with the retained ones
+        Entries current = entries;
+        String[] addedKeys = new String[added.size()];
+        Integer[] order = new Integer[added.size()];
+        for (int i = 0; i < addedKeys.length; i++) {
+            addedKeys[i] = normalize(added.get(i).getUsername());
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> compare(addedKeys[a], added.get(a).getInternedId(),
+            addedKeys[b], added.get(b).getInternedId()));
+
+        int size = current.users.length - removed.cardinality() + added.size();
+        String[] keys = new String[size];
+        DirectoryUser[] users = new DirectoryUser[size];
+        int[] ids = new int[size];
+        int[] followers = new int[size];
+        // Each incoming user is placed by binary search; the retained runs between them are copied
+        // without comparing keys, skipping users taken out
+        int kept = 0;
+        int filled = 0;
+        for (int next = 0; next <= order.length; next++) {
+            int until = next < order.length
+                ? current.insertionPoint(addedKeys[order[next]], added.get(order[next]).getInternedId(), kept)
+                : current.users.length;
+            for (; kept < until; kept++) {
+                if (!removed.get(current.ids[kept])) {
+                    keys[filled] = current.keys[kept];
+                    users[filled] = current.users[kept];
+                    ids[filled] = current.ids[kept];
+                    followers[filled++] = current.followers[kept];
+                }
+            }
+            if (next < order.length) {
+                DirectoryUser user = added.get(order[next]);
+                keys[filled] = addedKeys[order[next]];
+                users[filled] = user;
+                ids[filled] = user.getInternedId();
+                followers[filled++] = user.getNumFollowers() != null ? user.getNumFollowers() : 0;
+            }
+        }
+        entries = new Entries(keys, users, ids, followers);
+        log.debug("Username index at v{}: {} usernames, {} removed, {} added",
+            appliedVersion, size, removed.cardinality(), added.size());
+    }
+
+    private static int compare(String key, int id, String otherKey, int otherId) {
+        int byKey = key.compareTo(otherKey);
+        return byKey != 0 ? byKey : Integer.compare(id, otherId);
+    }
+
+    /**
+     * Lower-cased usernames in sorted order, with their users' interned ids and follower counts
+     */
+    private static final class Entries {
+        private final String[] keys;
+        private final DirectoryUser[] users;
+        private final int[] ids;
+        private final int[] followers;
+
+        Entries(String[] keys, DirectoryUser[] users, int[] ids, int[] followers) {
+            this.keys = keys;
+            this.users = users;
+            this.ids = ids;
+            this.followers = followers;
+        }
+
+        // First position whose key is not less than the prefix
+        int lowerBound(String prefix) {
+            int low = 0;
+            int high = keys.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (keys[mid].compareTo(prefix) < 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        // First position from 'from' on that sorts after the given key and id
+        int insertionPoint(String key, int id, int from) {
+            int low = from;
+            int high = keys.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (compare(keys[mid], ids[mid], key, id) < 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        // First position from 'from' on whose key does not start with the prefix
+        int upperBound(String prefix, int from) {
+            int low = from;
+            int high = keys.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (keys[mid].startsWith(prefix)) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+}
@@ -14,10 +14,10 @@ import java.util.List;
 public class AllUsersResponse {
     
     @JsonProperty("friends")
-    private List<UserDto> friends;
+    private List<UserView> friends;
     
     @JsonProperty("otherUsers")
-    private List<UserDto> otherUsers;
+    private List<UserView> otherUsers;
     
     @JsonProperty("totalFriendsCount")
     private int totalFriendsCount;
@@ -30,4 +30,12 @@ public class AllUsersResponse {
     
     @JsonProperty("offset")
     private int offset;
+    
+    // Only set when an upstream lookup failed or timed out and the result may be incomplete
+    @JsonProperty("partial")
+    private Boolean partial;
+    
+    // Only set when some data was served from the last good copy because an upstream is unavailable
+    @JsonProperty("degraded")
+    private Boolean degraded;
 }
\ No newline at end of file
@@ -0,0 +1,22 @@
+package com.mappalette.userdiscovery.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchDiscoveryRequest {
+    
+    @JsonProperty("userIds")
+    private List<String> userIds;
+    
+    // Suggestions per user (default: 5)
+    @JsonProperty("limit")
+    private Integer limit;
+}
@@ -0,0 +1,19 @@
+package com.mappalette.userdiscovery.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.util.Map;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchDiscoveryResponse {
+    
+    // Keyed by userId, in request order
+    @JsonProperty("results")
+    private Map<String, DiscoveryResponse> results;
+}
@@ -0,0 +1,43 @@
+package com.mappalette.userdiscovery.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * A change published by user-service or follow-service, e.g.
+ * {@code {"type": "USER_UPDATED", "user": {...}}} or
+ * {@code {"type": "FOLLOWED", "followerId": "...", "followingId": "..."}}.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class DirectoryEvent {
+
+    public static final String USER_CREATED = "USER_CREATED";
+    public static final String USER_UPDATED = "USER_UPDATED";
+    public static final String USER_DELETED = "USER_DELETED";
+    public static final String FOLLOWED = "FOLLOWED";
+    public static final String UNFOLLOWED = "UNFOLLOWED";
+
+    @JsonProperty("type")
+    private String type;
+
+    // USER_CREATED / USER_UPDATED: the user as user-service now stores it
+    @JsonProperty("user")
+    private UserDto user;
+
+    // USER_DELETED
+    @JsonProperty("userId")
+    private String userId;
+
+    // FOLLOWED / UNFOLLOWED
+    @JsonProperty("followerId")
+    private String followerId;
+
+    @JsonProperty("followingId")
+    private String followingId;
+}
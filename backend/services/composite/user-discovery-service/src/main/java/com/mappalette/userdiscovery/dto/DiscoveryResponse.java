@@ -14,10 +14,11 @@ import java.util.List;
 public class DiscoveryResponse {
     
     @JsonProperty("users")
-    private List<UserDto> users;
+    private List<UserView> users;
     
+    // Omitted in cursor mode unless the client asks for an exact total
     @JsonProperty("totalCount")
-    private int totalCount;
+    private Integer totalCount;
     
     @JsonProperty("followingCount")
     private int followingCount;
@@ -27,4 +28,16 @@ public class DiscoveryResponse {
     
     @JsonProperty("offset")
     private int offset;
+    
+    // Opaque cursor for the next page in cursor mode; absent on the last page
+    @JsonProperty("nextCursor")
+    private String nextCursor;
+    
+    // Only set when an upstream lookup failed or timed out and the result may be incomplete
+    @JsonProperty("partial")
+    private Boolean partial;
+    
+    // Only set when some data was served from the last good copy because an upstream is unavailable
+    @JsonProperty("degraded")
+    private Boolean degraded;
 }
\ No newline at end of file
@@ -16,6 +16,10 @@ public class FollowingResponse {
     @JsonProperty("following")
     private List<FollowingUserDto> following;
     
+    // Set instead of following by /api/follow/followers/{userId}
+    @JsonProperty("followers")
+    private List<FollowingUserDto> followers;
+    
     @JsonProperty("pagination")
     private PaginationDto pagination;
     
@@ -26,9 +26,16 @@ public class PaginatedUsersResponse {
     @AllArgsConstructor
     @JsonIgnoreProperties(ignoreUnknown = true)
     public static class Pagination {
+        @JsonProperty("page")
         private int page;
+        
+        @JsonProperty("limit")
         private int limit;
+        
+        @JsonProperty("total")
         private int total;
+        
+        @JsonProperty("totalPages")
         private int totalPages;
     }
 }
@@ -0,0 +1,61 @@
+package com.mappalette.userdiscovery.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import com.mappalette.userdiscovery.directory.DirectoryUser;
+
+/**
+ * Per-request view of a shared directory user that adds the viewer's isFollowing flag.
+ * Serializes exactly like {@link UserDto} without copying the user.
+ */
+@JsonPropertyOrder({"id", "userID", "username", "profilePicture", "isProfilePrivate", "isFollowing", "numFollowers", "numFollowing"})
+public final class UserView {
+    
+    private final DirectoryUser user;
+    private final boolean following;
+    
+    public UserView(DirectoryUser user, boolean following) {
+        this.user = user;
+        this.following = following;
+    }
+    
+    @JsonProperty("id")
+    public String getId() {
+        return user.getId();
+    }
+    
+    @JsonProperty("userID")
+    public String getUserID() {
+        return user.getId();
+    }
+    
+    @JsonProperty("username")
+    public String getUsername() {
+        return user.getUsername();
+    }
+    
+    @JsonProperty("profilePicture")
+    public String getProfilePicture() {
+        return user.getProfilePicture();
+    }
+    
+    @JsonProperty("isProfilePrivate")
+    public boolean isProfilePrivate() {
+        return user.isProfilePrivate();
+    }
+    
+    @JsonProperty("isFollowing")
+    public boolean isFollowing() {
+        return following;
+    }
+    
+    @JsonProperty("numFollowers")
+    public Integer getNumFollowers() {
+        return user.getNumFollowers();
+    }
+    
+    @JsonProperty("numFollowing")
+    public Integer getNumFollowing() {
+        return user.getNumFollowing();
+    }
+}
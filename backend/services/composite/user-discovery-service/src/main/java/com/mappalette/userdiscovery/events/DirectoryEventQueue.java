@@ -0,0 +1,215 @@
+package com.mappalette.userdiscovery.events;
+
+import com.mappalette.userdiscovery.cache.FollowingCache;
+import com.mappalette.userdiscovery.directory.DirectoryChange;
+import com.mappalette.userdiscovery.directory.DirectoryUser;
+import com.mappalette.userdiscovery.directory.UserDirectoryCache;
+import com.mappalette.userdiscovery.directory.UserIdInterner;
+import com.mappalette.userdiscovery.dto.DirectoryEvent;
+import com.mappalette.userdiscovery.service.SuggestionRanker;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * In-process stand-in for a message broker topic carrying user and follow events.
+ *
+ * Producers (the ingestion endpoint) only enqueue. A single consumer thread drains whatever
+ * has queued up and applies it as one batch, in arrival order: user changes become one new
+ * directory snapshot, follow changes patch the follower's cached following set and have their
+ * suggestion neighbourhood rebuilt, once per follower and batch. The queue is
+ * bounded; when it is full, events are rejected rather than buffered without limit, and the
+ * next full directory reload or following-cache expiry covers what was missed.
+ */
+@Component
+@Slf4j
+public class DirectoryEventQueue {
+
+    private final UserDirectoryCache userDirectoryCache;
+    private final FollowingCache followingCache;
+    private final SuggestionRanker suggestionRanker;
+    private final UserIdInterner userIdInterner;
+    private final BlockingQueue<DirectoryEvent> queue;
+    private final int maxBatch;
+    private final int maxRequestEvents;
+    private final Thread consumer;
+
+    private final Counter accepted;
+    private final Counter rejected;
+    private final Counter ignored;
+
+    public DirectoryEventQueue(UserDirectoryCache userDirectoryCache,
+                               FollowingCache followingCache,
+                               SuggestionRanker suggestionRanker,
+                               UserIdInterner userIdInterner,
+                               MeterRegistry meterRegistry,
+                               @Value("${discovery.events.queue-capacity:10000}") int capacity,
+                               @Value("${discovery.events.max-batch:1000}") int maxBatch,
+                               @Value("${discovery.events.max-request-events:1000}") int maxRequestEvents) {
+        this.userDirectoryCache = userDirectoryCache;
+        this.followingCache = followingCache;
+        this.suggestionRanker = suggestionRanker;
+        this.userIdInterner = userIdInterner;
+        this.queue = new LinkedBlockingQueue<>(capacity);
+        this.maxBatch = maxBatch;
+        this.maxRequestEvents = maxRequestEvents;
+
+        this.accepted = Counter.builder("discovery.events")
+            .tag("result", "accepted")
+            .description("Directory events received by the ingestion endpoint")
+            .register(meterRegistry);
+        this.rejected = Counter.builder("discovery.events")
+            .tag("result", "rejected")
+            .description("Directory events rejected because the queue was full")
+            .register(meterRegistry);
+        this.ignored = Counter.builder("discovery.events")
+            .tag("result", "ignored")
+            .description("Directory events of an unknown type or missing required fields")
+            .register(meterRegistry);
+        Gauge.builder("discovery.events.queued", queue, BlockingQueue::size)
+            .description("Directory events waiting to be applied")
+            .register(meterRegistry);
+
+        this.consumer = new Thread(this::consume, "directory-events");
+        consumer.setDaemon(true);
+        consumer.start();
+    }
+
+    /**
+     * Rejects a request's events unless every one of them can be applied.
+     *
+     * @throws ResponseStatusException 400 for a missing or oversized list, or an event of an
+     *         unknown type or without the IDs its type needs
+     */
+    public void check(List<DirectoryEvent> events) {
+        if (events == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "events must be a JSON array");
+        }
+        if (events.size() > maxRequestEvents) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                "At most " + maxRequestEvents + " events per request");
+        }
+        for (int i = 0; i < events.size(); i++) {
+            if (!isComplete(events.get(i))) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "events[" + i + "] has an unknown type or is missing a required ID");
+            }
+        }
+    }
+
+    /**
+     * Enqueues events in order.
+     *
+     * @return how many were accepted; the rest were rejected because the queue is full
+     */
+    public int publish(List<DirectoryEvent> events) {
+        int count = 0;
+        for (DirectoryEvent event : events) {
+            if (!queue.offer(event)) {
+                break;
+            }
+            count++;
+        }
+        accepted.increment(count);
+        rejected.increment(events.size() - count);
+        return count;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        consumer.interrupt();
+    }
+
+    private void consume() {
+        List<DirectoryEvent> batch = new ArrayList<>(maxBatch);
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                batch.add(queue.take());
+                queue.drainTo(batch, maxBatch - 1);
+                apply(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                log.warn("Could not apply {} directory events, next full reload will catch up: {}",
+                    batch.size(), e.toString());
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void apply(List<DirectoryEvent> batch) {
+        List<DirectoryChange> changes = new ArrayList<>();
+        Set<String> followers = new LinkedHashSet<>();
+        for (DirectoryEvent event : batch) {
+            String type = event.getType() != null ? event.getType() : "";
+            switch (type) {
+                case DirectoryEvent.USER_CREATED, DirectoryEvent.USER_UPDATED -> {
+                    DirectoryUser user = event.getUser() != null ? DirectoryUser.from(event.getUser(), userIdInterner) : null;
+                    if (user == null) {
+                        ignore(event);
+                    } else {
+                        changes.add(type.equals(DirectoryEvent.USER_CREATED)
+                            ? DirectoryChange.created(user)
+                            : DirectoryChange.updated(user));
+                    }
+                }
+                case DirectoryEvent.USER_DELETED -> {
+                    if (event.getUserId() == null) {
+                        ignore(event);
+                    } else {
+                        changes.add(DirectoryChange.deleted(event.getUserId()));
+                    }
+                }
+                case DirectoryEvent.FOLLOWED, DirectoryEvent.UNFOLLOWED -> {
+                    if (event.getFollowerId() == null || event.getFollowingId() == null) {
+                        ignore(event);
+                    } else {
+                        followingCache.applyFollow(event.getFollowerId(), event.getFollowingId(),
+                            type.equals(DirectoryEvent.FOLLOWED));
+                        followers.add(event.getFollowerId());
+                    }
+                }
+                default -> ignore(event);
+            }
+        }
+        userDirectoryCache.apply(changes);
+        followers.forEach(suggestionRanker::invalidate);
+    }
+
+    private static boolean isComplete(DirectoryEvent event) {
+        if (event == null || event.getType() == null) {
+            return false;
+        }
+        return switch (event.getType()) {
+            case DirectoryEvent.USER_CREATED, DirectoryEvent.USER_UPDATED -> event.getUser() != null
+                && (hasText(event.getUser().getId()) || hasText(event.getUser().getUserID()));
+            case DirectoryEvent.USER_DELETED -> hasText(event.getUserId());
+            case DirectoryEvent.FOLLOWED, DirectoryEvent.UNFOLLOWED ->
+                hasText(event.getFollowerId()) && hasText(event.getFollowingId());
+            default -> false;
+        };
+    }
+
+    private static boolean hasText(String value) {
+        return value != null && !value.isBlank();
+    }
+
+    private void ignore(DirectoryEvent event) {
+        ignored.increment();
+        log.debug("Ignoring directory event {}", event);
+    }
+}
@@ -0,0 +1,111 @@
+package com.mappalette.userdiscovery.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.filter.reactive.ServerWebExchangeContextFilter;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.util.context.ContextView;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Per-stage timers and user counters for the discovery endpoints.
+ *
+ * {@code discovery.stage{endpoint,stage}} times the directory fetch, the following fetch,
+ * the filter pass (which also collects the requested page), by-ID lookups of friends the
+ * directory snapshot does not hold, and JSON serialization.
+ * {@code discovery.users.scanned} and {@code discovery.users.returned} show how many
+ * directory users a request looked at to produce the users it returned.
+ *
+ * The endpoint a request is for is a request attribute on the servlet stack and an exchange
+ * attribute on the reactive stack, where it is read back through the Reactor Context.
+ */
+@Component
+public class DiscoveryMetrics {
+
+    public static final String USERS = "users";
+    public static final String SUGGESTIONS = "suggestions";
+    public static final String ALL = "all";
+    public static final String BATCH = "batch";
+    public static final String SEARCH = "search";
+    public static final String STREAM = "stream";
+
+    public static final String STAGE_DIRECTORY = "directory";
+    public static final String STAGE_FOLLOWING = "following";
+    public static final String STAGE_FILTER = "filter";
+    public static final String STAGE_FRIENDS = "friends";
+    public static final String STAGE_SERIALIZE = "serialize";
+
+    private static final String ENDPOINT_ATTRIBUTE = DiscoveryMetrics.class.getName() + ".endpoint";
+
+    private final MeterRegistry meterRegistry;
+    private final ConcurrentMap<String, Timer> stageTimers = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Counter> scanned = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Counter> returned = new ConcurrentHashMap<>();
+
+    public DiscoveryMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    public Timer stage(String endpoint, String stage) {
+        return stageTimers.computeIfAbsent(endpoint + '/' + stage, key -> Timer.builder("discovery.stage")
+            .tag("endpoint", endpoint)
+            .tag("stage", stage)
+            .description("Time spent in one stage of a discovery request")
+            .register(meterRegistry));
+    }
+
+    public void recordUsers(String endpoint, int scannedUsers, int returnedUsers) {
+        scanned.computeIfAbsent(endpoint, key -> Counter.builder("discovery.users.scanned")
+                .tag("endpoint", endpoint)
+                .description("Directory users examined while answering discovery requests")
+                .register(meterRegistry))
+            .increment(scannedUsers);
+        returned.computeIfAbsent(endpoint, key -> Counter.builder("discovery.users.returned")
+                .tag("endpoint", endpoint)
+                .description("Users returned by discovery requests")
+                .register(meterRegistry))
+            .increment(returnedUsers);
+    }
+
+    /**
+     * Remembers which endpoint the current request is for, so its response serialization can be timed under it.
+     */
+    public static void markRequest(String endpoint) {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes != null) {
+            attributes.setAttribute(ENDPOINT_ATTRIBUTE, endpoint, RequestAttributes.SCOPE_REQUEST);
+        }
+    }
+
+    /**
+     * @return the endpoint marked for the current request, or null outside a marked request
+     */
+    public static String requestEndpoint() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        return attributes != null
+            ? (String) attributes.getAttribute(ENDPOINT_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST)
+            : null;
+    }
+
+    /**
+     * Reactive counterpart of {@link #markRequest(String)}
+     */
+    public static void markRequest(ServerWebExchange exchange, String endpoint) {
+        exchange.getAttributes().put(ENDPOINT_ATTRIBUTE, endpoint);
+    }
+
+    /**
+     * @return the endpoint marked for the exchange in the Reactor Context, or null outside a marked request
+     */
+    public static String requestEndpoint(ContextView context) {
+        ServerWebExchange exchange = context.getOrDefault(ServerWebExchangeContextFilter.EXCHANGE_CONTEXT_ATTRIBUTE,
+            null);
+        return exchange != null ? exchange.getAttribute(ENDPOINT_ATTRIBUTE) : null;
+    }
+}
@@ -0,0 +1,93 @@
+package com.mappalette.userdiscovery.metrics;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.filter.reactive.ServerWebExchangeContextFilter;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.util.context.ContextView;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Decides once per HTTP request whether its per-request INFO lines are logged, so a
+ * sampled request logs all of its lines and the others log none. Guard per-request
+ * log statements with {@link #sampled()} so unsampled requests don't even format them.
+ *
+ * On the servlet stack the decision is a request attribute. On the reactive stack it is an
+ * exchange attribute, reached through the exchange in the Reactor Context; work that calls
+ * {@link #sampled()} from a reactive request runs inside {@link #callSampled} so the
+ * decision is visible on whichever thread it runs.
+ */
+@Component
+public class RequestLogSampler {
+
+    private static final String SAMPLED_ATTRIBUTE = RequestLogSampler.class.getName() + ".sampled";
+
+    private static final ThreadLocal<Boolean> BOUND = new ThreadLocal<>();
+
+    private final double sampleRate;
+
+    public RequestLogSampler(@Value("${discovery.logging.sample-rate:0.01}") double sampleRate) {
+        this.sampleRate = sampleRate;
+    }
+
+    /**
+     * @return true if the current request's per-request log lines should be written
+     */
+    public boolean sampled() {
+        Boolean bound = BOUND.get();
+        if (bound != null) {
+            return bound;
+        }
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes == null) {
+            return false;
+        }
+        Boolean sampled = (Boolean) attributes.getAttribute(SAMPLED_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        if (sampled == null) {
+            sampled = draw();
+            attributes.setAttribute(SAMPLED_ATTRIBUTE, sampled, RequestAttributes.SCOPE_REQUEST);
+        }
+        return sampled;
+    }
+
+    /**
+     * @return true if the reactive request's per-request log lines should be written
+     */
+    public boolean sampled(ServerWebExchange exchange) {
+        return (Boolean) exchange.getAttributes().computeIfAbsent(SAMPLED_ATTRIBUTE, key -> draw());
+    }
+
+    /**
+     * @return the decision for the exchange in the Reactor Context, or false outside a reactive request
+     */
+    public boolean sampled(ContextView context) {
+        ServerWebExchange exchange = context.getOrDefault(ServerWebExchangeContextFilter.EXCHANGE_CONTEXT_ATTRIBUTE,
+            null);
+        return exchange != null && sampled(exchange);
+    }
+
+    /**
+     * Runs work with {@link #sampled()} answering for the reactive request in the given context
+     */
+    public <T> T callSampled(ContextView context, Callable<T> work) throws Exception {
+        Boolean previous = BOUND.get();
+        BOUND.set(sampled(context));
+        try {
+            return work.call();
+        } finally {
+            if (previous != null) {
+                BOUND.set(previous);
+            } else {
+                BOUND.remove();
+            }
+        }
+    }
+
+    private boolean draw() {
+        return sampleRate >= 1.0 || ThreadLocalRandom.current().nextDouble() < sampleRate;
+    }
+}
@@ -0,0 +1,49 @@
+package com.mappalette.userdiscovery.service;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Opaque cursor for keyset-style discovery pagination.
+ *
+ * It records the directory position to resume scanning from and the ID of the last
+ * user scanned. When newer users shift positions between requests, the ID is used to
+ * find where the previous page actually ended.
+ */
+@Getter
+@RequiredArgsConstructor
+final class DiscoveryCursor {
+
+    static final DiscoveryCursor START = new DiscoveryCursor(0, null);
+
+    private static final String VERSION = "v1";
+
+    private final int position;
+    private final String anchorUserId;
+
+    /**
+     * @throws IllegalArgumentException if the token was not produced by {@link #encode()}
+     */
+    static DiscoveryCursor decode(String token) {
+        if (token == null || token.isBlank()) {
+            return START;
+        }
+        String[] parts = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8).split(":", 3);
+        if (parts.length != 3 || !VERSION.equals(parts[0])) {
+            throw new IllegalArgumentException("Unrecognized cursor");
+        }
+        int position = Integer.parseInt(parts[1]);
+        if (position < 0) {
+            throw new IllegalArgumentException("Unrecognized cursor");
+        }
+        return new DiscoveryCursor(position, parts[2].isEmpty() ? null : parts[2]);
+    }
+
+    String encode() {
+        String raw = VERSION + ":" + position + ":" + (anchorUserId != null ? anchorUserId : "");
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,136 @@
+package com.mappalette.userdiscovery.service;
+
+import com.mappalette.userdiscovery.cache.FollowingCache;
+import com.mappalette.userdiscovery.directory.FollowingSet;
+import com.mappalette.userdiscovery.directory.UserDirectoryCache;
+import com.mappalette.userdiscovery.directory.UserDirectorySnapshot;
+import com.mappalette.userdiscovery.metrics.DiscoveryMetrics;
+import io.micrometer.core.instrument.Timer;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Fetches the user directory and a user's following list concurrently, so a
+ * discovery request waits for the slower of the two rather than their sum.
+ *
+ * Each lookup has its own timeout. A failed or timed-out following lookup falls back
+ * to the user's last known following set and marks the result as degraded; with no
+ * fallback available, a failed lookup yields an empty result and marks it as partial
+ * instead of failing the request. A directory snapshot kept only because user-service
+ * refreshes are failing also counts as degraded.
+ */
+@Component
+@Slf4j
+public class DiscoveryFanOut {
+
+    private final UserDirectoryCache userDirectoryCache;
+    private final FollowingCache followingCache;
+    private final DiscoveryMetrics discoveryMetrics;
+    private final Executor upstreamExecutor;
+    private final long directoryTimeoutMs;
+    private final long followingTimeoutMs;
+
+    public DiscoveryFanOut(UserDirectoryCache userDirectoryCache,
+                           FollowingCache followingCache,
+                           DiscoveryMetrics discoveryMetrics,
+                           @Qualifier("upstreamExecutor") Executor upstreamExecutor,
+                           @Value("${discovery.upstream.directory-timeout-ms:3000}") long directoryTimeoutMs,
+                           @Value("${discovery.upstream.following-timeout-ms:2000}") long followingTimeoutMs) {
+        this.userDirectoryCache = userDirectoryCache;
+        this.followingCache = followingCache;
+        this.discoveryMetrics = discoveryMetrics;
+        this.upstreamExecutor = upstreamExecutor;
+        this.directoryTimeoutMs = directoryTimeoutMs;
+        this.followingTimeoutMs = followingTimeoutMs;
+    }
+
+    public Result load(String userId, String endpoint) {
+        return loadAll(List.of(userId), endpoint).get(userId);
+    }
+
+    /**
+     * Loads the directory once and the following lists of all given users in parallel.
+     * Every user gets their own result; only users whose following list failed are partial.
+     */
+    public Map<String, Result> loadAll(Collection<String> userIds, String endpoint) {
+        Timer directoryTimer = discoveryMetrics.stage(endpoint, DiscoveryMetrics.STAGE_DIRECTORY);
+        Timer followingTimer = discoveryMetrics.stage(endpoint, DiscoveryMetrics.STAGE_FOLLOWING);
+        CompletableFuture<UserDirectorySnapshot> directory = fetch("user directory",
+            () -> directoryTimer.record(userDirectoryCache::getSnapshot), directoryTimeoutMs);
+        Map<String, CompletableFuture<FollowingSet>> followingIds = new LinkedHashMap<>();
+        for (String userId : userIds) {
+            followingIds.computeIfAbsent(userId, id -> fetch("following list of " + id,
+                () -> followingTimer.record(() -> followingCache.getFollowingIds(id)), followingTimeoutMs));
+        }
+
+        UserDirectorySnapshot loadedDirectory = directory.join();
+        Map<String, Result> results = new LinkedHashMap<>();
+        followingIds.forEach((userId, future) -> results.put(userId, result(userId, loadedDirectory, future.join())));
+        return results;
+    }
+
+    /**
+     * Combines what the lookups returned, null for a failed one, into a user's result
+     */
+    Result result(String userId, UserDirectorySnapshot loadedDirectory, FollowingSet loadedFollowingIds) {
+        boolean followingDegraded = false;
+        if (loadedFollowingIds == null) {
+            loadedFollowingIds = followingCache.getLastKnownFollowingIds(userId);
+            followingDegraded = loadedFollowingIds != null;
+        }
+        return new Result(
+            loadedDirectory,
+            loadedFollowingIds != null ? loadedFollowingIds : FollowingSet.EMPTY,
+            loadedDirectory == null || loadedFollowingIds == null,
+            followingDegraded || (loadedDirectory != null && userDirectoryCache.isDegraded())
+        );
+    }
+
+    /**
+     * Runs a lookup on the upstream pool; completes with null if it fails, times out or the pool is full.
+     */
+    private <T> CompletableFuture<T> fetch(String description, Supplier<T> lookup, long timeoutMs) {
+        CompletableFuture<T> lookupFuture;
+        try {
+            lookupFuture = CompletableFuture.supplyAsync(lookup, upstreamExecutor);
+        } catch (RejectedExecutionException e) {
+            lookupFuture = CompletableFuture.failedFuture(e);
+        }
+        return lookupFuture
+            .orTimeout(timeoutMs, TimeUnit.MILLISECONDS)
+            .exceptionally(e -> {
+                log.warn("Could not retrieve {}, continuing with a partial result: {}", description, e.toString());
+                return null;
+            });
+    }
+
+    @Getter
+    public static class Result {
+        // Null when the directory could not be loaded
+        private final UserDirectorySnapshot directory;
+        private final FollowingSet followingIds;
+        private final boolean partial;
+        // Some data came from the last good copy because an upstream is unavailable
+        private final boolean degraded;
+
+        Result(UserDirectorySnapshot directory, FollowingSet followingIds, boolean partial, boolean degraded) {
+            this.directory = directory;
+            this.followingIds = followingIds;
+            this.partial = partial;
+            this.degraded = degraded;
+        }
+    }
+}
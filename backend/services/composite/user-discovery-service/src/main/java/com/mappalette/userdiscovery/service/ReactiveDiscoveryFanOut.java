@@ -0,0 +1,192 @@
+package com.mappalette.userdiscovery.service;
+
+import com.mappalette.userdiscovery.cache.FollowingCache;
+import com.mappalette.userdiscovery.client.ReactiveFollowServiceClient;
+import com.mappalette.userdiscovery.client.UpstreamCalls;
+import com.mappalette.userdiscovery.directory.FollowingSet;
+import com.mappalette.userdiscovery.directory.UserDirectoryCache;
+import com.mappalette.userdiscovery.directory.UserDirectorySnapshot;
+import com.mappalette.userdiscovery.dto.FollowingResponse;
+import com.mappalette.userdiscovery.metrics.DiscoveryMetrics;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+/**
+ * Non-blocking counterpart of {@link DiscoveryFanOut} for the reactive profile: the directory
+ * snapshot and the following lists are looked up concurrently without holding a thread while
+ * follow-service answers. Timeouts, the last-known fallback and the partial / degraded flags
+ * are the same as for the blocking fan-out.
+ *
+ * Following lists share {@link FollowingCache} with the blocking path, so cache hits cost no
+ * upstream call and concurrent misses share one load. Only the very first directory load
+ * blocks, on the upstream pool rather than the event loop.
+ */
+@Component
+@Profile("reactive")
+@Slf4j
+public class ReactiveDiscoveryFanOut {
+
+    private final DiscoveryFanOut discoveryFanOut;
+    private final UserDirectoryCache userDirectoryCache;
+    private final FollowingCache followingCache;
+    private final ReactiveFollowServiceClient followServiceClient;
+    private final UpstreamCalls upstreamCalls;
+    private final DiscoveryMetrics discoveryMetrics;
+    private final Executor upstreamExecutor;
+    private final Duration directoryTimeout;
+    private final Duration followingTimeout;
+    private final AtomicReference<CompletableFuture<UserDirectorySnapshot>> coldLoad = new AtomicReference<>();
+
+    public ReactiveDiscoveryFanOut(DiscoveryFanOut discoveryFanOut,
+                                   UserDirectoryCache userDirectoryCache,
+                                   FollowingCache followingCache,
+                                   ReactiveFollowServiceClient followServiceClient,
+                                   UpstreamCalls upstreamCalls,
+                                   DiscoveryMetrics discoveryMetrics,
+                                   @Qualifier("upstreamExecutor") Executor upstreamExecutor,
+                                   @Value("${discovery.upstream.directory-timeout-ms:3000}") long directoryTimeoutMs,
+                                   @Value("${discovery.upstream.following-timeout-ms:2000}") long followingTimeoutMs) {
+        this.discoveryFanOut = discoveryFanOut;
+        this.userDirectoryCache = userDirectoryCache;
+        this.followingCache = followingCache;
+        this.followServiceClient = followServiceClient;
+        this.upstreamCalls = upstreamCalls;
+        this.discoveryMetrics = discoveryMetrics;
+        this.upstreamExecutor = upstreamExecutor;
+        this.directoryTimeout = Duration.ofMillis(directoryTimeoutMs);
+        this.followingTimeout = Duration.ofMillis(followingTimeoutMs);
+    }
+
+    public Mono<DiscoveryFanOut.Result> load(String userId, String endpoint) {
+        return loadAll(List.of(userId), endpoint).map(results -> results.get(userId));
+    }
+
+    /**
+     * Loads the directory once and the following lists of all given users concurrently.
+     * Never fails: lookups that fail or time out make the affected results partial.
+     */
+    public Mono<Map<String, DiscoveryFanOut.Result>> loadAll(Collection<String> userIds, String endpoint) {
+        Timer directoryTimer = discoveryMetrics.stage(endpoint, DiscoveryMetrics.STAGE_DIRECTORY);
+        Timer followingTimer = discoveryMetrics.stage(endpoint, DiscoveryMetrics.STAGE_FOLLOWING);
+        Mono<Optional<UserDirectorySnapshot>> directory = lookup("user directory",
+            timed(directory(), directoryTimer), directoryTimeout);
+        Mono<List<Map.Entry<String, Optional<FollowingSet>>>> followingIds = Flux.fromIterable(
+                new LinkedHashSet<>(userIds))
+            .flatMapSequential(userId -> lookup("following list of " + userId,
+                    timed(following(userId), followingTimer), followingTimeout)
+                .map(loaded -> Map.entry(userId, loaded)))
+            .collectList();
+
+        return Mono.zip(directory, followingIds).map(loaded -> {
+            UserDirectorySnapshot loadedDirectory = loaded.getT1().orElse(null);
+            Map<String, DiscoveryFanOut.Result> results = new LinkedHashMap<>();
+            for (Map.Entry<String, Optional<FollowingSet>> entry : loaded.getT2()) {
+                results.put(entry.getKey(),
+                    discoveryFanOut.result(entry.getKey(), loadedDirectory, entry.getValue().orElse(null)));
+            }
+            return results;
+        });
+    }
+
+    private Mono<UserDirectorySnapshot> directory() {
+        return Mono.defer(() -> {
+            // Once a snapshot exists reads never wait on user-service
+            if (userDirectoryCache.isLoaded()) {
+                return Mono.fromSupplier(userDirectoryCache::getSnapshot);
+            }
+            // The cold load is shared, so a timed-out caller only cancels its own copy
+            return Mono.fromFuture(() -> coldLoad().thenApply(Function.identity()));
+        });
+    }
+
+    /**
+     * The initial directory load, run once on the upstream pool for all requests waiting on it
+     */
+    private CompletableFuture<UserDirectorySnapshot> coldLoad() {
+        CompletableFuture<UserDirectorySnapshot> load = coldLoad.get();
+        if (load != null && !load.isDone()) {
+            return load;
+        }
+        CompletableFuture<UserDirectorySnapshot> started = new CompletableFuture<>();
+        if (!coldLoad.compareAndSet(load, started)) {
+            return coldLoad.get();
+        }
+        try {
+            CompletableFuture.runAsync(() -> started.complete(userDirectoryCache.getSnapshot()), upstreamExecutor)
+                .exceptionally(e -> {
+                    started.completeExceptionally(e);
+                    return null;
+                });
+        } catch (RejectedExecutionException e) {
+            // Pool is full; the next request starts the load again
+            started.completeExceptionally(e);
+        }
+        return started;
+    }
+
+    private Mono<FollowingSet> following(String userId) {
+        // The cache's load is shared with other requests, so a timed-out caller only cancels its own copy
+        return Mono.fromFuture(() -> followingCache.getFollowingIdsAsync(userId,
+            id -> fetchFollowing(id).toFuture()).thenApply(Function.identity()));
+    }
+
+    /**
+     * Reads every page of the user's following list from follow-service, one page at a time.
+     */
+    private Mono<List<String>> fetchFollowing(String userId) {
+        return followingPage(userId, 1)
+            .flatMapMany(first -> {
+                int totalPages = first.getPagination() != null ? first.getPagination().getTotalPages() : 1;
+                return Flux.concat(Mono.just(first),
+                    Flux.range(2, Math.max(0, totalPages - 1)).concatMap(page -> followingPage(userId, page)));
+            })
+            .takeWhile(response -> response.getFollowing() != null)
+            .concatMapIterable(FollowingResponse::getFollowing)
+            .mapNotNull(FollowingResponse.FollowingUserDto::getId)
+            .collectList();
+    }
+
+    private Mono<FollowingResponse> followingPage(String userId, int page) {
+        return upstreamCalls.followService(
+            followServiceClient.getFollowing(userId, page, FollowingCache.FOLLOWING_PAGE_SIZE));
+    }
+
+    /**
+     * Applies the timeout; completes with an empty Optional if the lookup fails or times out.
+     */
+    private static <T> Mono<Optional<T>> lookup(String description, Mono<T> lookup, Duration timeout) {
+        return lookup.map(Optional::of)
+            .defaultIfEmpty(Optional.empty())
+            .timeout(timeout)
+            .onErrorResume(e -> {
+                log.warn("Could not retrieve {}, continuing with a partial result: {}", description, e.toString());
+                return Mono.just(Optional.empty());
+            });
+    }
+
+    private static <T> Mono<T> timed(Mono<T> lookup, Timer timer) {
+        return Mono.defer(() -> {
+            Timer.Sample sample = Timer.start();
+            return lookup.doFinally(signal -> sample.stop(timer));
+        });
+    }
+}
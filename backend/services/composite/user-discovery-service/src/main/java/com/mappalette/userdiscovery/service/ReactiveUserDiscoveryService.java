@@ -0,0 +1,183 @@
+package com.mappalette.userdiscovery.service;
+
+import com.mappalette.userdiscovery.client.ReactiveUserServiceClient;
+import com.mappalette.userdiscovery.client.UpstreamCalls;
+import com.mappalette.userdiscovery.directory.DirectoryFilter;
+import com.mappalette.userdiscovery.directory.DirectoryUser;
+import com.mappalette.userdiscovery.directory.UserDirectoryPager;
+import com.mappalette.userdiscovery.directory.UserDirectorySnapshot;
+import com.mappalette.userdiscovery.directory.UserIdInterner;
+import com.mappalette.userdiscovery.dto.AllUsersResponse;
+import com.mappalette.userdiscovery.dto.BatchDiscoveryResponse;
+import com.mappalette.userdiscovery.dto.DiscoveryResponse;
+import com.mappalette.userdiscovery.dto.PaginatedUsersResponse;
+import com.mappalette.userdiscovery.dto.UserView;
+import com.mappalette.userdiscovery.metrics.DiscoveryMetrics;
+import com.mappalette.userdiscovery.metrics.RequestLogSampler;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+
+/**
+ * Mono / Flux variants of the {@link UserDiscoveryService} operations for the reactive profile.
+ *
+ * Upstream data comes from {@link ReactiveDiscoveryFanOut} without blocking; the filtering,
+ * pagination and response building are then delegated to {@link UserDiscoveryService}
+ * unchanged, so both stacks answer every request identically. That work is in-memory and runs
+ * on the event loop, except where it can block: scans past a truncated snapshot read
+ * user-service pages through Feign, friends past it are looked up by ID, and ranked
+ * suggestions may wait briefly for a neighbourhood build. Those run on bounded-elastic threads.
+ *
+ * {@link #streamUsers} has no blocking counterpart: it emits discoverable users one by one as
+ * the client reads them, fetching user-service pages past the snapshot only on demand.
+ */
+@Service
+@Profile("reactive")
+@Slf4j
+public class ReactiveUserDiscoveryService {
+
+    private final UserDiscoveryService userDiscoveryService;
+    private final ReactiveDiscoveryFanOut discoveryFanOut;
+    private final ReactiveUserServiceClient userServiceClient;
+    private final UpstreamCalls upstreamCalls;
+    private final UserIdInterner userIdInterner;
+    private final RequestLogSampler requestLogSampler;
+    private final int streamMaxLimit;
+
+    public ReactiveUserDiscoveryService(UserDiscoveryService userDiscoveryService,
+                                        ReactiveDiscoveryFanOut discoveryFanOut,
+                                        ReactiveUserServiceClient userServiceClient,
+                                        UpstreamCalls upstreamCalls,
+                                        UserIdInterner userIdInterner,
+                                        RequestLogSampler requestLogSampler,
+                                        @Value("${discovery.stream.max-limit:10000}") int streamMaxLimit) {
+        this.userDiscoveryService = userDiscoveryService;
+        this.discoveryFanOut = discoveryFanOut;
+        this.userServiceClient = userServiceClient;
+        this.upstreamCalls = upstreamCalls;
+        this.userIdInterner = userIdInterner;
+        this.requestLogSampler = requestLogSampler;
+        this.streamMaxLimit = streamMaxLimit;
+    }
+
+    public Mono<DiscoveryResponse> discoverUsers(String userId, int limit, int offset, boolean suggestionsOnly,
+                                                 boolean ranked) {
+        String endpoint = suggestionsOnly ? DiscoveryMetrics.SUGGESTIONS : DiscoveryMetrics.USERS;
+        return discoveryFanOut.load(userId, endpoint).flatMap(upstream -> compute(upstream, suggestionsOnly && ranked,
+            () -> userDiscoveryService.discoverUsers(userId, limit, offset, suggestionsOnly, ranked, () -> upstream)));
+    }
+
+    public Mono<DiscoveryResponse> discoverUsersByCursor(String userId, int limit, String cursor,
+                                                         boolean includeTotal) {
+        // An invalid cursor is rejected before anything is loaded
+        return Mono.fromCallable(() -> UserDiscoveryService.decodeCursor(cursor))
+            .then(discoveryFanOut.load(userId, DiscoveryMetrics.USERS))
+            .flatMap(upstream -> compute(upstream, false,
+                () -> userDiscoveryService.discoverUsersByCursor(userId, limit, cursor, includeTotal, () -> upstream)));
+    }
+
+    public Mono<BatchDiscoveryResponse> discoverSuggestionsBatch(List<String> userIds, int limit) {
+        return Mono.fromRunnable(() -> userDiscoveryService.checkBatch(userIds))
+            .then(discoveryFanOut.loadAll(userIds, DiscoveryMetrics.BATCH))
+            .flatMap(results -> compute(false,
+                () -> userDiscoveryService.discoverSuggestionsBatch(userIds, limit, () -> results)));
+    }
+
+    public Mono<DiscoveryResponse> searchUsers(String userId, String query, int limit) {
+        return Mono.fromCallable(() -> userDiscoveryService.searchPrefix(query))
+            .then(discoveryFanOut.load(userId, DiscoveryMetrics.SEARCH))
+            .flatMap(upstream -> compute(false,
+                () -> userDiscoveryService.searchUsers(userId, query, limit, () -> upstream)));
+    }
+
+    public Mono<AllUsersResponse> getAllUserData(String userId, int friendsLimit, int othersLimit) {
+        return discoveryFanOut.load(userId, DiscoveryMetrics.ALL).flatMap(upstream -> compute(upstream, false,
+            () -> userDiscoveryService.getAllUserData(userId, friendsLimit, othersLimit, () -> upstream)));
+    }
+
+    public Mono<VersionedResponse> getAllUserDataVersioned(String userId, int friendsLimit, int othersLimit,
+                                                           String ifNoneMatch) {
+        return discoveryFanOut.load(userId, DiscoveryMetrics.ALL).flatMap(upstream -> compute(upstream, false,
+            () -> userDiscoveryService.getAllUserDataVersioned(userId, friendsLimit, othersLimit, ifNoneMatch,
+                () -> upstream)));
+    }
+
+    /**
+     * Streams the users discoverUsers would page through, in the same order and with the same
+     * filter, starting at {@code offset} (capped at {@code discovery.users.max-offset}) and
+     * stopping after {@code limit} (capped at {@code discovery.stream.max-limit}). Users are produced only as fast as the client
+     * consumes them: past the snapshot, the next user-service page is fetched only once the
+     * previous one has been sent.
+     */
+    public Flux<UserView> streamUsers(String userId, int offset, int limit) {
+        int cappedOffset = userDiscoveryService.cappedOffset(offset);
+        int cappedLimit = Math.max(0, Math.min(limit, streamMaxLimit));
+        Mono<Void> logged = Mono.deferContextual(context -> {
+            if (requestLogSampler.sampled(context)) {
+                log.info("Streaming users for userId: {}, offset: {}, limit: {}", userId, cappedOffset, cappedLimit);
+            }
+            return Mono.empty();
+        });
+
+        return logged.then(discoveryFanOut.load(userId, DiscoveryMetrics.STREAM)).flatMapMany(upstream -> {
+            UserDirectorySnapshot directory = upstream.getDirectory();
+            if (directory == null) {
+                return Flux.empty();
+            }
+            DirectoryFilter discoverable = DirectoryFilter.discoverableBy(userId, upstream.getFollowingIds(),
+                userIdInterner);
+            return Flux.concat(Flux.fromIterable(directory.getUsers()), usersPastSnapshot(directory))
+                .filter(discoverable::accepts)
+                .skip(cappedOffset)
+                .take(cappedLimit, true)
+                // Explicitly set isFollowing to false (they're not followed)
+                .map(user -> new UserView(user, false));
+        });
+    }
+
+    /**
+     * The users user-service holds beyond a truncated snapshot, read one page at a time on demand
+     */
+    private Flux<DirectoryUser> usersPastSnapshot(UserDirectorySnapshot directory) {
+        if (!directory.isTruncated()) {
+            return Flux.empty();
+        }
+        int pageSize = UserDirectoryPager.PAGE_SIZE;
+        int firstPage = directory.size() / pageSize + 1;
+        int lastPage = (directory.getTotalAvailable() + pageSize - 1) / pageSize;
+        return Flux.range(firstPage, lastPage - firstPage + 1)
+            .concatMap(page -> upstreamCalls.userService(userServiceClient.getAllUsersPage(page, pageSize)), 1)
+            .takeWhile(response -> response.getUsers() != null && !response.getUsers().isEmpty())
+            .concatMapIterable(PaginatedUsersResponse::getUsers)
+            // The first page starts inside the snapshot
+            .skip(directory.size() % pageSize)
+            .mapNotNull(user -> DirectoryUser.from(user, userIdInterner))
+            .onErrorResume(e -> {
+                log.warn("Could not stream users past the directory snapshot, ending the stream early: {}",
+                    e.toString());
+                return Flux.empty();
+            });
+    }
+
+    private <T> Mono<T> compute(DiscoveryFanOut.Result upstream, boolean mayWait, Callable<T> work) {
+        UserDirectorySnapshot directory = upstream.getDirectory();
+        return compute(mayWait || (directory != null && directory.isTruncated()), work);
+    }
+
+    /**
+     * Runs the in-memory part of a request, off the event loop if it may block; its log lines
+     * follow the request's sample decision, which is read from the Reactor Context
+     */
+    private <T> Mono<T> compute(boolean blocks, Callable<T> work) {
+        Mono<T> result = Mono.deferContextual(context ->
+            Mono.fromCallable(() -> requestLogSampler.callSampled(context, work)));
+        return blocks ? result.subscribeOn(Schedulers.boundedElastic()) : result;
+    }
+}
@@ -0,0 +1,395 @@
+package com.mappalette.userdiscovery.service;
+
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.mappalette.userdiscovery.cache.FollowingCache;
+import com.mappalette.userdiscovery.client.FollowServiceClient;
+import com.mappalette.userdiscovery.client.UpstreamCalls;
+import com.mappalette.userdiscovery.config.DiscoveryExecutors;
+import com.mappalette.userdiscovery.directory.DirectoryUser;
+import com.mappalette.userdiscovery.directory.FollowingSet;
+import com.mappalette.userdiscovery.directory.SuggestionIndex;
+import com.mappalette.userdiscovery.directory.TwoHopNeighbourhood;
+import com.mappalette.userdiscovery.directory.UserIdInterner;
+import com.mappalette.userdiscovery.dto.FollowingResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+/**
+ * Ranks suggestions by friends-of-friends: a candidate scores for every user the viewer
+ * follows who also follows them, for following the viewer, and, on a log scale, for
+ * their follower count.
+ *
+ * Each viewer's {@link TwoHopNeighbourhood} is built in the background from follow-service
+ * and cached per viewer. Entries are rebuilt asynchronously once they are older than the
+ * refresh interval, while the old one keeps being served, and dropped after the TTL. A
+ * request waits for a missing neighbourhood only briefly; if it is not ready by then the
+ * request gets no ranked users and the build keeps going for the next one. Building is
+ * bounded too: only a sample of the viewer's followees is expanded, a few at a time, and
+ * whatever has loaded when the build deadline passes is used.
+ *
+ * Followees' following sets are kept in a cache of their own, bounded by the number of ids
+ * it holds, so second-hop expansion never evicts the sets request paths read from
+ * {@link FollowingCache}. Viewers who appear as each other's followees share the entries.
+ *
+ * Ranking walks the cached candidates once and keeps the best k in a bounded min-heap, so
+ * a request costs O(candidates * log k) regardless of how large the follow graph is.
+ */
+@Component
+@Slf4j
+public class SuggestionRanker {
+
+    // follow-service rejects page sizes above 100
+    private static final int FOLLOWS_PAGE_SIZE = 100;
+
+    // Worst candidate at the head; ties go to the lower interned id so rankings are stable
+    private static final Comparator<Scored> WORST_FIRST = Comparator
+        .comparingDouble(Scored::score)
+        .thenComparing(Comparator.comparingInt(Scored::internedId).reversed());
+
+    private final FollowServiceClient followServiceClient;
+    private final UpstreamCalls upstreamCalls;
+    private final FollowingCache followingCache;
+    private final SuggestionIndex suggestionIndex;
+    private final UserIdInterner userIdInterner;
+    private final AsyncLoadingCache<String, TwoHopNeighbourhood> neighbourhoods;
+    private final Cache<String, FollowingSet> followeeFollowing;
+    private final ExecutorService buildExecutor;
+    private final ExecutorService expandExecutor;
+
+    private final int maxExpandedFollowees;
+    private final int expandParallelism;
+    private final int maxFollowers;
+    private final int maxCandidates;
+    private final long buildTimeoutMs;
+    private final long waitMs;
+    private final double mutualWeight;
+    private final double followsYouWeight;
+    private final double popularityWeight;
+
+    private final Timer buildTimer;
+    private final Counter ranked;
+    private final Counter notReady;
+    private final Counter failed;
+
+    public SuggestionRanker(FollowServiceClient followServiceClient,
+                            UpstreamCalls upstreamCalls,
+                            FollowingCache followingCache,
+                            SuggestionIndex suggestionIndex,
+                            UserIdInterner userIdInterner,
+                            MeterRegistry meterRegistry,
+                            DiscoveryExecutors discoveryExecutors,
+                            @Value("${discovery.suggestions.ranked.cache.max-size:5000}") long maxSize,
+                            @Value("${discovery.suggestions.ranked.cache.ttl-ms:900000}") long ttlMs,
+                            @Value("${discovery.suggestions.ranked.cache.refresh-ms:120000}") long refreshMs,
+                            @Value("${discovery.suggestions.ranked.followee-cache.max-ids:2000000}") long followeeMaxIds,
+                            @Value("${discovery.suggestions.ranked.followee-cache.ttl-ms:300000}") long followeeTtlMs,
+                            @Value("${discovery.suggestions.ranked.max-expanded-followees:200}") int maxExpandedFollowees,
+                            @Value("${discovery.suggestions.ranked.expand-parallelism:8}") int expandParallelism,
+                            @Value("${discovery.suggestions.ranked.max-followers:500}") int maxFollowers,
+                            @Value("${discovery.suggestions.ranked.max-candidates:500}") int maxCandidates,
+                            @Value("${discovery.suggestions.ranked.build-timeout-ms:2000}") long buildTimeoutMs,
+                            @Value("${discovery.suggestions.ranked.wait-ms:150}") long waitMs,
+                            @Value("${discovery.suggestions.ranked.weights.mutual:1.0}") double mutualWeight,
+                            @Value("${discovery.suggestions.ranked.weights.follows-you:2.0}") double followsYouWeight,
+                            @Value("${discovery.suggestions.ranked.weights.popularity:0.25}") double popularityWeight) {
+        this.followServiceClient = followServiceClient;
+        this.upstreamCalls = upstreamCalls;
+        this.followingCache = followingCache;
+        this.suggestionIndex = suggestionIndex;
+        this.userIdInterner = userIdInterner;
+        this.maxExpandedFollowees = maxExpandedFollowees;
+        this.expandParallelism = Math.max(1, expandParallelism);
+        this.maxFollowers = maxFollowers;
+        this.maxCandidates = maxCandidates;
+        this.buildTimeoutMs = buildTimeoutMs;
+        this.waitMs = waitMs;
+        this.mutualWeight = mutualWeight;
+        this.followsYouWeight = followsYouWeight;
+        this.popularityWeight = popularityWeight;
+        // Builds wait on their expansion lanes, so the two never share a pool
+        this.buildExecutor = discoveryExecutors.newExecutor("neighbourhood-build");
+        this.expandExecutor = discoveryExecutors.newExecutor("neighbourhood-expand");
+
+        Caffeine<Object, Object> builder = Caffeine.newBuilder()
+            .maximumSize(maxSize)
+            .expireAfterWrite(Duration.ofMillis(ttlMs))
+            .recordStats();
+        if (refreshMs > 0 && refreshMs < ttlMs) {
+            builder.refreshAfterWrite(Duration.ofMillis(refreshMs));
+        }
+        // Builds go to their own pool; the cache's own maintenance stays on its default executor
+        this.neighbourhoods = builder.buildAsync((viewerId, executor) -> {
+            try {
+                return CompletableFuture.supplyAsync(() -> build(viewerId), buildExecutor);
+            } catch (RejectedExecutionException e) {
+                // Cancelled rather than failed, so the cache drops the entry without logging it
+                CompletableFuture<TwoHopNeighbourhood> rejected = new CompletableFuture<>();
+                rejected.cancel(false);
+                return rejected;
+            }
+        });
+        CaffeineCacheMetrics.monitor(meterRegistry, neighbourhoods.synchronous(), "discovery.neighbourhood");
+        this.followeeFollowing = Caffeine.newBuilder()
+            .maximumWeight(followeeMaxIds)
+            .<String, FollowingSet>weigher((userId, following) -> following.size() + 1)
+            .expireAfterWrite(Duration.ofMillis(followeeTtlMs))
+            .recordStats()
+            .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, followeeFollowing, "discovery.neighbourhood.followees");
+
+        this.buildTimer = Timer.builder("discovery.suggestions.neighbourhood.build")
+            .description("Time to build one viewer's friends-of-friends neighbourhood")
+            .register(meterRegistry);
+        this.ranked = Counter.builder("discovery.suggestions.ranked")
+            .tag("result", "ranked")
+            .description("Ranked suggestion requests answered from a neighbourhood")
+            .register(meterRegistry);
+        this.notReady = Counter.builder("discovery.suggestions.ranked")
+            .tag("result", "not_ready")
+            .description("Ranked suggestion requests whose neighbourhood was still being built")
+            .register(meterRegistry);
+        this.failed = Counter.builder("discovery.suggestions.ranked")
+            .tag("result", "failed")
+            .description("Ranked suggestion requests whose neighbourhood could not be built")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Up to {@code k} public users the viewer does not follow, best first. Fewer, or none,
+     * when the viewer's neighbourhood is small or not built yet.
+     *
+     * @param following the viewer's current following set; the cached neighbourhood may predate it
+     */
+    public List<DirectoryUser> rank(String viewerId, FollowingSet following, int k) {
+        if (k <= 0) {
+            return new ArrayList<>();
+        }
+        TwoHopNeighbourhood neighbourhood = neighbourhood(viewerId);
+        if (neighbourhood == null) {
+            return new ArrayList<>();
+        }
+        ranked.increment();
+
+        int viewer = userIdInterner.lookup(viewerId);
+        PriorityQueue<Scored> best = new PriorityQueue<>(Math.min(k, neighbourhood.size()) + 1, WORST_FIRST);
+        for (int i = 0; i < neighbourhood.size(); i++) {
+            int id = neighbourhood.idAt(i);
+            if (id == viewer || following.contains(id)) {
+                continue;
+            }
+            DirectoryUser user = suggestionIndex.publicUser(id);
+            if (user == null) {
+                continue;
+            }
+            double score = score(neighbourhood.mutualCountAt(i), neighbourhood.followsViewerAt(i), user);
+            if (best.size() < k) {
+                best.add(new Scored(user, id, score));
+            } else if (beats(score, id, best.peek())) {
+                best.poll();
+                best.add(new Scored(user, id, score));
+            }
+        }
+
+        DirectoryUser[] ordered = new DirectoryUser[best.size()];
+        for (int i = ordered.length - 1; i >= 0; i--) {
+            ordered[i] = best.poll().user();
+        }
+        return new ArrayList<>(Arrays.asList(ordered));
+    }
+
+    /**
+     * Called after the user followed or unfollowed someone: their expanded following set is
+     * dropped, and a cached neighbourhood of theirs is rebuilt in the background while the
+     * old one keeps being served.
+     */
+    public void invalidate(String userId) {
+        followeeFollowing.invalidate(userId);
+        if (neighbourhoods.getIfPresent(userId) != null) {
+            neighbourhoods.synchronous().refresh(userId);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        buildExecutor.shutdownNow();
+        expandExecutor.shutdownNow();
+    }
+
+    private TwoHopNeighbourhood neighbourhood(String viewerId) {
+        try {
+            return neighbourhoods.get(viewerId).get(waitMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            notReady.increment();
+            return null;
+        } catch (CancellationException e) {
+            // Every build slot was taken; try again on a later request
+            notReady.increment();
+            return null;
+        } catch (ExecutionException e) {
+            failed.increment();
+            log.warn("Could not build the suggestion neighbourhood of user {}: {}", viewerId, e.getCause().toString());
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    private TwoHopNeighbourhood build(String viewerId) {
+        long started = System.nanoTime();
+        long deadline = started + TimeUnit.MILLISECONDS.toNanos(buildTimeoutMs);
+
+        // Step 1: The viewer's own following set; without it there is nothing to expand
+        FollowingSet following = followingCache.getFollowingIds(viewerId);
+
+        // Step 2: Their followers, concurrently with the expansion
+        CompletableFuture<FollowingSet> followers = submit(() -> loadFollowers(viewerId));
+
+        // Step 3: Expand an evenly spaced sample of followees, a few lanes at a time, until the deadline
+        int[] followees = following.sample(maxExpandedFollowees);
+        int expanded = followees.length;
+        AtomicReferenceArray<FollowingSet> followeeSets = new AtomicReferenceArray<>(expanded);
+        int lanes = Math.min(expandParallelism, expanded);
+        CompletableFuture<?>[] laneFutures = new CompletableFuture<?>[lanes];
+        for (int lane = 0; lane < lanes; lane++) {
+            int first = lane;
+            laneFutures[lane] = submit(() -> {
+                for (int i = first; i < expanded && System.nanoTime() < deadline; i += lanes) {
+                    String followeeId = userIdInterner.userId(followees[i]);
+                    if (followeeId != null) {
+                        followeeSets.set(i, loadFollowing(followeeId));
+                    }
+                }
+                return null;
+            });
+        }
+        await(CompletableFuture.allOf(laneFutures), deadline);
+        FollowingSet viewerFollowers = await(followers, deadline);
+
+        // Step 4: Count mutual connections over whatever loaded in time
+        List<FollowingSet> loaded = new ArrayList<>(expanded);
+        for (int i = 0; i < expanded; i++) {
+            FollowingSet set = followeeSets.get(i);
+            if (set != null) {
+                loaded.add(set);
+            }
+        }
+        TwoHopNeighbourhood neighbourhood = TwoHopNeighbourhood.build(userIdInterner.lookup(viewerId), following,
+            loaded, viewerFollowers != null ? viewerFollowers : FollowingSet.EMPTY, maxCandidates);
+        buildTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        log.debug("Built suggestion neighbourhood of user {}: {} candidates from {}/{} followees",
+            viewerId, neighbourhood.size(), loaded.size(), following.size());
+        return neighbourhood;
+    }
+
+    /**
+     * A followee's following set, or the last one request paths loaded if follow-service fails;
+     * null if neither is available.
+     */
+    private FollowingSet loadFollowing(String userId) {
+        try {
+            return followeeFollowing.get(userId, followeeId -> loadFollows(
+                page -> followServiceClient.getFollowing(followeeId, page, FOLLOWS_PAGE_SIZE),
+                FollowingResponse::getFollowing, Integer.MAX_VALUE));
+        } catch (Exception e) {
+            return followingCache.getLastKnownFollowingIds(userId);
+        }
+    }
+
+    private FollowingSet loadFollowers(String userId) {
+        return loadFollows(page -> followServiceClient.getFollowers(userId, page, FOLLOWS_PAGE_SIZE),
+            FollowingResponse::getFollowers, maxFollowers);
+    }
+
+    /**
+     * Reads follow-service pages until the last one, or until at least {@code max} ids were read.
+     */
+    private FollowingSet loadFollows(IntFunction<FollowingResponse> fetchPage,
+                                     Function<FollowingResponse, List<FollowingResponse.FollowingUserDto>> users,
+                                     int max) {
+        List<String> ids = new ArrayList<>();
+        int page = 1;
+        int totalPages;
+        do {
+            int currentPage = page;
+            FollowingResponse response = upstreamCalls.followService(() -> fetchPage.apply(currentPage));
+            List<FollowingResponse.FollowingUserDto> pageUsers = response != null ? users.apply(response) : null;
+            if (pageUsers == null) {
+                break;
+            }
+            for (FollowingResponse.FollowingUserDto user : pageUsers) {
+                if (user.getId() != null) {
+                    ids.add(user.getId());
+                }
+            }
+            totalPages = response.getPagination() != null ? response.getPagination().getTotalPages() : page;
+            page++;
+        } while (page <= totalPages && ids.size() < max);
+        return FollowingSet.of(ids, userIdInterner);
+    }
+
+    /**
+     * Runs the task on the expansion pool; a task the pool rejects completes with null
+     */
+    private <T> CompletableFuture<T> submit(Supplier<T> task) {
+        try {
+            return CompletableFuture.supplyAsync(task, expandExecutor);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.completedFuture(null);
+        }
+    }
+
+    /**
+     * Waits for the future until the deadline; null if it did not complete successfully by then.
+     */
+    private static <T> T await(CompletableFuture<T> future, long deadlineNanos) {
+        try {
+            return future.get(Math.max(0, deadlineNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException | ExecutionException e) {
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    private double score(int mutualCount, boolean followsViewer, DirectoryUser user) {
+        int followers = user.getNumFollowers() != null ? Math.max(0, user.getNumFollowers()) : 0;
+        return mutualWeight * mutualCount
+            + (followsViewer ? followsYouWeight : 0)
+            + popularityWeight * Math.log1p(followers);
+    }
+
+    private static boolean beats(double score, int internedId, Scored worst) {
+        return score > worst.score() || (score == worst.score() && internedId < worst.internedId());
+    }
+
+    private record Scored(DirectoryUser user, int internedId, double score) {
+    }
+}
@@ -1,104 +1,203 @@
 package com.mappalette.userdiscovery.service;
 
-import com.mappalette.userdiscovery.client.FollowServiceClient;
-import com.mappalette.userdiscovery.client.UserServiceClient;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mappalette.userdiscovery.cache.FollowingCache;
+import com.mappalette.userdiscovery.cache.ResponseCache;
+import com.mappalette.userdiscovery.cache.UserLookupCache;
+import com.mappalette.userdiscovery.directory.DirectoryFilter;
+import com.mappalette.userdiscovery.directory.DirectoryPartitioner;
+import com.mappalette.userdiscovery.directory.DirectoryScan;
+import com.mappalette.userdiscovery.directory.DirectoryUser;
+import com.mappalette.userdiscovery.directory.FollowingSet;
+import com.mappalette.userdiscovery.directory.SuggestionIndex;
+import com.mappalette.userdiscovery.directory.UserDirectoryPager;
+import com.mappalette.userdiscovery.directory.UserDirectorySnapshot;
+import com.mappalette.userdiscovery.directory.UserIdInterner;
+import com.mappalette.userdiscovery.directory.UsernameIndex;
 import com.mappalette.userdiscovery.dto.AllUsersResponse;
+import com.mappalette.userdiscovery.dto.BatchDiscoveryResponse;
 import com.mappalette.userdiscovery.dto.DiscoveryResponse;
-import com.mappalette.userdiscovery.dto.FollowingResponse;
-import com.mappalette.userdiscovery.dto.PaginatedUsersResponse;
-import com.mappalette.userdiscovery.dto.UserDto;
-import lombok.RequiredArgsConstructor;
+import com.mappalette.userdiscovery.dto.UserView;
+import com.mappalette.userdiscovery.metrics.DiscoveryMetrics;
+import com.mappalette.userdiscovery.metrics.RequestLogSampler;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.function.Supplier;
 
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class UserDiscoveryService {
     
-    private final UserServiceClient userServiceClient;
-    private final FollowServiceClient followServiceClient;
+    private final DiscoveryFanOut discoveryFanOut;
+    private final FollowingCache followingCache;
+    private final SuggestionIndex suggestionIndex;
+    private final SuggestionRanker suggestionRanker;
+    private final UsernameIndex usernameIndex;
+    private final UserDirectoryPager userDirectoryPager;
+    private final UserIdInterner userIdInterner;
+    private final UserLookupCache userLookupCache;
+    private final DirectoryPartitioner directoryPartitioner;
+    private final DiscoveryMetrics discoveryMetrics;
+    private final RequestLogSampler requestLogSampler;
+    private final ResponseCache responseCache;
+    private final ObjectMapper objectMapper;
+    private final int usersMaxLimit;
+    private final int usersMaxOffset;
+    private final int allMaxLimit;
+    private final int batchMaxUsers;
+    private final int searchMaxLimit;
+    private final int searchMaxQueryLength;
     
-    private static final String DEFAULT_PROFILE_PICTURE = "/resources/images/default-profile.png";
+    public UserDiscoveryService(DiscoveryFanOut discoveryFanOut,
+                                FollowingCache followingCache,
+                                SuggestionIndex suggestionIndex,
+                                SuggestionRanker suggestionRanker,
+                                UsernameIndex usernameIndex,
+                                UserDirectoryPager userDirectoryPager,
+                                UserIdInterner userIdInterner,
+                                UserLookupCache userLookupCache,
+                                DirectoryPartitioner directoryPartitioner,
+                                DiscoveryMetrics discoveryMetrics,
+                                RequestLogSampler requestLogSampler,
+                                ResponseCache responseCache,
+                                ObjectMapper objectMapper,
+                                @Value("${discovery.users.max-limit:100}") int usersMaxLimit,
+                                @Value("${discovery.users.max-offset:10000}") int usersMaxOffset,
+                                @Value("${discovery.all.max-limit:500}") int allMaxLimit,
+                                @Value("${discovery.batch.max-users:100}") int batchMaxUsers,
+                                @Value("${discovery.search.max-limit:50}") int searchMaxLimit,
+                                @Value("${discovery.search.max-query-length:50}") int searchMaxQueryLength) {
+        this.discoveryFanOut = discoveryFanOut;
+        this.followingCache = followingCache;
+        this.suggestionIndex = suggestionIndex;
+        this.suggestionRanker = suggestionRanker;
+        this.usernameIndex = usernameIndex;
+        this.userDirectoryPager = userDirectoryPager;
+        this.userIdInterner = userIdInterner;
+        this.userLookupCache = userLookupCache;
+        this.directoryPartitioner = directoryPartitioner;
+        this.discoveryMetrics = discoveryMetrics;
+        this.requestLogSampler = requestLogSampler;
+        this.responseCache = responseCache;
+        this.objectMapper = objectMapper;
+        this.usersMaxLimit = usersMaxLimit;
+        this.usersMaxOffset = usersMaxOffset;
+        this.allMaxLimit = allMaxLimit;
+        this.batchMaxUsers = batchMaxUsers;
+        this.searchMaxLimit = searchMaxLimit;
+        this.searchMaxQueryLength = searchMaxQueryLength;
+    }
+    
+    // How far around its old position a cursor's anchor user is searched for
+    private static final int CURSOR_ANCHOR_WINDOW = 256;
     
     public DiscoveryResponse discoverUsers(String userId, int limit, int offset, boolean suggestionsOnly) {
-        log.info("Discovering users for userId: {}, limit: {}, offset: {}, suggestionsOnly: {}", 
-                userId, limit, offset, suggestionsOnly);
+        return discoverUsers(userId, limit, offset, suggestionsOnly, false);
+    }
+    
+    /**
+     * @param ranked with suggestionsOnly, rank friends-of-friends first and fill up with random users
+     */
+    public DiscoveryResponse discoverUsers(String userId, int limit, int offset, boolean suggestionsOnly,
+                                           boolean ranked) {
+        String endpoint = suggestionsOnly ? DiscoveryMetrics.SUGGESTIONS : DiscoveryMetrics.USERS;
+        return discoverUsers(userId, limit, offset, suggestionsOnly, ranked,
+            () -> discoveryFanOut.load(userId, endpoint));
+    }
+    
+    /**
+     * discoverUsers over upstream data that is loaded by, or was already loaded for, the given supplier
+     */
+    DiscoveryResponse discoverUsers(String userId, int requestedLimit, int requestedOffset, boolean suggestionsOnly,
+                                    boolean ranked, Supplier<DiscoveryFanOut.Result> loader) {
+        int limit = cappedLimit(requestedLimit);
+        int offset = cappedOffset(requestedOffset);
+        if (requestLogSampler.sampled()) {
+            log.info("Discovering users for userId: {}, limit: {}, offset: {}, suggestionsOnly: {}", 
+                    userId, limit, offset, suggestionsOnly);
+        }
         
         try {
-            // Step 1: Get all users from user service
-            PaginatedUsersResponse response = userServiceClient.getAllUsers(1000);
-            List<UserDto> allUsers = response.getUsers() != null ? response.getUsers() : new ArrayList<>();
-            log.info("Retrieved {} total users from user service", allUsers.size());
+            // Steps 1 & 2: Get all users from the directory snapshot and the current user's following list concurrently
+            String endpoint = suggestionsOnly ? DiscoveryMetrics.SUGGESTIONS : DiscoveryMetrics.USERS;
+            DiscoveryFanOut.Result upstream = loader.get();
+            UserDirectorySnapshot directory = upstream.getDirectory();
+            FollowingSet followingIds = upstream.getFollowingIds();
+            if (requestLogSampler.sampled()) {
+                log.info("Retrieved {} total users from user directory", directory != null ? directory.getTotalAvailable() : 0);
+                log.info("User {} is following {} users", userId, followingIds.size());
+            }
             
-            // Step 2: Get the current user's following list
-            Set<String> followingIds = getFollowingIds(userId);
-            log.info("User {} is following {} users", userId, followingIds.size());
+            // Suggestions only: rank or sample candidates from the public-user index instead of filtering everyone
+            if (suggestionsOnly) {
+                return suggestions(userId, limit, offset, upstream, endpoint, ranked);
+            }
             
-            // Step 3: Filter users
-            List<UserDto> discoveredUsers = allUsers.stream()
-                .filter(user -> {
-                    String userIdToCheck = user.getUserID() != null ? user.getUserID() : user.getId();
-                    
-                    // Skip current user
-                    if (userIdToCheck.equals(userId)) {
-                        return false;
-                    }
-                    
-                    // Skip users that are already being followed
-                    if (followingIds.contains(userIdToCheck)) {
-                        return false;
+            // Steps 3 & 4: Filter users and apply pagination, scanning only until the page is filled.
+            // The snapshot is counted from its bitmaps; users past the snapshot cap are streamed
+            // from user-service only until the page is filled, so totalCount is then a lower bound.
+            Timer.Sample filter = Timer.start();
+            DirectoryFilter discoverable = DirectoryFilter.discoverableBy(userId, followingIds, userIdInterner);
+            List<UserView> paginatedUsers = new ArrayList<>();
+            int totalCount = 0;
+            int scanned = 0;
+            if (directory != null) {
+                int snapshotCount = directory.countAccepted(discoverable);
+                // A page that starts past the snapshot's discoverable users skips the snapshot entirely
+                int seen = offset >= snapshotCount ? snapshotCount : 0;
+                int startPosition = offset >= snapshotCount ? directory.size() : 0;
+                int beyondSnapshot = 0;
+                if (startPosition == 0 && directoryPartitioner.shouldSplit(DirectoryPartitioner.expectedScanLength(
+                        directory.size(), snapshotCount, offset + limit))) {
+                    // Deep pages of a large snapshot: filter it in parallel chunks, then stream on from its end
+                    List<DirectoryUser> accepted = directoryPartitioner.filter(directory.getUsers(),
+                        discoverable::accepts, offset + limit);
+                    for (int i = offset; i < accepted.size(); i++) {
+                        paginatedUsers.add(withFollowing(accepted.get(i), false));
                     }
-                    
-                    // Skip private profiles (since user doesn't follow them)
-                    if (user.isProfilePrivate()) {
-                        return false;
-                    }
-                    
-                    return true;
-                })
-                .map(user -> {
-                    // Ensure consistent data format
-                    if (user.getId() == null && user.getUserID() != null) {
-                        user.setId(user.getUserID());
-                    } else if (user.getUserID() == null && user.getId() != null) {
-                        user.setUserID(user.getId());
-                    }
-                    
-                    // Set default profile picture if not present
-                    if (user.getProfilePicture() == null || user.getProfilePicture().isEmpty()) {
-                        user.setProfilePicture(DEFAULT_PROFILE_PICTURE);
+                    seen = accepted.size();
+                    startPosition = directory.size();
+                    scanned = directory.size();
+                }
+                try (DirectoryScan scan = userDirectoryPager.scan(directory, startPosition, discoverable)) {
+                    while (paginatedUsers.size() < limit && scan.hasNext()) {
+                        boolean streamed = scan.getPosition() >= directory.size();
+                        DirectoryUser user = scan.next();
+                        if (!discoverable.accepts(user)) {
+                            continue;
+                        }
+                        if (seen >= offset) {
+                            // Explicitly set isFollowing to false (they're not followed)
+                            paginatedUsers.add(withFollowing(user, false));
+                        }
+                        seen++;
+                        if (streamed) {
+                            beyondSnapshot++;
+                        }
                     }
-                    
-                    // Explicitly set isFollowing to false (they're not followed)
-                    user.setFollowing(false);
-                    
-                    return user;
-                })
-                .collect(Collectors.toList());
-            
-            log.info("Found {} discoverable users after filtering", discoveredUsers.size());
-            
-            // Step 4: Apply pagination
-            int totalCount = discoveredUsers.size();
-            int fromIndex = Math.min(offset, totalCount);
-            int toIndex = Math.min(offset + limit, totalCount);
-            
-            List<UserDto> paginatedUsers = discoveredUsers.subList(fromIndex, toIndex);
+                    scanned += scan.getPosition() - startPosition;
+                }
+                totalCount = snapshotCount + beyondSnapshot;
+            }
+            filter.stop(discoveryMetrics.stage(endpoint, DiscoveryMetrics.STAGE_FILTER));
+            discoveryMetrics.recordUsers(endpoint, scanned, paginatedUsers.size());
             
-            // Step 5: If suggestions only, shuffle for variety
-            if (suggestionsOnly && !paginatedUsers.isEmpty()) {
-                paginatedUsers = new ArrayList<>(paginatedUsers);
-                java.util.Collections.shuffle(paginatedUsers);
-                paginatedUsers = paginatedUsers.stream()
-                    .limit(limit)
-                    .collect(Collectors.toList());
+            if (requestLogSampler.sampled()) {
+                log.info("Found {} discoverable users after filtering", totalCount);
             }
             
             return DiscoveryResponse.builder()
@@ -107,6 +206,8 @@ public class UserDiscoveryService {
                 .followingCount(followingIds.size())
                 .limit(limit)
                 .offset(offset)
+                .partial(upstream.isPartial() ? Boolean.TRUE : null)
+                .degraded(upstream.isDegraded() ? Boolean.TRUE : null)
                 .build();
                 
         } catch (Exception e) {
@@ -122,96 +223,511 @@ public class UserDiscoveryService {
         }
     }
     
-    public AllUsersResponse getAllUserData(String userId, int friendsLimit, int othersLimit) {
-        log.info("Getting all user data for userId: {}, friendsLimit: {}, othersLimit: {}", userId, friendsLimit, othersLimit);
+    /**
+     * Cursor-mode variant of discoverUsers. Scanning stops as soon as a page is filled, and
+     * users beyond the snapshot cap are read from user-service page by page. An exact total
+     * requires a full scan, so it is only computed when requested.
+     */
+    public DiscoveryResponse discoverUsersByCursor(String userId, int limit, String cursor, boolean includeTotal) {
+        return discoverUsersByCursor(userId, limit, cursor, includeTotal,
+            () -> discoveryFanOut.load(userId, DiscoveryMetrics.USERS));
+    }
+    
+    DiscoveryResponse discoverUsersByCursor(String userId, int requestedLimit, String cursor, boolean includeTotal,
+                                            Supplier<DiscoveryFanOut.Result> loader) {
+        // An empty page could not move the cursor forward, so a client following it would loop
+        int limit = Math.max(1, cappedLimit(requestedLimit));
+        if (requestLogSampler.sampled()) {
+            log.info("Discovering users for userId: {}, limit: {}, cursor: {}, includeTotal: {}", 
+                    userId, limit, cursor, includeTotal);
+        }
+        
+        DiscoveryCursor start = decodeCursor(cursor);
         
         try {
-            // Step 1: Get all users from user service (max limit is 100)
-            PaginatedUsersResponse response = userServiceClient.getAllUsers(100);
-            List<UserDto> allUsers = response.getUsers() != null ? response.getUsers() : new ArrayList<>();
-            log.info("Retrieved {} total users from user service", allUsers.size());
-            
-            // Step 2: Get the current user's following list
-            Set<String> followingIds = getFollowingIds(userId);
-            log.info("User {} is following {} users", userId, followingIds.size());
+            DiscoveryFanOut.Result upstream = loader.get();
+            FollowingSet followingIds = upstream.getFollowingIds();
+            UserDirectorySnapshot directory = upstream.getDirectory();
+            if (directory == null) {
+                return DiscoveryResponse.builder()
+                    .users(new ArrayList<>())
+                    .followingCount(followingIds.size())
+                    .limit(limit)
+                    .partial(Boolean.TRUE)
+                    .degraded(upstream.isDegraded() ? Boolean.TRUE : null)
+                    .build();
+            }
             
-            // Step 3: Separate users into friends and other users
-            List<UserDto> friends = new ArrayList<>();
-            List<UserDto> otherUsers = new ArrayList<>();
+            Timer.Sample filter = Timer.start();
+            DirectoryFilter discoverable = DirectoryFilter.discoverableBy(userId, followingIds, userIdInterner);
+            String lastScannedId = null;
+            List<UserView> page = new ArrayList<>(limit);
+            int startPosition = resumePosition(start, directory.getUsers());
+            int position;
+            boolean hasMore;
             
-            for (UserDto user : allUsers) {
-                String userIdToCheck = user.getUserID() != null ? user.getUserID() : user.getId();
-                
-                // Skip current user
-                if (userIdToCheck.equals(userId)) {
-                    continue;
-                }
-                
-                // Ensure consistent data format
-                if (user.getId() == null && user.getUserID() != null) {
-                    user.setId(user.getUserID());
-                } else if (user.getUserID() == null && user.getId() != null) {
-                    user.setUserID(user.getId());
-                }
-                
-                // Set default profile picture if not present
-                if (user.getProfilePicture() == null || user.getProfilePicture().isEmpty()) {
-                    user.setProfilePicture(DEFAULT_PROFILE_PICTURE);
-                }
-                
-                // Check if this user is a friend
-                if (followingIds.contains(userIdToCheck)) {
-                    user.setFollowing(true);
-                    friends.add(user);
-                } else if (!user.isProfilePrivate()) {
-                    // Only include non-private profiles in other users
-                    user.setFollowing(false);
-                    otherUsers.add(user);
+            try (DirectoryScan scan = userDirectoryPager.scan(directory, startPosition, discoverable)) {
+                while (page.size() < limit && scan.hasNext()) {
+                    DirectoryUser user = scan.next();
+                    lastScannedId = user.getId();
+                    if (discoverable.accepts(user)) {
+                        page.add(withFollowing(user, false));
+                    }
                 }
+                position = scan.getPosition();
+                hasMore = scan.hasMore();
             }
+            filter.stop(discoveryMetrics.stage(DiscoveryMetrics.USERS, DiscoveryMetrics.STAGE_FILTER));
+            discoveryMetrics.recordUsers(DiscoveryMetrics.USERS, position - startPosition, page.size());
+            
+            String nextCursor = page.size() == limit && hasMore
+                ? new DiscoveryCursor(position, lastScannedId).encode()
+                : null;
             
-            log.info("Found {} friends and {} other users", friends.size(), otherUsers.size());
+            return DiscoveryResponse.builder()
+                .users(page)
+                .totalCount(includeTotal ? countDiscoverable(directory, discoverable) : null)
+                .followingCount(followingIds.size())
+                .limit(limit)
+                .nextCursor(nextCursor)
+                .partial(upstream.isPartial() ? Boolean.TRUE : null)
+                .degraded(upstream.isDegraded() ? Boolean.TRUE : null)
+                .build();
+                
+        } catch (Exception e) {
+            log.error("Error discovering users for userId: {}", userId, e);
+            // Return empty response on error
+            return DiscoveryResponse.builder()
+                .users(new ArrayList<>())
+                .followingCount(0)
+                .limit(limit)
+                .build();
+        }
+    }
+    
+    /**
+     * Suggestions for many viewers at once. The directory is loaded once and the following
+     * lists are fetched in parallel, so N viewers cost 1 + N upstream lookups instead of 2N.
+     */
+    public BatchDiscoveryResponse discoverSuggestionsBatch(List<String> userIds, int limit) {
+        return discoverSuggestionsBatch(userIds, limit, () -> discoveryFanOut.loadAll(userIds, DiscoveryMetrics.BATCH));
+    }
+    
+    BatchDiscoveryResponse discoverSuggestionsBatch(List<String> userIds, int requestedLimit,
+                                                    Supplier<Map<String, DiscoveryFanOut.Result>> loader) {
+        checkBatch(userIds);
+        int limit = cappedLimit(requestedLimit);
+        if (requestLogSampler.sampled()) {
+            log.info("Discovering suggestions for {} users, limit: {}", userIds.size(), limit);
+        }
+        
+        Map<String, DiscoveryResponse> results = new LinkedHashMap<>();
+        try {
+            loader.get().forEach((userId, upstream) ->
+                results.put(userId, suggestions(userId, limit, 0, upstream, DiscoveryMetrics.BATCH, false)));
+        } catch (Exception e) {
+            log.error("Error discovering suggestions for {} users", userIds.size(), e);
+            // Return empty responses on error
+            for (String userId : userIds) {
+                results.put(userId, DiscoveryResponse.builder()
+                    .users(new ArrayList<>())
+                    .totalCount(0)
+                    .followingCount(0)
+                    .limit(limit)
+                    .offset(0)
+                    .build());
+            }
+        }
+        return BatchDiscoveryResponse.builder()
+            .results(results)
+            .build();
+    }
+    
+    /**
+     * Typeahead search: public users whose username starts with the query, ignoring case,
+     * leaving out the viewer and users they already follow. Served from the username index,
+     * so only users in the directory snapshot are found.
+     */
+    public DiscoveryResponse searchUsers(String userId, String query, int limit) {
+        return searchUsers(userId, query, limit, () -> discoveryFanOut.load(userId, DiscoveryMetrics.SEARCH));
+    }
+    
+    DiscoveryResponse searchUsers(String userId, String query, int limit, Supplier<DiscoveryFanOut.Result> loader) {
+        String prefix = searchPrefix(query);
+        int cappedLimit = Math.max(0, Math.min(limit, searchMaxLimit));
+        if (requestLogSampler.sampled()) {
+            log.info("Searching users for userId: {}, q: {}, limit: {}", userId, prefix, cappedLimit);
+        }
+        
+        try {
+            // Step 1: Get the directory snapshot (which keeps the index current) and the following list
+            DiscoveryFanOut.Result upstream = loader.get();
+            FollowingSet followingIds = upstream.getFollowingIds();
             
-            // Step 4: Apply limits to friends and other users
-            List<UserDto> limitedFriends = friends.stream().limit(friendsLimit).collect(Collectors.toList());
-            List<UserDto> limitedOtherUsers = otherUsers.stream().limit(othersLimit).collect(Collectors.toList());
+            // Step 2: Look the prefix up in the index and rank the matches
+            Timer.Sample filter = Timer.start();
+            List<DirectoryUser> found = usernameIndex.search(prefix, cappedLimit, userId, followingIds);
+            List<UserView> users = new ArrayList<>(found.size());
+            for (DirectoryUser user : found) {
+                users.add(withFollowing(user, false));
+            }
+            filter.stop(discoveryMetrics.stage(DiscoveryMetrics.SEARCH, DiscoveryMetrics.STAGE_FILTER));
+            discoveryMetrics.recordUsers(DiscoveryMetrics.SEARCH, users.size(), users.size());
             
-            return AllUsersResponse.builder()
-                .friends(limitedFriends)
-                .otherUsers(limitedOtherUsers)
-                .totalFriendsCount(friends.size())
-                .totalOtherUsersCount(otherUsers.size())
-                .limit(othersLimit)
+            return DiscoveryResponse.builder()
+                .users(users)
+                .followingCount(followingIds.size())
+                .limit(cappedLimit)
                 .offset(0)
+                .partial(upstream.isPartial() ? Boolean.TRUE : null)
+                .degraded(upstream.isDegraded() ? Boolean.TRUE : null)
                 .build();
-                
         } catch (Exception e) {
-            log.error("Error getting all user data for userId: {}", userId, e);
+            log.error("Error searching users for userId: {}", userId, e);
             // Return empty response on error
-            return AllUsersResponse.builder()
-                .friends(new ArrayList<>())
-                .otherUsers(new ArrayList<>())
-                .totalFriendsCount(0)
-                .totalOtherUsersCount(0)
-                .limit(othersLimit)
+            return DiscoveryResponse.builder()
+                .users(new ArrayList<>())
+                .followingCount(0)
+                .limit(cappedLimit)
                 .offset(0)
                 .build();
         }
     }
     
-    private Set<String> getFollowingIds(String userId) {
+    public AllUsersResponse getAllUserData(String userId, int friendsLimit, int othersLimit) {
+        return getAllUserData(userId, friendsLimit, othersLimit, () -> discoveryFanOut.load(userId, DiscoveryMetrics.ALL));
+    }
+    
+    AllUsersResponse getAllUserData(String userId, int requestedFriendsLimit, int requestedOthersLimit,
+                                    Supplier<DiscoveryFanOut.Result> loader) {
+        int friendsLimit = Math.max(0, Math.min(requestedFriendsLimit, allMaxLimit));
+        int othersLimit = Math.max(0, Math.min(requestedOthersLimit, allMaxLimit));
+        if (requestLogSampler.sampled()) {
+            log.info("Getting all user data for userId: {}, friendsLimit: {}, othersLimit: {}", userId, friendsLimit, othersLimit);
+        }
+        
         try {
-            FollowingResponse followingResponse = followServiceClient.getFollowing(userId);
-            if (followingResponse != null && followingResponse.getFollowing() != null) {
-                // Extract IDs from the user objects
-                return followingResponse.getFollowing().stream()
-                    .map(FollowingResponse.FollowingUserDto::getId)
-                    .filter(id -> id != null)
-                    .collect(java.util.stream.Collectors.toSet());
+            // Steps 1 & 2: Get the directory snapshot and the current user's following list concurrently
+            DiscoveryFanOut.Result upstream = loader.get();
+            return allUserData(userId, friendsLimit, othersLimit, upstream);
+        } catch (Exception e) {
+            log.error("Error getting all user data for userId: {}", userId, e);
+            // Return empty response on error
+            return emptyAllUserData(othersLimit);
+        }
+    }
+    
+    /**
+     * getAllUserData serialized to JSON, with an ETag derived from the directory's content version
+     * and the viewer's following set. A client whose If-None-Match still holds that ETag gets a
+     * 304 without anything being recomputed; otherwise the serialized bytes are reused from the
+     * response cache while both versions are unchanged.
+     *
+     * Responses that read users past a capped snapshot, or were built from fallback data, depend
+     * on more than those versions and get no ETag.
+     */
+    public VersionedResponse getAllUserDataVersioned(String userId, int friendsLimit, int othersLimit,
+                                                     String ifNoneMatch) throws IOException {
+        return getAllUserDataVersioned(userId, friendsLimit, othersLimit, ifNoneMatch,
+            () -> discoveryFanOut.load(userId, DiscoveryMetrics.ALL));
+    }
+    
+    VersionedResponse getAllUserDataVersioned(String userId, int requestedFriendsLimit, int requestedOthersLimit,
+                                              String ifNoneMatch, Supplier<DiscoveryFanOut.Result> loader)
+            throws IOException {
+        int friendsLimit = Math.max(0, Math.min(requestedFriendsLimit, allMaxLimit));
+        int othersLimit = Math.max(0, Math.min(requestedOthersLimit, allMaxLimit));
+        if (requestLogSampler.sampled()) {
+            log.info("Getting all user data for userId: {}, friendsLimit: {}, othersLimit: {}, ifNoneMatch: {}",
+                    userId, friendsLimit, othersLimit, ifNoneMatch);
+        }
+        
+        String etag = null;
+        String cacheKey = userId + '/' + friendsLimit + '/' + othersLimit;
+        AllUsersResponse response;
+        try {
+            // Steps 1 & 2: Get the directory snapshot and the current user's following list concurrently
+            DiscoveryFanOut.Result upstream = loader.get();
+            UserDirectorySnapshot directory = upstream.getDirectory();
+            if (directory != null && !directory.isTruncated() && !upstream.isPartial() && !upstream.isDegraded()) {
+                etag = responseCache.etag(directory.getContentVersion(), upstream.getFollowingIds().fingerprint(),
+                    userIdInterner.lookup(userId), friendsLimit, othersLimit);
+                if (responseCache.notModified(ifNoneMatch, etag)) {
+                    return VersionedResponse.notModified(etag);
+                }
+                byte[] cached = responseCache.get(cacheKey, etag);
+                if (cached != null) {
+                    return VersionedResponse.of(etag, cached);
+                }
             }
+            // Steps 3 & 4 only run when the client's copy and the cached bytes are both outdated
+            response = allUserData(userId, friendsLimit, othersLimit, upstream);
         } catch (Exception e) {
-            log.warn("Could not retrieve following list for user {}: {}", userId, e.getMessage());
+            log.error("Error getting all user data for userId: {}", userId, e);
+            // Return empty response on error, uncached
+            etag = null;
+            response = emptyAllUserData(othersLimit);
+        }
+        
+        // Step 5: Serialize once; the bytes are what gets cached and written
+        Timer.Sample serialize = Timer.start();
+        byte[] body = objectMapper.writeValueAsBytes(response);
+        serialize.stop(discoveryMetrics.stage(DiscoveryMetrics.ALL, DiscoveryMetrics.STAGE_SERIALIZE));
+        if (etag != null) {
+            responseCache.put(cacheKey, etag, body);
         }
-        return new HashSet<>();
+        return VersionedResponse.of(etag, body);
     }
+    
+    private AllUsersResponse allUserData(String userId, int friendsLimit, int othersLimit,
+                                         DiscoveryFanOut.Result upstream) {
+        UserDirectorySnapshot directory = upstream.getDirectory();
+        FollowingSet followingIds = upstream.getFollowingIds();
+        if (requestLogSampler.sampled()) {
+            log.info("Retrieved {} total users from user directory", directory != null ? directory.getTotalAvailable() : 0);
+            log.info("User {} is following {} users", userId, followingIds.size());
+        }
+        
+        // Step 3: Resolve friends from the following list rather than by scanning the directory:
+        // followed users the snapshot holds are found by their position in it, and only those
+        // past a capped snapshot are looked up by ID, as many as the list still has room for.
+        List<UserView> friends = new ArrayList<>();
+        List<UserView> otherUsers = new ArrayList<>();
+        int totalFriends = 0;
+        int totalOthers = 0;
+        int scanned = 0;
+        boolean friendsMissing = false;
+        
+        if (directory != null) {
+            DirectoryFilter discoverable = DirectoryFilter.discoverableBy(userId, followingIds, userIdInterner);
+            Timer.Sample resolve = Timer.start();
+            for (DirectoryUser user : directory.followedUsers(discoverable, friendsLimit)) {
+                friends.add(withFollowing(user, true));
+            }
+            totalFriends = directory.countFollowed(discoverable);
+            if (directory.isTruncated()) {
+                // Followed users missing from an uncapped snapshot have been deleted, so only a capped one is looked past
+                int[] absent = directory.followedAbsent(discoverable);
+                int[] wanted = Arrays.copyOf(absent, Math.min(absent.length, Math.max(0, friendsLimit - friends.size())));
+                Map<Integer, Optional<DirectoryUser>> found = userLookupCache.getAll(wanted);
+                int deleted = 0;
+                for (int internedId : wanted) {
+                    Optional<DirectoryUser> user = found.get(internedId);
+                    if (user == null) {
+                        friendsMissing = true;
+                    } else if (user.isPresent()) {
+                        friends.add(withFollowing(user.get(), true));
+                    } else {
+                        deleted++;
+                    }
+                }
+                // Users that were not looked up are counted as existing
+                totalFriends += absent.length - deleted;
+            }
+            resolve.stop(discoveryMetrics.stage(DiscoveryMetrics.ALL, DiscoveryMetrics.STAGE_FRIENDS));
+            
+            // Step 4: Collect other users, scanning only until the list is filled. The snapshot is
+            // counted from its bitmaps; users past the snapshot cap are streamed from user-service
+            // only until the list is filled, so the total is then a lower bound.
+            Timer.Sample filter = Timer.start();
+            int snapshotOthers = directory.countAccepted(discoverable);
+            int streamedOthers = 0;
+            int startPosition = 0;
+            if (directoryPartitioner.shouldSplit(DirectoryPartitioner.expectedScanLength(
+                    directory.size(), snapshotOthers, othersLimit))) {
+                // Large snapshot with few discoverable users: filter it in parallel chunks, then stream on from its end
+                directoryPartitioner.filter(directory.getUsers(), discoverable::accepts, othersLimit)
+                    .forEach(user -> otherUsers.add(withFollowing(user, false)));
+                startPosition = directory.size();
+                scanned = directory.size();
+            }
+            try (DirectoryScan scan = userDirectoryPager.scan(directory, startPosition, discoverable)) {
+                while (otherUsers.size() < othersLimit && scan.hasNext()) {
+                    boolean streamed = scan.getPosition() >= directory.size();
+                    DirectoryUser user = scan.next();
+                    // Skips the current user, friends and private profiles
+                    if (!discoverable.accepts(user)) {
+                        continue;
+                    }
+                    otherUsers.add(withFollowing(user, false));
+                    if (streamed) {
+                        streamedOthers++;
+                    }
+                }
+                scanned += scan.getPosition() - startPosition;
+            }
+            totalOthers = snapshotOthers + streamedOthers;
+            filter.stop(discoveryMetrics.stage(DiscoveryMetrics.ALL, DiscoveryMetrics.STAGE_FILTER));
+        }
+        discoveryMetrics.recordUsers(DiscoveryMetrics.ALL, scanned, friends.size() + otherUsers.size());
+        
+        if (requestLogSampler.sampled()) {
+            log.info("Found {} friends and {} other users", totalFriends, totalOthers);
+        }
+        
+        return AllUsersResponse.builder()
+            .friends(friends)
+            .otherUsers(otherUsers)
+            .totalFriendsCount(totalFriends)
+            .totalOtherUsersCount(totalOthers)
+            .limit(othersLimit)
+            .offset(0)
+            .partial(upstream.isPartial() || friendsMissing ? Boolean.TRUE : null)
+            .degraded(upstream.isDegraded() ? Boolean.TRUE : null)
+            .build();
+    }
+    
+    private static AllUsersResponse emptyAllUserData(int othersLimit) {
+        return AllUsersResponse.builder()
+            .friends(new ArrayList<>())
+            .otherUsers(new ArrayList<>())
+            .totalFriendsCount(0)
+            .totalOtherUsersCount(0)
+            .limit(othersLimit)
+            .offset(0)
+            .build();
+    }
+    
+    /**
+     * Samples random candidates from the public-user index instead of filtering everyone.
+     * Ranked suggestions come first when requested; random ones fill whatever they leave open.
+     */
+    private DiscoveryResponse suggestions(String userId, int limit, int offset, DiscoveryFanOut.Result upstream,
+                                          String endpoint, boolean ranked) {
+        Timer.Sample filter = Timer.start();
+        FollowingSet followingIds = upstream.getFollowingIds();
+        List<DirectoryUser> picked = ranked ? suggestionRanker.rank(userId, followingIds, limit) : new ArrayList<>();
+        if (picked.size() < limit) {
+            Set<Integer> pickedIds = new HashSet<>();
+            picked.forEach(user -> pickedIds.add(user.getInternedId()));
+            for (DirectoryUser user : suggestionIndex.sample(limit, userId, followingIds)) {
+                if (picked.size() < limit && pickedIds.add(user.getInternedId())) {
+                    picked.add(user);
+                }
+            }
+        }
+        List<UserView> suggestions = new ArrayList<>(picked.size());
+        for (DirectoryUser user : picked) {
+            suggestions.add(withFollowing(user, false));
+        }
+        int candidates = suggestionIndex.countCandidates(userId, followingIds);
+        filter.stop(discoveryMetrics.stage(endpoint, DiscoveryMetrics.STAGE_FILTER));
+        discoveryMetrics.recordUsers(endpoint, suggestions.size(), suggestions.size());
+        
+        return DiscoveryResponse.builder()
+            .users(suggestions)
+            .totalCount(candidates)
+            .followingCount(followingIds.size())
+            .limit(limit)
+            .offset(offset)
+            .partial(upstream.isPartial() ? Boolean.TRUE : null)
+            .degraded(upstream.isDegraded() ? Boolean.TRUE : null)
+            .build();
+    }
+    
+    static DiscoveryCursor decodeCursor(String cursor) {
+        try {
+            return DiscoveryCursor.decode(cursor);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor");
+        }
+    }
+    
+    /**
+     * @return the page size clamped to 0..discovery.users.max-limit
+     */
+    int cappedLimit(int limit) {
+        return Math.max(0, Math.min(limit, usersMaxLimit));
+    }
+    
+    /**
+     * @return the offset clamped to 0..discovery.users.max-offset, so a page never skips
+     *         through more user-service pages than that past the snapshot
+     */
+    int cappedOffset(int offset) {
+        return Math.max(0, Math.min(offset, usersMaxOffset));
+    }
+    
+    void checkBatch(List<String> userIds) {
+        if (userIds == null || userIds.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "userIds must not be empty");
+        }
+        if (userIds.size() > batchMaxUsers) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                "At most " + batchMaxUsers + " userIds per request");
+        }
+        for (String userId : userIds) {
+            if (userId == null || userId.isBlank()) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "userIds must not contain blank IDs");
+            }
+        }
+    }
+    
+    /**
+     * @return the normalized search query
+     */
+    String searchPrefix(String query) {
+        String prefix = query != null ? UsernameIndex.normalize(query) : "";
+        if (prefix.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "q must not be empty");
+        }
+        if (prefix.length() > searchMaxQueryLength) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                "q must be at most " + searchMaxQueryLength + " characters");
+        }
+        return prefix;
+    }
+    
+    /**
+     * Finds where a cursor should resume. Newer users push older ones further down the
+     * directory, so the anchor user is looked up near its old position first.
+     */
+    private static int resumePosition(DiscoveryCursor cursor, List<DirectoryUser> snapshotUsers) {
+        int position = cursor.getPosition();
+        String anchor = cursor.getAnchorUserId();
+        if (anchor == null || position == 0 || position > snapshotUsers.size()) {
+            return position;
+        }
+        
+        int expected = position - 1;
+        for (int distance = 0; distance <= CURSOR_ANCHOR_WINDOW; distance++) {
+            int after = expected + distance;
+            if (after < snapshotUsers.size() && anchor.equals(snapshotUsers.get(after).getId())) {
+                return after + 1;
+            }
+            int before = expected - distance;
+            if (distance > 0 && before >= 0 && anchor.equals(snapshotUsers.get(before).getId())) {
+                return before + 1;
+            }
+        }
+        return position;
+    }
+    
+    /**
+     * Exact number of discoverable users: the snapshot's from its bitmaps, plus those beyond
+     * the snapshot cap, which are streamed.
+     */
+    private int countDiscoverable(UserDirectorySnapshot directory, DirectoryFilter discoverable) {
+        int count = directory.countAccepted(discoverable);
+        try (DirectoryScan scan = userDirectoryPager.scan(directory, directory.size(), discoverable)) {
+            while (scan.hasNext()) {
+                if (discoverable.accepts(scan.next())) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+    
+    private static UserView withFollowing(DirectoryUser user, boolean following) {
+        return new UserView(user, following);
+    }
+    
+    /**
+     * Drops the cached following list for a user, e.g. when a follow event may have been lost
+     */
+    public void invalidateFollowing(String userId) {
+        followingCache.invalidate(userId);
+    }
+
 }
\ No newline at end of file
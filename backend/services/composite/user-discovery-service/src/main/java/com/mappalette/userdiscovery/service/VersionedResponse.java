@@ -0,0 +1,32 @@
+package com.mappalette.userdiscovery.service;
+
+import lombok.Getter;
+
+/**
+ * A serialized response and its ETag, or only the ETag when the client's copy is still current.
+ */
+@Getter
+public final class VersionedResponse {
+
+    // Null when the response depends on more than the versions an ETag covers
+    private final String etag;
+    // Null when not modified
+    private final byte[] body;
+
+    private VersionedResponse(String etag, byte[] body) {
+        this.etag = etag;
+        this.body = body;
+    }
+
+    public static VersionedResponse of(String etag, byte[] body) {
+        return new VersionedResponse(etag, body);
+    }
+
+    public static VersionedResponse notModified(String etag) {
+        return new VersionedResponse(etag, null);
+    }
+
+    public boolean isNotModified() {
+        return body == null;
+    }
+}
@@ -0,0 +1,100 @@
+package com.mappalette.userdiscovery.cache;
+
+import com.mappalette.userdiscovery.directory.FollowingSet;
+import com.mappalette.userdiscovery.directory.UserIdInterner;
+import com.mappalette.userdiscovery.support.FakeFollowService;
+import com.mappalette.userdiscovery.support.TestUpstreams;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class FollowingCacheTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final UserIdInterner interner = new UserIdInterner();
+    private final FakeFollowService followService = new FakeFollowService().follows("viewer", List.of("a", "b"));
+    private final FollowingCache cache = new FollowingCache(followService, TestUpstreams.calls(meterRegistry),
+        interner, meterRegistry, 100, 60_000, 60_000);
+
+    @Test
+    void concurrentMissesShareOneLoad() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        followService.onRequest(userId -> await(release));
+        List<CompletableFuture<FollowingSet>> reads = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            reads.add(CompletableFuture.supplyAsync(() -> cache.getFollowingIds("viewer")));
+        }
+        Thread.sleep(100);
+        release.countDown();
+
+        FollowingSet first = reads.get(0).get(10, TimeUnit.SECONDS);
+        for (CompletableFuture<FollowingSet> read : reads) {
+            assertThat(read.get(10, TimeUnit.SECONDS)).isSameAs(first);
+        }
+        assertFollows(first, "a", "b");
+        assertThat(followService.getFollowingRequests("viewer")).isEqualTo(1);
+    }
+
+    @Test
+    void loadsEveryPageOfALongList() {
+        List<String> following = new ArrayList<>();
+        for (int i = 0; i < 250; i++) {
+            following.add("user-" + i);
+        }
+        followService.follows("viewer", following);
+
+        assertThat(cache.getFollowingIds("viewer").size()).isEqualTo(250);
+        assertThat(followService.getFollowingRequests("viewer")).isEqualTo(3);
+    }
+
+    @Test
+    void failedLoadsAreNotCachedAndKeepTheLastKnownSet() {
+        FollowingSet loaded = cache.getFollowingIds("viewer");
+        cache.invalidate("viewer");
+        followService.onRequest(userId -> {
+            throw new IllegalStateException("follow-service is down");
+        });
+
+        assertThatThrownBy(() -> cache.getFollowingIds("viewer")).isInstanceOf(CompletionException.class);
+        assertThat(cache.getLastKnownFollowingIds("viewer")).isSameAs(loaded);
+
+        followService.onRequest(userId -> { });
+        assertFollows(cache.getFollowingIds("viewer"), "a", "b");
+        assertThat(followService.getFollowingRequests("viewer")).isEqualTo(3);
+    }
+
+    @Test
+    void invalidateMakesTheNextReadLoadAgain() {
+        cache.getFollowingIds("viewer");
+        followService.follows("viewer", List.of("a", "b", "c"));
+
+        assertFollows(cache.getFollowingIds("viewer"), "a", "b");
+        cache.invalidate("viewer");
+        assertFollows(cache.getFollowingIds("viewer"), "a", "b", "c");
+        assertThat(followService.getFollowingRequests("viewer")).isEqualTo(2);
+    }
+
+    private void assertFollows(FollowingSet set, String... userIds) {
+        assertThat(set.size()).isEqualTo(userIds.length);
+        for (String userId : userIds) {
+            assertThat(set.contains(interner.lookup(userId))).as(userId).isTrue();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.mappalette.userdiscovery.cache;
+
+import com.mappalette.userdiscovery.directory.FollowingSet;
+import com.mappalette.userdiscovery.directory.UserIdInterner;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ResponseCacheTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ResponseCache cache = new ResponseCache(meterRegistry, 1 << 20, 60_000);
+
+    @Test
+    void matchesTheSameETag() {
+        assertThat(ResponseCache.matches("\"abc\"", "\"abc\"")).isTrue();
+        assertThat(ResponseCache.matches("\"abd\"", "\"abc\"")).isFalse();
+        assertThat(ResponseCache.matches("abc", "\"abc\"")).isFalse();
+    }
+
+    @Test
+    void matchesAnyETagInAList() {
+        assertThat(ResponseCache.matches("\"x\", \"abc\" ,\"y\"", "\"abc\"")).isTrue();
+        assertThat(ResponseCache.matches("\"x\",\"y\"", "\"abc\"")).isFalse();
+    }
+
+    @Test
+    void matchesWeakETagsAndTheWildcard() {
+        assertThat(ResponseCache.matches("W/\"abc\"", "\"abc\"")).isTrue();
+        assertThat(ResponseCache.matches("\"x\", W/\"abc\"", "\"abc\"")).isTrue();
+        assertThat(ResponseCache.matches("*", "\"abc\"")).isTrue();
+    }
+
+    @Test
+    void matchesNothingWithoutAHeaderOrETag() {
+        assertThat(ResponseCache.matches(null, "\"abc\"")).isFalse();
+        assertThat(ResponseCache.matches("", "\"abc\"")).isFalse();
+        assertThat(ResponseCache.matches("*", null)).isFalse();
+    }
+
+    @Test
+    void etagChangesWithEveryVersion() {
+        UserIdInterner interner = new UserIdInterner();
+        long following = FollowingSet.of(List.of("a", "b"), interner).fingerprint();
+        String etag = cache.etag(3, following, 100, 100);
+
+        assertThat(etag).startsWith("\"").endsWith("\"");
+        assertThat(cache.etag(3, FollowingSet.of(List.of("b", "a", "a"), interner).fingerprint(), 100, 100))
+            .isEqualTo(etag);
+        assertThat(cache.etag(4, following, 100, 100)).isNotEqualTo(etag);
+        assertThat(cache.etag(3, FollowingSet.of(List.of("a"), interner).fingerprint(), 100, 100))
+            .isNotEqualTo(etag);
+        assertThat(cache.etag(3, following, 100, 50)).isNotEqualTo(etag);
+    }
+
+    @Test
+    void servesBodiesOnlyUnderTheirETag() {
+        byte[] body = {1, 2, 3};
+        cache.put("viewer/100/100", "\"v1\"", body);
+
+        assertThat(cache.get("viewer/100/100", "\"v1\"")).isSameAs(body);
+        assertThat(cache.get("viewer/100/100", "\"v2\"")).isNull();
+        assertThat(cache.get("other/100/100", "\"v1\"")).isNull();
+    }
+
+    @Test
+    void countsNotModifiedAnswers() {
+        assertThat(cache.notModified("\"v1\"", "\"v1\"")).isTrue();
+        assertThat(cache.notModified("\"v0\"", "\"v1\"")).isFalse();
+
+        assertThat(meterRegistry.counter("discovery.responses.not.modified").count()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,216 @@
+package com.mappalette.userdiscovery.cache;
+
+import com.mappalette.userdiscovery.directory.DirectoryUser;
+import com.mappalette.userdiscovery.directory.UserIdInterner;
+import com.mappalette.userdiscovery.dto.UserDto;
+import com.mappalette.userdiscovery.support.FakeUserService;
+import com.mappalette.userdiscovery.support.TestUpstreams;
+import feign.FeignException;
+import feign.Request;
+import feign.Response;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UserLookupCacheTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final UserIdInterner userIdInterner = new UserIdInterner();
+    private final ScriptedUserService userService = new ScriptedUserService(FakeUserService.users("user-", 20));
+    private final List<UserLookupCache> caches = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        caches.forEach(UserLookupCache::shutdown);
+    }
+
+    @Test
+    void fetchesEachUserOnceAndCachesUnknownUsersAsAbsent() {
+        UserLookupCache cache = cache(4, 2000);
+
+        Map<Integer, Optional<DirectoryUser>> first = cache.getAll(ids("user-1", "user-2", "user-1", "ghost"));
+        Map<Integer, Optional<DirectoryUser>> second = cache.getAll(ids("user-2", "ghost", "user-3"));
+
+        assertThat(first).hasSize(3);
+        assertThat(first.get(id("user-1"))).hasValueSatisfying(user -> assertThat(user.getId()).isEqualTo("user-1"));
+        assertThat(first.get(id("ghost"))).isEmpty();
+        assertThat(second).containsKeys(id("user-2"), id("ghost"), id("user-3"));
+        assertThat(userService.getUserRequests()).isEqualTo(4);
+    }
+
+    @Test
+    void keepsAtMostParallelismCallsInFlightPerBatch() {
+        UserLookupCache cache = cache(3, 5000);
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        userService.before = userId -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            sleep(20);
+            inFlight.decrementAndGet();
+        };
+
+        Map<Integer, Optional<DirectoryUser>> users = cache.getAll(ids("user-0", "user-1", "user-2", "user-3",
+            "user-4", "user-5", "user-6", "user-7", "user-8", "user-9"));
+
+        assertThat(users).hasSize(10);
+        assertThat(maxInFlight.get()).isBetween(1, 3);
+    }
+
+    @Test
+    void leavesOutFailedAndSlowLookupsAndRetriesThemLater() throws Exception {
+        UserLookupCache cache = cache(4, 200);
+        CountDownLatch release = new CountDownLatch(1);
+        userService.before = userId -> {
+            if (userId.equals("user-1")) {
+                throw new IllegalStateException("user-service down");
+            }
+            if (userId.equals("user-2")) {
+                await(release);
+            }
+        };
+
+        Map<Integer, Optional<DirectoryUser>> first = cache.getAll(ids("user-0", "user-1", "user-2"));
+
+        assertThat(first).containsOnlyKeys(id("user-0"));
+
+        userService.before = userId -> { };
+        release.countDown();
+        Thread.sleep(100);
+        Map<Integer, Optional<DirectoryUser>> second = cache.getAll(ids("user-0", "user-1", "user-2"));
+
+        assertThat(second).containsOnlyKeys(id("user-0"), id("user-1"), id("user-2"));
+        // user-1 failed and is asked for again; the slow user-2 finished in the background and is cached
+        assertThat(userService.getUserRequests()).isEqualTo(4);
+    }
+
+    @Test
+    void waitsOutRetryAfterAndRetriesTheRateLimitedLookup() {
+        UserLookupCache cache = cache(1, 3000);
+        userService.tooManyRequests.add("1");
+
+        long started = System.nanoTime();
+        Map<Integer, Optional<DirectoryUser>> users = cache.getAll(ids("user-1", "user-2"));
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+
+        assertThat(users).containsOnlyKeys(id("user-1"), id("user-2"));
+        assertThat(elapsedMs).isGreaterThanOrEqualTo(900);
+        assertThat(userService.getUserRequests()).isEqualTo(3);
+        assertThat(meterRegistry.get("discovery.user-lookup.rate-limited").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void skipsUserServiceWhileABackoffOutlastsTheRequest() {
+        UserLookupCache cache = cache(2, 300);
+        userService.tooManyRequests.add("30");
+
+        Map<Integer, Optional<DirectoryUser>> first = cache.getAll(ids("user-1"));
+        Map<Integer, Optional<DirectoryUser>> second = cache.getAll(ids("user-2", "user-3"));
+
+        assertThat(first).isEmpty();
+        assertThat(second).isEmpty();
+        assertThat(userService.getUserRequests()).isEqualTo(1);
+        assertThat(meterRegistry.get("discovery.user-lookup.fetched").tag("result", "failed").counter().count())
+            .isEqualTo(3);
+    }
+
+    @Test
+    void readsRetryAfterAsSecondsOrAnHttpDateWithinTheCap() {
+        UserLookupCache cache = cache(1, 1000);
+        String inTenSeconds = DateTimeFormatter.RFC_1123_DATE_TIME.format(ZonedDateTime.now().plusSeconds(10));
+
+        assertThat(cache.retryAfterMs(tooManyRequests("2"))).isEqualTo(2000);
+        assertThat(cache.retryAfterMs(tooManyRequests(inTenSeconds))).isBetween(8000L, 10_000L);
+        assertThat(cache.retryAfterMs(tooManyRequests("3600"))).isEqualTo(30_000);
+        assertThat(cache.retryAfterMs(tooManyRequests("-5"))).isZero();
+        assertThat(cache.retryAfterMs(tooManyRequests("soon"))).isEqualTo(1000);
+        assertThat(cache.retryAfterMs(tooManyRequests(null))).isEqualTo(1000);
+    }
+
+    private UserLookupCache cache(int parallelism, long timeoutMs) {
+        UserLookupCache cache = new UserLookupCache(userService, TestUpstreams.calls(meterRegistry), userIdInterner,
+            meterRegistry, TestUpstreams.executors(), 1000, 60_000, parallelism, timeoutMs, 1000, 30_000);
+        caches.add(cache);
+        return cache;
+    }
+
+    private int[] ids(String... userIds) {
+        int[] ids = new int[userIds.length];
+        for (int i = 0; i < userIds.length; i++) {
+            ids[i] = id(userIds[i]);
+        }
+        return ids;
+    }
+
+    private int id(String userId) {
+        return userIdInterner.intern(userId);
+    }
+
+    private static FeignException tooManyRequests(String retryAfter) {
+        Map<String, Collection<String>> headers = retryAfter != null ? Map.of("Retry-After", List.of(retryAfter))
+            : Map.of();
+        Response response = Response.builder()
+            .status(429)
+            .request(Request.create(Request.HttpMethod.GET, "/api/users/user-1", Map.of(), null,
+                StandardCharsets.UTF_8, null))
+            .headers(headers)
+            .build();
+        return FeignException.errorStatus("UserServiceClient#getUserById(String)", response);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * {@link FakeUserService} whose by-ID lookups can be hooked, or answered with queued 429s first
+     */
+    private static final class ScriptedUserService extends FakeUserService {
+
+        private final Queue<String> tooManyRequests = new ConcurrentLinkedQueue<>();
+        private volatile Consumer<String> before = userId -> { };
+
+        ScriptedUserService(List<UserDto> users) {
+            super(users);
+        }
+
+        @Override
+        public UserDto getUserById(String userId) {
+            UserDto user = super.getUserById(userId);
+            String retryAfter = tooManyRequests.poll();
+            if (retryAfter != null) {
+                throw tooManyRequests(retryAfter);
+            }
+            before.accept(userId);
+            return user;
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.mappalette.userdiscovery.client;
+
+import feign.Request;
+import feign.Response;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CompressingClientTest {
+
+    private static final String URL = "http://user-service/api/users/batch";
+    private static final Request.Options OPTIONS = new Request.Options();
+
+    private final AtomicReference<Request> sent = new AtomicReference<>();
+
+    @Test
+    void asksForCompressedResponses() throws IOException {
+        new CompressingClient(respondWith(Map.of(), json("[]")), false, false, 2048).execute(get(), OPTIONS);
+
+        assertThat(sent.get().headers().get("Accept-Encoding")).containsExactly("gzip, deflate");
+    }
+
+    @Test
+    void keepsTheCallersAcceptEncoding() throws IOException {
+        Request request = Request.create(Request.HttpMethod.GET, URL, Map.of("accept-encoding", List.of("identity")),
+            null, StandardCharsets.UTF_8, null);
+
+        new CompressingClient(respondWith(Map.of(), json("[]")), false, false, 2048).execute(request, OPTIONS);
+
+        assertThat(sent.get().headers()).hasSize(1);
+        assertThat(sent.get().headers().get("accept-encoding")).containsExactly("identity");
+    }
+
+    @Test
+    void inflatesGzipAndDeflateResponses() throws IOException {
+        byte[] body = json("[{\"id\":\"u1\"}]");
+
+        Response gzipped = new CompressingClient(respondWith(Map.of("Content-Encoding", List.of("gzip"),
+            "Content-Length", List.of("99")), gzip(body)), false, false, 2048).execute(get(), OPTIONS);
+        Response deflated = new CompressingClient(respondWith(Map.of("content-encoding", List.of("deflate")),
+            deflate(body)), false, false, 2048).execute(get(), OPTIONS);
+
+        assertThat(read(gzipped)).isEqualTo(body);
+        assertThat(gzipped.headers()).doesNotContainKeys("Content-Encoding", "Content-Length");
+        assertThat(read(deflated)).isEqualTo(body);
+        assertThat(deflated.headers()).doesNotContainKey("content-encoding");
+    }
+
+    @Test
+    void leavesResponsesToATransportThatInflatesThem() throws IOException {
+        byte[] compressed = gzip(json("[]"));
+
+        Response response = new CompressingClient(respondWith(Map.of("Content-Encoding", List.of("gzip")), compressed),
+            true, false, 2048).execute(get(), OPTIONS);
+
+        assertThat(read(response)).isEqualTo(compressed);
+        assertThat(response.headers().get("Content-Encoding")).containsExactly("gzip");
+    }
+
+    @Test
+    void gzipsRequestBodiesFromTheMinimumSize() throws IOException {
+        byte[] small = json("{\"ids\":[\"u1\"]}");
+        byte[] large = json("{\"ids\":[" + "\"u1\",".repeat(600) + "\"u2\"]}");
+        CompressingClient client = new CompressingClient(respondWith(Map.of(), json("[]")), false, false, 2048);
+
+        client.execute(post(small), OPTIONS);
+        assertThat(sent.get().body()).isEqualTo(small);
+        assertThat(sent.get().headers()).doesNotContainKey("Content-Encoding");
+
+        client.execute(post(large), OPTIONS);
+        assertThat(sent.get().headers().get("Content-Encoding")).containsExactly("gzip");
+        assertThat(sent.get().headers().get("Content-Length"))
+            .containsExactly(String.valueOf(sent.get().body().length));
+        assertThat(sent.get().body().length).isLessThan(large.length);
+        assertThat(new GZIPInputStream(new ByteArrayInputStream(sent.get().body())).readAllBytes())
+            .isEqualTo(large);
+    }
+
+    @Test
+    void onlyMarksBodiesForATransportThatGzipsThem() throws IOException {
+        byte[] large = json("{\"ids\":[" + "\"u1\",".repeat(600) + "\"u2\"]}");
+
+        new CompressingClient(respondWith(Map.of(), json("[]")), false, true, 2048).execute(post(large), OPTIONS);
+
+        assertThat(sent.get().headers().get("Content-Encoding")).containsExactly("gzip");
+        assertThat(sent.get().body()).isEqualTo(large);
+    }
+
+    private feign.Client respondWith(Map<String, Collection<String>> headers, byte[] body) {
+        return (request, options) -> {
+            sent.set(request);
+            return Response.builder()
+                .status(200)
+                .reason("OK")
+                .request(request)
+                .headers(headers)
+                .body(body)
+                .build();
+        };
+    }
+
+    private static Request get() {
+        return Request.create(Request.HttpMethod.GET, URL, Map.of(), null, StandardCharsets.UTF_8, null);
+    }
+
+    private static Request post(byte[] body) {
+        return Request.create(Request.HttpMethod.POST, URL, Map.of("Content-Type", List.of("application/json")),
+            body, StandardCharsets.UTF_8, null);
+    }
+
+    private static byte[] json(String json) {
+        return json.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] read(Response response) throws IOException {
+        try (InputStream body = response.body().asInputStream()) {
+            return body.readAllBytes();
+        }
+    }
+
+    private static byte[] gzip(byte[] body) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(buffer)) {
+            gzip.write(body);
+        }
+        return buffer.toByteArray();
+    }
+
+    private static byte[] deflate(byte[] body) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (DeflaterOutputStream deflate = new DeflaterOutputStream(buffer)) {
+            deflate.write(body);
+        }
+        return buffer.toByteArray();
+    }
+}
@@ -0,0 +1,188 @@
+package com.mappalette.userdiscovery.client;
+
+import com.mappalette.userdiscovery.config.DiscoveryExecutors;
+import com.mappalette.userdiscovery.support.TestUpstreams;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class UpstreamCallsTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private UpstreamCalls upstreamCalls;
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        if (upstreamCalls != null) {
+            upstreamCalls.shutdown();
+        }
+    }
+
+    @Test
+    void opensTheBreakerAfterRepeatedFailures() {
+        upstreamCalls = new UpstreamCalls(CircuitBreakerRegistry.of(CircuitBreakerConfig.custom()
+                .slidingWindowSize(4)
+                .minimumNumberOfCalls(4)
+                .failureRateThreshold(50)
+                .waitDurationInOpenState(Duration.ofMinutes(1))
+                .build()),
+            BulkheadRegistry.ofDefaults(), meterRegistry, TestUpstreams.executors(), false, 0, 0);
+        AtomicInteger calls = new AtomicInteger();
+
+        for (int i = 0; i < 4; i++) {
+            assertThatThrownBy(() -> upstreamCalls.userService(() -> {
+                calls.incrementAndGet();
+                throw new IllegalStateException("user-service is down");
+            })).isInstanceOf(IllegalStateException.class);
+        }
+
+        assertThatThrownBy(() -> upstreamCalls.userService(calls::incrementAndGet))
+            .isInstanceOf(CallNotPermittedException.class);
+        assertThat(calls).hasValue(4);
+        // Each upstream has its own breaker
+        assertThat(upstreamCalls.followService(() -> "ok")).isEqualTo("ok");
+    }
+
+    @Test
+    void rejectsCallsBeyondTheBulkhead() throws Exception {
+        upstreamCalls = new UpstreamCalls(CircuitBreakerRegistry.ofDefaults(),
+            BulkheadRegistry.of(BulkheadConfig.custom().maxConcurrentCalls(1).maxWaitDuration(Duration.ZERO).build()),
+            meterRegistry, TestUpstreams.executors(), false, 0, 0);
+        CountDownLatch started = new CountDownLatch(1);
+        CompletableFuture<String> blocked = CompletableFuture.supplyAsync(() -> upstreamCalls.followService(() -> {
+            started.countDown();
+            await(release);
+            return "first";
+        }));
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+        assertThatThrownBy(() -> upstreamCalls.followService(() -> "second"))
+            .isInstanceOf(BulkheadFullException.class);
+
+        release.countDown();
+        assertThat(blocked.get(5, TimeUnit.SECONDS)).isEqualTo("first");
+        assertThat(upstreamCalls.followService(() -> "third")).isEqualTo("third");
+    }
+
+    @Test
+    void hedgesACallThatRunsPastTheUpstreamsP95() {
+        upstreamCalls = hedging(TestUpstreams.executors(), 5);
+        warmUp(5);
+        AtomicInteger attempts = new AtomicInteger();
+
+        String result = upstreamCalls.userService(() -> {
+            if (attempts.incrementAndGet() == 1) {
+                await(release);
+                return "slow";
+            }
+            return "fast";
+        });
+
+        assertThat(result).isEqualTo("fast");
+        assertThat(attempts).hasValue(2);
+        assertThat(hedges()).isEqualTo(1);
+    }
+
+    @Test
+    void doesNotHedgeBeforeThereAreEnoughSamples() {
+        upstreamCalls = hedging(TestUpstreams.executors(), 100);
+        warmUp(5);
+        AtomicInteger attempts = new AtomicInteger();
+
+        String result = upstreamCalls.userService(() -> {
+            attempts.incrementAndGet();
+            sleep(100);
+            return "only";
+        });
+
+        assertThat(result).isEqualTo("only");
+        assertThat(attempts).hasValue(1);
+        assertThat(hedges()).isZero();
+    }
+
+    @Test
+    void reportsTheFailureOnceEveryAttemptFailed() {
+        upstreamCalls = hedging(TestUpstreams.executors(), 5);
+        warmUp(5);
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThatThrownBy(() -> upstreamCalls.userService(() -> {
+            if (attempts.incrementAndGet() == 1) {
+                sleep(100);
+            }
+            throw new IllegalStateException("attempt " + attempts.get());
+        })).isInstanceOf(IllegalStateException.class);
+        assertThat(attempts).hasValue(2);
+    }
+
+    @Test
+    void runsCallsUnhedgedOnTheCallerWhileTheAttemptPoolIsFull() throws Exception {
+        upstreamCalls = hedging(new DiscoveryExecutors(false, 1, 0), 5);
+        warmUp(5);
+
+        // Takes the only attempt thread; its hedge finds no thread either
+        CountDownLatch started = new CountDownLatch(1);
+        CompletableFuture<String> blocked = CompletableFuture.supplyAsync(() -> upstreamCalls.userService(() -> {
+            started.countDown();
+            await(release);
+            return "blocked";
+        }));
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+        Thread caller = Thread.currentThread();
+        assertThat(upstreamCalls.userService(Thread::currentThread)).isSameAs(caller);
+        sleep(100);
+        assertThat(hedges()).isZero();
+
+        release.countDown();
+        assertThat(blocked.get(5, TimeUnit.SECONDS)).isEqualTo("blocked");
+    }
+
+    private UpstreamCalls hedging(DiscoveryExecutors executors, long minSamples) {
+        return new UpstreamCalls(CircuitBreakerRegistry.ofDefaults(), BulkheadRegistry.ofDefaults(), meterRegistry,
+            executors, true, 20, minSamples);
+    }
+
+    private void warmUp(int calls) {
+        for (int i = 0; i < calls; i++) {
+            upstreamCalls.userService(() -> "warm");
+        }
+    }
+
+    private double hedges() {
+        return meterRegistry.counter("discovery.upstream.hedges", "upstream", UpstreamCalls.USER_SERVICE).count();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.mappalette.userdiscovery.config;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class DiscoveryExecutorsTest {
+
+    @Test
+    void runsTasksOnVirtualThreadsWhenEnabled() throws Exception {
+        ExecutorService executor = new DiscoveryExecutors(true, 1, 1).newExecutor("test");
+        try {
+            Thread thread = CompletableFuture.supplyAsync(Thread::currentThread, executor).get(5, TimeUnit.SECONDS);
+
+            assertThat(thread.isVirtual()).isTrue();
+            assertThat(thread.getName()).startsWith("test-");
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void rejectsTasksOnceTheBoundedPoolIsFull() throws InterruptedException {
+        ExecutorService executor = new DiscoveryExecutors(false, 1, 1).newExecutor("test");
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            // One task on the only thread, one in the queue
+            CountDownLatch running = new CountDownLatch(1);
+            executor.execute(() -> {
+                running.countDown();
+                await(release);
+            });
+            running.await(5, TimeUnit.SECONDS);
+            executor.execute(() -> await(release));
+
+            assertThatThrownBy(() -> executor.execute(() -> { }))
+                .isInstanceOf(RejectedExecutionException.class);
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void withoutAQueueRejectsTasksWhileEveryThreadIsBusy() throws InterruptedException {
+        ExecutorService executor = new DiscoveryExecutors(false, 1, 1).newExecutor("test", 1, 0);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            CountDownLatch running = new CountDownLatch(1);
+            executor.execute(() -> {
+                running.countDown();
+                await(release);
+            });
+            running.await(5, TimeUnit.SECONDS);
+
+            assertThatThrownBy(() -> executor.execute(() -> { }))
+                .isInstanceOf(RejectedExecutionException.class);
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
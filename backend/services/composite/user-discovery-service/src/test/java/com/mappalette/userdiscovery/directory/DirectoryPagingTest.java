@@ -0,0 +1,133 @@
+package com.mappalette.userdiscovery.directory;
+
+import com.mappalette.userdiscovery.dto.UserDto;
+import com.mappalette.userdiscovery.support.FakeUserService;
+import com.mappalette.userdiscovery.support.TestUpstreams;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DirectoryPagingTest {
+
+    private final UserIdInterner interner = new UserIdInterner();
+    private final List<UserDto> users = FakeUserService.users("user-", 350);
+    private final FakeUserService userService = new FakeUserService(users);
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+    private final UserDirectoryPager pager = TestUpstreams.pager(userService,
+        TestUpstreams.calls(new SimpleMeterRegistry()), interner, executor);
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void streamsPagesInOrderUpToTheLastReportedPage() {
+        List<Integer> sizes = new ArrayList<>();
+        List<String> ids = new ArrayList<>();
+        try (DirectoryPageStream pages = pager.stream(1, Integer.MAX_VALUE, DirectoryFilter.ALL)) {
+            while (pages.hasNext()) {
+                List<DirectoryUser> page = pages.next();
+                sizes.add(page.size());
+                page.forEach(user -> ids.add(user.getId()));
+            }
+            assertThat(pages.getTotal()).isEqualTo(350);
+        }
+
+        assertThat(sizes).containsExactly(100, 100, 100, 50);
+        assertThat(ids).isEqualTo(users.stream().map(UserDto::getUserID).toList());
+        assertThat(userService.getPageRequests()).isEqualTo(4);
+    }
+
+    @Test
+    void fetchesNoMoreThanThePrefetchDepthAheadOfAClosedStream() {
+        try (DirectoryPageStream pages = pager.stream(1, Integer.MAX_VALUE, DirectoryFilter.ALL)) {
+            assertThat(pages.next()).hasSize(100);
+        }
+
+        // The first page plus at most two prefetched ones
+        assertThat(userService.getPageRequests()).isBetween(1, 3);
+    }
+
+    @Test
+    void fetchesPagesOnTheConsumerWhenThePoolRejectsThem() {
+        UserDirectoryPager rejecting = TestUpstreams.pager(userService,
+            TestUpstreams.calls(new SimpleMeterRegistry()), interner, task -> {
+                throw new RejectedExecutionException("full");
+            });
+
+        int read = 0;
+        try (DirectoryPageStream pages = rejecting.stream(2, 3, DirectoryFilter.ALL)) {
+            while (pages.hasNext()) {
+                read += pages.next().size();
+            }
+        }
+
+        assertThat(read).isEqualTo(200);
+        assertThat(userService.getPageRequests()).isEqualTo(2);
+    }
+
+    @Test
+    void scansPastTheSnapshotIntoStreamedPages() {
+        UserDirectorySnapshot snapshot = snapshot(150, 350);
+
+        List<String> ids = new ArrayList<>();
+        try (DirectoryScan scan = pager.scan(snapshot, 120, DirectoryFilter.ALL)) {
+            while (scan.hasNext()) {
+                ids.add(scan.next().getId());
+            }
+            assertThat(scan.getPosition()).isEqualTo(350);
+            assertThat(scan.hasMore()).isFalse();
+        }
+
+        assertThat(ids).isEqualTo(users.subList(120, 350).stream().map(UserDto::getUserID).toList());
+        // Pages 2 to 4; the snapshot already holds page 1
+        assertThat(userService.getPageRequests()).isEqualTo(3);
+    }
+
+    @Test
+    void stopsAtTheEndWhenTheDirectoryShrankSinceTheSnapshot() {
+        UserDirectorySnapshot snapshot = snapshot(150, 350);
+        userService.setUsers(users.subList(0, 220));
+
+        int scanned = 0;
+        try (DirectoryScan scan = pager.scan(snapshot, 0, DirectoryFilter.ALL)) {
+            while (scan.hasNext()) {
+                scan.next();
+                scanned++;
+            }
+            assertThat(scan.hasMore()).isFalse();
+        }
+
+        assertThat(scanned).isEqualTo(220);
+    }
+
+    @Test
+    void stopsAtTheSnapshotWhenItHoldsTheWholeDirectory() {
+        try (DirectoryScan scan = pager.scan(snapshot(350, 350), 340, DirectoryFilter.ALL)) {
+            int scanned = 0;
+            while (scan.hasNext()) {
+                scan.next();
+                scanned++;
+            }
+            assertThat(scanned).isEqualTo(10);
+        }
+        assertThat(userService.getPageRequests()).isZero();
+    }
+
+    private UserDirectorySnapshot snapshot(int size, int totalAvailable) {
+        List<DirectoryUser> held = users.subList(0, size).stream()
+            .map(user -> DirectoryUser.from(user, interner))
+            .toList();
+        return new UserDirectorySnapshot(held, totalAvailable, 1, 1, Instant.now());
+    }
+}
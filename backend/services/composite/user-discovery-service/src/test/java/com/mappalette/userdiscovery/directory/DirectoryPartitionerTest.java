@@ -0,0 +1,72 @@
+package com.mappalette.userdiscovery.directory;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DirectoryPartitionerTest {
+
+    private final UserIdInterner interner = new UserIdInterner();
+    private final DirectoryPartitioner parallel = new DirectoryPartitioner(4, 50, 7);
+    private final DirectoryPartitioner sequential = new DirectoryPartitioner(1, 50, 7);
+
+    @AfterEach
+    void tearDown() {
+        parallel.shutdown();
+        sequential.shutdown();
+    }
+
+    @Test
+    void returnsChunkResultsInSnapshotOrder() {
+        List<DirectoryUser> users = users(100);
+        // Every third user, so matches straddle chunk boundaries
+        Predicate<DirectoryUser> accepts = user -> user.getInternedId() % 3 == 0;
+
+        for (int limit : new int[] {1, 6, 7, 20, 34, 1000}) {
+            List<DirectoryUser> expected = users.stream().filter(accepts).limit(limit).toList();
+            assertThat(parallel.filter(users, accepts, limit)).as("limit %d", limit).containsExactlyElementsOf(expected);
+            assertThat(sequential.filter(users, accepts, limit)).as("limit %d", limit)
+                .containsExactlyElementsOf(expected);
+        }
+    }
+
+    @Test
+    void handlesChunksWithoutMatchesAndAPartialLastChunk() {
+        List<DirectoryUser> users = users(52);
+        Predicate<DirectoryUser> accepts = user -> user.getInternedId() < 3 || user.getInternedId() >= 50;
+
+        assertThat(parallel.filter(users, accepts, 10)).extracting(DirectoryUser::getId)
+            .containsExactly("u0", "u1", "u2", "u50", "u51");
+        assertThat(parallel.filter(users, user -> false, 10)).isEmpty();
+        assertThat(parallel.filter(List.of(), user -> true, 10)).isEmpty();
+    }
+
+    @Test
+    void splitsOnlyLargeScansWithMoreThanOneWorker() {
+        assertThat(parallel.shouldSplit(49)).isFalse();
+        assertThat(parallel.shouldSplit(50)).isTrue();
+        assertThat(sequential.shouldSplit(1_000_000)).isFalse();
+    }
+
+    @Test
+    void estimatesHowFarAScanHasToGo() {
+        assertThat(DirectoryPartitioner.expectedScanLength(1000, 100, 10)).isEqualTo(100);
+        assertThat(DirectoryPartitioner.expectedScanLength(1000, 100, 100)).isEqualTo(1000);
+        assertThat(DirectoryPartitioner.expectedScanLength(1000, 0, 10)).isZero();
+        assertThat(DirectoryPartitioner.expectedScanLength(1000, 100, 0)).isZero();
+    }
+
+    private List<DirectoryUser> users(int count) {
+        List<DirectoryUser> users = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String id = "u" + i;
+            users.add(DirectoryUser.of(id, interner.intern(id), "user" + i, null, false, 0, 0));
+        }
+        return users;
+    }
+}
@@ -0,0 +1,140 @@
+package com.mappalette.userdiscovery.directory;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DirectorySnapshotStoreTest {
+
+    @TempDir
+    Path directory;
+
+    private final UserIdInterner interner = new UserIdInterner();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void readsBackWhatItWrote() {
+        Path file = directory.resolve("directory.bin");
+        Instant loadedAt = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+        List<DirectoryUser> users = List.of(
+            user("a", "anna", "/pictures/a.png", false, 12, 3),
+            user("b", "bob", null, true, null, null),
+            user("c", null, "/pictures/a.png", false, 0, 0));
+        store(file, interner).write(new UserDirectorySnapshot(users, 10, 4, 4, loadedAt));
+
+        // A restarted process starts with an empty interner
+        UserIdInterner restarted = new UserIdInterner();
+        restarted.intern("someone-else");
+        DirectorySnapshotStore.Stored stored = store(file, restarted).read(100);
+
+        assertThat(stored).isNotNull();
+        assertThat(stored.getTotalAvailable()).isEqualTo(10);
+        assertThat(stored.getSavedAt()).isEqualTo(loadedAt);
+        assertThat(stored.getUsers()).hasSize(3);
+        for (int i = 0; i < users.size(); i++) {
+            DirectoryUser read = stored.getUsers().get(i);
+            assertThat(read.sameAs(users.get(i))).as(users.get(i).getId()).isTrue();
+            assertThat(read.getInternedId()).isEqualTo(restarted.lookup(read.getId()));
+        }
+        assertThat(reads("loaded")).isEqualTo(1);
+    }
+
+    @Test
+    void readsAtMostMaxUsers() {
+        Path file = directory.resolve("directory.bin");
+        store(file, interner).write(new UserDirectorySnapshot(
+            List.of(user("a", "anna", null, false, 0, 0), user("b", "bob", null, false, 0, 0)),
+            2, 1, 1, Instant.now()));
+
+        DirectorySnapshotStore.Stored stored = store(file, new UserIdInterner()).read(1);
+
+        assertThat(stored.getUsers()).extracting(DirectoryUser::getId).containsExactly("a");
+        assertThat(stored.getTotalAvailable()).isEqualTo(2);
+    }
+
+    @Test
+    void ignoresAFileWithABadChecksum() throws IOException {
+        Path file = directory.resolve("directory.bin");
+        store(file, interner).write(new UserDirectorySnapshot(
+            List.of(user("a", "anna", null, false, 0, 0)), 1, 1, 1, Instant.now()));
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[bytes.length / 2] ^= 1;
+        Files.write(file, bytes);
+
+        assertThat(store(file, new UserIdInterner()).read(100)).isNull();
+        assertThat(reads("invalid")).isEqualTo(1);
+    }
+
+    @Test
+    void ignoresATruncatedFile() throws IOException {
+        Path file = directory.resolve("directory.bin");
+        store(file, interner).write(new UserDirectorySnapshot(
+            List.of(user("a", "anna", null, false, 0, 0)), 1, 1, 1, Instant.now()));
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length - 3));
+
+        assertThat(store(file, new UserIdInterner()).read(100)).isNull();
+        Files.write(file, new byte[3]);
+        assertThat(store(file, new UserIdInterner()).read(100)).isNull();
+        assertThat(reads("invalid")).isEqualTo(2);
+    }
+
+    @Test
+    void ignoresAMissingOrExpiredFile() {
+        Path file = directory.resolve("directory.bin");
+        assertThat(store(file, interner).read(100)).isNull();
+        assertThat(reads("missing")).isEqualTo(1);
+
+        store(file, interner).write(new UserDirectorySnapshot(
+            List.of(user("a", "anna", null, false, 0, 0)), 1, 1, 1, Instant.now().minus(2, ChronoUnit.DAYS)));
+        assertThat(store(file, new UserIdInterner()).read(100)).isNull();
+        assertThat(reads("expired")).isEqualTo(1);
+    }
+
+    @Test
+    void skipsRewritingUnchangedContent() throws IOException {
+        Path file = directory.resolve("directory.bin");
+        DirectorySnapshotStore store = store(file, interner);
+        List<DirectoryUser> users = List.of(user("a", "anna", null, false, 0, 0));
+        store.write(new UserDirectorySnapshot(users, 1, 1, 1, Instant.now()));
+        Files.delete(file);
+
+        // A reload with the same content keeps its content version
+        store.write(new UserDirectorySnapshot(users, 1, 2, 1, Instant.now()));
+        assertThat(file).doesNotExist();
+
+        store.write(new UserDirectorySnapshot(users, 1, 3, 3, Instant.now()));
+        assertThat(file).exists();
+    }
+
+    @Test
+    void isDisabledWithoutAPath() {
+        DirectorySnapshotStore store = new DirectorySnapshotStore(interner, meterRegistry, "", 86_400_000);
+
+        assertThat(store.isEnabled()).isFalse();
+        assertThat(store.read(100)).isNull();
+    }
+
+    private DirectorySnapshotStore store(Path file, UserIdInterner userIdInterner) {
+        return new DirectorySnapshotStore(userIdInterner, meterRegistry, file.toString(), 86_400_000);
+    }
+
+    private DirectoryUser user(String id, String username, String picture, boolean profilePrivate,
+                               Integer followers, Integer following) {
+        return DirectoryUser.of(id, interner.intern(id), username, picture, profilePrivate, followers, following);
+    }
+
+    private double reads(String result) {
+        return meterRegistry.counter("discovery.directory.snapshot.file.reads", "result", result).count();
+    }
+}
@@ -0,0 +1,42 @@
+package com.mappalette.userdiscovery.directory;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FingerprintsTest {
+
+    @Test
+    void dependsOnTheOrderOfValues() {
+        assertThat(Fingerprints.add(Fingerprints.add(0, 1), 2))
+            .isNotEqualTo(Fingerprints.add(Fingerprints.add(0, 2), 1));
+    }
+
+    @Test
+    void spreadsNearbyInputsApart() {
+        Set<Long> fingerprints = new HashSet<>();
+        Set<Long> highBits = new HashSet<>();
+        for (long value = 0; value < 10_000; value++) {
+            long fingerprint = Fingerprints.mix(value + 1);
+            fingerprints.add(fingerprint);
+            highBits.add(fingerprint >>> 48);
+        }
+
+        assertThat(fingerprints).hasSize(10_000);
+        // Consecutive inputs land all over the top 16 bits, not in a handful of buckets
+        assertThat(highBits).hasSizeGreaterThan(9_000);
+    }
+
+    @Test
+    void matchesTheFollowingSetFingerprint() {
+        UserIdInterner interner = new UserIdInterner();
+        FollowingSet following = FollowingSet.of(List.of("a", "b"), interner);
+
+        long expected = Fingerprints.add(Fingerprints.add(2, interner.lookup("a")), interner.lookup("b"));
+        assertThat(following.fingerprint()).isEqualTo(expected);
+    }
+}
@@ -0,0 +1,69 @@
+package com.mappalette.userdiscovery.directory;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.BitSet;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FollowingSetTest {
+
+    private final UserIdInterner interner = new UserIdInterner();
+
+    @Test
+    void duplicatesCollapse() {
+        FollowingSet following = FollowingSet.of(List.of("a", "b", "a", "c", "b"), interner);
+
+        assertThat(following.size()).isEqualTo(3);
+        assertThat(following.contains(interner.lookup("a"))).isTrue();
+        assertThat(following.contains(-1)).isFalse();
+        assertThat(FollowingSet.of(List.of(), interner)).isSameAs(FollowingSet.EMPTY);
+    }
+
+    @Test
+    void countInCountsOnlyMembers() {
+        FollowingSet following = FollowingSet.of(List.of("a", "b", "c", "d"), interner);
+        BitSet members = bits("a", "c", "x");
+
+        assertThat(following.countIn(members, -1)).isEqualTo(2);
+        assertThat(following.countIn(new BitSet(), -1)).isZero();
+        assertThat(FollowingSet.EMPTY.countIn(members, -1)).isZero();
+    }
+
+    @Test
+    void countInLeavesOutTheExcludedId() {
+        FollowingSet following = FollowingSet.of(List.of("a", "b", "c"), interner);
+        BitSet members = bits("a", "b", "c");
+
+        assertThat(following.countIn(members, interner.lookup("b"))).isEqualTo(2);
+        assertThat(following.countIn(members, interner.intern("not-followed"))).isEqualTo(3);
+    }
+
+    @Test
+    void withAndWithoutKeepTheSetSorted() {
+        FollowingSet following = FollowingSet.of(List.of("a", "c"), interner);
+        int b = interner.intern("b");
+
+        FollowingSet grown = following.with(b);
+        assertThat(grown.size()).isEqualTo(3);
+        assertThat(grown.contains(b)).isTrue();
+        assertThat(grown.contains(interner.lookup("c"))).isTrue();
+        assertThat(grown.with(b)).isSameAs(grown);
+
+        FollowingSet shrunk = grown.without(b);
+        assertThat(shrunk.size()).isEqualTo(2);
+        assertThat(shrunk.contains(b)).isFalse();
+        assertThat(shrunk.without(b)).isSameAs(shrunk);
+        assertThat(shrunk.without(-1)).isSameAs(shrunk);
+        assertThat(FollowingSet.of(List.of("a"), interner).without(interner.lookup("a"))).isSameAs(FollowingSet.EMPTY);
+    }
+
+    private BitSet bits(String... userIds) {
+        BitSet bits = new BitSet();
+        for (String userId : userIds) {
+            bits.set(interner.intern(userId));
+        }
+        return bits;
+    }
+}
@@ -0,0 +1,115 @@
+package com.mappalette.userdiscovery.directory;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TwoHopNeighbourhoodTest {
+
+    private final UserIdInterner interner = new UserIdInterner();
+
+    @Test
+    void countsMutualConnectionsAndLeavesOutViewerAndFollowed() {
+        int viewer = interner.intern("viewer");
+        FollowingSet following = set("a", "b");
+        TwoHopNeighbourhood neighbourhood = TwoHopNeighbourhood.build(viewer, following,
+            List.of(set("c", "d", "b", "viewer"), set("c", "e")), set("e", "f", "a"), 100);
+
+        assertThat(candidates(neighbourhood)).containsExactly(
+            "c:2:false", "d:1:false", "e:1:true", "f:0:true");
+        assertThat(neighbourhood.getExpandedFollowees()).isEqualTo(2);
+    }
+
+    @Test
+    void pruneKeepsTheBestConnectedAndBreaksTiesInIdOrder() {
+        // Interned in this order, so ids ascend from a to f
+        List.of("a", "b", "c", "d", "e", "f").forEach(interner::intern);
+        TwoHopNeighbourhood neighbourhood = TwoHopNeighbourhood.build(-1, FollowingSet.EMPTY,
+            List.of(set("a", "b", "c", "d", "e"), set("b", "d", "e"), set("e")), set("f", "c"), 3);
+
+        // e has 3, b and d 2, c 1 + follower = 2, a 1, f 0 + follower = 1
+        assertThat(candidates(neighbourhood)).containsExactly("b:2:false", "c:1:true", "e:3:false");
+    }
+
+    @Test
+    void pruneToNothingIsEmpty() {
+        TwoHopNeighbourhood neighbourhood = TwoHopNeighbourhood.build(-1, FollowingSet.EMPTY,
+            List.of(set("a", "b")), FollowingSet.EMPTY, 0);
+
+        assertThat(neighbourhood).isSameAs(TwoHopNeighbourhood.EMPTY);
+    }
+
+    @Test
+    void pruningWhileBuildingMatchesASinglePrune() {
+        Random random = new Random(7);
+        List<String> users = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            users.add("user-" + i);
+            interner.intern("user-" + i);
+        }
+        List<FollowingSet> followeeSets = new ArrayList<>();
+        for (int f = 0; f < 60; f++) {
+            List<String> followed = new ArrayList<>();
+            for (int i = 0; i < 150; i++) {
+                // Skewed, so connection counts vary and ties are common
+                followed.add(users.get((int) (users.size() * Math.pow(random.nextDouble(), 3))));
+            }
+            followeeSets.add(FollowingSet.of(followed, interner));
+        }
+        List<String> followerIds = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            followerIds.add(users.get(random.nextInt(users.size())));
+        }
+        FollowingSet followers = FollowingSet.of(followerIds, interner);
+        FollowingSet following = FollowingSet.of(users.subList(0, 10), interner);
+        int max = 20;
+
+        // Expected: count every candidate, keep the max best, ties broken by lower id
+        Map<Integer, int[]> counts = new TreeMap<>();
+        for (FollowingSet set : followeeSets) {
+            for (int i = 0; i < set.size(); i++) {
+                counts.computeIfAbsent(set.idAt(i), id -> new int[2])[0]++;
+            }
+        }
+        for (int i = 0; i < followers.size(); i++) {
+            counts.computeIfAbsent(followers.idAt(i), id -> new int[2])[1] = 1;
+        }
+        List<Map.Entry<Integer, int[]>> ranked = new ArrayList<>();
+        counts.entrySet().stream().filter(entry -> !following.contains(entry.getKey())).forEach(ranked::add);
+        ranked.sort(Comparator.<Map.Entry<Integer, int[]>>comparingInt(
+                entry -> -(entry.getValue()[0] + entry.getValue()[1]))
+            .thenComparingInt(Map.Entry::getKey));
+        List<String> expected = ranked.subList(0, max).stream()
+            .sorted(Map.Entry.comparingByKey())
+            .map(entry -> describe(entry.getKey(), entry.getValue()[0], entry.getValue()[1] == 1))
+            .toList();
+
+        TwoHopNeighbourhood neighbourhood = TwoHopNeighbourhood.build(-1, following, followeeSets, followers, max);
+
+        assertThat(candidates(neighbourhood)).containsExactlyElementsOf(expected);
+    }
+
+    private FollowingSet set(String... userIds) {
+        return FollowingSet.of(List.of(userIds), interner);
+    }
+
+    private List<String> candidates(TwoHopNeighbourhood neighbourhood) {
+        List<String> candidates = new ArrayList<>();
+        for (int i = 0; i < neighbourhood.size(); i++) {
+            candidates.add(describe(neighbourhood.idAt(i), neighbourhood.mutualCountAt(i),
+                neighbourhood.followsViewerAt(i)));
+        }
+        return candidates;
+    }
+
+    private String describe(int id, int mutualCount, boolean followsViewer) {
+        return interner.userId(id) + ":" + mutualCount + ":" + followsViewer;
+    }
+}
@@ -0,0 +1,97 @@
+package com.mappalette.userdiscovery.directory;
+
+import com.mappalette.userdiscovery.client.UpstreamCalls;
+import com.mappalette.userdiscovery.support.FakeUserService;
+import com.mappalette.userdiscovery.support.TestUpstreams;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UserDirectoryCacheTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final UserIdInterner interner = new UserIdInterner();
+    private final FakeUserService userService = new FakeUserService(FakeUserService.users("old-", 3));
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+    private final UserDirectoryCache cache = new UserDirectoryCache(
+        TestUpstreams.pager(userService, TestUpstreams.calls(meterRegistry), interner, executor),
+        event -> { }, new DirectorySnapshotStore(interner, meterRegistry, "", 0), meterRegistry, 10, 60_000, 0);
+
+    @AfterEach
+    void tearDown() {
+        cache.shutdown();
+        executor.shutdownNow();
+    }
+
+    @Test
+    void loadsOnTheFirstReadAndServesTheSnapshotAfterwards() {
+        UserDirectorySnapshot snapshot = cache.getSnapshot();
+
+        assertThat(ids(snapshot)).containsExactly("old-0", "old-1", "old-2");
+        assertThat(cache.getSnapshot()).isSameAs(snapshot);
+        assertThat(userService.getPageRequests()).isEqualTo(1);
+    }
+
+    @Test
+    void aLoadThatStartedEarlierNeverReplacesOneThatStartedLater() throws Exception {
+        // The cold load reads the old directory, then stalls until the background refresh has finished
+        CountDownLatch coldLoadRead = new CountDownLatch(1);
+        CountDownLatch refreshed = new CountDownLatch(1);
+        AtomicInteger pages = new AtomicInteger();
+        userService.onPage(page -> {
+            if (pages.incrementAndGet() == 1) {
+                coldLoadRead.countDown();
+                await(refreshed);
+            }
+        });
+        CompletableFuture<UserDirectorySnapshot> coldLoad = CompletableFuture.supplyAsync(cache::getSnapshot);
+        await(coldLoadRead);
+
+        userService.setUsers(FakeUserService.users("new-", 2));
+        cache.scheduledRefresh();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!cache.isLoaded() && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        refreshed.countDown();
+
+        assertThat(ids(coldLoad.get(10, TimeUnit.SECONDS))).containsExactly("new-0", "new-1");
+        assertThat(ids(cache.getSnapshot())).containsExactly("new-0", "new-1");
+    }
+
+    @Test
+    void appliesChangesToTheLoadedSnapshot() {
+        UserDirectorySnapshot loaded = cache.getSnapshot();
+
+        cache.apply(List.of(DirectoryChange.deleted("old-1")));
+
+        UserDirectorySnapshot changed = cache.getSnapshot();
+        assertThat(ids(changed)).containsExactly("old-0", "old-2");
+        assertThat(changed.getVersion()).isGreaterThan(loaded.getVersion());
+    }
+
+    private static List<String> ids(UserDirectorySnapshot snapshot) {
+        return snapshot.getUsers().stream().map(DirectoryUser::getId).toList();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            if (!latch.await(10, TimeUnit.SECONDS)) {
+                throw new IllegalStateException("Timed out");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.mappalette.userdiscovery.directory;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UserDirectorySnapshotTest {
+
+    private final UserIdInterner interner = new UserIdInterner();
+
+    @Test
+    void countAcceptedMatchesAFilterPass() {
+        UserDirectorySnapshot snapshot = snapshot(user("viewer", false), user("a", false), user("b", true),
+            user("c", false), user("d", false), user("e", true));
+        FollowingSet following = FollowingSet.of(List.of("a", "b", "viewer", "not-in-snapshot"), interner);
+        DirectoryFilter filter = DirectoryFilter.discoverableBy("viewer", following, interner);
+
+        // c and d: the viewer, followed users and private profiles are left out
+        assertThat(snapshot.countAccepted(filter)).isEqualTo(2)
+            .isEqualTo((int) snapshot.getUsers().stream().filter(filter::accepts).count());
+    }
+
+    @Test
+    void countAcceptedForAViewerOutsideTheSnapshot() {
+        UserDirectorySnapshot snapshot = snapshot(user("a", false), user("b", false), user("c", true));
+
+        assertThat(snapshot.countAccepted(DirectoryFilter.discoverableBy("stranger", FollowingSet.EMPTY, interner)))
+            .isEqualTo(2);
+        assertThat(snapshot.countAccepted(DirectoryFilter.ALL)).isEqualTo(3);
+    }
+
+    @Test
+    void countFollowedIncludesPrivateProfiles() {
+        UserDirectorySnapshot snapshot = snapshot(user("viewer", false), user("a", false), user("b", true),
+            user("c", false));
+        FollowingSet following = FollowingSet.of(List.of("a", "b", "viewer", "gone"), interner);
+
+        assertThat(snapshot.countFollowed(DirectoryFilter.discoverableBy("viewer", following, interner)))
+            .isEqualTo(2);
+    }
+
+    @Test
+    void withChangesPutsCreatedUsersFirstNewestFirst() {
+        UserDirectorySnapshot snapshot = snapshot(user("a", false), user("b", false));
+
+        UserDirectorySnapshot changed = snapshot.withChanges(List.of(
+            DirectoryChange.created(user("c", false)),
+            DirectoryChange.created(user("d", false))), 10, 2, Instant.EPOCH);
+
+        assertThat(ids(changed)).containsExactly("d", "c", "a", "b");
+        assertThat(changed.getTotalAvailable()).isEqualTo(4);
+        assertThat(changed.getVersion()).isEqualTo(2);
+        assertThat(changed.getContentVersion()).isEqualTo(2);
+    }
+
+    @Test
+    void withChangesUpdatesInPlaceAndDeletes() {
+        UserDirectorySnapshot snapshot = snapshot(user("a", false), user("b", false), user("c", false));
+        DirectoryUser renamed = DirectoryUser.of("b", interner.lookup("b"), "renamed", null, true, 5, 5);
+
+        UserDirectorySnapshot changed = snapshot.withChanges(List.of(
+            DirectoryChange.updated(renamed),
+            DirectoryChange.deleted("a"),
+            DirectoryChange.updated(user("unknown", false)),
+            DirectoryChange.deleted("also-unknown")), 10, 2, Instant.EPOCH);
+
+        assertThat(ids(changed)).containsExactly("b", "c");
+        assertThat(changed.getUsers().get(0)).isSameAs(renamed);
+        assertThat(changed.getTotalAvailable()).isEqualTo(2);
+        // b turned private
+        assertThat(changed.countAccepted(DirectoryFilter.discoverableBy("x", FollowingSet.EMPTY, interner)))
+            .isEqualTo(1);
+    }
+
+    @Test
+    void withChangesAppliesChangesInOrder() {
+        UserDirectorySnapshot snapshot = snapshot(user("a", false));
+        DirectoryUser updated = DirectoryUser.of("b", interner.intern("b"), "second", null, false, 0, 0);
+
+        UserDirectorySnapshot changed = snapshot.withChanges(List.of(
+            DirectoryChange.created(user("b", false)),
+            DirectoryChange.updated(updated),
+            DirectoryChange.created(user("c", false)),
+            DirectoryChange.deleted("c"),
+            DirectoryChange.deleted("a"),
+            DirectoryChange.updated(user("a", false))), 10, 2, Instant.EPOCH);
+
+        // A deleted user is not brought back by a later update, only by a create
+        assertThat(ids(changed)).containsExactly("b");
+        assertThat(changed.getUsers().get(0)).isSameAs(updated);
+        assertThat(changed.getTotalAvailable()).isEqualTo(1);
+    }
+
+    @Test
+    void withChangesDropsUsersOffTheEndAtTheCap() {
+        UserDirectorySnapshot snapshot = new UserDirectorySnapshot(
+            List.of(user("a", false), user("b", false), user("c", false)), 10, 1, 1, Instant.EPOCH);
+
+        UserDirectorySnapshot changed = snapshot.withChanges(List.of(
+            DirectoryChange.created(user("d", false)),
+            DirectoryChange.created(user("e", false))), 3, 2, Instant.EPOCH);
+
+        assertThat(ids(changed)).containsExactly("e", "d", "a");
+        assertThat(changed.getTotalAvailable()).isEqualTo(12);
+        assertThat(changed.isTruncated()).isTrue();
+    }
+
+    private UserDirectorySnapshot snapshot(DirectoryUser... users) {
+        List<DirectoryUser> list = new ArrayList<>(List.of(users));
+        return new UserDirectorySnapshot(list, list.size(), 1, 1, Instant.EPOCH);
+    }
+
+    private static List<String> ids(UserDirectorySnapshot snapshot) {
+        return snapshot.getUsers().stream().map(DirectoryUser::getId).toList();
+    }
+
+    private DirectoryUser user(String id, boolean profilePrivate) {
+        return DirectoryUser.of(id, interner.intern(id), "name-" + id, null, profilePrivate, 0, 0);
+    }
+}
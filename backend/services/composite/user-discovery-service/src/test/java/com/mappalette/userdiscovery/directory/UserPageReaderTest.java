@@ -0,0 +1,104 @@
+package com.mappalette.userdiscovery.directory;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class UserPageReaderTest {
+
+    private final UserIdInterner interner = new UserIdInterner();
+    private final UserPageReader reader = new UserPageReader(new JsonFactory(), interner);
+
+    @Test
+    void readsTheFieldsADirectoryEntryKeeps() throws IOException {
+        DirectoryPage page = read("""
+            {"success": true,
+             "users": [{"id": "u1", "userID": "u1", "username": "alice", "email": "alice@example.com",
+                        "profilePicture": "/p/alice.png", "isProfilePrivate": false,
+                        "numFollowers": 12, "numFollowing": 3,
+                        "settings": {"theme": "dark", "tags": ["a", {"b": [1, 2]}]}}],
+             "pagination": {"page": 1, "limit": 100, "total": 250, "totalPages": 3}}
+            """, DirectoryFilter.ALL);
+
+        assertThat(page.getTotal()).isEqualTo(250);
+        assertThat(page.getTotalPages()).isEqualTo(3);
+        assertThat(page.getUsers()).singleElement().satisfies(user -> {
+            assertThat(user.getId()).isEqualTo("u1");
+            assertThat(user.getInternedId()).isEqualTo(interner.lookup("u1"));
+            assertThat(user.getUsername()).isEqualTo("alice");
+            assertThat(user.getProfilePicture()).isEqualTo("/p/alice.png");
+            assertThat(user.isProfilePrivate()).isFalse();
+            assertThat(user.getNumFollowers()).isEqualTo(12);
+            assertThat(user.getNumFollowing()).isEqualTo(3);
+        });
+    }
+
+    @Test
+    void normalizesMissingAndMistypedFields() throws IOException {
+        DirectoryPage page = read("""
+            {"users": [{"userID": "u2", "username": null, "profilePicture": "",
+                        "numFollowers": "many", "isProfilePrivate": true},
+                       {"username": "no-id"},
+                       42,
+                       {"id": "u3", "userID": "other"}]}
+            """, DirectoryFilter.ALL);
+
+        assertThat(page.getTotal()).isEqualTo(-1);
+        assertThat(page.getTotalPages()).isEqualTo(-1);
+        assertThat(page.getUsers()).extracting(DirectoryUser::getId).containsExactly("u2", "u3");
+        DirectoryUser sparse = page.getUsers().get(0);
+        assertThat(sparse.getUsername()).isNull();
+        assertThat(sparse.getProfilePicture()).isEqualTo(DirectoryUser.DEFAULT_PROFILE_PICTURE);
+        assertThat(sparse.getNumFollowers()).isNull();
+        assertThat(sparse.getNumFollowing()).isNull();
+        assertThat(sparse.isProfilePrivate()).isTrue();
+    }
+
+    @Test
+    void keepsUsersTheFilterDropsOnlyAsStandIns() throws IOException {
+        interner.intern("viewer");
+        FollowingSet following = FollowingSet.of(List.of("followed"), interner);
+        DirectoryFilter filter = DirectoryFilter.discoverableBy("viewer", following, interner);
+
+        DirectoryPage page = read("""
+            {"users": [{"id": "viewer", "username": "me"},
+                       {"id": "followed", "username": "friend"},
+                       {"id": "hidden", "username": "private", "isProfilePrivate": true},
+                       {"id": "open", "username": "stranger", "numFollowers": 1}]}
+            """, filter);
+
+        assertThat(page.getUsers()).extracting(DirectoryUser::getId)
+            .containsExactly("viewer", "followed", "hidden", "open");
+        assertThat(page.getUsers()).extracting(filter::accepts).containsExactly(false, false, false, true);
+        assertThat(page.getUsers().subList(0, 3)).allSatisfy(user -> {
+            assertThat(user.getUsername()).isNull();
+            assertThat(user.getProfilePicture()).isNull();
+            assertThat(user.getNumFollowers()).isNull();
+        });
+        assertThat(page.getUsers().get(3).getUsername()).isEqualTo("stranger");
+    }
+
+    @Test
+    void readsAPageWithoutUsers() throws IOException {
+        assertThat(read("{\"users\": null, \"pagination\": {\"total\": 0}}", DirectoryFilter.ALL).getUsers()).isEmpty();
+        assertThat(read("{\"success\": false}", DirectoryFilter.ALL).getUsers()).isEmpty();
+    }
+
+    @Test
+    void rejectsAResponseThatIsNotAPage() {
+        assertThatThrownBy(() -> read("[]", DirectoryFilter.ALL)).isInstanceOf(IOException.class);
+        assertThatThrownBy(() -> read("{\"users\": {\"id\": \"u1\"}}", DirectoryFilter.ALL))
+            .isInstanceOf(IOException.class);
+    }
+
+    private DirectoryPage read(String json, DirectoryFilter filter) throws IOException {
+        return reader.read(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)), filter);
+    }
+}
@@ -0,0 +1,121 @@
+package com.mappalette.userdiscovery.directory;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UsernameIndexTest {
+
+    private final UserIdInterner interner = new UserIdInterner();
+    private final UsernameIndex index = new UsernameIndex(interner, 4096);
+
+    @Test
+    void ranksExactMatchesFirstThenByFollowers() {
+        refresh(1, user("1", "Anna", false, 5), user("2", "annabel", false, 50), user("3", "ann", false, 1),
+            user("4", "annika", false, 20), user("5", "bob", false, 100));
+
+        assertThat(usernames(index.search("ann", 10, "nobody", FollowingSet.EMPTY)))
+            .containsExactly("ann", "annabel", "annika", "Anna");
+        assertThat(usernames(index.search("ann", 2, "nobody", FollowingSet.EMPTY)))
+            .containsExactly("ann", "annabel");
+    }
+
+    @Test
+    void leavesOutPrivateProfilesTheViewerAndFollowedUsers() {
+        refresh(1, user("1", "anna", false, 0), user("2", "annabel", true, 0), user("3", "annika", false, 0),
+            user("4", "anneke", false, 0));
+
+        assertThat(usernames(index.search("ann", 10, "1", FollowingSet.of(List.of("3"), interner))))
+            .containsExactly("anneke");
+        assertThat(index.size()).isEqualTo(3);
+    }
+
+    @Test
+    void appliesRenamesDeletionsAndNewUsersIncrementally() {
+        UserDirectorySnapshot first = refresh(1, user("1", "anna", false, 0), user("2", "bob", false, 0),
+            user("3", "carl", false, 0));
+
+        refresh(first.withChanges(List.of(
+            DirectoryChange.updated(user("1", "zoe", false, 0)),
+            DirectoryChange.deleted("2"),
+            DirectoryChange.updated(user("3", "carl", true, 0)),
+            DirectoryChange.created(user("4", "annabel", false, 0))), 100, 2, Instant.EPOCH));
+
+        assertThat(usernames(index.search("ann", 10, "nobody", FollowingSet.EMPTY))).containsExactly("annabel");
+        assertThat(usernames(index.search("zo", 10, "nobody", FollowingSet.EMPTY))).containsExactly("zoe");
+        assertThat(index.search("b", 10, "nobody", FollowingSet.EMPTY)).isEmpty();
+        assertThat(index.search("c", 10, "nobody", FollowingSet.EMPTY)).isEmpty();
+        assertThat(index.size()).isEqualTo(2);
+    }
+
+    @Test
+    void ignoresSnapshotsOlderThanTheOneApplied() {
+        refresh(2, user("1", "anna", false, 0));
+        refresh(1, user("2", "annabel", false, 0));
+
+        assertThat(usernames(index.search("ann", 10, "nobody", FollowingSet.EMPTY))).containsExactly("anna");
+    }
+
+    @Test
+    void incrementalUpdatesMatchAFreshIndex() {
+        Random random = new Random(11);
+        List<DirectoryUser> users = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            users.add(randomUser(random, "user-" + i));
+        }
+        UserDirectorySnapshot snapshot = refresh(1, users.toArray(new DirectoryUser[0]));
+
+        for (int version = 2; version < 12; version++) {
+            List<DirectoryChange> changes = new ArrayList<>();
+            for (int i = 0; i < 50; i++) {
+                String id = "user-" + random.nextInt(2400);
+                switch (random.nextInt(3)) {
+                    case 0 -> changes.add(DirectoryChange.created(randomUser(random, id)));
+                    case 1 -> changes.add(DirectoryChange.updated(randomUser(random, id)));
+                    default -> changes.add(DirectoryChange.deleted(id));
+                }
+            }
+            snapshot = snapshot.withChanges(changes, 100_000, version, Instant.EPOCH);
+            index.onDirectoryRefreshed(new UserDirectoryRefreshedEvent(snapshot));
+        }
+
+        UsernameIndex fresh = new UsernameIndex(interner, 4096);
+        fresh.onDirectoryRefreshed(new UserDirectoryRefreshedEvent(snapshot));
+        assertThat(index.size()).isEqualTo(fresh.size());
+        for (String prefix : List.of("a", "b", "ba", "ca", "da", "ea", "fa", "abc", "z")) {
+            assertThat(index.search(prefix, 1000, "nobody", FollowingSet.EMPTY))
+                .as(prefix)
+                .containsExactlyElementsOf(fresh.search(prefix, 1000, "nobody", FollowingSet.EMPTY));
+        }
+    }
+
+    private UserDirectorySnapshot refresh(long version, DirectoryUser... users) {
+        return refresh(new UserDirectorySnapshot(List.of(users), users.length, version, version, Instant.EPOCH));
+    }
+
+    private UserDirectorySnapshot refresh(UserDirectorySnapshot snapshot) {
+        index.onDirectoryRefreshed(new UserDirectoryRefreshedEvent(snapshot));
+        return snapshot;
+    }
+
+    private DirectoryUser randomUser(Random random, String id) {
+        StringBuilder username = new StringBuilder();
+        for (int i = 0, length = 2 + random.nextInt(4); i < length; i++) {
+            username.append((char) ('a' + random.nextInt(6)));
+        }
+        return user(id, username.toString(), random.nextInt(5) == 0, random.nextInt(10));
+    }
+
+    private DirectoryUser user(String id, String username, boolean profilePrivate, int followers) {
+        return DirectoryUser.of(id, interner.intern(id), username, null, profilePrivate, followers, 0);
+    }
+
+    private static List<String> usernames(List<DirectoryUser> users) {
+        return users.stream().map(DirectoryUser::getUsername).toList();
+    }
+}
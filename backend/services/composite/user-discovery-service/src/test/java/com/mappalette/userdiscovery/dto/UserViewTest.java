@@ -0,0 +1,72 @@
+package com.mappalette.userdiscovery.dto;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mappalette.userdiscovery.directory.DirectoryUser;
+import com.mappalette.userdiscovery.directory.UserIdInterner;
+import com.mappalette.userdiscovery.support.FakeFollowService;
+import com.mappalette.userdiscovery.support.FakeUserService;
+import com.mappalette.userdiscovery.support.TestDiscovery;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UserViewTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final UserIdInterner interner = new UserIdInterner();
+
+    @Test
+    void serializesExactlyLikeAUserDto() throws Exception {
+        UserDto full = UserDto.builder()
+            .id("u1").userID("u1").username("anna").profilePicture("/pictures/u1.png")
+            .isProfilePrivate(true).isFollowing(true).numFollowers(12).numFollowing(3)
+            .build();
+        // Missing pictures are normalized to the default one when the user enters the directory
+        UserDto sparse = UserDto.builder().id("u2").userID("u2").build();
+        DirectoryUser sparseUser = DirectoryUser.from(sparse, interner);
+        sparse.setProfilePicture(sparseUser.getProfilePicture());
+
+        assertThat(json(new UserView(DirectoryUser.from(full, interner), true))).isEqualTo(json(full));
+        assertThat(json(new UserView(sparseUser, false))).isEqualTo(json(sparse));
+        assertThat(objectMapper.writeValueAsString(new UserView(DirectoryUser.from(full, interner), true)))
+            .isEqualTo(objectMapper.writeValueAsString(full));
+    }
+
+    @Test
+    void viewsOfOneUserKeepTheirOwnFollowingFlag() {
+        DirectoryUser shared = DirectoryUser.from(FakeUserService.user("u1", "anna", false), interner);
+
+        UserView followed = new UserView(shared, true);
+        UserView notFollowed = new UserView(shared, false);
+
+        assertThat(followed.isFollowing()).isTrue();
+        assertThat(notFollowed.isFollowing()).isFalse();
+        assertThat(followed.getUsername()).isEqualTo(notFollowed.getUsername()).isEqualTo("anna");
+    }
+
+    @Test
+    void oneViewersResponseDoesNotChangeTheNextOne() {
+        try (TestDiscovery discovery = new TestDiscovery(FakeUserService.users("user-", 5),
+                new FakeFollowService().follows("user-0", List.of("user-1", "user-2")))) {
+            AllUsersResponse first = discovery.getService().getAllUserData("user-0", 10, 10);
+            AllUsersResponse second = discovery.getService().getAllUserData("user-3", 10, 10);
+
+            assertThat(first.getFriends()).extracting(UserView::getId).containsExactlyInAnyOrder("user-1", "user-2");
+            assertThat(first.getFriends()).allMatch(UserView::isFollowing);
+            assertThat(first.getOtherUsers()).noneMatch(UserView::isFollowing);
+            assertThat(second.getFriends()).isEmpty();
+            assertThat(second.getOtherUsers()).extracting(UserView::getId)
+                .containsExactlyInAnyOrder("user-0", "user-1", "user-2", "user-4");
+            assertThat(second.getOtherUsers()).noneMatch(UserView::isFollowing);
+            // Building the second response left the first one as it was
+            assertThat(first.getFriends()).allMatch(UserView::isFollowing);
+        }
+    }
+
+    private JsonNode json(Object value) {
+        return objectMapper.valueToTree(value);
+    }
+}
@@ -0,0 +1,64 @@
+package com.mappalette.userdiscovery.events;
+
+import com.mappalette.userdiscovery.directory.UserIdInterner;
+import com.mappalette.userdiscovery.dto.DirectoryEvent;
+import com.mappalette.userdiscovery.dto.UserDto;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class DirectoryEventQueueTest {
+
+    // check() never touches the caches, and the queue stays empty, so the consumer has nothing to apply
+    private final DirectoryEventQueue queue = new DirectoryEventQueue(null, null, null, new UserIdInterner(),
+        new SimpleMeterRegistry(), 100, 10, 3);
+
+    @AfterEach
+    void tearDown() {
+        queue.shutdown();
+    }
+
+    @Test
+    void acceptsCompleteEvents() {
+        assertThatCode(() -> queue.check(List.of(
+            DirectoryEvent.builder().type(DirectoryEvent.USER_CREATED).user(UserDto.builder().id("a").build()).build(),
+            DirectoryEvent.builder().type(DirectoryEvent.USER_UPDATED).user(UserDto.builder().userID("b").build()).build(),
+            DirectoryEvent.builder().type(DirectoryEvent.FOLLOWED).followerId("a").followingId("b").build())))
+            .doesNotThrowAnyException();
+        assertThatCode(() -> queue.check(List.of())).doesNotThrowAnyException();
+    }
+
+    @Test
+    void rejectsAMissingOrOversizedList() {
+        assertBadRequest(null);
+        assertBadRequest(Collections.nCopies(4, DirectoryEvent.builder()
+            .type(DirectoryEvent.USER_DELETED).userId("a").build()));
+    }
+
+    @Test
+    void rejectsIncompleteEvents() {
+        assertBadRequest(List.of(DirectoryEvent.builder().type("USER_RENAMED").userId("a").build()));
+        assertBadRequest(List.of(DirectoryEvent.builder().userId("a").build()));
+        assertBadRequest(List.of(DirectoryEvent.builder().type(DirectoryEvent.USER_CREATED).build()));
+        assertBadRequest(List.of(DirectoryEvent.builder().type(DirectoryEvent.USER_UPDATED)
+            .user(new UserDto()).build()));
+        assertBadRequest(List.of(DirectoryEvent.builder().type(DirectoryEvent.USER_DELETED).build()));
+        assertBadRequest(List.of(DirectoryEvent.builder().type(DirectoryEvent.FOLLOWED).followerId("a").build()));
+        assertBadRequest(List.of(DirectoryEvent.builder().type(DirectoryEvent.UNFOLLOWED).followingId("b").build()));
+    }
+
+    private void assertBadRequest(List<DirectoryEvent> events) {
+        assertThatThrownBy(() -> queue.check(events))
+            .isInstanceOfSatisfying(ResponseStatusException.class,
+                e -> assertThat(e.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST));
+    }
+}
@@ -0,0 +1,166 @@
+package com.mappalette.userdiscovery.metrics;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mappalette.userdiscovery.config.JsonMetricsConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.ResolvableType;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.EncoderHttpMessageWriter;
+import org.springframework.http.codec.HttpMessageWriter;
+import org.springframework.http.codec.ServerCodecConfigurer;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.mock.http.MockHttpOutputMessage;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.filter.reactive.ServerWebExchangeContextFilter;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DiscoveryMetricsTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final DiscoveryMetrics discoveryMetrics = new DiscoveryMetrics(meterRegistry);
+
+    @AfterEach
+    void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    void remembersTheEndpointOfTheCurrentRequest() {
+        startRequest();
+        DiscoveryMetrics.markRequest(DiscoveryMetrics.SEARCH);
+
+        assertThat(DiscoveryMetrics.requestEndpoint()).isEqualTo(DiscoveryMetrics.SEARCH);
+
+        startRequest();
+        assertThat(DiscoveryMetrics.requestEndpoint()).isNull();
+    }
+
+    @Test
+    void ignoresMarksOutsideARequest() {
+        DiscoveryMetrics.markRequest(DiscoveryMetrics.USERS);
+
+        assertThat(DiscoveryMetrics.requestEndpoint()).isNull();
+    }
+
+    @Test
+    void tagsStageTimersAndUserCountersByEndpoint() {
+        discoveryMetrics.stage(DiscoveryMetrics.USERS, DiscoveryMetrics.STAGE_FILTER).record(() -> { });
+        discoveryMetrics.stage(DiscoveryMetrics.USERS, DiscoveryMetrics.STAGE_FILTER).record(() -> { });
+        discoveryMetrics.recordUsers(DiscoveryMetrics.USERS, 120, 20);
+        discoveryMetrics.recordUsers(DiscoveryMetrics.SUGGESTIONS, 40, 5);
+
+        assertThat(meterRegistry.get("discovery.stage")
+            .tags("endpoint", DiscoveryMetrics.USERS, "stage", DiscoveryMetrics.STAGE_FILTER).timer().count())
+            .isEqualTo(2);
+        assertThat(meterRegistry.get("discovery.users.scanned").tag("endpoint", DiscoveryMetrics.USERS)
+            .counter().count()).isEqualTo(120);
+        assertThat(meterRegistry.get("discovery.users.returned").tag("endpoint", DiscoveryMetrics.SUGGESTIONS)
+            .counter().count()).isEqualTo(5);
+    }
+
+    @Test
+    void timesSerializationUnderTheMarkedEndpoint() throws Exception {
+        MappingJackson2HttpMessageConverter converter = new JsonMetricsConfig()
+            .mappingJackson2HttpMessageConverter(new ObjectMapper(), discoveryMetrics);
+
+        startRequest();
+        DiscoveryMetrics.markRequest(DiscoveryMetrics.USERS);
+        MockHttpOutputMessage marked = new MockHttpOutputMessage();
+        converter.write(Map.of("users", 1), MediaType.APPLICATION_JSON, marked);
+
+        startRequest();
+        converter.write(Map.of("status", "healthy"), MediaType.APPLICATION_JSON, new MockHttpOutputMessage());
+
+        assertThat(marked.getBodyAsString()).isEqualTo("{\"users\":1}");
+        assertThat(meterRegistry.find("discovery.stage").tag("stage", DiscoveryMetrics.STAGE_SERIALIZE).timers())
+            .singleElement()
+            .satisfies(timer -> {
+                assertThat(timer.getId().getTag("endpoint")).isEqualTo(DiscoveryMetrics.USERS);
+                assertThat(timer.count()).isEqualTo(1);
+            });
+    }
+
+    @Test
+    void remembersTheEndpointOfTheExchangeInTheContext() {
+        MockServerWebExchange exchange = exchange();
+        DiscoveryMetrics.markRequest(exchange, DiscoveryMetrics.BATCH);
+
+        assertThat(DiscoveryMetrics.requestEndpoint(context(exchange))).isEqualTo(DiscoveryMetrics.BATCH);
+        assertThat(DiscoveryMetrics.requestEndpoint(context(exchange()))).isNull();
+        assertThat(DiscoveryMetrics.requestEndpoint(Context.empty())).isNull();
+    }
+
+    @Test
+    void timesReactiveSerializationUnderTheMarkedEndpoint() {
+        HttpMessageWriter<Object> writer = reactiveJsonWriter();
+
+        MockServerWebExchange marked = exchange();
+        DiscoveryMetrics.markRequest(marked, DiscoveryMetrics.SEARCH);
+        writer.write(Mono.just(Map.of("users", 1)), ResolvableType.forClass(Map.class), MediaType.APPLICATION_JSON,
+                marked.getResponse(), Map.of())
+            .contextWrite(context(marked))
+            .block();
+
+        MockServerWebExchange unmarked = exchange();
+        writer.write(Mono.just(Map.of("status", "healthy")), ResolvableType.forClass(Map.class),
+                MediaType.APPLICATION_JSON, unmarked.getResponse(), Map.of())
+            .contextWrite(context(unmarked))
+            .block();
+
+        // Streams are written as the client reads them, so they are left untimed
+        MockServerWebExchange streamed = exchange();
+        DiscoveryMetrics.markRequest(streamed, DiscoveryMetrics.STREAM);
+        writer.write(Flux.just(Map.of("id", "u1"), Map.of("id", "u2")), ResolvableType.forClass(Map.class),
+                MediaType.APPLICATION_NDJSON, streamed.getResponse(), Map.of())
+            .contextWrite(context(streamed))
+            .block();
+
+        assertThat(marked.getResponse().getBodyAsString().block()).isEqualTo("{\"users\":1}");
+        assertThat(streamed.getResponse().getBodyAsString().block()).isEqualTo("{\"id\":\"u1\"}\n{\"id\":\"u2\"}\n");
+        assertThat(meterRegistry.find("discovery.stage").tag("stage", DiscoveryMetrics.STAGE_SERIALIZE).timers())
+            .singleElement()
+            .satisfies(timer -> {
+                assertThat(timer.getId().getTag("endpoint")).isEqualTo(DiscoveryMetrics.SEARCH);
+                assertThat(timer.count()).isEqualTo(1);
+            });
+    }
+
+    @SuppressWarnings("unchecked")
+    private HttpMessageWriter<Object> reactiveJsonWriter() {
+        ServerCodecConfigurer configurer = ServerCodecConfigurer.create();
+        new JsonMetricsConfig().jsonMetricsCodecs(new ObjectMapper(), discoveryMetrics)
+            .configureHttpMessageCodecs(configurer);
+        List<HttpMessageWriter<?>> writers = configurer.getWriters();
+        return (HttpMessageWriter<Object>) writers.stream()
+            .filter(writer -> writer instanceof EncoderHttpMessageWriter<?> encoding
+                && encoding.getEncoder() instanceof Jackson2JsonEncoder)
+            .findFirst()
+            .orElseThrow();
+    }
+
+    private static MockServerWebExchange exchange() {
+        return MockServerWebExchange.from(MockServerHttpRequest.get("/api/discover/users/u1"));
+    }
+
+    private static Context context(MockServerWebExchange exchange) {
+        return Context.of(ServerWebExchangeContextFilter.EXCHANGE_CONTEXT_ATTRIBUTE, exchange);
+    }
+
+    private static void startRequest() {
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+    }
+}
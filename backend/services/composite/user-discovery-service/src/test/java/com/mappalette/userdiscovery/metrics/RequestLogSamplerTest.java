@@ -0,0 +1,117 @@
+package com.mappalette.userdiscovery.metrics;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.filter.reactive.ServerWebExchangeContextFilter;
+import reactor.util.context.Context;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RequestLogSamplerTest {
+
+    @AfterEach
+    void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    void samplesEveryRequestAtRateOne() {
+        RequestLogSampler sampler = new RequestLogSampler(1.0);
+
+        for (int i = 0; i < 20; i++) {
+            startRequest();
+            assertThat(sampler.sampled()).isTrue();
+        }
+    }
+
+    @Test
+    void samplesNoRequestAtRateZero() {
+        RequestLogSampler sampler = new RequestLogSampler(0.0);
+
+        for (int i = 0; i < 20; i++) {
+            startRequest();
+            assertThat(sampler.sampled()).isFalse();
+        }
+    }
+
+    @Test
+    void keepsOneDecisionForAllLinesOfARequest() {
+        RequestLogSampler sampler = new RequestLogSampler(0.5);
+        int sampledRequests = 0;
+
+        for (int i = 0; i < 200; i++) {
+            startRequest();
+            boolean first = sampler.sampled();
+            for (int line = 0; line < 10; line++) {
+                assertThat(sampler.sampled()).isEqualTo(first);
+            }
+            sampledRequests += first ? 1 : 0;
+        }
+
+        // Each request is drawn on its own
+        assertThat(sampledRequests).isBetween(1, 199);
+    }
+
+    @Test
+    void logsNothingOutsideARequest() {
+        assertThat(new RequestLogSampler(1.0).sampled()).isFalse();
+    }
+
+    @Test
+    void keepsOneDecisionPerExchange() {
+        RequestLogSampler sampler = new RequestLogSampler(0.5);
+        int sampledExchanges = 0;
+
+        for (int i = 0; i < 200; i++) {
+            MockServerWebExchange exchange = exchange();
+            boolean first = sampler.sampled(exchange);
+            for (int line = 0; line < 10; line++) {
+                assertThat(sampler.sampled(exchange)).isEqualTo(first);
+                assertThat(sampler.sampled(context(exchange))).isEqualTo(first);
+            }
+            sampledExchanges += first ? 1 : 0;
+        }
+
+        assertThat(sampledExchanges).isBetween(1, 199);
+    }
+
+    @Test
+    void logsNothingWithoutAnExchangeInTheContext() {
+        assertThat(new RequestLogSampler(1.0).sampled(Context.empty())).isFalse();
+    }
+
+    @Test
+    void bindsTheExchangeDecisionWhileReactiveWorkRuns() throws Exception {
+        RequestLogSampler sampler = new RequestLogSampler(1.0);
+        Context sampled = context(exchange());
+        Callable<Boolean> line = sampler::sampled;
+
+        assertThat(sampler.callSampled(sampled, line)).isTrue();
+        assertThat(sampler.callSampled(Context.empty(), line)).isFalse();
+        // Nested work sees its own request's decision, and the outer one is restored afterwards
+        List<Boolean> nested = sampler.callSampled(sampled,
+            () -> List.of(sampler.callSampled(Context.empty(), line), sampler.sampled()));
+        assertThat(nested).containsExactly(false, true);
+        assertThat(sampler.sampled()).isFalse();
+    }
+
+    private static MockServerWebExchange exchange() {
+        return MockServerWebExchange.from(MockServerHttpRequest.get("/api/discover/users/u1"));
+    }
+
+    private static Context context(MockServerWebExchange exchange) {
+        return Context.of(ServerWebExchangeContextFilter.EXCHANGE_CONTEXT_ATTRIBUTE, exchange);
+    }
+
+    private static void startRequest() {
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+    }
+}
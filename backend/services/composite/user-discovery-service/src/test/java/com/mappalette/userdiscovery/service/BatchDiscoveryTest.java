@@ -0,0 +1,83 @@
+package com.mappalette.userdiscovery.service;
+
+import com.mappalette.userdiscovery.dto.BatchDiscoveryResponse;
+import com.mappalette.userdiscovery.dto.DiscoveryResponse;
+import com.mappalette.userdiscovery.dto.UserView;
+import com.mappalette.userdiscovery.support.FakeFollowService;
+import com.mappalette.userdiscovery.support.FakeUserService;
+import com.mappalette.userdiscovery.support.TestDiscovery;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BatchDiscoveryTest {
+
+    private final TestDiscovery discovery = new TestDiscovery(FakeUserService.users("user-", 8),
+        new FakeFollowService()
+            .follows("user-0", List.of("user-1", "user-2", "user-3"))
+            .follows("user-1", List.of("user-0")));
+
+    @AfterEach
+    void tearDown() {
+        discovery.close();
+    }
+
+    @Test
+    void rejectsEmptyOversizedAndBlankBatches() {
+        List<String> tooMany = new ArrayList<>();
+        for (int i = 0; i <= 100; i++) {
+            tooMany.add("user-" + i);
+        }
+
+        assertBadRequest(null);
+        assertBadRequest(Collections.emptyList());
+        assertBadRequest(tooMany);
+        assertBadRequest(Arrays.asList("user-0", " "));
+        assertBadRequest(Arrays.asList("user-0", null));
+        assertThat(discovery.getUserService().getPageRequests()).isZero();
+    }
+
+    @Test
+    void answersEveryUserFromOneDirectoryLoad() {
+        BatchDiscoveryResponse response = discovery.getService()
+            .discoverSuggestionsBatch(List.of("user-0", "user-1", "user-5", "user-0"), 10);
+
+        assertThat(response.getResults()).containsOnlyKeys("user-0", "user-1", "user-5");
+        assertThat(ids(response.getResults().get("user-0")))
+            .containsExactlyInAnyOrder("user-4", "user-5", "user-6", "user-7");
+        assertThat(ids(response.getResults().get("user-1")))
+            .containsExactlyInAnyOrder("user-2", "user-3", "user-4", "user-5", "user-6", "user-7");
+        assertThat(ids(response.getResults().get("user-5"))).hasSize(7).doesNotContain("user-5");
+        assertThat(discovery.getUserService().getPageRequests()).isEqualTo(1);
+    }
+
+    @Test
+    void capsEachUsersSuggestionsAtTheLimit() {
+        BatchDiscoveryResponse response = discovery.getService()
+            .discoverSuggestionsBatch(List.of("user-0", "user-5"), 2);
+
+        response.getResults().values().forEach(result -> {
+            assertThat(result.getUsers()).hasSize(2);
+            assertThat(result.getLimit()).isEqualTo(2);
+        });
+    }
+
+    private void assertBadRequest(List<String> userIds) {
+        assertThatThrownBy(() -> discovery.getService().discoverSuggestionsBatch(userIds, 5))
+            .isInstanceOfSatisfying(ResponseStatusException.class,
+                e -> assertThat(e.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST));
+    }
+
+    private static List<String> ids(DiscoveryResponse response) {
+        return response.getUsers().stream().map(UserView::getId).toList();
+    }
+}
@@ -0,0 +1,67 @@
+package com.mappalette.userdiscovery.service;
+
+import com.mappalette.userdiscovery.dto.DiscoveryResponse;
+import com.mappalette.userdiscovery.dto.UserDto;
+import com.mappalette.userdiscovery.dto.UserView;
+import com.mappalette.userdiscovery.support.FakeFollowService;
+import com.mappalette.userdiscovery.support.FakeUserService;
+import com.mappalette.userdiscovery.support.TestDiscovery;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CursorPaginationTest {
+
+    private final List<UserDto> users = new ArrayList<>(FakeUserService.users("user-", 10));
+    private final TestDiscovery discovery;
+
+    CursorPaginationTest() {
+        users.set(4, FakeUserService.user("user-4", "private", true));
+        discovery = new TestDiscovery(users, new FakeFollowService().follows("user-0", List.of("user-2", "user-7")));
+    }
+
+    @AfterEach
+    void tearDown() {
+        discovery.close();
+    }
+
+    @Test
+    void followingTheCursorVisitsEveryDiscoverableUserOnce() {
+        assertThat(pageThrough(3)).containsExactly("user-1", "user-3", "user-5", "user-6", "user-8", "user-9");
+    }
+
+    @Test
+    void aZeroLimitStillMovesTheCursorForward() {
+        DiscoveryResponse first = discovery.getService().discoverUsersByCursor("user-0", 0, "", false);
+
+        assertThat(ids(first)).containsExactly("user-1");
+        assertThat(first.getLimit()).isEqualTo(1);
+        assertThat(first.getNextCursor()).isNotNull();
+
+        DiscoveryResponse second = discovery.getService().discoverUsersByCursor("user-0", 0, first.getNextCursor(),
+            false);
+        assertThat(ids(second)).containsExactly("user-3");
+        assertThat(second.getNextCursor()).isNotEqualTo(first.getNextCursor());
+        assertThat(pageThrough(0)).hasSize(6);
+    }
+
+    private List<String> pageThrough(int limit) {
+        List<String> seen = new ArrayList<>();
+        String cursor = "";
+        for (int pages = 0; cursor != null; pages++) {
+            assertThat(pages).as("pages").isLessThan(20);
+            DiscoveryResponse page = discovery.getService().discoverUsersByCursor("user-0", limit, cursor, false);
+            seen.addAll(ids(page));
+            cursor = page.getNextCursor();
+        }
+        return seen;
+    }
+
+    private static List<String> ids(DiscoveryResponse response) {
+        return response.getUsers().stream().map(UserView::getId).toList();
+    }
+}
@@ -0,0 +1,62 @@
+package com.mappalette.userdiscovery.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class DiscoveryCursorTest {
+
+    @Test
+    void encodeAndDecodeRoundTrip() {
+        DiscoveryCursor cursor = DiscoveryCursor.decode(new DiscoveryCursor(42, "user-7").encode());
+
+        assertThat(cursor.getPosition()).isEqualTo(42);
+        assertThat(cursor.getAnchorUserId()).isEqualTo("user-7");
+    }
+
+    @Test
+    void roundTripsWithoutAnchor() {
+        DiscoveryCursor cursor = DiscoveryCursor.decode(new DiscoveryCursor(3, null).encode());
+
+        assertThat(cursor.getPosition()).isEqualTo(3);
+        assertThat(cursor.getAnchorUserId()).isNull();
+    }
+
+    @Test
+    void encodedCursorIsUrlSafe() {
+        assertThat(new DiscoveryCursor(1_000_000, "a/b+c?d").encode()).matches("[A-Za-z0-9_-]+");
+    }
+
+    @Test
+    void missingOrBlankCursorStartsAtTheBeginning() {
+        assertThat(DiscoveryCursor.decode(null)).isSameAs(DiscoveryCursor.START);
+        assertThat(DiscoveryCursor.decode("")).isSameAs(DiscoveryCursor.START);
+        assertThat(DiscoveryCursor.decode("  ")).isSameAs(DiscoveryCursor.START);
+    }
+
+    @Test
+    void rejectsTokensItDidNotProduce() {
+        assertThatThrownBy(() -> DiscoveryCursor.decode("not base64!")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> DiscoveryCursor.decode(token("v2:1:user"))).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> DiscoveryCursor.decode(token("v1:1"))).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> DiscoveryCursor.decode(token("v1:abc:user"))).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> DiscoveryCursor.decode(token("v1:-1:user"))).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void invalidCursorIsABadRequest() {
+        assertThatThrownBy(() -> UserDiscoveryService.decodeCursor(token("v1:-1:user")))
+            .isInstanceOfSatisfying(ResponseStatusException.class,
+                e -> assertThat(e.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST));
+    }
+
+    private static String token(String raw) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,154 @@
+package com.mappalette.userdiscovery.service;
+
+import com.mappalette.userdiscovery.cache.FollowingCache;
+import com.mappalette.userdiscovery.client.UpstreamCalls;
+import com.mappalette.userdiscovery.directory.DirectorySnapshotStore;
+import com.mappalette.userdiscovery.directory.FollowingSet;
+import com.mappalette.userdiscovery.directory.UserDirectoryCache;
+import com.mappalette.userdiscovery.directory.UserIdInterner;
+import com.mappalette.userdiscovery.metrics.DiscoveryMetrics;
+import com.mappalette.userdiscovery.support.FakeFollowService;
+import com.mappalette.userdiscovery.support.FakeUserService;
+import com.mappalette.userdiscovery.support.TestUpstreams;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DiscoveryFanOutTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final UserIdInterner interner = new UserIdInterner();
+    private final UpstreamCalls upstreamCalls = TestUpstreams.calls(meterRegistry);
+    private final FakeUserService userService = new FakeUserService(FakeUserService.users("user-", 5));
+    private final FakeFollowService followService = new FakeFollowService()
+        .follows("viewer", List.of("user-1", "user-2"))
+        .follows("other", List.of("user-3"));
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+    private final UserDirectoryCache directoryCache = new UserDirectoryCache(
+        TestUpstreams.pager(userService, upstreamCalls, interner, executor), event -> { },
+        new DirectorySnapshotStore(interner, meterRegistry, "", 0), meterRegistry, 100, 60_000, 0);
+    private final FollowingCache followingCache = new FollowingCache(followService, upstreamCalls, interner,
+        meterRegistry, 100, 60_000, 60_000);
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        directoryCache.shutdown();
+        executor.shutdownNow();
+    }
+
+    @Test
+    void fetchesTheDirectoryAndFollowingListConcurrently() {
+        // Each lookup waits until the other one has started, so running them one after the other would time out
+        CountDownLatch directoryStarted = new CountDownLatch(1);
+        CountDownLatch followingStarted = new CountDownLatch(1);
+        userService.onPage(page -> {
+            directoryStarted.countDown();
+            await(followingStarted);
+        });
+        followService.onRequest(userId -> {
+            followingStarted.countDown();
+            await(directoryStarted);
+        });
+
+        DiscoveryFanOut.Result result = fanOut(executor, 5_000).load("viewer", DiscoveryMetrics.USERS);
+
+        assertThat(result.isPartial()).isFalse();
+        assertThat(result.isDegraded()).isFalse();
+        assertThat(result.getDirectory().size()).isEqualTo(5);
+        assertThat(result.getFollowingIds().size()).isEqualTo(2);
+    }
+
+    @Test
+    void loadsTheDirectoryOnceForManyUsers() {
+        Map<String, DiscoveryFanOut.Result> results = fanOut(executor, 5_000)
+            .loadAll(List.of("viewer", "other", "viewer"), DiscoveryMetrics.BATCH);
+
+        assertThat(results).containsOnlyKeys("viewer", "other");
+        assertThat(results.get("viewer").getDirectory()).isSameAs(results.get("other").getDirectory());
+        assertThat(results.get("other").getFollowingIds().size()).isEqualTo(1);
+        assertThat(userService.getPageRequests()).isEqualTo(1);
+        assertThat(followService.getFollowingRequests("viewer")).isEqualTo(1);
+    }
+
+    @Test
+    void aTimedOutFollowingLookupFallsBackToTheLastKnownSet() {
+        DiscoveryFanOut fanOut = fanOut(executor, 200);
+        FollowingSet lastKnown = fanOut.load("viewer", DiscoveryMetrics.USERS).getFollowingIds();
+        followingCache.invalidate("viewer");
+        followService.onRequest(userId -> await(release));
+
+        DiscoveryFanOut.Result result = fanOut.load("viewer", DiscoveryMetrics.USERS);
+
+        assertThat(result.isPartial()).isFalse();
+        assertThat(result.isDegraded()).isTrue();
+        assertThat(result.getFollowingIds()).isSameAs(lastKnown);
+        assertThat(result.getDirectory()).isNotNull();
+    }
+
+    @Test
+    void aFailedFollowingLookupWithoutFallbackIsPartial() {
+        followService.onRequest(userId -> {
+            throw new IllegalStateException("follow-service is down");
+        });
+
+        DiscoveryFanOut.Result result = fanOut(executor, 5_000).load("viewer", DiscoveryMetrics.USERS);
+
+        assertThat(result.isPartial()).isTrue();
+        assertThat(result.isDegraded()).isFalse();
+        assertThat(result.getFollowingIds()).isSameAs(FollowingSet.EMPTY);
+        assertThat(result.getDirectory()).isNotNull();
+    }
+
+    @Test
+    void aFailedDirectoryLookupIsPartial() {
+        userService.onPage(page -> {
+            throw new IllegalStateException("user-service is down");
+        });
+
+        DiscoveryFanOut.Result result = fanOut(executor, 5_000).load("viewer", DiscoveryMetrics.USERS);
+
+        assertThat(result.isPartial()).isTrue();
+        assertThat(result.getDirectory()).isNull();
+        assertThat(result.getFollowingIds().size()).isEqualTo(2);
+    }
+
+    @Test
+    void lookupsRejectedByAFullPoolArePartial() {
+        Executor full = task -> {
+            throw new RejectedExecutionException("full");
+        };
+
+        DiscoveryFanOut.Result result = fanOut(full, 5_000).load("viewer", DiscoveryMetrics.USERS);
+
+        assertThat(result.isPartial()).isTrue();
+        assertThat(result.getDirectory()).isNull();
+        assertThat(result.getFollowingIds()).isSameAs(FollowingSet.EMPTY);
+        assertThat(userService.getPageRequests()).isZero();
+    }
+
+    private DiscoveryFanOut fanOut(Executor upstreamExecutor, long timeoutMs) {
+        return new DiscoveryFanOut(directoryCache, followingCache, new DiscoveryMetrics(meterRegistry),
+            upstreamExecutor, timeoutMs, timeoutMs);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.mappalette.userdiscovery.service;
+
+import com.mappalette.userdiscovery.dto.DiscoveryResponse;
+import com.mappalette.userdiscovery.dto.UserDto;
+import com.mappalette.userdiscovery.dto.UserView;
+import com.mappalette.userdiscovery.metrics.RequestLogSampler;
+import com.mappalette.userdiscovery.support.FakeFollowService;
+import com.mappalette.userdiscovery.support.FakeUserService;
+import com.mappalette.userdiscovery.support.TestDiscovery;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.filter.reactive.ServerWebExchangeContextFilter;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.util.context.Context;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ReactiveUserDiscoveryServiceTest {
+
+    private final List<UserDto> users = new ArrayList<>(FakeUserService.users("user-", 250));
+    private final List<TestDiscovery> discoveries = new ArrayList<>();
+
+    ReactiveUserDiscoveryServiceTest() {
+        users.set(3, FakeUserService.user("user-3", "private", true));
+    }
+
+    @AfterEach
+    void tearDown() {
+        discoveries.forEach(TestDiscovery::close);
+    }
+
+    @Test
+    void answersLikeTheBlockingService() {
+        TestDiscovery discovery = discovery(10_000, new RequestLogSampler(0.0));
+        ReactiveUserDiscoveryService reactive = discovery.reactive(10_000);
+
+        DiscoveryResponse blocking = discovery.getService().discoverUsers("user-0", 20, 10, false);
+        DiscoveryResponse response = reactive.discoverUsers("user-0", 20, 10, false, false).block();
+
+        assertThat(ids(response)).isEqualTo(ids(blocking)).hasSize(20);
+        assertThat(response.getTotalCount()).isEqualTo(blocking.getTotalCount()).isEqualTo(246);
+        assertThat(response.getFollowingCount()).isEqualTo(2);
+    }
+
+    @Test
+    void streamsDiscoverableUsersPastTheSnapshotOnDemand() {
+        TestDiscovery discovery = discovery(150, new RequestLogSampler(0.0));
+        ReactiveUserDiscoveryService reactive = discovery.reactive(10_000);
+        reactive.discoverUsers("user-0", 1, 0, false, false).block();
+        int pageRequests = discovery.getUserService().getPageRequests();
+
+        List<String> firstFive = reactive.streamUsers("user-0", 0, 5).map(UserView::getId).collectList().block();
+
+        assertThat(firstFive).containsExactly("user-1", "user-4", "user-5", "user-6", "user-7");
+        assertThat(discovery.getUserService().getPageRequests()).isEqualTo(pageRequests);
+
+        List<String> all = reactive.streamUsers("user-0", 0, Integer.MAX_VALUE).map(UserView::getId)
+            .collectList().block();
+
+        assertThat(all).hasSize(246).doesNotContain("user-0", "user-2", "user-3", "user-200")
+            .startsWith("user-1", "user-4").endsWith("user-248", "user-249");
+        assertThat(discovery.getUserService().getPageRequests()).isGreaterThan(pageRequests);
+    }
+
+    @Test
+    void capsTheStreamAtTheMaxLimit() {
+        ReactiveUserDiscoveryService reactive = discovery(10_000, new RequestLogSampler(0.0)).reactive(3);
+
+        assertThat(reactive.streamUsers("user-0", 10, 100).map(UserView::getId).collectList().block())
+            .containsExactly("user-13", "user-14", "user-15");
+    }
+
+    @Test
+    void rejectsAnEmptySearchBeforeLoadingAnything() {
+        TestDiscovery discovery = discovery(10_000, new RequestLogSampler(0.0));
+
+        assertThatThrownBy(() -> discovery.reactive(10_000).searchUsers("user-0", "", 10).block())
+            .isInstanceOf(ResponseStatusException.class);
+        assertThat(discovery.getFollowService().getFollowingRequests("user-0")).isZero();
+    }
+
+    @Test
+    void marksTheResponsePartialWhenTheFollowingListFails() {
+        TestDiscovery discovery = discovery(10_000, new RequestLogSampler(0.0));
+        discovery.getFollowService().onRequest(userId -> {
+            throw new IllegalStateException("follow-service down");
+        });
+
+        DiscoveryResponse response = discovery.reactive(10_000).discoverUsers("user-0", 5, 0, false, false).block();
+
+        assertThat(response.getPartial()).isTrue();
+        assertThat(ids(response)).containsExactly("user-1", "user-2", "user-4", "user-5", "user-6");
+    }
+
+    @Test
+    void logsUnderTheSampleDecisionOfTheExchangeInTheContext() {
+        RecordingSampler sampler = new RecordingSampler();
+        ReactiveUserDiscoveryService reactive = discovery(10_000, sampler).reactive(10_000);
+        Context request = Context.of(ServerWebExchangeContextFilter.EXCHANGE_CONTEXT_ATTRIBUTE,
+            MockServerWebExchange.from(MockServerHttpRequest.get("/api/discover/users/user-0")));
+
+        reactive.discoverUsers("user-0", 5, 0, false, false).contextWrite(request).block();
+        // Ranked suggestions are computed on a worker thread
+        reactive.discoverUsers("user-0", 5, 0, true, true).contextWrite(request).block();
+        reactive.searchUsers("user-0", "name", 5).contextWrite(request).block();
+
+        assertThat(sampler.decisions).isNotEmpty().containsOnly(true);
+
+        sampler.decisions.clear();
+        reactive.discoverUsers("user-0", 5, 0, false, false).block();
+
+        assertThat(sampler.decisions).isNotEmpty().containsOnly(false);
+    }
+
+    private TestDiscovery discovery(int maxUsers, RequestLogSampler sampler) {
+        TestDiscovery discovery = new TestDiscovery(users,
+            new FakeFollowService().follows("user-0", List.of("user-2", "user-200")), maxUsers, sampler);
+        discoveries.add(discovery);
+        return discovery;
+    }
+
+    private static List<String> ids(DiscoveryResponse response) {
+        return response.getUsers().stream().map(UserView::getId).toList();
+    }
+
+    /**
+     * Samples every reactive request, and records what the service's log guards were told
+     */
+    private static final class RecordingSampler extends RequestLogSampler {
+
+        private final List<Boolean> decisions = new CopyOnWriteArrayList<>();
+
+        RecordingSampler() {
+            super(1.0);
+        }
+
+        @Override
+        public boolean sampled() {
+            boolean sampled = super.sampled();
+            decisions.add(sampled);
+            return sampled;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.mappalette.userdiscovery.service;
+
+import com.mappalette.userdiscovery.directory.DirectoryUser;
+import com.mappalette.userdiscovery.dto.DirectoryEvent;
+import com.mappalette.userdiscovery.support.FakeFollowService;
+import com.mappalette.userdiscovery.support.FakeUserService;
+import com.mappalette.userdiscovery.support.TestDiscovery;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SuggestionRankerTest {
+
+    private final FakeFollowService followService = new FakeFollowService()
+        .follows("user-0", List.of("user-1"))
+        .follows("user-9", List.of("user-1"))
+        .follows("user-1", List.of("user-5"))
+        .follows("user-2", List.of("user-6"));
+    private final TestDiscovery discovery = new TestDiscovery(FakeUserService.users("user-", 10), followService);
+
+    @BeforeEach
+    void loadDirectory() {
+        discovery.getService().discoverUsers("user-0", 1, 0, false);
+    }
+
+    @AfterEach
+    void tearDown() {
+        discovery.close();
+    }
+
+    @Test
+    void ranksFriendsOfFriends() {
+        assertThat(rank("user-0")).containsExactly("user-5");
+    }
+
+    @Test
+    void expandsFolloweesWithoutFillingTheFollowingCache() {
+        rank("user-0");
+        rank("user-9");
+
+        // Only viewers' own sets go through the shared following cache
+        assertThat(discovery.getFollowingCache().getLastKnownFollowingIds("user-0")).isNotNull();
+        assertThat(discovery.getFollowingCache().getLastKnownFollowingIds("user-1")).isNull();
+        // Both viewers expand user-1; the followee cache loads their set once
+        assertThat(followService.getFollowingRequests("user-1")).isEqualTo(1);
+    }
+
+    @Test
+    void rebuildsTheNeighbourhoodAfterAFollowEvent() throws InterruptedException {
+        assertThat(rank("user-0")).containsExactly("user-5");
+
+        followService.follows("user-0", List.of("user-1", "user-2"));
+        discovery.getEventQueue().publish(List.of(DirectoryEvent.builder()
+            .type(DirectoryEvent.FOLLOWED).followerId("user-0").followingId("user-2").build()));
+
+        List<String> ranked = rank("user-0");
+        for (int i = 0; i < 100 && ranked.size() < 2; i++) {
+            Thread.sleep(50);
+            ranked = rank("user-0");
+        }
+        assertThat(ranked).containsExactlyInAnyOrder("user-5", "user-6");
+    }
+
+    @Test
+    void refetchesTheFolloweeSetOfAUserWhoseFollowsChanged() throws InterruptedException {
+        rank("user-0");
+        followService.follows("user-1", List.of("user-5", "user-7"));
+
+        discovery.getSuggestionRanker().invalidate("user-1");
+        // user-1 is not a viewer yet, so only their expanded set is dropped
+        assertThat(rank("user-0")).containsExactly("user-5");
+
+        discovery.getSuggestionRanker().invalidate("user-0");
+        List<String> ranked = rank("user-0");
+        for (int i = 0; i < 100 && ranked.size() < 2; i++) {
+            Thread.sleep(50);
+            ranked = rank("user-0");
+        }
+        assertThat(ranked).containsExactlyInAnyOrder("user-5", "user-7");
+        assertThat(followService.getFollowingRequests("user-1")).isEqualTo(2);
+    }
+
+    private List<String> rank(String viewerId) {
+        return discovery.getSuggestionRanker()
+            .rank(viewerId, discovery.getFollowingCache().getFollowingIds(viewerId), 5).stream()
+            .map(DirectoryUser::getId)
+            .toList();
+    }
+}
@@ -0,0 +1,93 @@
+package com.mappalette.userdiscovery.support;
+
+import com.mappalette.userdiscovery.client.FollowServiceClient;
+import com.mappalette.userdiscovery.dto.FollowingResponse;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * In-memory follow-service serving paged following and follower lists. Tests can hook every
+ * call, e.g. to block or fail it, and count the calls made per user.
+ */
+public class FakeFollowService implements FollowServiceClient {
+
+    private final Map<String, List<String>> following = new ConcurrentHashMap<>();
+    private final Map<String, List<String>> followers = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> followingRequests = new ConcurrentHashMap<>();
+    private volatile Consumer<String> onRequest = userId -> { };
+
+    public FakeFollowService follows(String userId, List<String> followingIds) {
+        following.put(userId, List.copyOf(followingIds));
+        return this;
+    }
+
+    public FakeFollowService followedBy(String userId, List<String> followerIds) {
+        followers.put(userId, List.copyOf(followerIds));
+        return this;
+    }
+
+    /**
+     * Runs before every request is answered, with the user it is about
+     */
+    public void onRequest(Consumer<String> onRequest) {
+        this.onRequest = onRequest;
+    }
+
+    /**
+     * @return following-list pages requested for the user
+     */
+    public int getFollowingRequests(String userId) {
+        AtomicInteger requests = followingRequests.get(userId);
+        return requests != null ? requests.get() : 0;
+    }
+
+    @Override
+    public FollowingResponse getFollowing(String userId) {
+        return getFollowing(userId, 1, 20);
+    }
+
+    @Override
+    public FollowingResponse getFollowing(String userId, int page, int limit) {
+        followingRequests.computeIfAbsent(userId, key -> new AtomicInteger()).incrementAndGet();
+        onRequest.accept(userId);
+        List<String> ids = following.getOrDefault(userId, List.of());
+        return FollowingResponse.builder()
+            .following(page(ids, page, limit))
+            .pagination(pagination(ids, page, limit))
+            .build();
+    }
+
+    @Override
+    public FollowingResponse getFollowers(String userId) {
+        return getFollowers(userId, 1, 20);
+    }
+
+    @Override
+    public FollowingResponse getFollowers(String userId, int page, int limit) {
+        onRequest.accept(userId);
+        List<String> ids = followers.getOrDefault(userId, List.of());
+        return FollowingResponse.builder()
+            .followers(page(ids, page, limit))
+            .pagination(pagination(ids, page, limit))
+            .build();
+    }
+
+    private static FollowingResponse.PaginationDto pagination(List<String> ids, int page, int limit) {
+        return new FollowingResponse.PaginationDto(page, limit, ids.size(), (ids.size() + limit - 1) / limit);
+    }
+
+    private static List<FollowingResponse.FollowingUserDto> page(List<String> ids, int page, int limit) {
+        int from = Math.min((page - 1) * limit, ids.size());
+        int to = Math.min(from + limit, ids.size());
+        List<FollowingResponse.FollowingUserDto> users = new ArrayList<>(to - from);
+        for (String id : ids.subList(from, to)) {
+            users.add(FollowingResponse.FollowingUserDto.builder().id(id).build());
+        }
+        return users;
+    }
+}
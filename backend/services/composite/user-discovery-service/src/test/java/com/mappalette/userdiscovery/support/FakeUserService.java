@@ -0,0 +1,127 @@
+package com.mappalette.userdiscovery.support;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mappalette.userdiscovery.client.UserServiceClient;
+import com.mappalette.userdiscovery.dto.PaginatedUsersResponse;
+import com.mappalette.userdiscovery.dto.UserDto;
+import feign.Request;
+import feign.Response;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+
+/**
+ * In-memory user-service: serves its users as JSON directory pages in list order and by ID.
+ * Tests can swap the users at any time and hook every page request, e.g. to block or fail it.
+ */
+public class FakeUserService implements UserServiceClient {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final AtomicInteger pageRequests = new AtomicInteger();
+    private final AtomicInteger userRequests = new AtomicInteger();
+    private volatile List<UserDto> users;
+    private volatile IntConsumer onPage = page -> { };
+
+    public FakeUserService(List<UserDto> users) {
+        this.users = List.copyOf(users);
+    }
+
+    public static UserDto user(String id, String username, boolean profilePrivate) {
+        return UserDto.builder()
+            .id(id)
+            .userID(id)
+            .username(username)
+            .isProfilePrivate(profilePrivate)
+            .numFollowers(0)
+            .numFollowing(0)
+            .build();
+    }
+
+    /**
+     * Public users {@code prefix0..prefix(count - 1)}
+     */
+    public static List<UserDto> users(String prefix, int count) {
+        List<UserDto> users = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            users.add(user(prefix + i, "name-" + prefix + i, false));
+        }
+        return users;
+    }
+
+    public void setUsers(List<UserDto> users) {
+        this.users = List.copyOf(users);
+    }
+
+    /**
+     * Runs for every directory page after its users are read and before it is returned,
+     * with the 1-based page number
+     */
+    public void onPage(IntConsumer onPage) {
+        this.onPage = onPage;
+    }
+
+    public int getPageRequests() {
+        return pageRequests.get();
+    }
+
+    public int getUserRequests() {
+        return userRequests.get();
+    }
+
+    @Override
+    public PaginatedUsersResponse getAllUsers(int limit) {
+        return page(1, limit);
+    }
+
+    @Override
+    public Response getAllUsersPage(int page, int limit) {
+        byte[] body;
+        try {
+            body = objectMapper.writeValueAsBytes(getPage(page, limit));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+        return Response.builder()
+            .status(200)
+            .request(Request.create(Request.HttpMethod.GET, "/api/users/all", Map.of(), null,
+                StandardCharsets.UTF_8, null))
+            .headers(Map.of())
+            .body(body)
+            .build();
+    }
+
+    /**
+     * The directory page getAllUsersPage serves, before it is written as JSON
+     */
+    public PaginatedUsersResponse getPage(int page, int limit) {
+        pageRequests.incrementAndGet();
+        PaginatedUsersResponse response = page(page, limit);
+        onPage.accept(page);
+        return response;
+    }
+
+    @Override
+    public UserDto getUserById(String userId) {
+        userRequests.incrementAndGet();
+        return users.stream()
+            .filter(user -> userId.equals(user.getUserID()))
+            .findFirst()
+            .orElse(null);
+    }
+
+    private PaginatedUsersResponse page(int page, int limit) {
+        List<UserDto> all = users;
+        int from = Math.min((page - 1) * limit, all.size());
+        int to = Math.min(from + limit, all.size());
+        return PaginatedUsersResponse.builder()
+            .users(List.copyOf(all.subList(from, to)))
+            .pagination(new PaginatedUsersResponse.Pagination(page, limit, all.size(),
+                (all.size() + limit - 1) / limit))
+            .build();
+    }
+}
@@ -0,0 +1,194 @@
+package com.mappalette.userdiscovery.support;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mappalette.userdiscovery.cache.FollowingCache;
+import com.mappalette.userdiscovery.cache.ResponseCache;
+import com.mappalette.userdiscovery.cache.UserLookupCache;
+import com.mappalette.userdiscovery.client.ReactiveFollowServiceClient;
+import com.mappalette.userdiscovery.client.ReactiveUserServiceClient;
+import com.mappalette.userdiscovery.client.UpstreamCalls;
+import com.mappalette.userdiscovery.directory.DirectoryPartitioner;
+import com.mappalette.userdiscovery.directory.DirectorySnapshotStore;
+import com.mappalette.userdiscovery.directory.SuggestionIndex;
+import com.mappalette.userdiscovery.directory.UserDirectoryCache;
+import com.mappalette.userdiscovery.directory.UserDirectoryPager;
+import com.mappalette.userdiscovery.directory.UserDirectoryRefreshedEvent;
+import com.mappalette.userdiscovery.directory.UserIdInterner;
+import com.mappalette.userdiscovery.directory.UsernameIndex;
+import com.mappalette.userdiscovery.dto.FollowingResponse;
+import com.mappalette.userdiscovery.dto.PaginatedUsersResponse;
+import com.mappalette.userdiscovery.dto.UserDto;
+import com.mappalette.userdiscovery.events.DirectoryEventQueue;
+import com.mappalette.userdiscovery.metrics.DiscoveryMetrics;
+import com.mappalette.userdiscovery.metrics.RequestLogSampler;
+import com.mappalette.userdiscovery.service.DiscoveryFanOut;
+import com.mappalette.userdiscovery.service.ReactiveDiscoveryFanOut;
+import com.mappalette.userdiscovery.service.ReactiveUserDiscoveryService;
+import com.mappalette.userdiscovery.service.SuggestionRanker;
+import com.mappalette.userdiscovery.service.UserDiscoveryService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * The real discovery stack (directory snapshot, following cache, indexes, fan-out, service, event queue)
+ * wired by hand on top of {@link FakeUserService} and {@link FakeFollowService}, with the
+ * default limits of application.properties. {@link #reactive} adds the reactive service on
+ * the same stack, its WebClient calls answered by the same fakes.
+ */
+public final class TestDiscovery implements AutoCloseable {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final UserIdInterner userIdInterner = new UserIdInterner();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ExecutorService upstreamExecutor = Executors.newFixedThreadPool(4);
+    private final FakeUserService userService;
+    private final FakeFollowService followService;
+    private final UpstreamCalls upstreamCalls;
+    private final DiscoveryMetrics discoveryMetrics;
+    private final UserDirectoryCache directoryCache;
+    private final FollowingCache followingCache;
+    private final DirectoryPartitioner directoryPartitioner;
+    private final SuggestionRanker suggestionRanker;
+    private final UserLookupCache userLookupCache;
+    private final DiscoveryFanOut fanOut;
+    private final RequestLogSampler requestLogSampler;
+    private final UserDiscoveryService service;
+    private final DirectoryEventQueue eventQueue;
+
+    public TestDiscovery(List<UserDto> users, FakeFollowService followService) {
+        this(users, followService, 10_000);
+    }
+
+    /**
+     * @param maxUsers directory snapshot cap; users past it are read page by page
+     */
+    public TestDiscovery(List<UserDto> users, FakeFollowService followService, int maxUsers) {
+        this(users, followService, maxUsers, new RequestLogSampler(0.0));
+    }
+
+    /**
+     * @param requestLogSampler decides which requests the service logs
+     */
+    public TestDiscovery(List<UserDto> users, FakeFollowService followService, int maxUsers,
+                         RequestLogSampler requestLogSampler) {
+        this.userService = new FakeUserService(users);
+        this.followService = followService;
+        this.requestLogSampler = requestLogSampler;
+
+        this.upstreamCalls = TestUpstreams.calls(meterRegistry);
+        SuggestionIndex suggestionIndex = new SuggestionIndex(userIdInterner);
+        UsernameIndex usernameIndex = new UsernameIndex(userIdInterner, 4096);
+        UserDirectoryPager pager = TestUpstreams.pager(userService, upstreamCalls, userIdInterner, upstreamExecutor);
+        this.directoryCache = new UserDirectoryCache(pager,
+            event -> {
+                if (event instanceof UserDirectoryRefreshedEvent refreshed) {
+                    suggestionIndex.onDirectoryRefreshed(refreshed);
+                    usernameIndex.onDirectoryRefreshed(refreshed);
+                }
+            },
+            new DirectorySnapshotStore(userIdInterner, meterRegistry, "", 0),
+            meterRegistry, maxUsers, 60_000, 0);
+        this.followingCache = new FollowingCache(followService, upstreamCalls, userIdInterner,
+            meterRegistry, 1000, 60_000, 60_000);
+        this.directoryPartitioner = new DirectoryPartitioner(1, 200_000, 16_384);
+        this.suggestionRanker = new SuggestionRanker(followService, upstreamCalls, followingCache, suggestionIndex,
+            userIdInterner, meterRegistry, TestUpstreams.executors(), 1000, 60_000, 0, 2_000_000, 60_000,
+            200, 8, 500, 500, 2000, 2000, 1.0, 2.0, 0.25);
+        this.userLookupCache = new UserLookupCache(userService, upstreamCalls, userIdInterner, meterRegistry,
+            TestUpstreams.executors(), 1000, 60_000, 8, 2000, 1000, 30_000);
+        this.discoveryMetrics = new DiscoveryMetrics(meterRegistry);
+        this.fanOut = new DiscoveryFanOut(directoryCache, followingCache, discoveryMetrics,
+            upstreamExecutor, 5_000, 5_000);
+        this.service = new UserDiscoveryService(fanOut, followingCache, suggestionIndex, suggestionRanker,
+            usernameIndex, pager, userIdInterner, userLookupCache, directoryPartitioner, discoveryMetrics,
+            requestLogSampler, new ResponseCache(meterRegistry, 1L << 20, 600_000), objectMapper,
+            100, 10_000, 500, 100, 50, 50);
+        this.eventQueue = new DirectoryEventQueue(directoryCache, followingCache, suggestionRanker, userIdInterner,
+            meterRegistry, 1000, 100, 100);
+    }
+
+    public UserDiscoveryService getService() {
+        return service;
+    }
+
+    /**
+     * The reactive service over this stack, streaming at most streamMaxLimit users
+     */
+    public ReactiveUserDiscoveryService reactive(int streamMaxLimit) {
+        ReactiveDiscoveryFanOut reactiveFanOut = new ReactiveDiscoveryFanOut(fanOut, directoryCache, followingCache,
+            reactiveFollowService(), upstreamCalls, discoveryMetrics, upstreamExecutor, 5_000, 5_000);
+        return new ReactiveUserDiscoveryService(service, reactiveFanOut, reactiveUserService(), upstreamCalls,
+            userIdInterner, requestLogSampler, streamMaxLimit);
+    }
+
+    public FollowingCache getFollowingCache() {
+        return followingCache;
+    }
+
+    public SuggestionRanker getSuggestionRanker() {
+        return suggestionRanker;
+    }
+
+    public DirectoryEventQueue getEventQueue() {
+        return eventQueue;
+    }
+
+    public FakeUserService getUserService() {
+        return userService;
+    }
+
+    public FakeFollowService getFollowService() {
+        return followService;
+    }
+
+    public SimpleMeterRegistry getMeterRegistry() {
+        return meterRegistry;
+    }
+
+    private ReactiveUserServiceClient reactiveUserService() {
+        return new ReactiveUserServiceClient() {
+            @Override
+            public Mono<PaginatedUsersResponse> getAllUsers(int limit) {
+                return Mono.fromCallable(() -> userService.getAllUsers(limit));
+            }
+
+            @Override
+            public Mono<PaginatedUsersResponse> getAllUsersPage(int page, int limit) {
+                return Mono.fromCallable(() -> userService.getPage(page, limit));
+            }
+
+            @Override
+            public Mono<UserDto> getUserById(String userId) {
+                return Mono.fromCallable(() -> userService.getUserById(userId));
+            }
+        };
+    }
+
+    private ReactiveFollowServiceClient reactiveFollowService() {
+        return new ReactiveFollowServiceClient() {
+            @Override
+            public Mono<FollowingResponse> getFollowing(String userId, int page, int limit) {
+                return Mono.fromCallable(() -> followService.getFollowing(userId, page, limit));
+            }
+
+            @Override
+            public Mono<FollowingResponse> getFollowers(String userId, int page, int limit) {
+                return Mono.fromCallable(() -> followService.getFollowers(userId, page, limit));
+            }
+        };
+    }
+
+    @Override
+    public void close() {
+        eventQueue.shutdown();
+        directoryCache.shutdown();
+        directoryPartitioner.shutdown();
+        suggestionRanker.shutdown();
+        userLookupCache.shutdown();
+        upstreamExecutor.shutdownNow();
+    }
+}
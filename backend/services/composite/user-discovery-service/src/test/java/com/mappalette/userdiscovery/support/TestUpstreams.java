@@ -0,0 +1,37 @@
+package com.mappalette.userdiscovery.support;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mappalette.userdiscovery.client.UpstreamCalls;
+import com.mappalette.userdiscovery.client.UserServiceClient;
+import com.mappalette.userdiscovery.config.DiscoveryExecutors;
+import com.mappalette.userdiscovery.directory.UserDirectoryPager;
+import com.mappalette.userdiscovery.directory.UserIdInterner;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Upstream plumbing with default breakers and bulkheads and no hedging, for tests that
+ * run the real upstream callers against {@link FakeUserService} and {@link FakeFollowService}.
+ */
+public final class TestUpstreams {
+
+    private TestUpstreams() {
+    }
+
+    public static UpstreamCalls calls(MeterRegistry meterRegistry) {
+        return new UpstreamCalls(CircuitBreakerRegistry.ofDefaults(), BulkheadRegistry.ofDefaults(), meterRegistry,
+            executors(), false, 0, 0);
+    }
+
+    public static DiscoveryExecutors executors() {
+        return new DiscoveryExecutors(false, 8, 64);
+    }
+
+    public static UserDirectoryPager pager(UserServiceClient userService, UpstreamCalls upstreamCalls,
+                                           UserIdInterner userIdInterner, Executor executor) {
+        return new UserDirectoryPager(userService, upstreamCalls, new ObjectMapper(), userIdInterner, executor, 2);
+    }
+}
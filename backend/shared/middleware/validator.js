@@ -60,6 +60,12 @@ const uuidSchema = z.string().uuid({ message: 'Invalid UUID format' });
 // Pagination schemas
 const paginationSchema = z.object({
   cursor: z.string().optional(),
+  page: z.coerce
+    .number()
+    .int()
+    .min(1)
+    .optional()
+    .default(1),
   limit: z.coerce
     .number()
     .int()
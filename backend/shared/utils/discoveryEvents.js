@@ -0,0 +1,54 @@
+/**
+ * Directory events for user-discovery-service
+ * Lets it patch its in-memory user directory and following sets instead of reloading them.
+ * Fire-and-forget: a lost event is corrected by the discovery service's periodic full reload.
+ * Authenticated with INTERNAL_SERVICE_KEY; the endpoint is not reachable through Caddy.
+ *
+ * Every replica keeps its own caches, so USER_DISCOVERY_SERVICE_URL may list several
+ * comma-separated replica URLs and each one gets every event.
+ */
+
+const USER_DISCOVERY_SERVICE_URLS = (process.env.USER_DISCOVERY_SERVICE_URL || '')
+  .split(',')
+  .map((url) => url.trim())
+  .filter(Boolean);
+
+// Only the fields the discovery directory keeps
+const toDirectoryUser = (user) => ({
+  id: user.id,
+  username: user.username,
+  profilePicture: user.profilePicture,
+  isProfilePrivate: user.isProfilePrivate,
+  numFollowers: user.numFollowers,
+  numFollowing: user.numFollowing,
+});
+
+const publishDiscoveryEvents = (events) => {
+  if (USER_DISCOVERY_SERVICE_URLS.length === 0 || !process.env.INTERNAL_SERVICE_KEY || events.length === 0) {
+    return;
+  }
+  const body = JSON.stringify(events);
+  USER_DISCOVERY_SERVICE_URLS.forEach((url) => {
+    fetch(`${url}/api/discover/events`, {
+      method: 'POST',
+      headers: { 'Content-Type': 'application/json', 'x-service-key': process.env.INTERNAL_SERVICE_KEY },
+      body,
+    })
+      .then((response) => {
+        if (!response.ok) {
+          console.warn(`[DISCOVERY_EVENTS] user-discovery-service at ${url} answered ${response.status}`);
+        }
+      })
+      .catch((error) => console.warn(`[DISCOVERY_EVENTS] Could not publish events to ${url}:`, error.message));
+  });
+};
+
+const discoveryEvents = {
+  userCreated: (user) => ({ type: 'USER_CREATED', user: toDirectoryUser(user) }),
+  userUpdated: (user) => ({ type: 'USER_UPDATED', user: toDirectoryUser(user) }),
+  userDeleted: (userId) => ({ type: 'USER_DELETED', userId }),
+  followed: (followerId, followingId) => ({ type: 'FOLLOWED', followerId, followingId }),
+  unfollowed: (followerId, followingId) => ({ type: 'UNFOLLOWED', followerId, followingId }),
+};
+
+module.exports = { publishDiscoveryEvents, discoveryEvents };